@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.Allocation;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.upstream.StripedAllocator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks an {@link Allocator} shared by several loading threads, each of which repeatedly
+ * allocates a batch of allocations and releases it, as a sample queue does when its samples are
+ * consumed.
+ *
+ * <p>The number of contending threads can be changed with JMH's -t option.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class AllocatorBenchmark {
+
+  private static final int BATCH_SIZE = 8;
+
+  /** The allocator implementation. One of "default" and "striped". */
+  @Param({"default", "striped"})
+  public String allocatorType;
+
+  private Allocator allocator;
+
+  /** The allocations held by a single loading thread. */
+  @State(Scope.Thread)
+  public static class Batch {
+
+    private final Allocation[] allocations = new Allocation[BATCH_SIZE];
+  }
+
+  @Setup
+  public void setUp() {
+    switch (allocatorType) {
+      case "default":
+        allocator = new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+        break;
+      case "striped":
+        allocator = new StripedAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported allocator: " + allocatorType);
+    }
+  }
+
+  @Benchmark
+  public void allocateAndRelease(Batch batch) {
+    Allocation[] allocations = batch.allocations;
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      allocations[i] = allocator.allocate();
+    }
+    allocator.release(allocations);
+  }
+}
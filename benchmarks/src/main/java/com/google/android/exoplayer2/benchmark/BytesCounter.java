@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Counts the bytes processed by a benchmark, which JMH reports in megabytes per second. */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class BytesCounter {
+
+  private static final double BYTES_PER_MEGABYTE = 1_000_000;
+
+  /** The number of megabytes processed in the current iteration. */
+  public double megabytes;
+
+  /** Resets the counter at the start of an iteration. */
+  @Setup(Level.Iteration)
+  public void reset() {
+    megabytes = 0;
+  }
+
+  /** Counts the given number of bytes as processed. */
+  public void add(long bytes) {
+    megabytes += bytes / BYTES_PER_MEGABYTE;
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import com.google.android.exoplayer2.upstream.cache.CacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SegmentedLruCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.WindowTinyLfuCacheEvictor;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks replaying a trace of span accesses through a {@link CacheEvictor}.
+ *
+ * <p>The cache hits and accesses of the evictor are reported together with the throughput, by a
+ * {@link HitCounter}. By default a synthetic trace is replayed, in which a set of hot spans is
+ * accessed repeatedly in random order while a long stream is read sequentially. A recorded trace
+ * can be replayed instead by passing its path with "-p trace=&lt;path&gt;", together with a
+ * suitable "-p maxBytes=&lt;bytes&gt;". Each line of a recorded trace holds the key, position and
+ * length of an accessed span, separated by whitespace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheEvictorBenchmark {
+
+  private static final String SYNTHETIC_TRACE = "synthetic";
+  private static final int SYNTHETIC_SPAN_LENGTH = 100;
+  private static final int SYNTHETIC_HOT_SPAN_COUNT = 30;
+  private static final int SYNTHETIC_SCAN_SPAN_COUNT = 20_000;
+
+  /** The evictor implementation. One of "lru", "slru" and "wtinylfu". */
+  @Param({"lru", "slru", "wtinylfu"})
+  public String evictorType;
+
+  /** The path of a recorded trace, or "synthetic". */
+  @Param({SYNTHETIC_TRACE})
+  public String trace;
+
+  /** The maximum number of bytes the evictor keeps cached. */
+  @Param({"5000"})
+  public long maxBytes;
+
+  private List<CacheSpan> accesses;
+
+  @Setup
+  public void setUp() throws IOException {
+    accesses = SYNTHETIC_TRACE.equals(trace) ? createSyntheticTrace() : readTrace(trace);
+  }
+
+  @Benchmark
+  public ReplayCache replay(HitCounter hitCounter) {
+    ReplayCache cache = new ReplayCache(createEvictor());
+    for (int i = 0; i < accesses.size(); i++) {
+      CacheSpan access = accesses.get(i);
+      hitCounter.add(cache.access(access.key, access.position, access.length));
+    }
+    return cache;
+  }
+
+  private CacheEvictor createEvictor() {
+    switch (evictorType) {
+      case "lru":
+        return new LeastRecentlyUsedCacheEvictor(maxBytes);
+      case "slru":
+        return new SegmentedLruCacheEvictor(maxBytes);
+      case "wtinylfu":
+        return new WindowTinyLfuCacheEvictor(maxBytes);
+      default:
+        throw new IllegalArgumentException("Unsupported evictor: " + evictorType);
+    }
+  }
+
+  private static List<CacheSpan> createSyntheticTrace() {
+    Random random = new Random(/* seed= */ 0);
+    List<CacheSpan> accesses = new ArrayList<>();
+    int scanPosition = 0;
+    while (scanPosition < SYNTHETIC_SCAN_SPAN_COUNT) {
+      for (int i = 0; i < 3; i++) {
+        long hotPosition = (long) random.nextInt(SYNTHETIC_HOT_SPAN_COUNT) * SYNTHETIC_SPAN_LENGTH;
+        accesses.add(new CacheSpan("hot", hotPosition, SYNTHETIC_SPAN_LENGTH));
+      }
+      long position = (long) scanPosition++ * SYNTHETIC_SPAN_LENGTH;
+      accesses.add(new CacheSpan("scan", position, SYNTHETIC_SPAN_LENGTH));
+    }
+    return accesses;
+  }
+
+  private static List<CacheSpan> readTrace(String path) throws IOException {
+    List<CacheSpan> accesses = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty()) {
+          continue;
+        }
+        String[] fields = line.split("\\s+");
+        if (fields.length != 3) {
+          throw new IOException("Malformed trace line: " + line);
+        }
+        accesses.add(
+            new CacheSpan(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+      }
+    }
+    return accesses;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.SampleDataReader;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An {@link ExtractorOutput} that discards the extracted sample data, and counts the extracted
+ * samples.
+ *
+ * <p>Unlike the fake outputs used in tests, it doesn't retain any of the output, so that the
+ * benchmarks only measure the cost of extraction.
+ */
+/* package */ final class CountingExtractorOutput implements ExtractorOutput {
+
+  private final List<CountingTrackOutput> trackOutputs;
+
+  public CountingExtractorOutput() {
+    trackOutputs = new ArrayList<>();
+  }
+
+  /** Returns the number of samples output to all tracks. */
+  public long getSampleCount() {
+    long sampleCount = 0;
+    for (int i = 0; i < trackOutputs.size(); i++) {
+      sampleCount += trackOutputs.get(i).sampleCount;
+    }
+    return sampleCount;
+  }
+
+  // ExtractorOutput implementation.
+
+  @Override
+  public TrackOutput track(int id, int type) {
+    CountingTrackOutput trackOutput = new CountingTrackOutput();
+    trackOutputs.add(trackOutput);
+    return trackOutput;
+  }
+
+  @Override
+  public void endTracks() {
+    // Do nothing.
+  }
+
+  @Override
+  public void seekMap(SeekMap seekMap) {
+    // Do nothing.
+  }
+
+  private static final class CountingTrackOutput implements TrackOutput {
+
+    private long sampleCount;
+
+    @Override
+    public void format(Format format) {
+      // Do nothing.
+    }
+
+    @Override
+    public int sampleData(SampleDataReader input, int length, boolean allowEndOfInput)
+        throws IOException, InterruptedException {
+      int bytesSkipped = input.skip(length);
+      if (bytesSkipped == C.RESULT_END_OF_INPUT) {
+        if (allowEndOfInput) {
+          return C.RESULT_END_OF_INPUT;
+        }
+        throw new EOFException();
+      }
+      return bytesSkipped;
+    }
+
+    @Override
+    public void sampleData(ParsableByteArray data, int length) {
+      data.skipBytes(length);
+    }
+
+    @Override
+    public void sampleMetadata(
+        long timeUs,
+        @C.BufferFlags int flags,
+        int size,
+        int offset,
+        @Nullable CryptoData cryptoData) {
+      sampleCount++;
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifestParser;
+import com.google.android.exoplayer2.util.Util;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks parsing DASH manifests with {@link DashManifestParser}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DashManifestParserBenchmark {
+
+  /**
+   * The name of a generated live manifest, whose SegmentTimeline lists each of the segments in a
+   * two hour time shift buffer explicitly.
+   */
+  private static final String LIVE_MANIFEST = "live";
+
+  private static final int LIVE_SEGMENT_COUNT = 3600;
+  private static final int LIVE_SEGMENT_DURATION_MS = 2000;
+
+  private static final Uri MANIFEST_URI = Uri.parse("https://example.com/manifest.mpd");
+
+  /**
+   * The path of the parsed manifest relative to the test data directory, or {@link
+   * #LIVE_MANIFEST}.
+   */
+  @Param({"mpd/sample_mpd", "mpd/sample_mpd_segment_template", LIVE_MANIFEST})
+  public String manifest;
+
+  private byte[] data;
+
+  @Setup
+  public void setUp() throws IOException {
+    BenchmarkEnvironment.setUp();
+    data =
+        LIVE_MANIFEST.equals(manifest)
+            ? Util.getUtf8Bytes(createLiveManifest())
+            : TestData.read(manifest);
+  }
+
+  @Benchmark
+  public DashManifest parse(BytesCounter bytesCounter) throws IOException {
+    DashManifest dashManifest =
+        new DashManifestParser().parse(MANIFEST_URI, new ByteArrayInputStream(data));
+    bytesCounter.add(data.length);
+    return dashManifest;
+  }
+
+  private static String createLiveManifest() {
+    StringBuilder manifest =
+        new StringBuilder()
+            .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+            .append("<MPD xmlns=\"urn:mpeg:dash:schema:mpd:2011\" type=\"dynamic\"")
+            .append(" profiles=\"urn:mpeg:dash:profile:isoff-live:2011\"")
+            .append(" availabilityStartTime=\"2020-01-01T00:00:00Z\"")
+            .append(" minimumUpdatePeriod=\"PT2S\" timeShiftBufferDepth=\"PT7200S\"")
+            .append(" minBufferTime=\"PT4S\">\n")
+            .append(" <Period id=\"0\" start=\"PT0S\">\n")
+            .append("  <AdaptationSet mimeType=\"video/mp4\" segmentAlignment=\"true\">\n")
+            .append("   <SegmentTemplate timescale=\"1000\"")
+            .append(" initialization=\"$RepresentationID$/init.mp4\"")
+            .append(" media=\"$RepresentationID$/$Time$.m4s\">\n")
+            .append("    <SegmentTimeline>\n");
+    for (int i = 0; i < LIVE_SEGMENT_COUNT; i++) {
+      manifest
+          .append("     <S t=\"")
+          .append((long) i * LIVE_SEGMENT_DURATION_MS)
+          .append("\" d=\"")
+          .append(LIVE_SEGMENT_DURATION_MS)
+          .append("\"/>\n");
+    }
+    manifest
+        .append("    </SegmentTimeline>\n")
+        .append("   </SegmentTemplate>\n")
+        .append("   <Representation id=\"360p\" codecs=\"avc1.4d401e\" bandwidth=\"646000\"")
+        .append(" width=\"640\" height=\"360\"/>\n")
+        .append("   <Representation id=\"720p\" codecs=\"avc1.4d401f\" bandwidth=\"2326000\"")
+        .append(" width=\"1280\" height=\"720\"/>\n")
+        .append("  </AdaptationSet>\n")
+        .append(" </Period>\n")
+        .append("</MPD>\n");
+    return manifest.toString();
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.DefaultExtractorInput;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.mkv.MatroskaExtractor;
+import com.google.android.exoplayer2.extractor.mp4.FragmentedMp4Extractor;
+import com.google.android.exoplayer2.extractor.ts.TsExtractor;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks extracting all samples from a media file held in memory.
+ *
+ * <p>Each operation extracts the whole file, following any seeks requested by the extractor. The
+ * sample data is discarded, so the results measure the cost of parsing the container only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtractorBenchmark {
+
+  /** The path of the extracted file, relative to the test data directory. */
+  @Param({"mp4/sample_fragmented.mp4", "ts/sample.ts", "mkv/sample.mkv"})
+  public String file;
+
+  private byte[] data;
+
+  @Setup
+  public void setUp() throws IOException {
+    BenchmarkEnvironment.setUp();
+    data = TestData.read(file);
+  }
+
+  @Benchmark
+  public void extract(BytesCounter bytesCounter, SamplesCounter samplesCounter)
+      throws IOException, InterruptedException {
+    Extractor extractor = createExtractor(file);
+    CountingExtractorOutput output = new CountingExtractorOutput();
+    extractor.init(output);
+    PositionHolder positionHolder = new PositionHolder();
+    ExtractorInput input = createInput(/* position= */ 0);
+    int result = Extractor.RESULT_CONTINUE;
+    while (result != Extractor.RESULT_END_OF_INPUT) {
+      result = extractor.read(input, positionHolder);
+      if (result == Extractor.RESULT_SEEK) {
+        input = createInput(positionHolder.position);
+      }
+    }
+    extractor.release();
+    bytesCounter.add(data.length);
+    samplesCounter.add(output.getSampleCount());
+  }
+
+  private ExtractorInput createInput(long position) throws IOException {
+    ByteArrayDataSource dataSource = new ByteArrayDataSource(data);
+    dataSource.open(new DataSpec(Uri.EMPTY, position, C.LENGTH_UNSET));
+    return new DefaultExtractorInput(dataSource, position, data.length);
+  }
+
+  private static Extractor createExtractor(String file) {
+    if (file.endsWith(".mp4")) {
+      return new FragmentedMp4Extractor();
+    } else if (file.endsWith(".ts")) {
+      return new TsExtractor();
+    } else if (file.endsWith(".mkv") || file.endsWith(".webm")) {
+      return new MatroskaExtractor();
+    }
+    throw new IllegalArgumentException("Unsupported file: " + file);
+  }
+}
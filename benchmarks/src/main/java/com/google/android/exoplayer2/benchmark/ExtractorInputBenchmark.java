@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.DefaultExtractorInput;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks peeking a media file held in memory through a {@link DefaultExtractorInput}, then
+ * reading it in small reads, as extractors do with large headers such as an MP4 moov box.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtractorInputBenchmark {
+
+  /** The path of the read file, relative to the test data directory. */
+  @Param({"mp4/sample_fragmented.mp4", "ts/sample.ts", "mkv/sample.mkv"})
+  public String file;
+
+  /** The number of bytes read at a time, after the whole file has been peeked. */
+  @Param({"8", "188", "4096"})
+  public int readLength;
+
+  private byte[] data;
+  private byte[] target;
+
+  @Setup
+  public void setUp() throws IOException {
+    BenchmarkEnvironment.setUp();
+    data = TestData.read(file);
+    target = new byte[data.length];
+  }
+
+  @Benchmark
+  public void peekThenRead(BytesCounter bytesCounter) throws IOException, InterruptedException {
+    DefaultExtractorInput input = createInput();
+    input.peekFully(target, /* offset= */ 0, data.length);
+    readToEnd(input);
+    bytesCounter.add(data.length);
+  }
+
+  @Benchmark
+  public void peekWithHintThenRead(BytesCounter bytesCounter)
+      throws IOException, InterruptedException {
+    DefaultExtractorInput input = createInput();
+    input.hintPeekLength(data.length);
+    for (int offset = 0; offset < data.length; offset += readLength) {
+      input.peekFully(target, offset, Math.min(readLength, data.length - offset));
+    }
+    readToEnd(input);
+    bytesCounter.add(data.length);
+  }
+
+  private DefaultExtractorInput createInput() throws IOException {
+    ByteArrayDataSource dataSource = new ByteArrayDataSource(data);
+    dataSource.open(new DataSpec(Uri.EMPTY, /* position= */ 0, C.LENGTH_UNSET));
+    return new DefaultExtractorInput(dataSource, /* position= */ 0, data.length);
+  }
+
+  private void readToEnd(DefaultExtractorInput input) throws IOException, InterruptedException {
+    int offset = 0;
+    while (offset < data.length) {
+      offset += input.read(target, offset, Math.min(readLength, data.length - offset));
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser;
+import com.google.android.exoplayer2.util.Util;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks parsing HLS master playlists with {@link HlsPlaylistParser}.
+ *
+ * <p>The parsed playlists are generated, with one variant per bitrate and codec combination, and
+ * audio and subtitle renditions in several languages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HlsMasterPlaylistParserBenchmark {
+
+  private static final Uri PLAYLIST_URI = Uri.parse("https://example.com/master.m3u8");
+  private static final String[] LANGUAGES = {"en", "fr", "de", "es", "it", "ja", "ko", "pt"};
+  private static final String[] AUDIO_GROUPS = {"aac", "ec3"};
+  private static final String[] RESOLUTIONS = {"640x360", "1280x720", "1920x1080"};
+
+  /** The number of variants in the parsed playlist. */
+  @Param({"10", "100"})
+  public int variantCount;
+
+  private byte[] data;
+
+  @Setup
+  public void setUp() {
+    BenchmarkEnvironment.setUp();
+    data = Util.getUtf8Bytes(createMasterPlaylist(variantCount));
+  }
+
+  @Benchmark
+  public HlsMasterPlaylist parse(BytesCounter bytesCounter) throws IOException {
+    HlsMasterPlaylist playlist =
+        (HlsMasterPlaylist)
+            new HlsPlaylistParser().parse(PLAYLIST_URI, new ByteArrayInputStream(data));
+    bytesCounter.add(data.length);
+    return playlist;
+  }
+
+  private static String createMasterPlaylist(int variantCount) {
+    StringBuilder playlist =
+        new StringBuilder()
+            .append("#EXTM3U\n")
+            .append("#EXT-X-VERSION:6\n")
+            .append("#EXT-X-INDEPENDENT-SEGMENTS\n");
+    for (String audioGroup : AUDIO_GROUPS) {
+      for (int i = 0; i < LANGUAGES.length; i++) {
+        String language = LANGUAGES[i];
+        playlist
+            .append("#EXT-X-MEDIA:TYPE=AUDIO,GROUP-ID=\"")
+            .append(audioGroup)
+            .append("\",NAME=\"")
+            .append(language)
+            .append("\",LANGUAGE=\"")
+            .append(language)
+            .append("\",AUTOSELECT=YES,DEFAULT=")
+            .append(i == 0 ? "YES" : "NO")
+            .append(",CHANNELS=\"")
+            .append(audioGroup.equals("aac") ? "2" : "16/JOC")
+            .append("\",URI=\"audio/")
+            .append(audioGroup)
+            .append('/')
+            .append(language)
+            .append("/media.m3u8\"\n");
+      }
+    }
+    for (String language : LANGUAGES) {
+      playlist
+          .append("#EXT-X-MEDIA:TYPE=SUBTITLES,GROUP-ID=\"subs\",NAME=\"")
+          .append(language)
+          .append("\",LANGUAGE=\"")
+          .append(language)
+          .append("\",AUTOSELECT=YES,FORCED=NO,")
+          .append("CHARACTERISTICS=\"public.accessibility.transcribes-spoken-dialog\",URI=\"subs/")
+          .append(language)
+          .append("/media.m3u8\"\n");
+    }
+    playlist.append(
+        "#EXT-X-MEDIA:TYPE=CLOSED-CAPTIONS,GROUP-ID=\"cc\",NAME=\"en\",LANGUAGE=\"en\","
+            + "INSTREAM-ID=\"CC1\"\n");
+    for (int i = 0; i < variantCount; i++) {
+      String audioGroup = AUDIO_GROUPS[i % AUDIO_GROUPS.length];
+      int bitrate = 500_000 + i * 100_000;
+      playlist
+          .append("#EXT-X-STREAM-INF:BANDWIDTH=")
+          .append(bitrate)
+          .append(",AVERAGE-BANDWIDTH=")
+          .append(bitrate * 9 / 10)
+          .append(",CODECS=\"avc1.64001f,")
+          .append(audioGroup.equals("aac") ? "mp4a.40.2" : "ec-3")
+          .append("\",RESOLUTION=")
+          .append(RESOLUTIONS[i % RESOLUTIONS.length])
+          .append(",FRAME-RATE=29.970,AUDIO=\"")
+          .append(audioGroup)
+          .append("\",SUBTITLES=\"subs\",CLOSED-CAPTIONS=\"cc\"\n")
+          .append("video/")
+          .append(i)
+          .append("/media.m3u8\n");
+    }
+    return playlist.toString();
+  }
+}
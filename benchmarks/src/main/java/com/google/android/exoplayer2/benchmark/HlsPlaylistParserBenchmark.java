@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser;
+import com.google.android.exoplayer2.util.Util;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks parsing HLS media playlists with {@link HlsPlaylistParser}.
+ *
+ * <p>The parsed playlists are generated live playlists, of the kind that are reloaded every target
+ * duration during playback.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HlsPlaylistParserBenchmark {
+
+  private static final Uri PLAYLIST_URI = Uri.parse("https://example.com/media.m3u8");
+
+  /** The number of segments in the parsed playlist. */
+  @Param({"100", "10000"})
+  public int segmentCount;
+
+  private byte[] data;
+
+  @Setup
+  public void setUp() {
+    BenchmarkEnvironment.setUp();
+    data = Util.getUtf8Bytes(createMediaPlaylist(segmentCount));
+  }
+
+  @Benchmark
+  public HlsMediaPlaylist parse(BytesCounter bytesCounter) throws IOException {
+    HlsMediaPlaylist playlist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser().parse(PLAYLIST_URI, new ByteArrayInputStream(data));
+    bytesCounter.add(data.length);
+    return playlist;
+  }
+
+  private static String createMediaPlaylist(int segmentCount) {
+    StringBuilder playlist =
+        new StringBuilder()
+            .append("#EXTM3U\n")
+            .append("#EXT-X-VERSION:3\n")
+            .append("#EXT-X-TARGETDURATION:7\n")
+            .append("#EXT-X-MEDIA-SEQUENCE:1000\n")
+            .append("#EXT-X-PROGRAM-DATE-TIME:2020-01-01T00:00:00.000Z\n")
+            .append("#EXT-X-KEY:METHOD=AES-128,URI=\"https://example.com/key\",")
+            .append("IV=0x1566B6A1F6D3A5F9C8D6C3E8B0C1E6F4\n");
+    for (int i = 0; i < segmentCount; i++) {
+      playlist.append("#EXTINF:6.006,\n").append("segment").append(1000 + i).append(".ts\n");
+    }
+    return playlist.toString();
+  }
+}
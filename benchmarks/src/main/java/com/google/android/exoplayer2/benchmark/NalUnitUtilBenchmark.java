@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import com.google.android.exoplayer2.util.NalUnitUtil;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks scanning an H.264 elementary stream with {@link NalUnitUtil}.
+ *
+ * <p>The stream is generated. NAL unit payloads are random, which is a good approximation of
+ * entropy coded slice data, with emulation prevention bytes inserted as an encoder would. The
+ * stream is scanned in chunks, as it is when it's read from consecutive transport stream packets
+ * or from larger reads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NalUnitUtilBenchmark {
+
+  private static final int STREAM_LENGTH = 1024 * 1024;
+  private static final int NAL_UNIT_LENGTH = 16 * 1024;
+
+  /** The number of bytes passed to each call. 184 is the payload size of a transport packet. */
+  @Param({"184", "65536"})
+  public int chunkSize;
+
+  private byte[] data;
+  private byte[] scratch;
+  private boolean[] prefixFlags;
+
+  @Setup
+  public void setUp() {
+    data = createStream();
+    scratch = new byte[chunkSize];
+    prefixFlags = new boolean[3];
+  }
+
+  @Benchmark
+  public int findNalUnits(BytesCounter bytesCounter) {
+    NalUnitUtil.clearPrefixFlags(prefixFlags);
+    int nalUnitCount = 0;
+    for (int offset = 0; offset < data.length; offset += chunkSize) {
+      int limit = Math.min(offset + chunkSize, data.length);
+      int position = offset;
+      while (position < limit) {
+        int nalUnitOffset = NalUnitUtil.findNalUnit(data, position, limit, prefixFlags);
+        if (nalUnitOffset == limit) {
+          break;
+        }
+        nalUnitCount++;
+        position = Math.max(position, nalUnitOffset + 3);
+      }
+    }
+    bytesCounter.add(data.length);
+    return nalUnitCount;
+  }
+
+  @Benchmark
+  public int unescapeStream(BytesCounter bytesCounter) {
+    int unescapedLength = 0;
+    for (int offset = 0; offset < data.length; offset += chunkSize) {
+      int length = Math.min(chunkSize, data.length - offset);
+      System.arraycopy(data, offset, scratch, 0, length);
+      unescapedLength += NalUnitUtil.unescapeStream(scratch, length);
+    }
+    bytesCounter.add(data.length);
+    return unescapedLength;
+  }
+
+  private static byte[] createStream() {
+    Random random = new Random(/* seed= */ 0);
+    byte[] data = new byte[STREAM_LENGTH];
+    random.nextBytes(data);
+    for (int nalUnitOffset = 0;
+        nalUnitOffset < STREAM_LENGTH - 4;
+        nalUnitOffset += NAL_UNIT_LENGTH) {
+      data[nalUnitOffset] = 0;
+      data[nalUnitOffset + 1] = 0;
+      data[nalUnitOffset + 2] = 1;
+      // Non-IDR slice.
+      data[nalUnitOffset + 3] = 0x41;
+      int payloadLimit = Math.min(nalUnitOffset + NAL_UNIT_LENGTH, STREAM_LENGTH);
+      for (int i = nalUnitOffset + 6; i < payloadLimit; i++) {
+        if (data[i - 2] == 0 && data[i - 1] == 0 && (data[i] & 0xFF) <= 3) {
+          // Insert an emulation prevention byte, overwriting the payload byte.
+          data[i] = 3;
+        }
+      }
+    }
+    return data;
+  }
+}
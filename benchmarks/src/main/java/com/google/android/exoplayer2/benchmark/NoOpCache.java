@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadata;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadataMutations;
+import com.google.android.exoplayer2.upstream.cache.DefaultContentMetadata;
+import java.io.File;
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A {@link Cache} that's always empty and never grants write locks, which benchmarks extend to
+ * implement only the methods they use.
+ */
+/* package */ abstract class NoOpCache implements Cache {
+
+  @Override
+  public long getUid() {
+    return 0;
+  }
+
+  @Override
+  public void release() {
+    // Do nothing.
+  }
+
+  @Override
+  public NavigableSet<CacheSpan> addListener(String key, Listener listener) {
+    return new TreeSet<>();
+  }
+
+  @Override
+  public void removeListener(String key, Listener listener) {
+    // Do nothing.
+  }
+
+  @Override
+  public NavigableSet<CacheSpan> getCachedSpans(String key) {
+    return new TreeSet<>();
+  }
+
+  @Override
+  public Set<String> getKeys() {
+    return Collections.emptySet();
+  }
+
+  @Override
+  public long getCacheSpace() {
+    return 0;
+  }
+
+  @Override
+  public CacheSpan startReadWrite(String key, long position) {
+    // Waiting for a write lock would block forever.
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  @Nullable
+  public CacheSpan startReadWriteNonBlocking(String key, long position) {
+    return null;
+  }
+
+  @Override
+  public File startFile(String key, long position, long length) {
+    throw new IllegalStateException("No write lock is held");
+  }
+
+  @Override
+  public void commitFile(File file, long length) {
+    throw new IllegalStateException("No write lock is held");
+  }
+
+  @Override
+  public void releaseHoleSpan(CacheSpan holeSpan) {
+    // Do nothing.
+  }
+
+  @Override
+  public void removeSpan(CacheSpan span) {
+    // Do nothing.
+  }
+
+  @Override
+  public boolean isCached(String key, long position, long length) {
+    return false;
+  }
+
+  @Override
+  public long getCachedLength(String key, long position, long length) {
+    return -(length == C.LENGTH_UNSET ? Long.MAX_VALUE : length);
+  }
+
+  @Override
+  public void applyContentMetadataMutations(String key, ContentMetadataMutations mutations) {
+    // Do nothing.
+  }
+
+  @Override
+  public ContentMetadata getContentMetadata(String key) {
+    return DefaultContentMetadata.EMPTY;
+  }
+}
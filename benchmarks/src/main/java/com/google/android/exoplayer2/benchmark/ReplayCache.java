@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+import java.io.File;
+import java.util.TreeSet;
+
+/**
+ * A {@link Cache} that only tracks which spans are cached, used to replay span accesses through a
+ * {@link CacheEvictor}.
+ *
+ * <p>No data is stored. Each access either touches the accessed span if it's cached, or adds it if
+ * it isn't, and the evictor is notified as it would be by {@code SimpleCache}. Evictors only call
+ * {@link #removeSpan(CacheSpan)}, so the other {@link Cache} methods are left as no-ops.
+ */
+/* package */ final class ReplayCache extends NoOpCache {
+
+  private static final File SPAN_FILE = new File("span");
+
+  private final CacheEvictor evictor;
+  private final TreeSet<CacheSpan> cachedSpans;
+
+  private long timestamp;
+
+  public ReplayCache(CacheEvictor evictor) {
+    this.evictor = evictor;
+    cachedSpans = new TreeSet<>();
+    evictor.onCacheInitialized();
+  }
+
+  /**
+   * Accesses a span.
+   *
+   * @param key The cache key of the span.
+   * @param position The position of the span.
+   * @param length The length of the span.
+   * @return Whether the span was cached.
+   */
+  public boolean access(String key, long position, long length) {
+    CacheSpan span = new CacheSpan(key, position, length, ++timestamp, SPAN_FILE);
+    CacheSpan cachedSpan = cachedSpans.floor(span);
+    if (cachedSpan != null && cachedSpan.compareTo(span) == 0) {
+      cachedSpans.remove(cachedSpan);
+      cachedSpans.add(span);
+      evictor.onSpanTouched(this, cachedSpan, span);
+      return true;
+    }
+    evictor.onStartFile(this, key, position, length);
+    cachedSpans.add(span);
+    evictor.onSpanAdded(this, span);
+    return false;
+  }
+
+  // NoOpCache implementation.
+
+  @Override
+  public void removeSpan(CacheSpan span) {
+    if (cachedSpans.remove(span)) {
+      evictor.onSpanRemoved(this, span);
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.FormatHolder;
+import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
+import com.google.android.exoplayer2.drm.DrmSessionManager;
+import com.google.android.exoplayer2.source.SampleQueue;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.upstream.DirectBufferAllocator;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks writing samples to a {@link SampleQueue}, and reading them into a {@link
+ * DecoderInputBuffer}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleQueueBenchmark {
+
+  private static final Format FORMAT =
+      Format.createSampleFormat(/* id= */ null, MimeTypes.VIDEO_H264);
+  private static final int SAMPLES_PER_OPERATION = 64;
+  private static final long SAMPLE_DURATION_US = 33_333;
+
+  /** The allocator used by the queue. One of "default" and "direct". */
+  @Param({"default", "direct"})
+  public String allocatorType;
+
+  /** The size of each sample in bytes. */
+  @Param({"1024", "65536"})
+  public int sampleSize;
+
+  /** Whether the decoder input buffer may borrow the queue's sample data instead of copying it. */
+  @Param({"false", "true"})
+  public boolean borrowData;
+
+  private SampleQueue sampleQueue;
+  private ParsableByteArray sampleData;
+  private FormatHolder formatHolder;
+  private DecoderInputBuffer inputBuffer;
+  private long timeUs;
+
+  @Setup
+  public void setUp() {
+    Allocator allocator;
+    switch (allocatorType) {
+      case "default":
+        allocator = new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+        break;
+      case "direct":
+        allocator =
+            new DirectBufferAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported allocator: " + allocatorType);
+    }
+    sampleQueue = new SampleQueue(allocator, DrmSessionManager.getDummyDrmSessionManager());
+    sampleQueue.format(FORMAT);
+    sampleData = new ParsableByteArray(sampleSize);
+    formatHolder = new FormatHolder();
+    inputBuffer = new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+    inputBuffer.setBorrowedDataAllowed(borrowData);
+  }
+
+  @TearDown
+  public void tearDown() {
+    sampleQueue.release();
+  }
+
+  @Benchmark
+  public void writeAndRead(BytesCounter bytesCounter, SamplesCounter samplesCounter) {
+    for (int i = 0; i < SAMPLES_PER_OPERATION; i++) {
+      sampleData.setPosition(0);
+      sampleQueue.sampleData(sampleData, sampleSize);
+      sampleQueue.sampleMetadata(
+          timeUs, C.BUFFER_FLAG_KEY_FRAME, sampleSize, /* offset= */ 0, /* cryptoData= */ null);
+      timeUs += SAMPLE_DURATION_US;
+    }
+    int samplesRead = 0;
+    while (samplesRead < SAMPLES_PER_OPERATION) {
+      inputBuffer.clear();
+      int result =
+          sampleQueue.read(
+              formatHolder,
+              inputBuffer,
+              /* formatRequired= */ false,
+              /* loadingFinished= */ false,
+              /* decodeOnlyUntilUs= */ 0);
+      if (result == C.RESULT_BUFFER_READ) {
+        samplesRead++;
+      }
+    }
+    inputBuffer.clear();
+    sampleQueue.discardToRead();
+    bytesCounter.add((long) SAMPLES_PER_OPERATION * sampleSize);
+    samplesCounter.add(SAMPLES_PER_OPERATION);
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.ShardedCache;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks a {@link Cache} shared by several downloading threads, each of which repeatedly
+ * writes a span of its own content, looks up how much of the content is cached, and removes its
+ * oldest span so that the size of the index stays constant.
+ *
+ * <p>The caches use the legacy file based index, which is stored every time a span is committed
+ * or removed. The number of contending threads can be changed with JMH's -t option.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ShardedCacheBenchmark {
+
+  private static final int SHARD_COUNT = 4;
+  private static final int SPAN_LENGTH = 4096;
+  private static final int SPANS_PER_KEY = 16;
+  private static final int LOOKUPS_PER_WRITE = 8;
+
+  /**
+   * The cache implementation. One of "simple", for a single {@link SimpleCache}, and "sharded",
+   * for a {@link ShardedCache} of {@link SimpleCache} shards.
+   */
+  @Param({"simple", "sharded"})
+  public String cacheType;
+
+  /**
+   * How the keys of the threads are distributed between shards. One of "distinct", where each
+   * thread writes to a different shard as long as there are enough shards, and "same", where all
+   * threads write to the same shard.
+   */
+  @Param({"distinct", "same"})
+  public String keyDistribution;
+
+  private final AtomicInteger threadCount;
+
+  private File cacheDir;
+  private Cache cache;
+
+  public ShardedCacheBenchmark() {
+    threadCount = new AtomicInteger();
+  }
+
+  /** The content written by a single downloading thread. */
+  @State(Scope.Thread)
+  public static class Download {
+
+    private final byte[] data = new byte[SPAN_LENGTH];
+
+    private String key;
+    private long position;
+
+    @Setup
+    public void setUp(ShardedCacheBenchmark benchmark) {
+      key = benchmark.createKey(benchmark.threadCount.getAndIncrement());
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPosition() {
+      position = 0;
+    }
+  }
+
+  @Setup(Level.Iteration)
+  @SuppressWarnings("deprecation") // The database index isn't available on the JVM.
+  public void setUp() throws IOException {
+    BenchmarkEnvironment.setUp();
+    cacheDir = Files.createTempDirectory("ShardedCacheBenchmark").toFile();
+    switch (cacheType) {
+      case "simple":
+        cache = new SimpleCache(new File(cacheDir, "cache"), new NoOpCacheEvictor());
+        break;
+      case "sharded":
+        Cache[] shards = new Cache[SHARD_COUNT];
+        for (int i = 0; i < SHARD_COUNT; i++) {
+          shards[i] = new SimpleCache(new File(cacheDir, "shard" + i), new NoOpCacheEvictor());
+        }
+        cache = new ShardedCache(shards);
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported cache: " + cacheType);
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() {
+    cache.release();
+    Util.recursiveDelete(cacheDir);
+  }
+
+  @Benchmark
+  public long writeSpan(Download download) throws Exception {
+    String key = download.key;
+    long position = download.position;
+    CacheSpan holeSpan = cache.startReadWrite(key, position, SPAN_LENGTH);
+    File file = cache.startFile(key, position, SPAN_LENGTH);
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(download.data);
+    }
+    cache.commitFile(file, SPAN_LENGTH);
+    cache.releaseHoleSpan(holeSpan);
+    download.position += SPAN_LENGTH;
+
+    long cachedLength = 0;
+    for (int i = 0; i < LOOKUPS_PER_WRITE; i++) {
+      cachedLength += cache.getCachedLength(key, /* position= */ 0, download.position);
+    }
+
+    long oldestPosition = download.position - (long) SPANS_PER_KEY * SPAN_LENGTH;
+    if (oldestPosition >= 0) {
+      cache.removeSpan(cache.startReadWriteNonBlocking(key, oldestPosition, SPAN_LENGTH));
+    }
+    return cachedLength;
+  }
+
+  private String createKey(int threadIndex) {
+    int shardIndex = keyDistribution.equals("same") ? 0 : threadIndex % SHARD_COUNT;
+    for (int i = 0; ; i++) {
+      String key = "key" + threadIndex + "_" + i;
+      if (getShardIndex(key) == shardIndex) {
+        return key;
+      }
+    }
+  }
+
+  /** Returns the index of the shard that {@link ShardedCache#getShard(String)} selects. */
+  private static int getShardIndex(String key) {
+    return (key.hashCode() & Integer.MAX_VALUE) % SHARD_COUNT;
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Reads the test data files used as benchmark inputs. */
+/* package */ final class TestData {
+
+  /**
+   * The system property holding the path of the test data directory. It's set by the benchmarks'
+   * jmh Gradle task, and is passed on to forked benchmark VMs.
+   */
+  private static final String TESTDATA_DIRECTORY_PROPERTY = "exoplayer.testdata";
+  /** The path of the test data directory relative to the benchmarks module. */
+  private static final String DEFAULT_TESTDATA_DIRECTORY = "../testdata/src/test/assets";
+
+  private TestData() {}
+
+  /**
+   * Returns the contents of a test data file.
+   *
+   * @param path The path of the file, relative to the test data directory.
+   * @return The contents of the file.
+   * @throws IOException If an error occurs reading the file.
+   */
+  public static byte[] read(String path) throws IOException {
+    File directory =
+        new File(System.getProperty(TESTDATA_DIRECTORY_PROPERTY, DEFAULT_TESTDATA_DIRECTORY));
+    try (InputStream inputStream = new FileInputStream(new File(directory, path))) {
+      return Util.toByteArray(inputStream);
+    }
+  }
+}
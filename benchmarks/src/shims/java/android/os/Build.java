@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.os;
+
+/**
+ * JVM implementation of the device information used by the library. The framework implementation
+ * reads it from native system properties, which aren't available on the JVM.
+ */
+public final class Build {
+
+  /** The name of the industrial design. */
+  public static final String DEVICE = "jvm";
+  /** The manufacturer of the product. */
+  public static final String MANUFACTURER = "unknown";
+  /** The end-user-visible name of the product. */
+  public static final String MODEL = "jvm";
+
+  /** Version information. */
+  public static final class VERSION {
+
+    /** The SDK version of the Android framework jar the benchmarks are compiled against. */
+    public static final int SDK_INT = 29;
+    /** The user-visible version string. */
+    public static final String RELEASE = "10";
+
+    private VERSION() {}
+  }
+
+  private Build() {}
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dalvik.system;
+
+import java.lang.reflect.Array;
+
+/**
+ * JVM implementation of the parts of the Android runtime used by framework collections such as
+ * {@code SparseArray}, whose framework implementations are native.
+ */
+public final class VMRuntime {
+
+  private static final VMRuntime RUNTIME = new VMRuntime();
+
+  private VMRuntime() {}
+
+  /** Returns the runtime. */
+  public static VMRuntime getRuntime() {
+    return RUNTIME;
+  }
+
+  /** Returns a new array of the given component type and length. */
+  public Object newUnpaddedArray(Class<?> componentType, int length) {
+    return Array.newInstance(componentType, length);
+  }
+
+  /** Returns a new array of the given component type and length. */
+  public Object newNonMovableArray(Class<?> componentType, int length) {
+    return Array.newInstance(componentType, length);
+  }
+}
@@ -80,7 +80,11 @@ import java.util.List;
 
   @Override
   protected DecoderInputBuffer createInputBuffer() {
-    return new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+    DecoderInputBuffer inputBuffer =
+        new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+    // The input data is only read, so it can be borrowed from the sample queue without a copy.
+    inputBuffer.setBorrowedDataAllowed(true);
+    return inputBuffer;
   }
 
   @Override
@@ -143,7 +143,11 @@ import java.util.List;
 
   @Override
   protected DecoderInputBuffer createInputBuffer() {
-    return new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_DIRECT);
+    DecoderInputBuffer inputBuffer =
+        new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_DIRECT);
+    // The input data is only read, so it can be borrowed from the sample queue without a copy.
+    inputBuffer.setBorrowedDataAllowed(true);
+    return inputBuffer;
   }
 
   @Override
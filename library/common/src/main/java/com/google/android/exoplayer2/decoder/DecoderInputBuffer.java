@@ -18,6 +18,7 @@ package com.google.android.exoplayer2.decoder;
 import androidx.annotation.IntDef;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Assertions;
 import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -76,6 +77,10 @@ public class DecoderInputBuffer extends Buffer {
 
   @BufferReplacementMode private final int bufferReplacementMode;
 
+  private boolean borrowedDataAllowed;
+  @Nullable private ByteBuffer ownedData;
+  @Nullable private Runnable borrowedDataReleaser;
+
   /**
    * Creates a new instance for which {@link #isFlagsOnly()} will return true.
    *
@@ -95,6 +100,54 @@ public class DecoderInputBuffer extends Buffer {
     this.bufferReplacementMode = bufferReplacementMode;
   }
 
+  /**
+   * Sets whether the source of the sample data may replace {@link #data} with a read-only view of
+   * data that it owns, rather than copying the data into the buffer.
+   *
+   * <p>Should only be enabled by decoders that don't modify {@link #data}, and that {@link #clear()}
+   * the buffer once they have finished with its data, since the source holds on to the underlying
+   * memory until then. Disabled by default.
+   *
+   * @param borrowedDataAllowed Whether the source may lend its data to this buffer.
+   */
+  public void setBorrowedDataAllowed(boolean borrowedDataAllowed) {
+    this.borrowedDataAllowed = borrowedDataAllowed;
+  }
+
+  /**
+   * Returns whether {@link #data} may be replaced with a read-only view of data owned by the
+   * source, using {@link #setBorrowedData(ByteBuffer, Runnable)}.
+   *
+   * @param direct Whether the view is backed by a direct buffer. If the buffer replacement mode is
+   *     {@link #BUFFER_REPLACEMENT_MODE_DIRECT}, only direct views are accepted.
+   */
+  public final boolean canBorrowData(boolean direct) {
+    return borrowedDataAllowed
+        && (data == null || data.position() == 0)
+        && (direct || bufferReplacementMode != BUFFER_REPLACEMENT_MODE_DIRECT);
+  }
+
+  /**
+   * Replaces {@link #data} with a view of data owned by the source, until the buffer is next
+   * cleared. Must only be called if {@link #canBorrowData(boolean)} returns true.
+   *
+   * @param data The view of the data. Its position should be at the end of the data, as though it
+   *     had been written to the buffer.
+   * @param releaser Invoked once the buffer no longer references the data, which may be on a
+   *     different thread.
+   */
+  public void setBorrowedData(ByteBuffer data, Runnable releaser) {
+    releaseBorrowedData();
+    ownedData = this.data;
+    this.data = data;
+    borrowedDataReleaser = releaser;
+  }
+
+  /** Returns whether {@link #data} is a view of data borrowed from the source. */
+  public final boolean hasBorrowedData() {
+    return borrowedDataReleaser != null;
+  }
+
   /**
    * Clears {@link #supplementalData} and ensures that it's large enough to accommodate {@code
    * length} bytes.
@@ -124,6 +177,22 @@ public class DecoderInputBuffer extends Buffer {
    */
   @EnsuresNonNull("data")
   public void ensureSpaceForWrite(int length) {
+    @Nullable Runnable releaser = borrowedDataReleaser;
+    if (releaser != null) {
+      // The borrowed data can't be written to, so copy it into the buffer's own data first.
+      ByteBuffer borrowedData = Assertions.checkNotNull(data);
+      data = ownedData;
+      ownedData = null;
+      borrowedDataReleaser = null;
+      if (data != null) {
+        data.clear();
+      }
+      ensureSpaceForWrite(borrowedData.position() + length);
+      borrowedData.flip();
+      data.put(borrowedData);
+      releaser.run();
+      return;
+    }
     if (data == null) {
       data = createReplacementByteBuffer(length);
       return;
@@ -176,6 +245,7 @@ public class DecoderInputBuffer extends Buffer {
   @Override
   public void clear() {
     super.clear();
+    releaseBorrowedData();
     if (data != null) {
       data.clear();
     }
@@ -184,6 +254,16 @@ public class DecoderInputBuffer extends Buffer {
     }
   }
 
+  private void releaseBorrowedData() {
+    @Nullable Runnable releaser = borrowedDataReleaser;
+    if (releaser != null) {
+      data = ownedData;
+      ownedData = null;
+      borrowedDataReleaser = null;
+      releaser.run();
+    }
+  }
+
   private ByteBuffer createReplacementByteBuffer(int requiredCapacity) {
     if (bufferReplacementMode == BUFFER_REPLACEMENT_MODE_NORMAL) {
       return ByteBuffer.allocate(requiredCapacity);
@@ -56,6 +56,41 @@ public final class NalUnitUtilTest {
     assertThat(result).isEqualTo(data.length);
   }
 
+  @Test
+  public void testFindNalUnitInLongData() {
+    for (int nalPosition = 0; nalPosition < 61; nalPosition++) {
+      byte[] data = new byte[64];
+      Arrays.fill(data, (byte) 0xFF);
+      data[nalPosition] = 0;
+      data[nalPosition + 1] = 0;
+      data[nalPosition + 2] = 1;
+
+      for (int startOffset = 0; startOffset <= nalPosition; startOffset++) {
+        int result = NalUnitUtil.findNalUnit(data, startOffset, data.length, null);
+        assertThat(result).isEqualTo(nalPosition);
+      }
+      int result = NalUnitUtil.findNalUnit(data, nalPosition + 1, data.length, null);
+      assertThat(result).isEqualTo(data.length);
+    }
+  }
+
+  @Test
+  public void testFindNalUnitInLongDataWithZeroRuns() {
+    byte[] data = new byte[64];
+    Arrays.fill(data, (byte) 0xFF);
+    // Runs of zeros that aren't followed by a one aren't NAL unit start codes.
+    Arrays.fill(data, 10, 20, (byte) 0);
+    data[30] = 1;
+    data[40] = 0;
+    data[41] = 1;
+    // Insert a NAL unit start code preceded by additional zeros.
+    Arrays.fill(data, 50, 54, (byte) 0);
+    data[54] = 1;
+
+    int result = NalUnitUtil.findNalUnit(data, 0, data.length, null);
+    assertThat(result).isEqualTo(52);
+  }
+
   @Test
   public void testFindNalUnitWithPrefix() {
     byte[] data = buildTestData();
@@ -148,6 +183,10 @@ public final class NalUnitUtilTest {
   public void testUnescapeModifiesBuffersWithStartCodes() {
     assertUnescapeMatchesExpected("00000301", "000001");
     assertUnescapeMatchesExpected("0000030200000300", "000002000000");
+    assertUnescapeMatchesExpected("00000003", "000000");
+    assertUnescapeMatchesExpected("03000003030000", "030000030000");
+    assertUnescapeMatchesExpected(
+        "FFFFFFFFFFFFFF000003FFFFFFFFFF00000301", "FFFFFFFFFFFFFF0000FFFFFFFFFF000001");
   }
 
   @Test
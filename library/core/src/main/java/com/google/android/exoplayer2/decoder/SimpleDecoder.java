@@ -165,6 +165,16 @@ public abstract class SimpleDecoder<
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
     }
+    synchronized (lock) {
+      // Clear input buffers that were not decoded, so that any data they borrowed is returned.
+      if (dequeuedInputBuffer != null) {
+        dequeuedInputBuffer.clear();
+        dequeuedInputBuffer = null;
+      }
+      while (!queuedInputBuffers.isEmpty()) {
+        queuedInputBuffers.removeFirst().clear();
+      }
+    }
   }
 
   /**
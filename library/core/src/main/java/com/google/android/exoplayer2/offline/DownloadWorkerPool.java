@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.offline;
+
+import androidx.annotation.WorkerThread;
+import com.google.android.exoplayer2.util.Assertions;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/** Runs the workers of a parallel download, each on its own thread. */
+/* package */ final class DownloadWorkerPool {
+
+  /** A worker of a parallel download. */
+  public interface Worker {
+
+    /**
+     * Downloads the worker's share of the content.
+     *
+     * @throws IOException If an error occurs downloading.
+     * @throws InterruptedException If the thread was interrupted, or the download was canceled.
+     */
+    void run() throws IOException, InterruptedException;
+  }
+
+  private DownloadWorkerPool() {}
+
+  /**
+   * Runs workers in parallel, and waits for them to complete.
+   *
+   * <p>If a worker fails then the other workers are interrupted, and the first failure is thrown
+   * once all of them have stopped. This method never returns while a worker is still running, so no
+   * data is written to the cache by the workers after it has returned.
+   *
+   * @param threadName The name of the worker threads.
+   * @param workers The workers to run.
+   * @throws IOException If a worker failed with an {@link IOException}.
+   * @throws InterruptedException If the calling thread was interrupted, or a worker failed with an
+   *     {@link InterruptedException}.
+   */
+  @WorkerThread
+  public static void run(String threadName, List<Worker> workers)
+      throws IOException, InterruptedException {
+    ExecutorService executorService =
+        Executors.newFixedThreadPool(workers.size(), runnable -> new Thread(runnable, threadName));
+    CompletionService<Void> completionService = new ExecutorCompletionService<>(executorService);
+    for (Worker worker : workers) {
+      completionService.submit(
+          () -> {
+            worker.run();
+            return null;
+          });
+    }
+    try {
+      for (int i = 0; i < workers.size(); i++) {
+        Future<Void> future = completionService.take();
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          Throwable cause = Assertions.checkNotNull(e.getCause());
+          if (cause instanceof IOException) {
+            throw (IOException) cause;
+          } else if (cause instanceof InterruptedException) {
+            throw (InterruptedException) cause;
+          } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          } else if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new IllegalStateException(cause);
+        }
+      }
+    } finally {
+      executorService.shutdownNow();
+      awaitTerminationUninterruptibly(executorService);
+    }
+  }
+
+  private static void awaitTerminationUninterruptibly(ExecutorService executorService) {
+    boolean interrupted = false;
+    while (!executorService.isTerminated()) {
+      try {
+        executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      // Restore the interrupted status.
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -18,14 +18,20 @@ package com.google.android.exoplayer2.offline;
 import android.net.Uri;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.cache.Cache;
 import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
 import com.google.android.exoplayer2.upstream.cache.CacheKeyFactory;
 import com.google.android.exoplayer2.upstream.cache.CacheUtil;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadata;
 import com.google.android.exoplayer2.util.PriorityTaskManager;
+import com.google.android.exoplayer2.util.Util;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A downloader for progressive media streams.
@@ -35,10 +41,19 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * specify a custom cache key for the downloaded bytes.
  *
  * <p>The downloader will avoid downloading already-downloaded media bytes.
+ *
+ * <p>If {@link DownloaderConstructorHelper#getMaxParallelDownloads()} is greater than one and the
+ * length of the media is known, the parts of the media that aren't already cached are split into
+ * byte ranges that are downloaded in parallel, each through its own {@link DataSource}. Each range
+ * only locks its own part of the cache entry (see {@link Cache#startReadWrite(String, long,
+ * long)}), so ranges are written concurrently if the cache supports it. Otherwise the media is
+ * downloaded sequentially through a single {@link DataSource}.
  */
 public final class ProgressiveDownloader implements Downloader {
 
   private static final int BUFFER_SIZE_BYTES = 128 * 1024;
+  private static final long RANGE_LENGTH_BYTES = 8 * 1024 * 1024;
+  private static final String THREAD_NAME = "ExoPlayer:ProgressiveDownloader";
 
   private final DataSpec dataSpec;
   private final Cache cache;
@@ -46,6 +61,8 @@ public final class ProgressiveDownloader implements Downloader {
   private final CacheKeyFactory cacheKeyFactory;
   private final PriorityTaskManager priorityTaskManager;
   private final AtomicBoolean isCanceled;
+  private final DownloaderConstructorHelper constructorHelper;
+  private final int maxParallelDownloads;
 
   /**
    * @param uri Uri of the data to be downloaded.
@@ -65,6 +82,8 @@ public final class ProgressiveDownloader implements Downloader {
     this.dataSource = constructorHelper.createCacheDataSource();
     this.cacheKeyFactory = constructorHelper.getCacheKeyFactory();
     this.priorityTaskManager = constructorHelper.getPriorityTaskManager();
+    this.constructorHelper = constructorHelper;
+    maxParallelDownloads = constructorHelper.getMaxParallelDownloads();
     isCanceled = new AtomicBoolean();
   }
 
@@ -73,17 +92,23 @@ public final class ProgressiveDownloader implements Downloader {
       throws InterruptedException, IOException {
     priorityTaskManager.add(C.PRIORITY_DOWNLOAD);
     try {
-      CacheUtil.cache(
-          dataSpec,
-          cache,
-          cacheKeyFactory,
-          dataSource,
-          new byte[BUFFER_SIZE_BYTES],
-          priorityTaskManager,
-          C.PRIORITY_DOWNLOAD,
-          progressListener == null ? null : new ProgressForwarder(progressListener),
-          isCanceled,
-          /* enableEOFException= */ true);
+      long contentLength =
+          maxParallelDownloads > 1 ? resolveContentLength(progressListener) : C.LENGTH_UNSET;
+      if (contentLength != C.LENGTH_UNSET) {
+        downloadInParallel(contentLength, progressListener);
+      } else {
+        CacheUtil.cache(
+            dataSpec,
+            cache,
+            cacheKeyFactory,
+            dataSource,
+            new byte[BUFFER_SIZE_BYTES],
+            priorityTaskManager,
+            C.PRIORITY_DOWNLOAD,
+            progressListener == null ? null : new ProgressForwarder(progressListener),
+            isCanceled,
+            /* enableEOFException= */ true);
+      }
     } finally {
       priorityTaskManager.remove(C.PRIORITY_DOWNLOAD);
     }
@@ -99,6 +124,121 @@ public final class ProgressiveDownloader implements Downloader {
     CacheUtil.remove(dataSpec, cache, cacheKeyFactory);
   }
 
+  /**
+   * Returns the length of the content, or {@link C#LENGTH_UNSET} if it can't be resolved.
+   *
+   * <p>If the length isn't stored in the cache then the first part of the content that isn't cached
+   * is opened, which resolves the length and stores it in the cache. Up to one range of data is
+   * then downloaded through the opened connection, so that the request isn't wasted. The progress
+   * of this download is reported to {@code progressListener}.
+   */
+  private long resolveContentLength(@Nullable ProgressListener progressListener)
+      throws InterruptedException {
+    String key = cacheKeyFactory.buildCacheKey(dataSpec);
+    long contentLength = ContentMetadata.getContentLength(cache.getContentMetadata(key));
+    if (contentLength != C.LENGTH_UNSET) {
+      return contentLength;
+    }
+    long position = 0;
+    long blockLength = cache.getCachedLength(key, position, Long.MAX_VALUE);
+    while (blockLength > 0) {
+      position += blockLength;
+      blockLength = cache.getCachedLength(key, position, Long.MAX_VALUE);
+    }
+    priorityTaskManager.proceed(C.PRIORITY_DOWNLOAD);
+    try {
+      long length = dataSource.open(dataSpec.subrange(position));
+      if (length == C.LENGTH_UNSET) {
+        return C.LENGTH_UNSET;
+      }
+      contentLength = position + length;
+      @Nullable
+      ProgressForwarder progressForwarder =
+          progressListener == null ? null : new ProgressForwarder(progressListener);
+      byte[] buffer = new byte[BUFFER_SIZE_BYTES];
+      long bytesLeft = Math.min(length, RANGE_LENGTH_BYTES);
+      while (bytesLeft > 0) {
+        if (Thread.interrupted() || isCanceled.get()) {
+          throw new InterruptedException();
+        }
+        int bytesRead = dataSource.read(buffer, 0, (int) Math.min(buffer.length, bytesLeft));
+        if (bytesRead == C.RESULT_END_OF_INPUT) {
+          break;
+        }
+        bytesLeft -= bytesRead;
+        position += bytesRead;
+        if (progressForwarder != null) {
+          progressForwarder.onProgress(contentLength, /* bytesCached= */ position, bytesRead);
+        }
+      }
+      return contentLength;
+    } catch (IOException e) {
+      // Fall back to downloading sequentially, which handles errors and retries.
+      return C.LENGTH_UNSET;
+    } finally {
+      Util.closeQuietly(dataSource);
+    }
+  }
+
+  private void downloadInParallel(long contentLength, @Nullable ProgressListener progressListener)
+      throws IOException, InterruptedException {
+    // Split the parts of the content that aren't cached into ranges.
+    String key = cacheKeyFactory.buildCacheKey(dataSpec);
+    List<DataSpec> ranges = new ArrayList<>();
+    long bytesCached = 0;
+    long position = 0;
+    while (position < contentLength) {
+      long blockLength = cache.getCachedLength(key, position, contentLength - position);
+      if (blockLength > 0) {
+        bytesCached += blockLength;
+      } else {
+        blockLength = -blockLength;
+        long blockEnd = position + blockLength;
+        for (long rangeStart = position; rangeStart < blockEnd; rangeStart += RANGE_LENGTH_BYTES) {
+          long rangeLength = Math.min(RANGE_LENGTH_BYTES, blockEnd - rangeStart);
+          ranges.add(dataSpec.subrange(rangeStart, rangeLength));
+        }
+      }
+      position += blockLength;
+    }
+
+    @Nullable ParallelProgressNotifier progressNotifier = null;
+    if (progressListener != null) {
+      progressNotifier = new ParallelProgressNotifier(progressListener, contentLength, bytesCached);
+    }
+    if (ranges.isEmpty()) {
+      return;
+    }
+    int workerCount = Math.min(maxParallelDownloads, ranges.size());
+    AtomicInteger nextRangeIndex = new AtomicInteger();
+    List<DownloadWorkerPool.Worker> workers = new ArrayList<>(workerCount);
+    for (int i = 0; i < workerCount; i++) {
+      CacheDataSource workerDataSource =
+          i == 0 ? dataSource : constructorHelper.createCacheDataSource();
+      @Nullable ParallelProgressNotifier workerProgressNotifier = progressNotifier;
+      workers.add(
+          () -> {
+            byte[] buffer = new byte[BUFFER_SIZE_BYTES];
+            int rangeIndex = nextRangeIndex.getAndIncrement();
+            while (rangeIndex < ranges.size()) {
+              CacheUtil.cache(
+                  ranges.get(rangeIndex),
+                  cache,
+                  cacheKeyFactory,
+                  workerDataSource,
+                  buffer,
+                  priorityTaskManager,
+                  C.PRIORITY_DOWNLOAD,
+                  workerProgressNotifier,
+                  isCanceled,
+                  /* enableEOFException= */ true);
+              rangeIndex = nextRangeIndex.getAndIncrement();
+            }
+          });
+    }
+    DownloadWorkerPool.run(THREAD_NAME, workers);
+  }
+
   private static final class ProgressForwarder implements CacheUtil.ProgressListener {
 
     private final ProgressListener progessListener;
@@ -116,4 +256,35 @@ public final class ProgressiveDownloader implements Downloader {
       progessListener.onProgress(contentLength, bytesCached, percentDownloaded);
     }
   }
+
+  /** Aggregates the progress of ranges that are downloaded in parallel. */
+  private static final class ParallelProgressNotifier implements CacheUtil.ProgressListener {
+
+    private final ProgressListener progressListener;
+    private final long contentLength;
+
+    private long bytesDownloaded;
+
+    public ParallelProgressNotifier(
+        ProgressListener progressListener, long contentLength, long bytesDownloaded) {
+      this.progressListener = progressListener;
+      this.contentLength = contentLength;
+      this.bytesDownloaded = bytesDownloaded;
+      notifyProgress();
+    }
+
+    @Override
+    public synchronized void onProgress(long requestLength, long bytesCached, long newBytesCached) {
+      if (newBytesCached > 0) {
+        bytesDownloaded += newBytesCached;
+        notifyProgress();
+      }
+    }
+
+    private void notifyProgress() {
+      float percentDownloaded =
+          contentLength == 0 ? C.PERCENTAGE_UNSET : ((bytesDownloaded * 100f) / contentLength);
+      progressListener.onProgress(contentLength, bytesDownloaded, percentDownloaded);
+    }
+  }
 }
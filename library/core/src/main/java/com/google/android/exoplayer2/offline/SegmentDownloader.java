@@ -34,6 +34,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Base class for multi segment stream downloaders.
@@ -64,6 +65,7 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
   }
 
   private static final int BUFFER_SIZE_BYTES = 128 * 1024;
+  private static final String THREAD_NAME = "ExoPlayer:SegmentDownloader";
   private static final long MAX_MERGED_SEGMENT_START_TIME_DIFF_US = 20 * C.MICROS_PER_SECOND;
 
   private final DataSpec manifestDataSpec;
@@ -74,6 +76,8 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
   private final PriorityTaskManager priorityTaskManager;
   private final ArrayList<StreamKey> streamKeys;
   private final AtomicBoolean isCanceled;
+  private final DownloaderConstructorHelper constructorHelper;
+  private final int maxParallelDownloads;
 
   /**
    * @param manifestUri The {@link Uri} of the manifest to be downloaded.
@@ -90,6 +94,8 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     this.offlineDataSource = constructorHelper.createOfflineCacheDataSource();
     this.cacheKeyFactory = constructorHelper.getCacheKeyFactory();
     this.priorityTaskManager = constructorHelper.getPriorityTaskManager();
+    this.constructorHelper = constructorHelper;
+    maxParallelDownloads = constructorHelper.getMaxParallelDownloads();
     isCanceled = new AtomicBoolean();
   }
 
@@ -97,6 +103,11 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
    * Downloads the selected streams in the media. If multiple streams are selected, they are
    * downloaded in sync with one another.
    *
+   * <p>Up to {@link DownloaderConstructorHelper#getMaxParallelDownloads()} segments are downloaded
+   * in parallel, each through its own {@link DataSource}. Segments are started in order, so that
+   * the start of the media is downloaded first. If a segment fails to download then the download of
+   * the remaining segments is canceled, and the first failure is thrown.
+   *
    * @throws IOException Thrown when there is an error downloading.
    * @throws InterruptedException If the thread has been interrupted.
    */
@@ -151,22 +162,13 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
                 bytesDownloaded,
                 segmentsDownloaded);
       }
-      byte[] buffer = new byte[BUFFER_SIZE_BYTES];
-      for (int i = 0; i < segments.size(); i++) {
-        CacheUtil.cache(
-            segments.get(i).dataSpec,
-            cache,
-            cacheKeyFactory,
-            dataSource,
-            buffer,
-            priorityTaskManager,
-            C.PRIORITY_DOWNLOAD,
-            progressNotifier,
-            isCanceled,
-            true);
-        if (progressNotifier != null) {
-          progressNotifier.onSegmentDownloaded();
+      if (maxParallelDownloads == 1 || segments.size() <= 1) {
+        byte[] buffer = new byte[BUFFER_SIZE_BYTES];
+        for (int i = 0; i < segments.size(); i++) {
+          downloadSegment(segments.get(i), dataSource, buffer, progressNotifier);
         }
+      } else {
+        downloadSegmentsInParallel(segments, progressNotifier);
       }
     } finally {
       priorityTaskManager.remove(C.PRIORITY_DOWNLOAD);
@@ -223,6 +225,52 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
       DataSource dataSource, M manifest, boolean allowIncompleteList)
       throws InterruptedException, IOException;
 
+  private void downloadSegment(
+      Segment segment,
+      CacheDataSource dataSource,
+      byte[] buffer,
+      @Nullable ProgressNotifier progressNotifier)
+      throws IOException, InterruptedException {
+    CacheUtil.cache(
+        segment.dataSpec,
+        cache,
+        cacheKeyFactory,
+        dataSource,
+        buffer,
+        priorityTaskManager,
+        C.PRIORITY_DOWNLOAD,
+        progressNotifier,
+        isCanceled,
+        true);
+    if (progressNotifier != null) {
+      progressNotifier.onSegmentDownloaded();
+    }
+  }
+
+  private void downloadSegmentsInParallel(
+      List<Segment> segments, @Nullable ProgressNotifier progressNotifier)
+      throws IOException, InterruptedException {
+    int workerCount = Math.min(maxParallelDownloads, segments.size());
+    AtomicInteger nextSegmentIndex = new AtomicInteger();
+    List<DownloadWorkerPool.Worker> workers = new ArrayList<>(workerCount);
+    for (int i = 0; i < workerCount; i++) {
+      // The first worker uses the data source that was used to load the manifest.
+      CacheDataSource workerDataSource =
+          i == 0 ? dataSource : constructorHelper.createCacheDataSource();
+      workers.add(
+          () -> {
+            byte[] buffer = new byte[BUFFER_SIZE_BYTES];
+            int segmentIndex = nextSegmentIndex.getAndIncrement();
+            while (segmentIndex < segments.size()) {
+              Segment segment = segments.get(segmentIndex);
+              downloadSegment(segment, workerDataSource, buffer, progressNotifier);
+              segmentIndex = nextSegmentIndex.getAndIncrement();
+            }
+          });
+    }
+    DownloadWorkerPool.run(THREAD_NAME, workers);
+  }
+
   private void removeDataSpec(DataSpec dataSpec) {
     CacheUtil.remove(dataSpec, cache, cacheKeyFactory);
   }
@@ -269,6 +317,10 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
         && dataSpec1.httpRequestHeaders.equals(dataSpec2.httpRequestHeaders);
   }
 
+  /**
+   * Reports the progress of a download. Segments may be downloaded in parallel, so progress may be
+   * reported from multiple threads.
+   */
   private static final class ProgressNotifier implements CacheUtil.ProgressListener {
 
     private final ProgressListener progressListener;
@@ -293,12 +345,12 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     }
 
     @Override
-    public void onProgress(long requestLength, long bytesCached, long newBytesCached) {
+    public synchronized void onProgress(long requestLength, long bytesCached, long newBytesCached) {
       bytesDownloaded += newBytesCached;
       progressListener.onProgress(contentLength, bytesDownloaded, getPercentDownloaded());
     }
 
-    public void onSegmentDownloaded() {
+    public synchronized void onSegmentDownloaded() {
       segmentsDownloaded++;
       progressListener.onProgress(contentLength, bytesDownloaded, getPercentDownloaded());
     }
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.IndexSeekMap;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.Cache.CacheException;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadata;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadataMutations;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@link SeekMapCache} that stores indexes in the {@link ContentMetadata} of a {@link Cache},
+ * alongside the cached media.
+ *
+ * <p>Indexes are only stored for content that is already in the cache, and are discarded if the
+ * content length or ETag of the media changes.
+ *
+ * <p>Points closer than a minimum time to the previously stored point are dropped, which bounds the
+ * size of the stored metadata. Seeking using a stored index reads at most that much more media
+ * than seeking using the full index.
+ */
+public final class ContentMetadataSeekMapCache implements SeekMapCache {
+
+  /** The default minimum time between stored points, in microseconds. */
+  public static final long DEFAULT_MIN_TIME_BETWEEN_POINTS_US = C.MICROS_PER_SECOND;
+
+  private static final String TAG = "SeekMapCache";
+
+  /** Metadata key for the stored index (type: byte[]). */
+  private static final String KEY_SEEK_INDEX = "exo_seek_idx";
+  /** Metadata key for the content length of the media of the stored index (type: long). */
+  private static final String KEY_SEEK_INDEX_CONTENT_LENGTH = "exo_seek_idx_len";
+  /** Metadata key for the ETag of the media of the stored index (type: String). */
+  private static final String KEY_SEEK_INDEX_ETAG = "exo_seek_idx_etag";
+
+  private static final int VERSION = 2;
+  private static final int HEADER_LENGTH = 12;
+  private static final int POINT_LENGTH = 16;
+
+  private final Cache cache;
+  private final long minTimeBetweenPointsUs;
+
+  /**
+   * Creates an instance that stores points at least {@link #DEFAULT_MIN_TIME_BETWEEN_POINTS_US}
+   * apart.
+   *
+   * @param cache The cache in which to store the indexes.
+   */
+  public ContentMetadataSeekMapCache(Cache cache) {
+    this(cache, DEFAULT_MIN_TIME_BETWEEN_POINTS_US);
+  }
+
+  /**
+   * @param cache The cache in which to store the indexes.
+   * @param minTimeBetweenPointsUs The minimum time between stored points, in microseconds.
+   */
+  public ContentMetadataSeekMapCache(Cache cache, long minTimeBetweenPointsUs) {
+    this.cache = cache;
+    this.minTimeBetweenPointsUs = minTimeBetweenPointsUs;
+  }
+
+  @Override
+  @Nullable
+  public IndexSeekMap get(String key, long contentLength, @Nullable String eTag) {
+    ContentMetadata metadata = cache.getContentMetadata(key);
+    @Nullable byte[] data = metadata.get(KEY_SEEK_INDEX, (byte[]) null);
+    if (data == null
+        || data.length < HEADER_LENGTH
+        || (data.length - HEADER_LENGTH) % POINT_LENGTH != 0
+        || metadata.get(KEY_SEEK_INDEX_CONTENT_LENGTH, C.LENGTH_UNSET) != contentLength) {
+      return null;
+    }
+    @Nullable String storedETag = metadata.get(KEY_SEEK_INDEX_ETAG, (String) null);
+    if (storedETag != null && eTag != null && !storedETag.equals(eTag)) {
+      // The media has changed since the index was stored.
+      return null;
+    }
+    ParsableByteArray scratch = new ParsableByteArray(data);
+    if (scratch.readInt() != VERSION) {
+      return null;
+    }
+    long durationUs = scratch.readLong();
+    int pointCount = scratch.bytesLeft() / POINT_LENGTH;
+    long[] positions = new long[pointCount];
+    long[] timesUs = new long[pointCount];
+    for (int i = 0; i < pointCount; i++) {
+      timesUs[i] = scratch.readLong();
+      positions[i] = scratch.readLong();
+    }
+    return new IndexSeekMap(positions, timesUs, durationUs);
+  }
+
+  @Override
+  public void put(String key, long contentLength, @Nullable String eTag, IndexSeekMap index) {
+    if (cache.getCachedSpans(key).isEmpty()) {
+      // Don't add content to the cache just to hold the index.
+      return;
+    }
+    long[] timesUs = index.timesUs;
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + timesUs.length * POINT_LENGTH);
+    buffer.putInt(VERSION);
+    buffer.putLong(index.getDurationUs());
+    long lastStoredTimeUs = C.TIME_UNSET;
+    for (int i = 0; i < timesUs.length; i++) {
+      if (lastStoredTimeUs != C.TIME_UNSET
+          && timesUs[i] - lastStoredTimeUs < minTimeBetweenPointsUs) {
+        continue;
+      }
+      buffer.putLong(timesUs[i]);
+      buffer.putLong(index.positions[i]);
+      lastStoredTimeUs = timesUs[i];
+    }
+    ContentMetadataMutations mutations = new ContentMetadataMutations();
+    mutations.set(KEY_SEEK_INDEX, Arrays.copyOf(buffer.array(), buffer.position()));
+    mutations.set(KEY_SEEK_INDEX_CONTENT_LENGTH, contentLength);
+    if (eTag != null) {
+      mutations.set(KEY_SEEK_INDEX_ETAG, eTag);
+    } else {
+      mutations.remove(KEY_SEEK_INDEX_ETAG);
+    }
+    try {
+      cache.applyContentMetadataMutations(key, mutations);
+    } catch (CacheException e) {
+      Log.w(TAG, "Failed to store the index of " + key, e);
+    }
+  }
+}
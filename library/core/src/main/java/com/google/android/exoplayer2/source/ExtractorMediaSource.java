@@ -319,6 +319,7 @@ public final class ExtractorMediaSource extends CompositeMediaSource<Void> {
             loadableLoadErrorHandlingPolicy,
             customCacheKey,
             continueLoadingCheckIntervalBytes,
+            /* seekMapCache= */ null,
             tag);
   }
 
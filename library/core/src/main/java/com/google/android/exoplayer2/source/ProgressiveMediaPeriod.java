@@ -29,11 +29,15 @@ import com.google.android.exoplayer2.extractor.DefaultExtractorInput;
 import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.IndexSeekMap;
+import com.google.android.exoplayer2.extractor.IndexingExtractor;
 import com.google.android.exoplayer2.extractor.PositionHolder;
 import com.google.android.exoplayer2.extractor.SeekMap;
 import com.google.android.exoplayer2.extractor.SeekMap.SeekPoints;
 import com.google.android.exoplayer2.extractor.SeekMap.Unseekable;
 import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.extractor.TrackSkippingExtractor;
 import com.google.android.exoplayer2.extractor.mp3.Mp3Extractor;
 import com.google.android.exoplayer2.metadata.Metadata;
 import com.google.android.exoplayer2.metadata.icy.IcyHeaders;
@@ -48,6 +52,7 @@ import com.google.android.exoplayer2.upstream.Loader;
 import com.google.android.exoplayer2.upstream.Loader.LoadErrorAction;
 import com.google.android.exoplayer2.upstream.Loader.Loadable;
 import com.google.android.exoplayer2.upstream.StatsDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheUtil;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.ConditionVariable;
 import com.google.android.exoplayer2.util.MimeTypes;
@@ -58,6 +63,7 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.checkerframework.checker.nullness.compatqual.NullableType;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
@@ -119,6 +125,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   private SampleQueue[] sampleQueues;
   private TrackId[] sampleQueueTrackIds;
   private boolean sampleQueuesBuilt;
+  private boolean seekMapOutput;
+  private boolean extractorSkipsDiscardedTracks;
 
   private @MonotonicNonNull PreparedState preparedState;
   private boolean haveAudioVideoTracks;
@@ -143,7 +151,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   /**
    * @param uri The {@link Uri} of the media stream.
    * @param dataSource The data source to read the media.
-   * @param extractors The extractors to use to read the data source.
+   * @param extractorsFactory The factory for the extractors to use to read the data source.
    * @param loadErrorHandlingPolicy The {@link LoadErrorHandlingPolicy}.
    * @param eventDispatcher A dispatcher to notify of events.
    * @param listener A listener to notify when information about the period changes.
@@ -152,6 +160,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    *     indexing. May be null.
    * @param continueLoadingCheckIntervalBytes The number of bytes that should be loaded between each
    *     invocation of {@link Callback#onContinueLoadingRequested(SequenceableLoader)}.
+   * @param seekMapCache A cache for the indexes built by {@link IndexingExtractor}s, or null.
    */
   // maybeFinishPrepare is not posted to the handler until initialization completes.
   @SuppressWarnings({
@@ -161,14 +170,15 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   public ProgressiveMediaPeriod(
       Uri uri,
       DataSource dataSource,
-      Extractor[] extractors,
+      ExtractorsFactory extractorsFactory,
       DrmSessionManager<?> drmSessionManager,
       LoadErrorHandlingPolicy loadErrorHandlingPolicy,
       EventDispatcher eventDispatcher,
       Listener listener,
       Allocator allocator,
       @Nullable String customCacheKey,
-      int continueLoadingCheckIntervalBytes) {
+      int continueLoadingCheckIntervalBytes,
+      @Nullable SeekMapCache seekMapCache) {
     this.uri = uri;
     this.dataSource = dataSource;
     this.drmSessionManager = drmSessionManager;
@@ -179,7 +189,11 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     this.customCacheKey = customCacheKey;
     this.continueLoadingCheckIntervalBytes = continueLoadingCheckIntervalBytes;
     loader = new Loader("Loader:ProgressiveMediaPeriod");
-    extractorHolder = new ExtractorHolder(extractors);
+    extractorHolder =
+        new ExtractorHolder(
+            extractorsFactory,
+            seekMapCache,
+            customCacheKey != null ? customCacheKey : CacheUtil.generateKey(uri));
     loadCondition = new ConditionVariable();
     maybeFinishPrepareRunnable = this::maybeFinishPrepare;
     onContinueLoadingRequestedRunnable =
@@ -283,10 +297,12 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
           // A seek can be avoided if we're able to seek to the current playback position in the
           // sample queue, or if we haven't read anything from the queue since the previous seek
           // (this case is common for sparse tracks such as metadata tracks). In all other cases a
-          // seek is required.
+          // seek is required. A seek is also required if the extractor may have skipped samples
+          // while the track was disabled.
           seekRequired =
-              !sampleQueue.seekTo(positionUs, /* allowTimeBeyondBuffer= */ true)
-                  && sampleQueue.getReadIndex() != 0;
+              sampleQueue.isDiscardingSamples()
+                  || (!sampleQueue.seekTo(positionUs, /* allowTimeBeyondBuffer= */ true)
+                      && sampleQueue.getReadIndex() != 0);
         }
       }
     }
@@ -313,6 +329,12 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
         }
       }
     }
+    if (extractorSkipsDiscardedTracks) {
+      // Let the extractor skip the samples of the tracks that aren't enabled.
+      for (int i = 0; i < sampleQueues.length; i++) {
+        sampleQueues[i].setDiscardingSamples(!trackEnabledStates[i]);
+      }
+    }
     seenFirstTrackSelection = true;
     return positionUs;
   }
@@ -653,7 +675,14 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
   @Override
   public void seekMap(SeekMap seekMap) {
-    handler.post(() -> setSeekMap(seekMap));
+    boolean skipsDiscardedTracks = extractorHolder.skipsDiscardedTracks();
+    if (skipsDiscardedTracks && !seekMapOutput && sampleQueuesBuilt && haveUpstreamFormats()) {
+      // Preparation completes once the seek map is set. Pause loading until the tracks are
+      // selected, so that the extractor doesn't read the samples of tracks that won't be enabled.
+      loadCondition.close();
+    }
+    seekMapOutput = true;
+    handler.post(() -> setSeekMap(seekMap, skipsDiscardedTracks));
   }
 
   // Icy metadata. Called by the loading thread.
@@ -690,7 +719,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     return trackOutput;
   }
 
-  private void setSeekMap(SeekMap seekMap) {
+  private void setSeekMap(SeekMap seekMap, boolean extractorSkipsDiscardedTracks) {
+    this.extractorSkipsDiscardedTracks = extractorSkipsDiscardedTracks;
     this.seekMap = icyHeaders == null ? seekMap : new Unseekable(/* durationUs */ C.TIME_UNSET);
     if (preparedState == null) {
       maybeFinishPrepare();
@@ -704,16 +734,24 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     listener.onSourceInfoRefreshed(durationUs, seekMap.isSeekable(), isLive);
   }
 
-  private void maybeFinishPrepare() {
-    SeekMap seekMap = this.seekMap;
-    if (released || preparedState != null || !sampleQueuesBuilt || seekMap == null) {
-      return;
-    }
+  private boolean haveUpstreamFormats() {
     for (SampleQueue sampleQueue : sampleQueues) {
       if (sampleQueue.getUpstreamFormat() == null) {
-        return;
+        return false;
       }
     }
+    return true;
+  }
+
+  private void maybeFinishPrepare() {
+    SeekMap seekMap = this.seekMap;
+    if (released
+        || preparedState != null
+        || !sampleQueuesBuilt
+        || seekMap == null
+        || !haveUpstreamFormats()) {
+      return;
+    }
     loadCondition.close();
     int trackCount = sampleQueues.length;
     TrackGroup[] trackArray = new TrackGroup[trackCount];
@@ -838,9 +876,14 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    * @return Whether the in-buffer seek was successful.
    */
   private boolean seekInsideBufferUs(boolean[] trackIsAudioVideoFlags, long positionUs) {
+    boolean[] trackEnabledStates = Assertions.checkNotNull(preparedState).trackEnabledStates;
     int trackCount = sampleQueues.length;
     for (int i = 0; i < trackCount; i++) {
       SampleQueue sampleQueue = sampleQueues[i];
+      if (trackEnabledStates[i] && sampleQueue.isDiscardingSamples()) {
+        // The track is being enabled, and the extractor may have skipped its samples.
+        return false;
+      }
       boolean seekInsideQueue = sampleQueue.seekTo(positionUs, /* allowTimeBeyondBuffer= */ false);
       // If we have AV tracks then an in-buffer seek is successful if the seek into every AV queue
       // is successful. We ignore whether seeks within non-AV queues are successful in this case, as
@@ -962,7 +1005,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
             length += position;
           }
           Uri uri = Assertions.checkNotNull(dataSource.getUri());
-          icyHeaders = IcyHeaders.parse(dataSource.getResponseHeaders());
+          Map<String, List<String>> responseHeaders = dataSource.getResponseHeaders();
+          icyHeaders = IcyHeaders.parse(responseHeaders);
           DataSource extractorDataSource = dataSource;
           if (icyHeaders != null && icyHeaders.metadataInterval != C.LENGTH_UNSET) {
             extractorDataSource = new IcyDataSource(dataSource, icyHeaders.metadataInterval, this);
@@ -970,7 +1014,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
             icyTrackOutput.format(ICY_FORMAT);
           }
           input = new DefaultExtractorInput(extractorDataSource, position, length);
-          Extractor extractor = extractorHolder.selectExtractor(input, extractorOutput, uri);
+          Extractor extractor =
+              extractorHolder.selectExtractor(input, extractorOutput, uri, responseHeaders);
 
           // MP3 live streams commonly have seekable metadata, despite being unseekable.
           if (icyHeaders != null && extractor instanceof Mp3Extractor) {
@@ -990,6 +1035,9 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
               handler.post(onContinueLoadingRequestedRunnable);
             }
           }
+          if (result == Extractor.RESULT_END_OF_INPUT) {
+            extractorHolder.maybeStoreIndex();
+          }
         } finally {
           if (result == Extractor.RESULT_SEEK) {
             result = Extractor.RESULT_CONTINUE;
@@ -1040,20 +1088,36 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     }
   }
 
-  /** Stores a list of extractors and a selected extractor when the format has been detected. */
+  /**
+   * Creates a list of extractors for the stream, and stores the selected extractor when the format
+   * has been detected.
+   */
   private static final class ExtractorHolder {
 
-    private final Extractor[] extractors;
+    private final ExtractorsFactory extractorsFactory;
+    @Nullable private final SeekMapCache seekMapCache;
+    private final String cacheKey;
 
     @Nullable private Extractor extractor;
+    private long contentLength;
+    @Nullable private String eTag;
+    private boolean hasStoredIndex;
 
     /**
      * Creates a holder that will select an extractor and initialize it using the specified output.
      *
-     * @param extractors One or more extractors to choose from.
+     * @param extractorsFactory The factory for the extractors to choose from.
+     * @param seekMapCache A cache for the indexes built by {@link IndexingExtractor}s, or null.
+     * @param cacheKey The cache key of the stream.
      */
-    public ExtractorHolder(Extractor[] extractors) {
-      this.extractors = extractors;
+    public ExtractorHolder(
+        ExtractorsFactory extractorsFactory,
+        @Nullable SeekMapCache seekMapCache,
+        String cacheKey) {
+      this.extractorsFactory = extractorsFactory;
+      this.seekMapCache = seekMapCache;
+      this.cacheKey = cacheKey;
+      contentLength = C.LENGTH_UNSET;
     }
 
     /**
@@ -1064,16 +1128,26 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
      * @param output The {@link ExtractorOutput} that will be used to initialize the selected
      *     extractor.
      * @param uri The {@link Uri} of the data.
+     * @param responseHeaders The response headers of the data, used to order the extractors to
+     *     sniff.
      * @return An initialized extractor for reading {@code input}.
      * @throws UnrecognizedInputFormatException Thrown if the input format could not be detected.
      * @throws IOException Thrown if the input could not be read.
      * @throws InterruptedException Thrown if the thread was interrupted.
      */
-    public Extractor selectExtractor(ExtractorInput input, ExtractorOutput output, Uri uri)
+    public Extractor selectExtractor(
+        ExtractorInput input,
+        ExtractorOutput output,
+        Uri uri,
+        Map<String, List<String>> responseHeaders)
         throws IOException, InterruptedException {
+      // Identify the media of the latest load, in case its index is stored.
+      contentLength = input.getLength();
+      eTag = getETag(responseHeaders);
       if (extractor != null) {
         return extractor;
       }
+      Extractor[] extractors = extractorsFactory.createExtractors(uri, responseHeaders);
       if (extractors.length == 1) {
         this.extractor = extractors[0];
       } else {
@@ -1096,17 +1170,59 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
                   + ") could read the stream.",
               uri);
         }
+        extractorsFactory.onExtractorSelected(uri, extractor);
       }
       extractor.init(output);
+      if (seekMapCache != null && extractor instanceof IndexingExtractor) {
+        @Nullable IndexSeekMap index = seekMapCache.get(cacheKey, contentLength, eTag);
+        if (index != null) {
+          ((IndexingExtractor) extractor).setIndex(index);
+        }
+      }
       return extractor;
     }
 
+    /**
+     * Stores the index built by the selected extractor, if it's an {@link IndexingExtractor} that
+     * has read the whole stream and the index hasn't been stored by this holder yet.
+     */
+    public void maybeStoreIndex() {
+      if (seekMapCache == null || hasStoredIndex || !(extractor instanceof IndexingExtractor)) {
+        return;
+      }
+      @Nullable IndexSeekMap index = ((IndexingExtractor) extractor).getIndex();
+      if (index != null) {
+        seekMapCache.put(cacheKey, contentLength, eTag, index);
+        hasStoredIndex = true;
+      }
+    }
+
+    /**
+     * Returns whether the selected extractor is a {@link TrackSkippingExtractor} that skips the
+     * samples of tracks whose output is discarding samples.
+     */
+    public boolean skipsDiscardedTracks() {
+      return extractor instanceof TrackSkippingExtractor
+          && ((TrackSkippingExtractor) extractor).skipsDiscardedTracks();
+    }
+
     public void release() {
       if (extractor != null) {
         extractor.release();
         extractor = null;
       }
     }
+
+    @Nullable
+    private static String getETag(Map<String, List<String>> responseHeaders) {
+      for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+        // Header names are case insensitive.
+        if ("ETag".equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+          return header.getValue().get(0);
+        }
+      }
+      return null;
+    }
   }
 
   /** Stores state that is initialized when preparation completes. */
@@ -23,6 +23,7 @@ import com.google.android.exoplayer2.drm.DrmSessionManager;
 import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
 import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.IndexingExtractor;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DefaultLoadErrorHandlingPolicy;
@@ -53,6 +54,7 @@ public final class ProgressiveMediaSource extends BaseMediaSource
     private LoadErrorHandlingPolicy loadErrorHandlingPolicy;
     private int continueLoadingCheckIntervalBytes;
     @Nullable private String customCacheKey;
+    @Nullable private SeekMapCache seekMapCache;
     @Nullable private Object tag;
 
     /**
@@ -104,6 +106,20 @@ public final class ProgressiveMediaSource extends BaseMediaSource
       return this;
     }
 
+    /**
+     * Sets the {@link SeekMapCache} in which to store the indexes built by {@link
+     * IndexingExtractor}s once the whole media has been read, so that it's seekable straight away
+     * when it's played again. Indexes are stored under the custom cache key if set, or the cache
+     * key generated from the {@link Uri} otherwise. The default value is {@code null}.
+     *
+     * @param seekMapCache The {@link SeekMapCache}, or {@code null} to not store indexes.
+     * @return This factory, for convenience.
+     */
+    public Factory setSeekMapCache(@Nullable SeekMapCache seekMapCache) {
+      this.seekMapCache = seekMapCache;
+      return this;
+    }
+
     /**
      * Sets a tag for the media source which will be published in the {@link
      * com.google.android.exoplayer2.Timeline} of the source as {@link
@@ -180,6 +196,7 @@ public final class ProgressiveMediaSource extends BaseMediaSource
           loadErrorHandlingPolicy,
           customCacheKey,
           continueLoadingCheckIntervalBytes,
+          seekMapCache,
           tag);
     }
 
@@ -202,6 +219,7 @@ public final class ProgressiveMediaSource extends BaseMediaSource
   private final LoadErrorHandlingPolicy loadableLoadErrorHandlingPolicy;
   @Nullable private final String customCacheKey;
   private final int continueLoadingCheckIntervalBytes;
+  @Nullable private final SeekMapCache seekMapCache;
   @Nullable private final Object tag;
 
   private long timelineDurationUs;
@@ -218,6 +236,7 @@ public final class ProgressiveMediaSource extends BaseMediaSource
       LoadErrorHandlingPolicy loadableLoadErrorHandlingPolicy,
       @Nullable String customCacheKey,
       int continueLoadingCheckIntervalBytes,
+      @Nullable SeekMapCache seekMapCache,
       @Nullable Object tag) {
     this.uri = uri;
     this.dataSourceFactory = dataSourceFactory;
@@ -226,6 +245,7 @@ public final class ProgressiveMediaSource extends BaseMediaSource
     this.loadableLoadErrorHandlingPolicy = loadableLoadErrorHandlingPolicy;
     this.customCacheKey = customCacheKey;
     this.continueLoadingCheckIntervalBytes = continueLoadingCheckIntervalBytes;
+    this.seekMapCache = seekMapCache;
     this.timelineDurationUs = C.TIME_UNSET;
     this.tag = tag;
   }
@@ -257,14 +277,15 @@ public final class ProgressiveMediaSource extends BaseMediaSource
     return new ProgressiveMediaPeriod(
         uri,
         dataSource,
-        extractorsFactory.createExtractors(),
+        extractorsFactory,
         drmSessionManager,
         loadableLoadErrorHandlingPolicy,
         createEventDispatcher(id),
         this,
         allocator,
         customCacheKey,
-        continueLoadingCheckIntervalBytes);
+        continueLoadingCheckIntervalBytes,
+        seekMapCache);
   }
 
   @Override
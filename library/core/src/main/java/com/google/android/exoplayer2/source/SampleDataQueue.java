@@ -30,6 +30,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /** A queue of media sample data. */
 /* package */ class SampleDataQueue {
@@ -40,6 +41,9 @@ import java.util.Arrays;
   private final int allocationLength;
   private final ParsableByteArray scratch;
 
+  // Used to stage data read from a SampleDataReader before it's written to a direct allocation.
+  @Nullable private byte[] directWriteScratch;
+
   // References into the linked list of allocations.
   private AllocationNode firstAllocationNode;
   private AllocationNode readAllocationNode;
@@ -141,7 +145,7 @@ import java.util.Arrays;
       // Write the remaining data as supplemental data.
       buffer.resetSupplementalData(extrasHolder.size);
       readData(extrasHolder.offset, buffer.supplementalData, extrasHolder.size);
-    } else {
+    } else if (!maybeLendData(buffer, extrasHolder.offset, extrasHolder.size)) {
       // Write the sample data.
       buffer.ensureSpaceForWrite(extrasHolder.size);
       readData(extrasHolder.offset, buffer.data, extrasHolder.size);
@@ -160,8 +164,12 @@ import java.util.Arrays;
     }
     while (absolutePosition >= firstAllocationNode.endPosition) {
       // Advance firstAllocationNode to the specified absolute position. Also clear nodes that are
-      // advanced past, and return their underlying allocations to the allocator.
-      allocator.release(firstAllocationNode.allocation);
+      // advanced past, and return their underlying allocations to the allocator unless they're
+      // still lent to a decoder input buffer.
+      Allocation allocation = firstAllocationNode.allocation;
+      if (firstAllocationNode.referenceCount.decrementAndGet() == 0) {
+        allocator.release(allocation);
+      }
       firstAllocationNode = firstAllocationNode.clear();
     }
     if (readAllocationNode.startPosition < firstAllocationNode.startPosition) {
@@ -180,11 +188,25 @@ import java.util.Arrays;
   public int sampleData(SampleDataReader input, int length, boolean allowEndOfInput)
       throws IOException, InterruptedException {
     length = preAppend(length);
-    int bytesAppended =
-        input.read(
-            writeAllocationNode.allocation.data,
-            writeAllocationNode.translateOffset(totalBytesWritten),
-            length);
+    int bytesAppended;
+    @Nullable ByteBuffer writeBuffer = writeAllocationNode.writeBuffer;
+    if (writeBuffer == null) {
+      bytesAppended =
+          input.read(
+              writeAllocationNode.allocation.data,
+              writeAllocationNode.translateOffset(totalBytesWritten),
+              length);
+    } else {
+      // SampleDataReader can only write into arrays, so the data has to be staged.
+      if (directWriteScratch == null) {
+        directWriteScratch = new byte[allocationLength];
+      }
+      bytesAppended = input.read(directWriteScratch, /* offset= */ 0, length);
+      if (bytesAppended > 0) {
+        writeBuffer.position(writeAllocationNode.translateOffset(totalBytesWritten));
+        writeBuffer.put(directWriteScratch, /* offset= */ 0, bytesAppended);
+      }
+    }
     if (bytesAppended == C.RESULT_END_OF_INPUT) {
       if (allowEndOfInput) {
         return C.RESULT_END_OF_INPUT;
@@ -198,10 +220,16 @@ import java.util.Arrays;
   public void sampleData(ParsableByteArray buffer, int length) {
     while (length > 0) {
       int bytesAppended = preAppend(length);
-      buffer.readBytes(
-          writeAllocationNode.allocation.data,
-          writeAllocationNode.translateOffset(totalBytesWritten),
-          bytesAppended);
+      @Nullable ByteBuffer writeBuffer = writeAllocationNode.writeBuffer;
+      if (writeBuffer == null) {
+        buffer.readBytes(
+            writeAllocationNode.allocation.data,
+            writeAllocationNode.translateOffset(totalBytesWritten),
+            bytesAppended);
+      } else {
+        writeBuffer.position(writeAllocationNode.translateOffset(totalBytesWritten));
+        buffer.readBytes(writeBuffer, bytesAppended);
+      }
       length -= bytesAppended;
       postAppend(bytesAppended);
     }
@@ -294,6 +322,71 @@ import java.util.Arrays;
     extrasHolder.size -= bytesRead;
   }
 
+  /**
+   * Attempts to replace the data of a decoder input buffer with a read-only view of data in the
+   * rolling buffer, rather than copying it. The underlying allocations are not returned to the
+   * allocator until the decoder input buffer is cleared.
+   *
+   * <p>This is only possible if the decoder input buffer allows it, and if the data is contiguous
+   * in memory. This is always the case if the data is contained in a single allocation, and may be
+   * the case if it spans allocations that are adjacent in the same array or direct buffer.
+   *
+   * @param buffer The buffer to populate.
+   * @param absolutePosition The absolute position of the data.
+   * @param length The length of the data.
+   * @return Whether the data was lent to the buffer. If false, the data must be copied.
+   */
+  private boolean maybeLendData(DecoderInputBuffer buffer, long absolutePosition, int length) {
+    if (length == 0) {
+      return false;
+    }
+    advanceReadTo(absolutePosition);
+    Allocation firstAllocation = readAllocationNode.allocation;
+    @Nullable ByteBuffer directBuffer = firstAllocation.buffer;
+    if (!buffer.canBorrowData(/* direct= */ directBuffer != null)) {
+      return false;
+    }
+    // Check that the data is contiguous in memory.
+    long endPosition = absolutePosition + length;
+    int nodeCount = 1;
+    AllocationNode lastNode = readAllocationNode;
+    while (endPosition > lastNode.endPosition) {
+      AllocationNode nextNode = lastNode.next;
+      if (!areAdjacent(lastNode.allocation, nextNode.allocation)) {
+        return false;
+      }
+      lastNode = nextNode;
+      nodeCount++;
+    }
+
+    int offset = readAllocationNode.translateOffset(absolutePosition);
+    ByteBuffer view;
+    if (directBuffer != null) {
+      view = directBuffer.duplicate();
+      view.position(offset);
+      view.limit(offset + length);
+    } else {
+      view = ByteBuffer.wrap(firstAllocation.data, offset, length);
+    }
+    view = view.slice().asReadOnlyBuffer();
+    view.position(length);
+
+    // Pin the allocations until the buffer is cleared.
+    Allocation[] lentAllocations = new Allocation[nodeCount];
+    AtomicInteger[] referenceCounts = new AtomicInteger[nodeCount];
+    AllocationNode node = readAllocationNode;
+    for (int i = 0; i < nodeCount; i++) {
+      lentAllocations[i] = node.allocation;
+      referenceCounts[i] = node.referenceCount;
+      node.referenceCount.incrementAndGet();
+      node = node.next;
+    }
+    buffer.setBorrowedData(view, new LentDataReleaser(allocator, lentAllocations, referenceCounts));
+
+    readAllocationNode = endPosition == lastNode.endPosition ? lastNode.next : lastNode;
+    return true;
+  }
+
   /**
    * Reads data from the front of the rolling buffer.
    *
@@ -306,8 +399,17 @@ import java.util.Arrays;
     int remaining = length;
     while (remaining > 0) {
       int toCopy = Math.min(remaining, (int) (readAllocationNode.endPosition - absolutePosition));
-      Allocation allocation = readAllocationNode.allocation;
-      target.put(allocation.data, readAllocationNode.translateOffset(absolutePosition), toCopy);
+      int offset = readAllocationNode.translateOffset(absolutePosition);
+      @Nullable ByteBuffer readBuffer = readAllocationNode.readBuffer;
+      if (readBuffer == null) {
+        target.put(readAllocationNode.allocation.data, offset, toCopy);
+      } else {
+        // Copy directly between the buffers, without going through the Java heap.
+        readBuffer.clear();
+        readBuffer.position(offset);
+        readBuffer.limit(offset + toCopy);
+        target.put(readBuffer);
+      }
       remaining -= toCopy;
       absolutePosition += toCopy;
       if (absolutePosition == readAllocationNode.endPosition) {
@@ -328,13 +430,16 @@ import java.util.Arrays;
     int remaining = length;
     while (remaining > 0) {
       int toCopy = Math.min(remaining, (int) (readAllocationNode.endPosition - absolutePosition));
-      Allocation allocation = readAllocationNode.allocation;
-      System.arraycopy(
-          allocation.data,
-          readAllocationNode.translateOffset(absolutePosition),
-          target,
-          length - remaining,
-          toCopy);
+      int offset = readAllocationNode.translateOffset(absolutePosition);
+      @Nullable ByteBuffer readBuffer = readAllocationNode.readBuffer;
+      if (readBuffer == null) {
+        System.arraycopy(
+            readAllocationNode.allocation.data, offset, target, length - remaining, toCopy);
+      } else {
+        readBuffer.clear();
+        readBuffer.position(offset);
+        readBuffer.get(target, length - remaining, toCopy);
+      }
       remaining -= toCopy;
       absolutePosition += toCopy;
       if (absolutePosition == readAllocationNode.endPosition) {
@@ -371,14 +476,31 @@ import java.util.Arrays;
             + ((int) (writeAllocationNode.startPosition - fromNode.startPosition)
                 / allocationLength);
     Allocation[] allocationsToRelease = new Allocation[allocationCount];
+    int releaseCount = 0;
     AllocationNode currentNode = fromNode;
-    for (int i = 0; i < allocationsToRelease.length; i++) {
-      allocationsToRelease[i] = currentNode.allocation;
+    for (int i = 0; i < allocationCount; i++) {
+      // Allocations that are still lent to a decoder input buffer are released once it's cleared.
+      if (currentNode.referenceCount.decrementAndGet() == 0) {
+        allocationsToRelease[releaseCount++] = currentNode.allocation;
+      }
       currentNode = currentNode.clear();
     }
+    if (releaseCount < allocationCount) {
+      allocationsToRelease = Arrays.copyOf(allocationsToRelease, releaseCount);
+    }
     allocator.release(allocationsToRelease);
   }
 
+  /**
+   * Returns whether {@code nextAllocation} directly follows {@code allocation} in the same array or
+   * direct buffer.
+   */
+  private boolean areAdjacent(Allocation allocation, Allocation nextAllocation) {
+    return allocation.data == nextAllocation.data
+        && allocation.buffer == nextAllocation.buffer
+        && nextAllocation.offset == allocation.offset + allocationLength;
+  }
+
   /**
    * Called before writing sample data to {@link #writeAllocationNode}. May cause {@link
    * #writeAllocationNode} to be initialized.
@@ -419,6 +541,22 @@ import java.util.Arrays;
     public boolean wasInitialized;
     /** The {@link Allocation}, or {@code null} if the node is not initialized. */
     @Nullable public Allocation allocation;
+    /**
+     * The number of references to the {@link #allocation}. The node itself holds one reference
+     * until it's cleared, and each decoder input buffer the allocation is lent to holds another.
+     * The allocation is returned to the allocator when the count reaches zero.
+     */
+    public final AtomicInteger referenceCount;
+    /**
+     * A view of the {@link #allocation}'s direct {@link Allocation#buffer} for use by the loading
+     * thread, or {@code null} if the allocation is not direct or the node is not initialized.
+     */
+    @Nullable public ByteBuffer writeBuffer;
+    /**
+     * A view of the {@link #allocation}'s direct {@link Allocation#buffer} for use by the consuming
+     * thread, or {@code null} if the allocation is not direct or the node is not initialized.
+     */
+    @Nullable public ByteBuffer readBuffer;
     /**
      * The next {@link AllocationNode} in the list, or {@code null} if the node has not been
      * initialized. Remains set after {@link #clear()}.
@@ -433,6 +571,7 @@ import java.util.Arrays;
     public AllocationNode(long startPosition, int allocationLength) {
       this.startPosition = startPosition;
       this.endPosition = startPosition + allocationLength;
+      referenceCount = new AtomicInteger(1);
     }
 
     /**
@@ -444,12 +583,17 @@ import java.util.Arrays;
     public void initialize(Allocation allocation, AllocationNode next) {
       this.allocation = allocation;
       this.next = next;
+      @Nullable ByteBuffer buffer = allocation.buffer;
+      if (buffer != null) {
+        writeBuffer = buffer.duplicate();
+        readBuffer = buffer.duplicate();
+      }
       wasInitialized = true;
     }
 
     /**
-     * Gets the offset into the {@link #allocation}'s {@link Allocation#data} that corresponds to
-     * the specified absolute position.
+     * Gets the offset into the {@link #allocation}'s {@link Allocation#data} (or {@link
+     * Allocation#buffer}) that corresponds to the specified absolute position.
      *
      * @param absolutePosition The absolute position.
      * @return The corresponding offset into the allocation's data.
@@ -465,9 +609,35 @@ import java.util.Arrays;
      */
     public AllocationNode clear() {
       allocation = null;
+      writeBuffer = null;
+      readBuffer = null;
       AllocationNode temp = next;
       next = null;
       return temp;
     }
   }
+
+  /** Returns lent allocations to the allocator once they're no longer referenced. */
+  private static final class LentDataReleaser implements Runnable {
+
+    private final Allocator allocator;
+    private final Allocation[] allocations;
+    private final AtomicInteger[] referenceCounts;
+
+    public LentDataReleaser(
+        Allocator allocator, Allocation[] allocations, AtomicInteger[] referenceCounts) {
+      this.allocator = allocator;
+      this.allocations = allocations;
+      this.referenceCounts = referenceCounts;
+    }
+
+    @Override
+    public void run() {
+      for (int i = 0; i < allocations.length; i++) {
+        if (referenceCounts[i].decrementAndGet() == 0) {
+          allocator.release(allocations[i]);
+        }
+      }
+    }
+  }
 }
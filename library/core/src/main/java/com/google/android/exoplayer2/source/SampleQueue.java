@@ -87,6 +87,7 @@ public class SampleQueue implements TrackOutput {
 
   private long sampleOffsetUs;
   private boolean pendingSplice;
+  private volatile boolean discardingSamples;
 
   /**
    * Creates a sample queue.
@@ -226,6 +227,16 @@ public class SampleQueue implements TrackOutput {
     return hasNextSample() ? sourceIds[relativeReadIndex] : upstreamSourceId;
   }
 
+  /**
+   * Sets whether the samples written to the queue will be discarded without being read, so that
+   * extractors can skip writing them. See {@link TrackOutput#isDiscardingSamples()}.
+   *
+   * @param discardingSamples Whether the samples written to the queue will be discarded.
+   */
+  public final void setDiscardingSamples(boolean discardingSamples) {
+    this.discardingSamples = discardingSamples;
+  }
+
   /** Returns the upstream {@link Format} in which samples are being queued. */
   @Nullable
   public final synchronized Format getUpstreamFormat() {
@@ -500,6 +511,11 @@ public class SampleQueue implements TrackOutput {
     commitSample(timeUs, flags, absoluteOffset, size, cryptoData);
   }
 
+  @Override
+  public final boolean isDiscardingSamples() {
+    return discardingSamples;
+  }
+
   /**
    * Invalidates the last upstream format adjustment. {@link #getAdjustedUpstreamFormat(Format)}
    * will be called to adjust the upstream {@link Format} again before the next sample is queued.
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.IndexSeekMap;
+import com.google.android.exoplayer2.extractor.IndexingExtractor;
+
+/**
+ * Stores the indexes built by {@link IndexingExtractor}s, so that media that has been read to the
+ * end once is seekable straight away when it's played again.
+ *
+ * <p>Methods are called on the loading thread.
+ */
+public interface SeekMapCache {
+
+  /**
+   * Returns the index stored for the media with the given cache key, or {@code null} if there
+   * isn't one, or if it was stored for media with a different content length or ETag.
+   *
+   * @param key The cache key of the media.
+   * @param contentLength The length of the media in bytes, or {@link C#LENGTH_UNSET} if unknown.
+   * @param eTag The ETag of the media, or {@code null} if unknown. ETags are only compared if the
+   *     ETag of the stored index is known too.
+   * @return The stored index, or {@code null}.
+   */
+  @Nullable
+  IndexSeekMap get(String key, long contentLength, @Nullable String eTag);
+
+  /**
+   * Stores the index of the media with the given cache key.
+   *
+   * @param key The cache key of the media.
+   * @param contentLength The length of the media in bytes, or {@link C#LENGTH_UNSET} if unknown.
+   * @param eTag The ETag of the media, or {@code null} if unknown.
+   * @param index The index returned by {@link IndexingExtractor#getIndex()}.
+   */
+  void put(String key, long contentLength, @Nullable String eTag, IndexSeekMap index);
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An {@link Allocator} whose {@link Allocation}s are backed by direct {@link ByteBuffer}s, keeping
+ * buffered media out of the Java heap.
+ *
+ * <p>Allocations are carved out of direct buffer slabs, each of which holds a fixed number of
+ * allocations. The memory of a slab is freed once all of its allocations have been discarded by
+ * {@link #trim()} and the slab has been garbage collected.
+ */
+public final class DirectBufferAllocator implements Allocator {
+
+  /** The default number of allocations held by each slab. */
+  public static final int DEFAULT_SLAB_ALLOCATION_COUNT = 16;
+
+  private static final int AVAILABLE_EXTRA_CAPACITY = 100;
+
+  private final boolean trimOnReset;
+  private final int individualAllocationSize;
+  private final int slabAllocationCount;
+  private final Allocation[] singleAllocationReleaseHolder;
+
+  private int targetBufferSize;
+  private int allocatedCount;
+  private int availableCount;
+  private Allocation[] availableAllocations;
+
+  /**
+   * Constructs an instance with {@link #DEFAULT_SLAB_ALLOCATION_COUNT} allocations per slab.
+   *
+   * @param trimOnReset Whether memory is freed when the allocator is reset. Should be true unless
+   *     the allocator will be re-used by multiple player instances.
+   * @param individualAllocationSize The length of each individual {@link Allocation}.
+   */
+  public DirectBufferAllocator(boolean trimOnReset, int individualAllocationSize) {
+    this(trimOnReset, individualAllocationSize, DEFAULT_SLAB_ALLOCATION_COUNT);
+  }
+
+  /**
+   * @param trimOnReset Whether memory is freed when the allocator is reset. Should be true unless
+   *     the allocator will be re-used by multiple player instances.
+   * @param individualAllocationSize The length of each individual {@link Allocation}.
+   * @param slabAllocationCount The number of allocations held by each direct buffer slab.
+   */
+  public DirectBufferAllocator(
+      boolean trimOnReset, int individualAllocationSize, int slabAllocationCount) {
+    Assertions.checkArgument(individualAllocationSize > 0);
+    Assertions.checkArgument(slabAllocationCount > 0);
+    this.trimOnReset = trimOnReset;
+    this.individualAllocationSize = individualAllocationSize;
+    this.slabAllocationCount = slabAllocationCount;
+    availableAllocations = new Allocation[slabAllocationCount + AVAILABLE_EXTRA_CAPACITY];
+    singleAllocationReleaseHolder = new Allocation[1];
+  }
+
+  public synchronized void reset() {
+    if (trimOnReset) {
+      setTargetBufferSize(0);
+    }
+  }
+
+  public synchronized void setTargetBufferSize(int targetBufferSize) {
+    boolean targetBufferSizeReduced = targetBufferSize < this.targetBufferSize;
+    this.targetBufferSize = targetBufferSize;
+    if (targetBufferSizeReduced) {
+      trim();
+    }
+  }
+
+  @Override
+  public synchronized Allocation allocate() {
+    if (availableCount == 0) {
+      allocateSlab();
+    }
+    allocatedCount++;
+    Allocation allocation = availableAllocations[--availableCount];
+    availableAllocations[availableCount] = null;
+    return allocation;
+  }
+
+  @Override
+  public synchronized void release(Allocation allocation) {
+    singleAllocationReleaseHolder[0] = allocation;
+    release(singleAllocationReleaseHolder);
+  }
+
+  @Override
+  public synchronized void release(Allocation[] allocations) {
+    ensureAvailableCapacity(availableCount + allocations.length);
+    for (Allocation allocation : allocations) {
+      Assertions.checkArgument(allocation.isDirect());
+      availableAllocations[availableCount++] = allocation;
+    }
+    allocatedCount -= allocations.length;
+    // Wake up threads waiting for the allocated size to drop.
+    notifyAll();
+  }
+
+  @Override
+  public synchronized void trim() {
+    int targetAllocationCount = Util.ceilDivide(targetBufferSize, individualAllocationSize);
+    int targetAvailableCount = Math.max(0, targetAllocationCount - allocatedCount);
+    if (targetAvailableCount >= availableCount) {
+      // We're already at or below the target.
+      return;
+    }
+    // Discard allocations beyond the target.
+    Arrays.fill(availableAllocations, targetAvailableCount, availableCount, null);
+    availableCount = targetAvailableCount;
+  }
+
+  @Override
+  public synchronized int getTotalBytesAllocated() {
+    return allocatedCount * individualAllocationSize;
+  }
+
+  @Override
+  public int getIndividualAllocationLength() {
+    return individualAllocationSize;
+  }
+
+  private void allocateSlab() {
+    ensureAvailableCapacity(slabAllocationCount);
+    ByteBuffer slab = ByteBuffer.allocateDirect(slabAllocationCount * individualAllocationSize);
+    // Hand out allocations in ascending offset order, so that consecutive allocations of a sample
+    // queue are adjacent in memory.
+    for (int i = slabAllocationCount - 1; i >= 0; i--) {
+      availableAllocations[availableCount++] = new Allocation(slab, i * individualAllocationSize);
+    }
+  }
+
+  private void ensureAvailableCapacity(int requiredCapacity) {
+    if (requiredCapacity >= availableAllocations.length) {
+      availableAllocations =
+          Arrays.copyOf(
+              availableAllocations, Math.max(availableAllocations.length * 2, requiredCapacity));
+    }
+  }
+}
@@ -20,16 +20,34 @@ import static com.google.android.exoplayer2.util.Util.castNonNull;
 import android.net.Uri;
 import android.text.TextUtils;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.util.Assertions;
 import java.io.EOFException;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
-/** A {@link DataSource} for reading local files. */
+/**
+ * A {@link DataSource} for reading local files.
+ *
+ * <p>If memory mapping is enabled, the file is read through regions mapped into memory, rather than
+ * with a system call for every read. This is faster when the file is read in many small reads, as
+ * extractors do. The most recently mapped region is kept when the data source is closed, and is
+ * reused if the same file is opened again at a position within the region, as happens when an
+ * extractor seeks. Other regions are released when they're garbage collected.
+ */
 public final class FileDataSource extends BaseDataSource {
 
+  /**
+   * The maximum size of a region of the file mapped into memory, in bytes. Regions that are no
+   * longer used hold address space until they're garbage collected, so they're kept small.
+   */
+  private static final int DEFAULT_MAX_MAPPED_REGION_SIZE = 2 * 1024 * 1024;
+
   /** Thrown when a {@link FileDataSource} encounters an error reading a file. */
   public static class FileDataSourceException extends IOException {
 
@@ -46,6 +64,7 @@ public final class FileDataSource extends BaseDataSource {
   public static final class Factory implements DataSource.Factory {
 
     @Nullable private TransferListener listener;
+    private boolean memoryMappingEnabled;
 
     /**
      * Sets a {@link TransferListener} for {@link FileDataSource} instances created by this factory.
@@ -58,9 +77,21 @@ public final class FileDataSource extends BaseDataSource {
       return this;
     }
 
+    /**
+     * Sets whether {@link FileDataSource} instances created by this factory read files through
+     * memory mapping. The default value is {@code false}.
+     *
+     * @param memoryMappingEnabled Whether to read files through memory mapping.
+     * @return This factory.
+     */
+    public Factory setMemoryMappingEnabled(boolean memoryMappingEnabled) {
+      this.memoryMappingEnabled = memoryMappingEnabled;
+      return this;
+    }
+
     @Override
     public FileDataSource createDataSource() {
-      FileDataSource dataSource = new FileDataSource();
+      FileDataSource dataSource = new FileDataSource(memoryMappingEnabled);
       if (listener != null) {
         dataSource.addTransferListener(listener);
       }
@@ -68,13 +99,34 @@ public final class FileDataSource extends BaseDataSource {
     }
   }
 
+  private final boolean memoryMappingEnabled;
+  private final int maxMappedRegionSize;
+
   @Nullable private RandomAccessFile file;
   @Nullable private Uri uri;
+  @Nullable private MappedByteBuffer mappedRegion;
+  @Nullable private File mappedFile;
+  private long mappedFileLength;
+  private long mappedFileLastModified;
+  private long mappedRegionPosition;
+  private long position;
   private long bytesRemaining;
   private boolean opened;
 
   public FileDataSource() {
+    this(/* memoryMappingEnabled= */ false);
+  }
+
+  /** @param memoryMappingEnabled Whether to read files through memory mapping. */
+  public FileDataSource(boolean memoryMappingEnabled) {
+    this(memoryMappingEnabled, DEFAULT_MAX_MAPPED_REGION_SIZE);
+  }
+
+  @VisibleForTesting
+  /* package */ FileDataSource(boolean memoryMappingEnabled, int maxMappedRegionSize) {
     super(/* isNetwork= */ false);
+    this.memoryMappingEnabled = memoryMappingEnabled;
+    this.maxMappedRegionSize = maxMappedRegionSize;
   }
 
   @Override
@@ -86,7 +138,11 @@ public final class FileDataSource extends BaseDataSource {
       transferInitializing(dataSpec);
 
       this.file = openLocalFile(uri);
+      if (mappedRegion != null && !isMappedFile(uri)) {
+        mappedRegion = null;
+      }
       file.seek(dataSpec.position);
+      position = dataSpec.position;
       bytesRemaining = dataSpec.length == C.LENGTH_UNSET ? file.length() - dataSpec.position
           : dataSpec.length;
       if (bytesRemaining < 0) {
@@ -109,15 +165,19 @@ public final class FileDataSource extends BaseDataSource {
     } else if (bytesRemaining == 0) {
       return C.RESULT_END_OF_INPUT;
     } else {
+      int bytesToRead = (int) Math.min(bytesRemaining, readLength);
       int bytesRead;
       try {
         bytesRead =
-            castNonNull(file).read(buffer, offset, (int) Math.min(bytesRemaining, readLength));
+            memoryMappingEnabled
+                ? readFromMappedRegion(buffer, offset, bytesToRead)
+                : castNonNull(file).read(buffer, offset, bytesToRead);
       } catch (IOException e) {
         throw new FileDataSourceException(e);
       }
 
       if (bytesRead > 0) {
+        position += bytesRead;
         bytesRemaining -= bytesRead;
         bytesTransferred(bytesRead);
       }
@@ -150,6 +210,44 @@ public final class FileDataSource extends BaseDataSource {
     }
   }
 
+  private int readFromMappedRegion(byte[] buffer, int offset, int readLength) throws IOException {
+    @Nullable MappedByteBuffer mappedRegion = this.mappedRegion;
+    long regionOffset = position - mappedRegionPosition;
+    if (mappedRegion == null || regionOffset < 0 || regionOffset >= mappedRegion.capacity()) {
+      RandomAccessFile file = castNonNull(this.file);
+      // Don't map past the end of the file, in case it's shorter than the requested length. The
+      // region isn't limited to the requested length, so that it can be reused by later opens.
+      long fileLength = file.length();
+      long regionSize = Math.min(fileLength - position, maxMappedRegionSize);
+      if (regionSize <= 0) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      mappedRegion = file.getChannel().map(FileChannel.MapMode.READ_ONLY, position, regionSize);
+      this.mappedRegion = mappedRegion;
+      mappedFile = new File(Assertions.checkNotNull(castNonNull(uri).getPath()));
+      mappedFileLength = fileLength;
+      mappedFileLastModified = mappedFile.lastModified();
+      mappedRegionPosition = position;
+      regionOffset = 0;
+    }
+    mappedRegion.position((int) regionOffset);
+    int bytesRead = Math.min(readLength, mappedRegion.remaining());
+    mappedRegion.get(buffer, offset, bytesRead);
+    return bytesRead;
+  }
+
+  /**
+   * Returns whether the file at the path of {@code uri} is the one that the current region was
+   * mapped from, and is unchanged. A region must not be read if the file has been truncated since
+   * it was mapped, and doesn't reflect the new file if the path has been replaced.
+   */
+  private boolean isMappedFile(Uri uri) {
+    File mappedFile = castNonNull(this.mappedFile);
+    return mappedFile.getPath().equals(uri.getPath())
+        && mappedFile.length() == mappedFileLength
+        && mappedFile.lastModified() == mappedFileLastModified;
+  }
+
   private static RandomAccessFile openLocalFile(Uri uri) throws FileDataSourceException {
     try {
       return new RandomAccessFile(Assertions.checkNotNull(uri.getPath()), "r");
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches objects loaded by {@link ParsingLoadable}s, together with the validators of the responses
+ * from which they were parsed, so that unchanged objects can be reloaded without parsing them.
+ *
+ * <p>Reloads send the validators of the previous response as conditional request headers. If the
+ * server responds that the object hasn't been modified, or if the response is identical to the
+ * previous one, the previously parsed object is kept. Objects are cached by the {@link Uri} of the
+ * {@link DataSpec} from which they're loaded.
+ *
+ * <p>The cache is thread-safe.
+ *
+ * @param <T> The type of the cached objects.
+ */
+public final class ParsedResponseCache<T> {
+
+  /** A parsed object and the validators of the response from which it was parsed. */
+  /* package */ static final class Entry<T> {
+
+    /** The {@link Uri} from which the response was read, after any redirection. */
+    public final Uri uri;
+    /** The value of the ETag response header, or null if it wasn't set. */
+    @Nullable public final String entityTag;
+    /** The value of the Last-Modified response header, or null if it wasn't set. */
+    @Nullable public final String lastModified;
+    /** The digest of the response data. */
+    public final byte[] digest;
+    /** The object parsed from the response. */
+    public final T result;
+
+    public Entry(Uri uri, Map<String, List<String>> responseHeaders, byte[] digest, T result) {
+      this.uri = uri;
+      this.entityTag = getHeaderValue(responseHeaders, "ETag");
+      this.lastModified = getHeaderValue(responseHeaders, "Last-Modified");
+      this.digest = digest;
+      this.result = result;
+    }
+
+    /** Returns the headers that make a request for the object conditional on it having changed. */
+    public Map<String, String> getConditionalRequestHeaders() {
+      if (entityTag == null && lastModified == null) {
+        return Collections.emptyMap();
+      }
+      Map<String, String> requestHeaders = new HashMap<>();
+      if (entityTag != null) {
+        requestHeaders.put("If-None-Match", entityTag);
+      }
+      if (lastModified != null) {
+        requestHeaders.put("If-Modified-Since", lastModified);
+      }
+      return requestHeaders;
+    }
+  }
+
+  private final HashMap<Uri, Entry<T>> entries;
+
+  public ParsedResponseCache() {
+    entries = new HashMap<>();
+  }
+
+  /** Removes all of the cached objects. */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Returns the entry for objects loaded from a {@link Uri}, or null if there isn't one.
+   *
+   * @param uri The {@link Uri} of the {@link DataSpec} from which objects are loaded.
+   */
+  @Nullable
+  /* package */ synchronized Entry<T> get(Uri uri) {
+    return entries.get(uri);
+  }
+
+  /**
+   * Sets the entry for objects loaded from a {@link Uri}, replacing any previous one.
+   *
+   * @param uri The {@link Uri} of the {@link DataSpec} from which objects are loaded.
+   * @param entry The entry.
+   */
+  /* package */ synchronized void put(Uri uri, Entry<T> entry) {
+    entries.put(uri, entry);
+  }
+
+  /** Returns the digest of response data. */
+  /* package */ static byte[] digest(byte[] data) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(data);
+    } catch (NoSuchAlgorithmException e) {
+      // Should never happen.
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Nullable
+  private static String getHeaderValue(Map<String, List<String>> headers, String name) {
+    // Header names are case insensitive, and may be keyed in the case in which they were received.
+    for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+      if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+        return header.getValue().get(0);
+      }
+    }
+    return null;
+  }
+}
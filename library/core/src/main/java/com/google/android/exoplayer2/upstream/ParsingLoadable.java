@@ -19,11 +19,15 @@ import android.net.Uri;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.upstream.HttpDataSource.InvalidResponseCodeException;
 import com.google.android.exoplayer2.upstream.Loader.Loadable;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -99,6 +103,7 @@ public final class ParsingLoadable<T> implements Loadable {
 
   private final StatsDataSource dataSource;
   private final Parser<? extends T> parser;
+  @Nullable private final ParsedResponseCache<T> cache;
 
   private volatile @Nullable T result;
 
@@ -109,11 +114,30 @@ public final class ParsingLoadable<T> implements Loadable {
    * @param parser Parses the object from the response.
    */
   public ParsingLoadable(DataSource dataSource, Uri uri, int type, Parser<? extends T> parser) {
+    this(dataSource, uri, type, parser, /* cache= */ null);
+  }
+
+  /**
+   * @param dataSource A {@link DataSource} to use when loading the data.
+   * @param uri The {@link Uri} from which the object should be loaded.
+   * @param type See {@link #type}.
+   * @param parser Parses the object from the response.
+   * @param cache A {@link ParsedResponseCache} holding the object previously loaded from {@code
+   *     uri}, which is kept if it hasn't changed, and in which the loaded object is stored. May be
+   *     null if objects shouldn't be cached.
+   */
+  public ParsingLoadable(
+      DataSource dataSource,
+      Uri uri,
+      int type,
+      Parser<? extends T> parser,
+      @Nullable ParsedResponseCache<T> cache) {
     this(
         dataSource,
         new DataSpec.Builder().setUri(uri).setFlags(DataSpec.FLAG_ALLOW_GZIP).build(),
         type,
-        parser);
+        parser,
+        cache);
   }
 
   /**
@@ -124,10 +148,29 @@ public final class ParsingLoadable<T> implements Loadable {
    */
   public ParsingLoadable(DataSource dataSource, DataSpec dataSpec, int type,
       Parser<? extends T> parser) {
+    this(dataSource, dataSpec, type, parser, /* cache= */ null);
+  }
+
+  /**
+   * @param dataSource A {@link DataSource} to use when loading the data.
+   * @param dataSpec The {@link DataSpec} from which the object should be loaded.
+   * @param type See {@link #type}.
+   * @param parser Parses the object from the response.
+   * @param cache A {@link ParsedResponseCache} holding the object previously loaded from {@code
+   *     dataSpec}, which is kept if it hasn't changed, and in which the loaded object is stored.
+   *     May be null if objects shouldn't be cached.
+   */
+  public ParsingLoadable(
+      DataSource dataSource,
+      DataSpec dataSpec,
+      int type,
+      Parser<? extends T> parser,
+      @Nullable ParsedResponseCache<T> cache) {
     this.dataSource = new StatsDataSource(dataSource);
     this.dataSpec = dataSpec;
     this.type = type;
     this.parser = parser;
+    this.cache = cache;
   }
 
   /** Returns the loaded object, or null if an object has not been loaded. */
@@ -170,6 +213,10 @@ public final class ParsingLoadable<T> implements Loadable {
   public final void load() throws IOException {
     // We always load from the beginning, so reset bytesRead to 0.
     dataSource.resetBytesRead();
+    if (cache != null) {
+      loadWithCache(cache);
+      return;
+    }
     DataSourceInputStream inputStream = new DataSourceInputStream(dataSource, dataSpec);
     try {
       inputStream.open();
@@ -179,4 +226,44 @@ public final class ParsingLoadable<T> implements Loadable {
       Util.closeQuietly(inputStream);
     }
   }
+
+  private void loadWithCache(ParsedResponseCache<T> cache) throws IOException {
+    @Nullable ParsedResponseCache.Entry<T> cachedEntry = cache.get(dataSpec.uri);
+    DataSpec requestDataSpec =
+        cachedEntry != null
+            ? dataSpec.withAdditionalHeaders(cachedEntry.getConditionalRequestHeaders())
+            : dataSpec;
+    DataSourceInputStream inputStream = new DataSourceInputStream(dataSource, requestDataSpec);
+    try {
+      try {
+        inputStream.open();
+      } catch (InvalidResponseCodeException e) {
+        if (cachedEntry != null && e.responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+          result = cachedEntry.result;
+          return;
+        }
+        throw e;
+      }
+      Uri dataSourceUri = Assertions.checkNotNull(dataSource.getUri());
+      // The whole response is read before parsing, so that parsing can be skipped if the response
+      // is identical to the previous one.
+      byte[] data = Util.toByteArray(inputStream);
+      byte[] digest = ParsedResponseCache.digest(data);
+      T result;
+      if (cachedEntry != null
+          && cachedEntry.uri.equals(dataSourceUri)
+          && Arrays.equals(cachedEntry.digest, digest)) {
+        result = cachedEntry.result;
+      } else {
+        result = parser.parse(dataSourceUri, new ByteArrayInputStream(data));
+      }
+      cache.put(
+          dataSpec.uri,
+          new ParsedResponseCache.Entry<>(
+              dataSourceUri, dataSource.getLastResponseHeaders(), digest, result));
+      this.result = result;
+    } finally {
+      Util.closeQuietly(inputStream);
+    }
+  }
 }
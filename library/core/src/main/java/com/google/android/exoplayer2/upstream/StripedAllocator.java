@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An {@link Allocator} that does not acquire a lock when allocating or releasing {@link
+ * Allocation}s.
+ *
+ * <p>Released allocations are first cached in a small per-stripe magazine, where the stripe is
+ * chosen by the calling thread. Allocations that don't fit into the magazine are returned to a
+ * lock-free global free-list that is shared by all threads. This makes the allocator suitable for
+ * being shared by several loading threads (e.g. multiple players, or separate audio, video and
+ * text loaders), which would otherwise contend on the single monitor of {@link DefaultAllocator}.
+ *
+ * <p>{@link #setTargetBufferSize(int)}, {@link #trim()} and {@link #reset()} behave as they do for
+ * {@link DefaultAllocator}. Unlike {@link DefaultAllocator}, this class does not notify threads
+ * waiting on its monitor when allocations are released.
+ */
+public final class StripedAllocator implements Allocator {
+
+  private static final int MAGAZINE_CAPACITY = 16;
+  private static final int MAX_STRIPE_COUNT = 64;
+
+  private final boolean trimOnReset;
+  private final int individualAllocationSize;
+  @Nullable private final byte[] initialAllocationBlock;
+  private final int stripeMask;
+  private final AtomicReferenceArray<Magazine> magazines;
+  private final ConcurrentLinkedQueue<Allocation> availableAllocations;
+  private final AtomicInteger availableCount;
+  private final AtomicInteger allocatedCount;
+
+  private volatile int targetBufferSize;
+
+  /**
+   * Constructs an instance without creating any {@link Allocation}s up front.
+   *
+   * @param trimOnReset Whether memory is freed when the allocator is reset. Should be true unless
+   *     the allocator will be re-used by multiple player instances.
+   * @param individualAllocationSize The length of each individual {@link Allocation}.
+   */
+  public StripedAllocator(boolean trimOnReset, int individualAllocationSize) {
+    this(trimOnReset, individualAllocationSize, /* initialAllocationCount= */ 0);
+  }
+
+  /**
+   * Constructs an instance with some {@link Allocation}s created up front.
+   *
+   * <p>Note: {@link Allocation}s created up front will never be discarded by {@link #trim()}.
+   *
+   * @param trimOnReset Whether memory is freed when the allocator is reset. Should be true unless
+   *     the allocator will be re-used by multiple player instances.
+   * @param individualAllocationSize The length of each individual {@link Allocation}.
+   * @param initialAllocationCount The number of allocations to create up front.
+   */
+  public StripedAllocator(
+      boolean trimOnReset, int individualAllocationSize, int initialAllocationCount) {
+    this(
+        trimOnReset,
+        individualAllocationSize,
+        initialAllocationCount,
+        /* stripeCount= */ 2 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructs an instance with some {@link Allocation}s created up front and a given number of
+   * stripes.
+   *
+   * <p>Note: {@link Allocation}s created up front will never be discarded by {@link #trim()}.
+   *
+   * @param trimOnReset Whether memory is freed when the allocator is reset. Should be true unless
+   *     the allocator will be re-used by multiple player instances.
+   * @param individualAllocationSize The length of each individual {@link Allocation}.
+   * @param initialAllocationCount The number of allocations to create up front.
+   * @param stripeCount The number of per-thread allocation caches. Rounded up to the next power of
+   *     two, and capped at 64.
+   */
+  public StripedAllocator(
+      boolean trimOnReset,
+      int individualAllocationSize,
+      int initialAllocationCount,
+      int stripeCount) {
+    Assertions.checkArgument(individualAllocationSize > 0);
+    Assertions.checkArgument(initialAllocationCount >= 0);
+    Assertions.checkArgument(stripeCount > 0);
+    this.trimOnReset = trimOnReset;
+    this.individualAllocationSize = individualAllocationSize;
+    int roundedStripeCount = Integer.highestOneBit(Math.min(stripeCount, MAX_STRIPE_COUNT));
+    if (roundedStripeCount < stripeCount && roundedStripeCount < MAX_STRIPE_COUNT) {
+      roundedStripeCount <<= 1;
+    }
+    stripeMask = roundedStripeCount - 1;
+    magazines = new AtomicReferenceArray<>(roundedStripeCount);
+    for (int i = 0; i < roundedStripeCount; i++) {
+      magazines.set(i, new Magazine());
+    }
+    availableAllocations = new ConcurrentLinkedQueue<>();
+    availableCount = new AtomicInteger(initialAllocationCount);
+    allocatedCount = new AtomicInteger();
+    if (initialAllocationCount > 0) {
+      initialAllocationBlock = new byte[initialAllocationCount * individualAllocationSize];
+      for (int i = 0; i < initialAllocationCount; i++) {
+        int allocationOffset = i * individualAllocationSize;
+        availableAllocations.add(new Allocation(initialAllocationBlock, allocationOffset));
+      }
+    } else {
+      initialAllocationBlock = null;
+    }
+  }
+
+  public synchronized void reset() {
+    if (trimOnReset) {
+      setTargetBufferSize(0);
+    }
+  }
+
+  public synchronized void setTargetBufferSize(int targetBufferSize) {
+    boolean targetBufferSizeReduced = targetBufferSize < this.targetBufferSize;
+    this.targetBufferSize = targetBufferSize;
+    if (targetBufferSizeReduced) {
+      trim();
+    }
+  }
+
+  @Override
+  public Allocation allocate() {
+    allocatedCount.incrementAndGet();
+    int stripeIndex = getStripeIndex();
+    // Taking the magazine out of its slot gives this thread exclusive access to it. If another
+    // thread mapped to the same stripe holds it, fall through to the global free-list.
+    @Nullable Magazine magazine = magazines.getAndSet(stripeIndex, null);
+    if (magazine != null) {
+      @Nullable Allocation allocation = magazine.pop();
+      magazines.set(stripeIndex, magazine);
+      if (allocation != null) {
+        return allocation;
+      }
+    }
+    @Nullable Allocation allocation = availableAllocations.poll();
+    if (allocation != null) {
+      availableCount.decrementAndGet();
+      return allocation;
+    }
+    return new Allocation(new byte[individualAllocationSize], 0);
+  }
+
+  @Override
+  public void release(Allocation allocation) {
+    int stripeIndex = getStripeIndex();
+    @Nullable Magazine magazine = magazines.getAndSet(stripeIndex, null);
+    if (magazine != null) {
+      boolean cached = magazine.push(allocation);
+      magazines.set(stripeIndex, magazine);
+      if (cached) {
+        allocatedCount.decrementAndGet();
+        return;
+      }
+    }
+    availableAllocations.add(allocation);
+    availableCount.incrementAndGet();
+    allocatedCount.decrementAndGet();
+  }
+
+  @Override
+  public void release(Allocation[] allocations) {
+    int stripeIndex = getStripeIndex();
+    @Nullable Magazine magazine = magazines.getAndSet(stripeIndex, null);
+    int releasedToFreeListCount = 0;
+    for (Allocation allocation : allocations) {
+      if (magazine == null || !magazine.push(allocation)) {
+        availableAllocations.add(allocation);
+        releasedToFreeListCount++;
+      }
+    }
+    if (magazine != null) {
+      magazines.set(stripeIndex, magazine);
+    }
+    availableCount.addAndGet(releasedToFreeListCount);
+    allocatedCount.addAndGet(-allocations.length);
+  }
+
+  @Override
+  public synchronized void trim() {
+    // Return all cached allocations to the global free-list, so that they can be discarded.
+    for (int i = 0; i < magazines.length(); i++) {
+      @Nullable Magazine magazine = magazines.getAndSet(i, null);
+      if (magazine != null) {
+        int drainedCount = magazine.drainTo(availableAllocations);
+        availableCount.addAndGet(drainedCount);
+        magazines.set(i, magazine);
+      }
+    }
+
+    int targetAllocationCount = Util.ceilDivide(targetBufferSize, individualAllocationSize);
+    int targetAvailableCount = Math.max(0, targetAllocationCount - allocatedCount.get());
+    int discardCount = availableCount.get() - targetAvailableCount;
+    if (discardCount <= 0) {
+      // We're already at or below the target.
+      return;
+    }
+
+    // Discard allocations beyond the target, holding onto all allocations that are backed by the
+    // initial block.
+    @Nullable ArrayList<Allocation> retainedAllocations = null;
+    int remainingPollCount = availableCount.get();
+    while (discardCount > 0 && remainingPollCount-- > 0) {
+      @Nullable Allocation allocation = availableAllocations.poll();
+      if (allocation == null) {
+        break;
+      } else if (initialAllocationBlock != null && allocation.data == initialAllocationBlock) {
+        if (retainedAllocations == null) {
+          retainedAllocations = new ArrayList<>();
+        }
+        retainedAllocations.add(allocation);
+      } else {
+        availableCount.decrementAndGet();
+        discardCount--;
+      }
+    }
+    if (retainedAllocations != null) {
+      availableAllocations.addAll(retainedAllocations);
+    }
+  }
+
+  @Override
+  public int getTotalBytesAllocated() {
+    return allocatedCount.get() * individualAllocationSize;
+  }
+
+  @Override
+  public int getIndividualAllocationLength() {
+    return individualAllocationSize;
+  }
+
+  private int getStripeIndex() {
+    return (int) Thread.currentThread().getId() & stripeMask;
+  }
+
+  /**
+   * A bounded stack of cached {@link Allocation}s. Only accessed by the thread that has taken it
+   * out of its stripe slot.
+   */
+  private static final class Magazine {
+
+    private final Allocation[] allocations;
+    private int size;
+
+    public Magazine() {
+      allocations = new Allocation[MAGAZINE_CAPACITY];
+    }
+
+    @Nullable
+    public Allocation pop() {
+      if (size == 0) {
+        return null;
+      }
+      Allocation allocation = allocations[--size];
+      allocations[size] = null;
+      return allocation;
+    }
+
+    public boolean push(Allocation allocation) {
+      if (size == allocations.length) {
+        return false;
+      }
+      allocations[size++] = allocation;
+      return true;
+    }
+
+    public int drainTo(ConcurrentLinkedQueue<Allocation> queue) {
+      int drainedCount = size;
+      while (size > 0) {
+        queue.add(allocations[--size]);
+        allocations[size] = null;
+      }
+      return drainedCount;
+    }
+  }
+}
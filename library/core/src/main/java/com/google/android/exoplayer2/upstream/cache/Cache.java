@@ -192,6 +192,52 @@ public interface Cache {
   @Nullable
   CacheSpan startReadWriteNonBlocking(String key, long position) throws CacheException;
 
+  /**
+   * Same as {@link #startReadWrite(String, long)}, except that a returned hole {@link CacheSpan}
+   * and the lock it holds extend at most {@code length} bytes from {@code position}. This allows
+   * writes into disjoint ranges of the same cache entry to proceed concurrently.
+   *
+   * <p>The default implementation calls {@link #startReadWrite(String, long)}, ignoring {@code
+   * length}.
+   *
+   * <p>This method may be slow and shouldn't normally be called on the main thread.
+   *
+   * @param key The key of the data being requested.
+   * @param position The position of the data being requested.
+   * @param length The length of the data being requested, or {@link C#LENGTH_UNSET} if unbounded.
+   * @return The {@link CacheSpan}.
+   * @throws InterruptedException If the thread was interrupted.
+   * @throws CacheException If an error is encountered.
+   */
+  @WorkerThread
+  default CacheSpan startReadWrite(String key, long position, long length)
+      throws InterruptedException, CacheException {
+    return startReadWrite(key, position);
+  }
+
+  /**
+   * Same as {@link #startReadWrite(String, long, long)}. However, if the requested range of the
+   * cache entry is locked, then instead of blocking, this method will return null as the {@link
+   * CacheSpan}.
+   *
+   * <p>The default implementation calls {@link #startReadWriteNonBlocking(String, long)}, ignoring
+   * {@code length}.
+   *
+   * <p>This method may be slow and shouldn't normally be called on the main thread.
+   *
+   * @param key The key of the data being requested.
+   * @param position The position of the data being requested.
+   * @param length The length of the data being requested, or {@link C#LENGTH_UNSET} if unbounded.
+   * @return The {@link CacheSpan}. Or null if the requested range of the cache entry is locked.
+   * @throws CacheException If an error is encountered.
+   */
+  @WorkerThread
+  @Nullable
+  default CacheSpan startReadWriteNonBlocking(String key, long position, long length)
+      throws CacheException {
+    return startReadWriteNonBlocking(key, position);
+  }
+
   /**
    * Obtains a cache file into which data can be written. Must only be called when holding a
    * corresponding hole {@link CacheSpan} obtained from {@link #startReadWrite(String, long)}.
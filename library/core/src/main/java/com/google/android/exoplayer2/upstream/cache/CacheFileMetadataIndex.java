@@ -19,19 +19,29 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 import com.google.android.exoplayer2.database.DatabaseIOException;
 import com.google.android.exoplayer2.database.DatabaseProvider;
 import com.google.android.exoplayer2.database.VersionTable;
 import com.google.android.exoplayer2.util.Assertions;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
-/** Maintains an index of cache file metadata. */
+/**
+ * Maintains an index of cache file metadata, which is stored either in a database or in a {@link
+ * CacheIndexJournal}.
+ */
 /* package */ final class CacheFileMetadataIndex {
 
+  /* package */ static final String FILE_NAME_JOURNAL = "cache_file_metadata.exj";
+
   private static final String TABLE_PREFIX = DatabaseProvider.TABLE_PREFIX + "CacheFileMetadata";
   private static final int TABLE_VERSION = 1;
 
@@ -58,10 +68,27 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
           + COLUMN_LAST_TOUCH_TIMESTAMP
           + " INTEGER NOT NULL)";
 
-  private final DatabaseProvider databaseProvider;
+  private static final int RECORD_TYPE_SET = 0;
+  private static final int RECORD_TYPE_REMOVE = 1;
+
+  /**
+   * The minimum number of records in the journal before it's compacted. The journal is also not
+   * compacted until it contains at least twice as many records as there are entries in the index.
+   */
+  private static final int MIN_COMPACTION_RECORD_COUNT = 1024;
+
+  @Nullable private final DatabaseProvider databaseProvider;
+  @Nullable private final CacheIndexJournal journal;
+  private final HashMap<String, CacheFileMetadata> journaledMetadata;
 
   private @MonotonicNonNull String tableName;
 
+  /** Returns whether the file is an index file. */
+  public static boolean isIndexFile(String fileName) {
+    // Atomic file backups add additional suffixes to the file name.
+    return fileName.startsWith(FILE_NAME_JOURNAL);
+  }
+
   /**
    * Deletes index data for the specified cache.
    *
@@ -95,6 +122,22 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   /** @param databaseProvider Provides the database in which the index is stored. */
   public CacheFileMetadataIndex(DatabaseProvider databaseProvider) {
     this.databaseProvider = databaseProvider;
+    journal = null;
+    journaledMetadata = new HashMap<>();
+  }
+
+  /**
+   * Creates an instance that stores the index in a journal. Changes are appended to the journal as
+   * they're made, and the journal is compacted once enough changes have accumulated.
+   *
+   * @param journalFile The journal file.
+   * @param databaseProvider Provides a database from which an existing index is migrated into the
+   *     journal when the index is initialized, or {@code null}.
+   */
+  public CacheFileMetadataIndex(File journalFile, @Nullable DatabaseProvider databaseProvider) {
+    this.databaseProvider = databaseProvider;
+    journal = new CacheIndexJournal(journalFile);
+    journaledMetadata = new HashMap<>();
   }
 
   /**
@@ -103,10 +146,15 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    * <p>This method may be slow and shouldn't normally be called on the main thread.
    *
    * @param uid The cache UID.
-   * @throws DatabaseIOException If an error occurs initializing the index.
+   * @throws IOException If an error occurs initializing the index.
    */
   @WorkerThread
-  public void initialize(long uid) throws DatabaseIOException {
+  public void initialize(long uid) throws IOException {
+    if (journal != null) {
+      initializeJournal(journal, uid);
+      return;
+    }
+    DatabaseProvider databaseProvider = Assertions.checkNotNull(this.databaseProvider);
     try {
       String hexUid = Long.toHexString(uid);
       tableName = getTableName(hexUid);
@@ -139,22 +187,14 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    * <p>This method may be slow and shouldn't normally be called on the main thread.
    *
    * @return The file metadata keyed by file name.
-   * @throws DatabaseIOException If an error occurs loading the metadata.
+   * @throws IOException If an error occurs loading the metadata.
    */
   @WorkerThread
-  public Map<String, CacheFileMetadata> getAll() throws DatabaseIOException {
-    try (Cursor cursor = getCursor()) {
-      Map<String, CacheFileMetadata> fileMetadata = new HashMap<>(cursor.getCount());
-      while (cursor.moveToNext()) {
-        String name = cursor.getString(COLUMN_INDEX_NAME);
-        long length = cursor.getLong(COLUMN_INDEX_LENGTH);
-        long lastTouchTimestamp = cursor.getLong(COLUMN_INDEX_LAST_TOUCH_TIMESTAMP);
-        fileMetadata.put(name, new CacheFileMetadata(length, lastTouchTimestamp));
-      }
-      return fileMetadata;
-    } catch (SQLException e) {
-      throw new DatabaseIOException(e);
+  public Map<String, CacheFileMetadata> getAll() throws IOException {
+    if (journal != null) {
+      return new HashMap<>(journaledMetadata);
     }
+    return getAllFromDatabase();
   }
 
   /**
@@ -165,13 +205,20 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    * @param name The name of the file.
    * @param length The file length.
    * @param lastTouchTimestamp The file last touch timestamp.
-   * @throws DatabaseIOException If an error occurs setting the metadata.
+   * @throws IOException If an error occurs setting the metadata.
    */
   @WorkerThread
-  public void set(String name, long length, long lastTouchTimestamp) throws DatabaseIOException {
+  public void set(String name, long length, long lastTouchTimestamp) throws IOException {
+    if (journal != null) {
+      journaledMetadata.put(name, new CacheFileMetadata(length, lastTouchTimestamp));
+      writeSetRecord(journal, name, length, lastTouchTimestamp);
+      commitJournal(journal);
+      return;
+    }
     Assertions.checkNotNull(tableName);
     try {
-      SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
+      SQLiteDatabase writableDatabase =
+          Assertions.checkNotNull(databaseProvider).getWritableDatabase();
       ContentValues values = new ContentValues();
       values.put(COLUMN_NAME, name);
       values.put(COLUMN_LENGTH, length);
@@ -188,13 +235,21 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    * <p>This method may be slow and shouldn't normally be called on the main thread.
    *
    * @param name The name of the file whose metadata is to be removed.
-   * @throws DatabaseIOException If an error occurs removing the metadata.
+   * @throws IOException If an error occurs removing the metadata.
    */
   @WorkerThread
-  public void remove(String name) throws DatabaseIOException {
+  public void remove(String name) throws IOException {
+    if (journal != null) {
+      if (journaledMetadata.remove(name) != null) {
+        writeRemoveRecord(journal, name);
+        commitJournal(journal);
+      }
+      return;
+    }
     Assertions.checkNotNull(tableName);
     try {
-      SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
+      SQLiteDatabase writableDatabase =
+          Assertions.checkNotNull(databaseProvider).getWritableDatabase();
       writableDatabase.delete(tableName, WHERE_NAME_EQUALS, new String[] {name});
     } catch (SQLException e) {
       throw new DatabaseIOException(e);
@@ -207,13 +262,23 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    * <p>This method may be slow and shouldn't normally be called on the main thread.
    *
    * @param names The names of the files whose metadata is to be removed.
-   * @throws DatabaseIOException If an error occurs removing the metadata.
+   * @throws IOException If an error occurs removing the metadata.
    */
   @WorkerThread
-  public void removeAll(Set<String> names) throws DatabaseIOException {
+  public void removeAll(Set<String> names) throws IOException {
+    if (journal != null) {
+      for (String name : names) {
+        if (journaledMetadata.remove(name) != null) {
+          writeRemoveRecord(journal, name);
+        }
+      }
+      commitJournal(journal);
+      return;
+    }
     Assertions.checkNotNull(tableName);
     try {
-      SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
+      SQLiteDatabase writableDatabase =
+          Assertions.checkNotNull(databaseProvider).getWritableDatabase();
       writableDatabase.beginTransactionNonExclusive();
       try {
         for (String name : names) {
@@ -228,9 +293,109 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     }
   }
 
+  private void initializeJournal(CacheIndexJournal journal, long uid) throws IOException {
+    journaledMetadata.clear();
+    if (!journal.exists() && databaseProvider != null) {
+      // Migrate any existing index from the database into the journal.
+      String hexUid = Long.toHexString(uid);
+      int version =
+          VersionTable.getVersion(
+              databaseProvider.getReadableDatabase(),
+              VersionTable.FEATURE_CACHE_FILE_METADATA,
+              hexUid);
+      if (version == TABLE_VERSION) {
+        tableName = getTableName(hexUid);
+        journaledMetadata.putAll(getAllFromDatabase());
+      }
+      compactJournal(journal);
+      if (version != VersionTable.VERSION_UNSET) {
+        delete(databaseProvider, uid);
+      }
+      return;
+    }
+    boolean replayed = journal.replay(this::handleJournalRecord);
+    if (!replayed) {
+      journaledMetadata.clear();
+      journal.delete();
+    }
+  }
+
+  private void handleJournalRecord(DataInputStream record) throws IOException {
+    int type = record.readUnsignedByte();
+    String name = record.readUTF();
+    if (type == RECORD_TYPE_SET) {
+      long length = record.readLong();
+      long lastTouchTimestamp = record.readLong();
+      journaledMetadata.put(name, new CacheFileMetadata(length, lastTouchTimestamp));
+    } else if (type == RECORD_TYPE_REMOVE) {
+      journaledMetadata.remove(name);
+    } else {
+      throw new IOException("Unexpected record type: " + type);
+    }
+  }
+
+  private void commitJournal(CacheIndexJournal journal) throws IOException {
+    if (journal.getRecordCount()
+        > Math.max(MIN_COMPACTION_RECORD_COUNT, 2 * journaledMetadata.size())) {
+      compactJournal(journal);
+      return;
+    }
+    try {
+      // The file metadata can be recovered from the cache files themselves, so there's no need to
+      // sync each change to the storage device.
+      journal.commit(/* sync= */ false);
+    } catch (IOException e) {
+      journal.discardPending();
+      throw e;
+    }
+  }
+
+  private void compactJournal(CacheIndexJournal journal) throws IOException {
+    journal.discardPending();
+    for (Map.Entry<String, CacheFileMetadata> entry : journaledMetadata.entrySet()) {
+      CacheFileMetadata metadata = entry.getValue();
+      writeSetRecord(journal, entry.getKey(), metadata.length, metadata.lastTouchTimestamp);
+    }
+    journal.compact();
+  }
+
+  private static void writeSetRecord(
+      CacheIndexJournal journal, String name, long length, long lastTouchTimestamp)
+      throws IOException {
+    DataOutputStream output = journal.startRecord();
+    output.writeByte(RECORD_TYPE_SET);
+    output.writeUTF(name);
+    output.writeLong(length);
+    output.writeLong(lastTouchTimestamp);
+    journal.endRecord();
+  }
+
+  private static void writeRemoveRecord(CacheIndexJournal journal, String name)
+      throws IOException {
+    DataOutputStream output = journal.startRecord();
+    output.writeByte(RECORD_TYPE_REMOVE);
+    output.writeUTF(name);
+    journal.endRecord();
+  }
+
+  private Map<String, CacheFileMetadata> getAllFromDatabase() throws DatabaseIOException {
+    try (Cursor cursor = getCursor()) {
+      Map<String, CacheFileMetadata> fileMetadata = new HashMap<>(cursor.getCount());
+      while (cursor.moveToNext()) {
+        String name = cursor.getString(COLUMN_INDEX_NAME);
+        long length = cursor.getLong(COLUMN_INDEX_LENGTH);
+        long lastTouchTimestamp = cursor.getLong(COLUMN_INDEX_LAST_TOUCH_TIMESTAMP);
+        fileMetadata.put(name, new CacheFileMetadata(length, lastTouchTimestamp));
+      }
+      return fileMetadata;
+    } catch (SQLException e) {
+      throw new DatabaseIOException(e);
+    }
+  }
+
   private Cursor getCursor() {
     Assertions.checkNotNull(tableName);
-    return databaseProvider
+    return Assertions.checkNotNull(databaseProvider)
         .getReadableDatabase()
         .query(
             tableName,
@@ -0,0 +1,411 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.AtomicFile;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of index records, stored in a single file.
+ *
+ * <p>Records are first written to a pending buffer, and are appended to the file by {@link
+ * #commit(boolean)}. Each record is framed by its length and checksum, so that a record that was
+ * only partially written when the process was killed is detected by {@link #replay(RecordHandler)}
+ * and discarded together with anything that follows it. If appending records fails, the journal is
+ * truncated back to its previous length, or the partially written records are overwritten when
+ * records are next appended.
+ *
+ * <p>As records accumulate the journal can be compacted by writing a minimal set of records that
+ * describes the current state, and replacing the file with them by calling {@link #compact()}. The
+ * replacement uses an {@link AtomicFile}, so an interrupted compaction leaves the previous journal
+ * intact. Alternatively {@link #startCompaction()} writes the records on a background thread, so
+ * that records can be committed while they're written. Records committed in the meantime are
+ * appended to both the previous and the compacted journal, and the compacted journal replaces the
+ * previous one once they've been appended.
+ *
+ * <p>Apart from the background compaction, this class is not thread safe.
+ */
+/* package */ final class CacheIndexJournal {
+
+  /** Handles records read from the journal. */
+  public interface RecordHandler {
+
+    /**
+     * Called for each record in the journal, in the order in which the records were written.
+     *
+     * @param record The record data.
+     * @throws IOException If the record is malformed.
+     */
+    void handleRecord(DataInputStream record) throws IOException;
+  }
+
+  private static final String TAG = "CacheIndexJournal";
+
+  private static final int MAGIC = 0x45584A4C; // EXJL
+  private static final int VERSION = 1;
+  private static final int HEADER_LENGTH = 8;
+  private static final int RECORD_HEADER_LENGTH = 8;
+  private static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+
+  private final File file;
+  private final File compactionFile;
+  private final AtomicFile atomicFile;
+  private final ByteArrayOutputStream recordBuffer;
+  private final DataOutputStream recordOutput;
+  private final ByteArrayOutputStream pendingRecords;
+  private final DataOutputStream pendingOutput;
+  private final CRC32 crc;
+  private final ByteArrayOutputStream compactionTailRecords;
+
+  private int recordCount;
+  private int pendingRecordCount;
+  // The length of the valid part of the file, or C.LENGTH_UNSET if it's unknown.
+  private long validLength;
+  @Nullable private Thread compactionThread;
+  private boolean compactionCanceled;
+  private int compactionTailRecordCount;
+
+  /** @param file The journal file. */
+  public CacheIndexJournal(File file) {
+    this.file = file;
+    compactionFile = new File(file.getPath() + ".compact");
+    atomicFile = new AtomicFile(file);
+    recordBuffer = new ByteArrayOutputStream();
+    recordOutput = new DataOutputStream(recordBuffer);
+    pendingRecords = new ByteArrayOutputStream();
+    pendingOutput = new DataOutputStream(pendingRecords);
+    crc = new CRC32();
+    compactionTailRecords = new ByteArrayOutputStream();
+    validLength = C.LENGTH_UNSET;
+  }
+
+  /** Returns whether the journal exists. */
+  public boolean exists() {
+    return atomicFile.exists();
+  }
+
+  /**
+   * Deletes the journal, discarding any pending records and canceling any compaction in progress.
+   */
+  public synchronized void delete() {
+    cancelCompaction();
+    atomicFile.delete();
+    discardPending();
+    recordCount = 0;
+    validLength = 0;
+  }
+
+  /** Returns the number of records in the journal file. */
+  public synchronized int getRecordCount() {
+    return recordCount;
+  }
+
+  /**
+   * Reads all records from the journal, passing each of them to {@code handler}. A partially
+   * written record at the end of the journal is removed from the file.
+   *
+   * <p>This method should be called before any records are appended to an existing journal.
+   *
+   * @param handler The {@link RecordHandler} to which records are passed.
+   * @return Whether the journal was read successfully. If false is returned the journal is
+   *     corrupt, and should be deleted. Records may have been passed to {@code handler} before the
+   *     corruption was detected.
+   * @throws IOException If an error occurs reading the journal.
+   */
+  @WorkerThread
+  public synchronized boolean replay(RecordHandler handler) throws IOException {
+    cancelCompaction();
+    recordCount = 0;
+    this.validLength = C.LENGTH_UNSET;
+    if (!atomicFile.exists()) {
+      this.validLength = 0;
+      return true;
+    }
+    long validLength = HEADER_LENGTH;
+    byte[] recordData = new byte[256];
+    DataInputStream input = new DataInputStream(new BufferedInputStream(atomicFile.openRead()));
+    try {
+      try {
+        if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+          return false;
+        }
+      } catch (EOFException e) {
+        return false;
+      }
+      while (true) {
+        int length;
+        int checksum;
+        try {
+          length = input.readInt();
+          checksum = input.readInt();
+          if (length < 0 || length > MAX_RECORD_LENGTH) {
+            // The record header was only partially written.
+            break;
+          }
+          if (recordData.length < length) {
+            recordData = new byte[Math.max(length, recordData.length * 2)];
+          }
+          input.readFully(recordData, 0, length);
+        } catch (EOFException e) {
+          // The end of the journal, or a partially written record.
+          break;
+        }
+        crc.reset();
+        crc.update(recordData, 0, length);
+        if ((int) crc.getValue() != checksum) {
+          // The record was only partially written.
+          break;
+        }
+        try {
+          handler.handleRecord(
+              new DataInputStream(new ByteArrayInputStream(recordData, 0, length)));
+        } catch (IOException e) {
+          return false;
+        }
+        recordCount++;
+        validLength += RECORD_HEADER_LENGTH + length;
+      }
+    } finally {
+      Util.closeQuietly(input);
+    }
+    if (file.length() > validLength) {
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+        randomAccessFile.setLength(validLength);
+      }
+    }
+    this.validLength = validLength;
+    return true;
+  }
+
+  /**
+   * Starts writing a pending record. The returned output must not be used after {@link
+   * #endRecord()} is called.
+   *
+   * @return The output to which the record data should be written.
+   */
+  public DataOutputStream startRecord() {
+    recordBuffer.reset();
+    return recordOutput;
+  }
+
+  /**
+   * Finishes writing a pending record started by {@link #startRecord()}.
+   *
+   * @throws IOException If an error occurs writing the record.
+   */
+  public void endRecord() throws IOException {
+    byte[] recordData = recordBuffer.toByteArray();
+    crc.reset();
+    crc.update(recordData, 0, recordData.length);
+    pendingOutput.writeInt(recordData.length);
+    pendingOutput.writeInt((int) crc.getValue());
+    pendingOutput.write(recordData);
+    pendingRecordCount++;
+  }
+
+  /** Discards all pending records. */
+  public void discardPending() {
+    pendingRecords.reset();
+    pendingRecordCount = 0;
+  }
+
+  /**
+   * Appends all pending records to the journal, creating it if it doesn't exist.
+   *
+   * @param sync Whether to sync the journal to the underlying storage device before returning.
+   * @throws IOException If an error occurs writing the journal.
+   */
+  @WorkerThread
+  public synchronized void commit(boolean sync) throws IOException {
+    if (pendingRecordCount == 0) {
+      return;
+    }
+    long startLength = validLength != C.LENGTH_UNSET ? validLength : file.length();
+    boolean writeHeader = !file.exists() || startLength < HEADER_LENGTH;
+    if (writeHeader) {
+      startLength = 0;
+    }
+    try (FileOutputStream outputStream = new FileOutputStream(file, /* append= */ !writeHeader)) {
+      FileChannel channel = outputStream.getChannel();
+      try {
+        if (writeHeader) {
+          writeHeader(outputStream);
+        } else {
+          // Remove anything left after the valid records by a previous commit that failed.
+          channel.truncate(startLength);
+        }
+        pendingRecords.writeTo(outputStream);
+        if (sync) {
+          outputStream.getFD().sync();
+        }
+      } catch (IOException e) {
+        // Remove the partially written records, so that records appended by later commits can be
+        // replayed. If this fails they're removed by the next commit.
+        try {
+          channel.truncate(startLength);
+        } catch (IOException truncateException) {
+          // Do nothing.
+        }
+        throw e;
+      }
+    }
+    validLength = (writeHeader ? HEADER_LENGTH : startLength) + pendingRecords.size();
+    recordCount += pendingRecordCount;
+    if (compactionThread != null && !compactionCanceled) {
+      // Keep the records, so that they're appended to the compacted journal too.
+      pendingRecords.writeTo(compactionTailRecords);
+      compactionTailRecordCount += pendingRecordCount;
+    }
+    discardPending();
+  }
+
+  /**
+   * Replaces the journal with the pending records. Records previously committed to the journal are
+   * discarded. Any compaction in progress is canceled.
+   *
+   * @throws IOException If an error occurs writing the journal.
+   */
+  @WorkerThread
+  public synchronized void compact() throws IOException {
+    cancelCompaction();
+    @Nullable OutputStream outputStream = null;
+    try {
+      outputStream = atomicFile.startWrite();
+      writeHeader(outputStream);
+      pendingRecords.writeTo(outputStream);
+      atomicFile.endWrite(outputStream);
+      outputStream = null;
+    } finally {
+      Util.closeQuietly(outputStream);
+    }
+    recordCount = pendingRecordCount;
+    validLength = HEADER_LENGTH + pendingRecords.size();
+    discardPending();
+  }
+
+  /** Returns whether a compaction started by {@link #startCompaction()} is in progress. */
+  public synchronized boolean isCompacting() {
+    return compactionThread != null;
+  }
+
+  /**
+   * Starts replacing the journal with the pending records on a background thread. Records committed
+   * until the compaction completes are appended to the compacted journal before it replaces the
+   * journal. If the compaction fails the journal is left as it is.
+   *
+   * <p>Must not be called while a compaction is in progress.
+   */
+  public synchronized void startCompaction() {
+    Assertions.checkState(compactionThread == null);
+    byte[] records = pendingRecords.toByteArray();
+    int compactedRecordCount = pendingRecordCount;
+    discardPending();
+    compactionCanceled = false;
+    compactionThread =
+        new Thread("CacheIndexJournal.compact()") {
+          @Override
+          public void run() {
+            writeCompactedJournal(records, compactedRecordCount);
+          }
+        };
+    compactionThread.start();
+  }
+
+  /**
+   * Cancels the compaction in progress, if any. The journal isn't replaced by the compacted journal
+   * after this method returns, and is left as it is.
+   */
+  public synchronized void cancelCompaction() {
+    if (compactionThread != null) {
+      compactionCanceled = true;
+      compactionTailRecords.reset();
+      compactionTailRecordCount = 0;
+    }
+  }
+
+  /** Blocks until the compaction in progress, if any, has completed or been canceled. */
+  /* package */ void blockUntilCompacted() throws InterruptedException {
+    @Nullable Thread compactionThread;
+    synchronized (this) {
+      compactionThread = this.compactionThread;
+    }
+    if (compactionThread != null) {
+      compactionThread.join();
+    }
+  }
+
+  @WorkerThread
+  private void writeCompactedJournal(byte[] records, int compactedRecordCount) {
+    // Write the bulk of the compacted journal without holding the lock, so that records can be
+    // committed in the meantime.
+    boolean written = false;
+    try (FileOutputStream outputStream = new FileOutputStream(compactionFile)) {
+      writeHeader(outputStream);
+      outputStream.write(records);
+      outputStream.getFD().sync();
+      written = true;
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to write compacted journal", e);
+    }
+    synchronized (this) {
+      try {
+        if (written && !compactionCanceled) {
+          try (FileOutputStream outputStream =
+              new FileOutputStream(compactionFile, /* append= */ true)) {
+            compactionTailRecords.writeTo(outputStream);
+            outputStream.getFD().sync();
+          }
+          if (!compactionFile.renameTo(file)) {
+            throw new IOException("Failed to rename " + compactionFile + " to " + file);
+          }
+          recordCount = compactedRecordCount + compactionTailRecordCount;
+          validLength = HEADER_LENGTH + records.length + compactionTailRecords.size();
+        }
+      } catch (IOException e) {
+        Log.w(TAG, "Failed to replace journal with compacted journal", e);
+      } finally {
+        compactionFile.delete();
+        compactionTailRecords.reset();
+        compactionTailRecordCount = 0;
+        compactionThread = null;
+      }
+    }
+  }
+
+  private static void writeHeader(OutputStream outputStream) throws IOException {
+    DataOutputStream output = new DataOutputStream(outputStream);
+    output.writeInt(MAGIC);
+    output.writeInt(VERSION);
+  }
+}
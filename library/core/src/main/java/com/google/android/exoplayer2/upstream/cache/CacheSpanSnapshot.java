@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Reads and writes snapshots of the spans held by a {@link SimpleCache}.
+ *
+ * <p>A snapshot is written when the cache is released, and allows its spans to be restored when the
+ * cache is next initialized without listing the cache directory and parsing the name of every cache
+ * file. A snapshot is deleted as soon as it's read, so it's only ever trusted if the cache was
+ * released cleanly after the snapshot was written.
+ */
+/* package */ final class CacheSpanSnapshot {
+
+  /* package */ static final String FILE_NAME = "cached_spans.exs";
+
+  private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+  private static final int MAGIC = 0x45585353; // EXSS
+  private static final int VERSION = 1;
+  private static final int CHECKSUM_LENGTH = 4;
+  private static final int CHECKSUM_CHUNK_LENGTH = 8192;
+
+  private CacheSpanSnapshot() {}
+
+  /** Returns whether the file is a snapshot file. */
+  public static boolean isSnapshotFile(String fileName) {
+    return fileName.startsWith(FILE_NAME);
+  }
+
+  /**
+   * Writes a snapshot of the spans of the given content, replacing any existing snapshot.
+   *
+   * <p>This method may be slow and shouldn't normally be called on the main thread.
+   *
+   * @param cacheDir The cache directory.
+   * @param uid The cache UID.
+   * @param contents The cached content whose spans are written.
+   * @throws IOException If an error occurs writing the snapshot.
+   */
+  @WorkerThread
+  public static void write(File cacheDir, long uid, Collection<CachedContent> contents)
+      throws IOException {
+    String cacheDirPath = cacheDir.getPath();
+    File file = new File(cacheDir, FILE_NAME);
+    File temporaryFile = new File(cacheDir, FILE_NAME + TEMPORARY_FILE_SUFFIX);
+    FileOutputStream fileOutputStream = new FileOutputStream(temporaryFile);
+    boolean success = false;
+    try {
+      BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(fileOutputStream);
+      CheckedOutputStream checkedOutputStream =
+          new CheckedOutputStream(bufferedOutputStream, new CRC32());
+      DataOutputStream output = new DataOutputStream(checkedOutputStream);
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeLong(uid);
+      int spanCount = 0;
+      for (CachedContent cachedContent : contents) {
+        spanCount += cachedContent.getSpans().size();
+      }
+      output.writeInt(spanCount);
+      for (CachedContent cachedContent : contents) {
+        for (SimpleCacheSpan span : cachedContent.getSpans()) {
+          String path = Assertions.checkNotNull(span.file).getPath();
+          if (!path.startsWith(cacheDirPath) || path.length() <= cacheDirPath.length()) {
+            throw new IOException("Unexpected cache file location: " + path);
+          }
+          byte[] relativePath = Util.getUtf8Bytes(path.substring(cacheDirPath.length() + 1));
+          output.writeInt(cachedContent.id);
+          output.writeLong(span.position);
+          output.writeLong(span.length);
+          output.writeLong(span.lastTouchTimestamp);
+          output.writeShort(relativePath.length);
+          output.write(relativePath);
+        }
+      }
+      output.flush();
+      new DataOutputStream(bufferedOutputStream)
+          .writeInt((int) checkedOutputStream.getChecksum().getValue());
+      bufferedOutputStream.flush();
+      fileOutputStream.getFD().sync();
+      success = true;
+    } finally {
+      Util.closeQuietly(fileOutputStream);
+      if (!success) {
+        temporaryFile.delete();
+      }
+    }
+    if (!temporaryFile.renameTo(file)) {
+      temporaryFile.delete();
+      throw new IOException("Failed to rename snapshot: " + temporaryFile);
+    }
+  }
+
+  /**
+   * Reads the spans from the snapshot in the given cache directory, if it exists and is valid, and
+   * then deletes the snapshot.
+   *
+   * <p>This method may be slow and shouldn't normally be called on the main thread.
+   *
+   * @param cacheDir The cache directory.
+   * @param uid The cache UID.
+   * @param index The cached content index, which must have been initialized.
+   * @return The spans, or {@code null} if a valid snapshot doesn't exist.
+   */
+  @WorkerThread
+  @Nullable
+  public static ArrayList<SimpleCacheSpan> readAndDelete(
+      File cacheDir, long uid, CachedContentIndex index) {
+    File file = new File(cacheDir, FILE_NAME);
+    new File(cacheDir, FILE_NAME + TEMPORARY_FILE_SUFFIX).delete();
+    if (!file.exists()) {
+      return null;
+    }
+    try {
+      return read(file, cacheDir, uid, index);
+    } catch (IOException | BufferUnderflowException e) {
+      return null;
+    } finally {
+      // Delete the snapshot so that it isn't trusted again if the cache isn't released cleanly.
+      file.delete();
+    }
+  }
+
+  @Nullable
+  private static ArrayList<SimpleCacheSpan> read(
+      File file, File cacheDir, long uid, CachedContentIndex index) throws IOException {
+    MappedByteBuffer buffer;
+    try (FileInputStream inputStream = new FileInputStream(file);
+        FileChannel channel = inputStream.getChannel()) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, /* position= */ 0, channel.size());
+    }
+    int dataLength = buffer.limit() - CHECKSUM_LENGTH;
+    if (dataLength < 0 || !isChecksumValid(buffer, dataLength)) {
+      return null;
+    }
+    if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != uid) {
+      return null;
+    }
+    int spanCount = buffer.getInt();
+    if (spanCount < 0) {
+      return null;
+    }
+    ArrayList<SimpleCacheSpan> spans = new ArrayList<>(spanCount);
+    byte[] relativePath = new byte[256];
+    for (int i = 0; i < spanCount; i++) {
+      int id = buffer.getInt();
+      long position = buffer.getLong();
+      long length = buffer.getLong();
+      long lastTouchTimestamp = buffer.getLong();
+      int relativePathLength = buffer.getShort() & 0xFFFF;
+      if (relativePath.length < relativePathLength) {
+        relativePath = new byte[relativePathLength];
+      }
+      buffer.get(relativePath, 0, relativePathLength);
+      @Nullable String key = index.getKeyForId(id);
+      if (key == null) {
+        // The snapshot doesn't match the index.
+        return null;
+      }
+      File spanFile = new File(cacheDir, Util.fromUtf8Bytes(relativePath, 0, relativePathLength));
+      spans.add(
+          SimpleCacheSpan.createCacheEntry(key, position, length, lastTouchTimestamp, spanFile));
+    }
+    return buffer.position() == dataLength ? spans : null;
+  }
+
+  private static boolean isChecksumValid(ByteBuffer buffer, int dataLength) {
+    CRC32 crc = new CRC32();
+    byte[] chunk = new byte[CHECKSUM_CHUNK_LENGTH];
+    ByteBuffer data = buffer.duplicate();
+    data.limit(dataLength);
+    while (data.hasRemaining()) {
+      int chunkLength = Math.min(chunk.length, data.remaining());
+      data.get(chunk, 0, chunkLength);
+      crc.update(chunk, 0, chunkLength);
+    }
+    return (int) crc.getValue() == buffer.getInt(dataLength);
+  }
+}
@@ -16,9 +16,11 @@
 package com.google.android.exoplayer2.upstream.cache;
 
 import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Log;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.TreeSet;
 
 /** Defines the cached content for a single stream. */
@@ -32,10 +34,10 @@ import java.util.TreeSet;
   public final String key;
   /** The cached spans of this content. */
   private final TreeSet<SimpleCacheSpan> cachedSpans;
+  /** The ranges of the content that are locked for writing. */
+  private final ArrayList<Range> lockedRanges;
   /** Metadata values. */
   private DefaultContentMetadata metadata;
-  /** Whether the content is locked. */
-  private boolean locked;
 
   /**
    * Creates a CachedContent.
@@ -52,6 +54,7 @@ import java.util.TreeSet;
     this.key = key;
     this.metadata = metadata;
     this.cachedSpans = new TreeSet<>();
+    this.lockedRanges = new ArrayList<>();
   }
 
   /** Returns the metadata. */
@@ -70,14 +73,61 @@ import java.util.TreeSet;
     return !metadata.equals(oldMetadata);
   }
 
-  /** Returns whether the content is locked. */
-  public boolean isLocked() {
-    return locked;
+  /** Returns whether no part of the content is locked. */
+  public boolean isFullyUnlocked() {
+    return lockedRanges.isEmpty();
   }
 
-  /** Sets the locked state of the content. */
-  public void setLocked(boolean locked) {
-    this.locked = locked;
+  /**
+   * Returns whether a range of the content is within a single locked range.
+   *
+   * @param position The starting position of the range.
+   * @param length The length of the range, or {@link C#LENGTH_UNSET} if it extends to the end of
+   *     the content.
+   * @return Whether the range is locked.
+   */
+  public boolean isFullyLocked(long position, long length) {
+    for (int i = 0; i < lockedRanges.size(); i++) {
+      if (lockedRanges.get(i).contains(position, length)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Attempts to lock a range of the content for writing.
+   *
+   * @param position The starting position of the range.
+   * @param length The length of the range, or {@link C#LENGTH_UNSET} if it extends to the end of
+   *     the content.
+   * @return Whether the range was locked, which is the case if it doesn't intersect a range that's
+   *     already locked.
+   */
+  public boolean lockRange(long position, long length) {
+    for (int i = 0; i < lockedRanges.size(); i++) {
+      if (lockedRanges.get(i).intersects(position, length)) {
+        return false;
+      }
+    }
+    lockedRanges.add(new Range(position, length));
+    return true;
+  }
+
+  /**
+   * Unlocks the locked range starting at {@code position}.
+   *
+   * @param position The starting position of the locked range.
+   * @throws IllegalStateException If no locked range starts at {@code position}.
+   */
+  public void unlockRange(long position) {
+    for (int i = 0; i < lockedRanges.size(); i++) {
+      if (lockedRanges.get(i).position == position) {
+        lockedRanges.remove(i);
+        return;
+      }
+    }
+    throw new IllegalStateException();
   }
 
   /** Adds the given {@link SimpleCacheSpan} which contains a part of the content. */
@@ -95,14 +145,31 @@ import java.util.TreeSet;
    * which defines the maximum extents of the hole in the cache.
    */
   public SimpleCacheSpan getSpan(long position) {
+    return getSpan(position, C.LENGTH_UNSET);
+  }
+
+  /**
+   * Returns the span containing the position. If there isn't one, it returns a hole span which
+   * defines the extents of the hole in the cache, up to {@code length} bytes.
+   *
+   * @param position The position of the span.
+   * @param length The maximum length of a returned hole span, or {@link C#LENGTH_UNSET} if the hole
+   *     span should extend to the next cached span.
+   */
+  public SimpleCacheSpan getSpan(long position, long length) {
     SimpleCacheSpan lookupSpan = SimpleCacheSpan.createLookup(key, position);
     SimpleCacheSpan floorSpan = cachedSpans.floor(lookupSpan);
     if (floorSpan != null && floorSpan.position + floorSpan.length > position) {
       return floorSpan;
     }
     SimpleCacheSpan ceilSpan = cachedSpans.ceiling(lookupSpan);
-    return ceilSpan == null ? SimpleCacheSpan.createOpenHole(key, position)
-        : SimpleCacheSpan.createClosedHole(key, position, ceilSpan.position - position);
+    if (ceilSpan != null) {
+      long holeLength = ceilSpan.position - position;
+      length = length == C.LENGTH_UNSET ? holeLength : Math.min(holeLength, length);
+    }
+    return length == C.LENGTH_UNSET
+        ? SimpleCacheSpan.createOpenHole(key, position)
+        : SimpleCacheSpan.createClosedHole(key, position, length);
   }
 
   /**
@@ -205,4 +272,37 @@ import java.util.TreeSet;
         && cachedSpans.equals(that.cachedSpans)
         && metadata.equals(that.metadata);
   }
+
+  private static final class Range {
+
+    /** The starting position of the range. */
+    public final long position;
+    /**
+     * The length of the range, or {@link C#LENGTH_UNSET} if it extends to the end of the content.
+     */
+    public final long length;
+
+    public Range(long position, long length) {
+      this.position = position;
+      this.length = length;
+    }
+
+    /** Returns whether this range contains the range with the given position and length. */
+    public boolean contains(long otherPosition, long otherLength) {
+      if (length == C.LENGTH_UNSET) {
+        return otherPosition >= position;
+      } else if (otherLength == C.LENGTH_UNSET) {
+        return false;
+      }
+      return position <= otherPosition && otherPosition + otherLength <= position + length;
+    }
+
+    /** Returns whether this range intersects the range with the given position and length. */
+    public boolean intersects(long otherPosition, long otherLength) {
+      if (position <= otherPosition) {
+        return length == C.LENGTH_UNSET || otherPosition < position + length;
+      }
+      return otherLength == C.LENGTH_UNSET || position < otherPosition + otherLength;
+    }
+  }
 }
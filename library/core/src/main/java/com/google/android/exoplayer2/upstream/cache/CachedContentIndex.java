@@ -63,6 +63,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
 /* package */ class CachedContentIndex {
 
   /* package */ static final String FILE_NAME_ATOMIC = "cached_content_index.exi";
+  /* package */ static final String FILE_NAME_JOURNAL = "cached_content_index.exj";
 
   private static final int INCREMENTAL_METADATA_READ_LENGTH = 10 * 1024 * 1024;
 
@@ -99,7 +100,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
   /** Returns whether the file is an index file. */
   public static boolean isIndexFile(String fileName) {
     // Atomic file backups add additional suffixes to the file name.
-    return fileName.startsWith(FILE_NAME_ATOMIC);
+    return fileName.startsWith(FILE_NAME_ATOMIC) || fileName.startsWith(FILE_NAME_JOURNAL);
   }
 
   /**
@@ -152,6 +153,44 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       @Nullable byte[] legacyStorageSecretKey,
       boolean legacyStorageEncrypt,
       boolean preferLegacyStorage) {
+    this(
+        databaseProvider,
+        legacyStorageDir,
+        legacyStorageSecretKey,
+        legacyStorageEncrypt,
+        preferLegacyStorage,
+        /* useJournalStorage= */ false);
+  }
+
+  /**
+   * Creates an instance supporting database, legacy and journal storage.
+   *
+   * <p>Journal storage appends only the changes made since the index was last stored to a journal
+   * file in {@code legacyStorageDir}, and periodically compacts the journal. If journal storage is
+   * used, any existing database or legacy index is migrated into the journal when the index is
+   * initialized, with the database index taking precedence if {@code databaseProvider} is non-null.
+   *
+   * @param databaseProvider Provides the database in which the index is stored, or from which it's
+   *     migrated if {@code useJournalStorage} is true. May be {@code null}.
+   * @param legacyStorageDir The directory in which any legacy storage and journal storage is
+   *     stored, or {@code null} to use only database storage.
+   * @param legacyStorageSecretKey A 16 byte AES key for reading, and optionally writing, legacy
+   *     storage.
+   * @param legacyStorageEncrypt Whether to encrypt when writing to legacy storage. Must be false if
+   *     {@code legacyStorageSecretKey} is null, or if {@code useJournalStorage} is true.
+   * @param preferLegacyStorage Whether to use prefer legacy storage if both storage types are
+   *     enabled. This option is only useful for downgrading from database storage back to legacy
+   *     storage. Must be false if {@code useJournalStorage} is true.
+   * @param useJournalStorage Whether to use journal storage. If true, {@code legacyStorageDir} must
+   *     be non-null.
+   */
+  public CachedContentIndex(
+      @Nullable DatabaseProvider databaseProvider,
+      @Nullable File legacyStorageDir,
+      @Nullable byte[] legacyStorageSecretKey,
+      boolean legacyStorageEncrypt,
+      boolean preferLegacyStorage,
+      boolean useJournalStorage) {
     Assertions.checkState(databaseProvider != null || legacyStorageDir != null);
     keyToContent = new HashMap<>();
     idToKey = new SparseArray<>();
@@ -166,7 +205,14 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
                 legacyStorageSecretKey,
                 legacyStorageEncrypt)
             : null;
-    if (databaseStorage == null || (legacyStorage != null && preferLegacyStorage)) {
+    if (useJournalStorage) {
+      Assertions.checkArgument(!legacyStorageEncrypt && !preferLegacyStorage);
+      storage =
+          new JournalStorage(
+              new CacheIndexJournal(
+                  new File(Assertions.checkNotNull(legacyStorageDir), FILE_NAME_JOURNAL)));
+      previousStorage = databaseStorage != null ? databaseStorage : legacyStorage;
+    } else if (databaseStorage == null || (legacyStorage != null && preferLegacyStorage)) {
       storage = legacyStorage;
       previousStorage = databaseStorage;
     } else {
@@ -222,6 +268,11 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     newIds.clear();
   }
 
+  /** Releases the index. Must be called after the index has been stored for the last time. */
+  public void release() {
+    storage.release();
+  }
+
   /**
    * Adds the given key to the index if it isn't there already.
    *
@@ -264,7 +315,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
   /** Removes {@link CachedContent} with the given key from index if it's empty and not locked. */
   public void maybeRemove(String key) {
     @Nullable CachedContent cachedContent = keyToContent.get(key);
-    if (cachedContent != null && cachedContent.isEmpty() && !cachedContent.isLocked()) {
+    if (cachedContent != null && cachedContent.isEmpty() && cachedContent.isFullyUnlocked()) {
       keyToContent.remove(key);
       int id = cachedContent.id;
       boolean neverStored = newIds.get(id);
@@ -482,6 +533,9 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
      *     index was last stored.
      */
     void onRemove(CachedContent cachedContent, boolean neverStored);
+
+    /** Releases the storage. Any work it's doing in the background is stopped. */
+    void release();
   }
 
   /** {@link Storage} implementation that uses an {@link AtomicFile}. */
@@ -571,6 +625,11 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       changed = true;
     }
 
+    @Override
+    public void release() {
+      // Do nothing.
+    }
+
     private boolean readFile(
         HashMap<String, CachedContent> content, SparseArray<@NullableType String> idToKey) {
       if (!atomicFile.exists()) {
@@ -724,6 +783,147 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     }
   }
 
+  /** {@link Storage} implementation that appends changes to a {@link CacheIndexJournal}. */
+  private static final class JournalStorage implements Storage {
+
+    private static final int RECORD_TYPE_UPDATE = 0;
+    private static final int RECORD_TYPE_REMOVE = 1;
+
+    /**
+     * The minimum number of records in the journal before it's compacted. The journal is also not
+     * compacted until it contains at least twice as many records as there are entries in the index,
+     * so that the cost of compaction is amortized over the stores that precede it. Compaction runs
+     * in the background, so that it doesn't block operations on the cache.
+     */
+    private static final int MIN_COMPACTION_RECORD_COUNT = 1024;
+
+    private final CacheIndexJournal journal;
+    private final SparseArray<@NullableType CachedContent> pendingUpdates;
+
+    public JournalStorage(CacheIndexJournal journal) {
+      this.journal = journal;
+      pendingUpdates = new SparseArray<>();
+    }
+
+    @Override
+    public void initialize(long uid) {
+      // Do nothing. Journal storage uses a separate file for each cache.
+    }
+
+    @Override
+    public boolean exists() {
+      return journal.exists();
+    }
+
+    @Override
+    public void delete() {
+      journal.delete();
+      pendingUpdates.clear();
+    }
+
+    @Override
+    public void load(
+        HashMap<String, CachedContent> content, SparseArray<@NullableType String> idToKey)
+        throws IOException {
+      Assertions.checkState(pendingUpdates.size() == 0);
+      SparseArray<CachedContent> idToContent = new SparseArray<>();
+      boolean replayed =
+          journal.replay(
+              record -> {
+                int type = record.readUnsignedByte();
+                int id = record.readInt();
+                if (type == RECORD_TYPE_UPDATE) {
+                  String key = record.readUTF();
+                  DefaultContentMetadata metadata = readContentMetadata(record);
+                  idToContent.put(id, new CachedContent(id, key, metadata));
+                } else if (type == RECORD_TYPE_REMOVE) {
+                  idToContent.remove(id);
+                } else {
+                  throw new IOException("Unexpected record type: " + type);
+                }
+              });
+      if (!replayed) {
+        journal.delete();
+        return;
+      }
+      for (int i = 0; i < idToContent.size(); i++) {
+        CachedContent cachedContent = idToContent.valueAt(i);
+        content.put(cachedContent.key, cachedContent);
+        idToKey.put(cachedContent.id, cachedContent.key);
+      }
+    }
+
+    @Override
+    public void storeFully(HashMap<String, CachedContent> content) throws IOException {
+      journal.discardPending();
+      for (CachedContent cachedContent : content.values()) {
+        writeUpdateRecord(cachedContent);
+      }
+      journal.compact();
+      pendingUpdates.clear();
+    }
+
+    @Override
+    public void storeIncremental(HashMap<String, CachedContent> content) throws IOException {
+      if (pendingUpdates.size() == 0) {
+        return;
+      }
+      for (int i = 0; i < pendingUpdates.size(); i++) {
+        @Nullable CachedContent cachedContent = pendingUpdates.valueAt(i);
+        if (cachedContent == null) {
+          DataOutputStream output = journal.startRecord();
+          output.writeByte(RECORD_TYPE_REMOVE);
+          output.writeInt(pendingUpdates.keyAt(i));
+          journal.endRecord();
+        } else {
+          writeUpdateRecord(cachedContent);
+        }
+      }
+      try {
+        journal.commit(/* sync= */ true);
+      } catch (IOException e) {
+        journal.discardPending();
+        throw e;
+      }
+      pendingUpdates.clear();
+      if (!journal.isCompacting()
+          && journal.getRecordCount() > Math.max(MIN_COMPACTION_RECORD_COUNT, 2 * content.size())) {
+        for (CachedContent cachedContent : content.values()) {
+          writeUpdateRecord(cachedContent);
+        }
+        journal.startCompaction();
+      }
+    }
+
+    @Override
+    public void onUpdate(CachedContent cachedContent) {
+      pendingUpdates.put(cachedContent.id, cachedContent);
+    }
+
+    @Override
+    public void onRemove(CachedContent cachedContent, boolean neverStored) {
+      if (neverStored) {
+        pendingUpdates.delete(cachedContent.id);
+      } else {
+        pendingUpdates.put(cachedContent.id, null);
+      }
+    }
+
+    @Override
+    public void release() {
+      journal.cancelCompaction();
+    }
+
+    private void writeUpdateRecord(CachedContent cachedContent) throws IOException {
+      DataOutputStream output = journal.startRecord();
+      output.writeByte(RECORD_TYPE_UPDATE);
+      output.writeInt(cachedContent.id);
+      output.writeUTF(cachedContent.key);
+      writeContentMetadata(cachedContent.getMetadata(), output);
+      journal.endRecord();
+    }
+  }
+
   /** {@link Storage} implementation that uses an SQL database. */
   private static final class DatabaseStorage implements Storage {
 
@@ -891,6 +1091,11 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       }
     }
 
+    @Override
+    public void release() {
+      // Do nothing.
+    }
+
     private Cursor getCursor() {
       return databaseProvider
           .getReadableDatabase()
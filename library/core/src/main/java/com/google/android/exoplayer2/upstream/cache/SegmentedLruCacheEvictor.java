@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.cache.Cache.CacheException;
+import com.google.android.exoplayer2.util.Assertions;
+
+/**
+ * Evicts cache files using a segmented LRU policy.
+ *
+ * <p>Newly cached files enter a probationary segment, and are promoted to a protected segment when
+ * they're read again. Files are evicted from the probationary segment first, so content that's only
+ * read once, such as a sequential scan through a long piece of media, doesn't displace content
+ * that's read repeatedly. When the protected segment exceeds its share of the cache, its least
+ * recently used files are demoted back to the probationary segment.
+ */
+public final class SegmentedLruCacheEvictor implements CacheEvictor {
+
+  /** The default fraction of the cache reserved for the protected segment. */
+  public static final float DEFAULT_PROTECTED_FRACTION = 0.8f;
+
+  private static final int SEGMENT_PROBATIONARY = 0;
+  private static final int SEGMENT_PROTECTED = 1;
+
+  private final long maxBytes;
+  private final long maxProtectedBytes;
+  private final SegmentedSpanQueue queue;
+
+  /**
+   * Constructs an instance that reserves {@link #DEFAULT_PROTECTED_FRACTION} of the cache for the
+   * protected segment.
+   *
+   * @param maxBytes The maximum size of the cache in bytes.
+   */
+  public SegmentedLruCacheEvictor(long maxBytes) {
+    this(maxBytes, DEFAULT_PROTECTED_FRACTION);
+  }
+
+  /**
+   * @param maxBytes The maximum size of the cache in bytes.
+   * @param protectedFraction The fraction of {@code maxBytes} reserved for the protected segment.
+   *     Must be in the range [0, 1].
+   */
+  public SegmentedLruCacheEvictor(long maxBytes, float protectedFraction) {
+    Assertions.checkArgument(protectedFraction >= 0 && protectedFraction <= 1);
+    this.maxBytes = maxBytes;
+    maxProtectedBytes = (long) (maxBytes * (double) protectedFraction);
+    queue = new SegmentedSpanQueue(/* segmentCount= */ 2);
+  }
+
+  @Override
+  public boolean requiresCacheSpanTouches() {
+    return true;
+  }
+
+  @Override
+  public void onCacheInitialized() {
+    // Do nothing.
+  }
+
+  @Override
+  public void onStartFile(Cache cache, String key, long position, long length) {
+    if (length != C.LENGTH_UNSET) {
+      evictCache(cache, length);
+    }
+  }
+
+  @Override
+  public void onSpanAdded(Cache cache, CacheSpan span) {
+    queue.add(span, SEGMENT_PROBATIONARY);
+    evictCache(cache, 0);
+  }
+
+  @Override
+  public void onSpanRemoved(Cache cache, CacheSpan span) {
+    queue.remove(span);
+  }
+
+  @Override
+  public void onSpanTouched(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+    if (queue.remove(oldSpan) == C.INDEX_UNSET) {
+      onSpanAdded(cache, newSpan);
+      return;
+    }
+    queue.add(newSpan, SEGMENT_PROTECTED);
+    while (queue.getBytes(SEGMENT_PROTECTED) > maxProtectedBytes) {
+      queue.move(
+          Assertions.checkNotNull(queue.getLeastRecentlyUsed(SEGMENT_PROTECTED)),
+          SEGMENT_PROBATIONARY);
+    }
+  }
+
+  private void evictCache(Cache cache, long requiredSpace) {
+    while (queue.getTotalBytes() + requiredSpace > maxBytes) {
+      @Nullable CacheSpan span = queue.getLeastRecentlyUsed(SEGMENT_PROBATIONARY);
+      if (span == null) {
+        span = queue.getLeastRecentlyUsed(SEGMENT_PROTECTED);
+      }
+      if (span == null) {
+        return;
+      }
+      try {
+        cache.removeSpan(span);
+      } catch (CacheException e) {
+        // do nothing.
+      }
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import java.util.ArrayList;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Partitions cache spans between a fixed number of segments, each of which is ordered from least to
+ * most recently used. Used by evictors that move spans between segments as they're accessed.
+ *
+ * <p>Spans are identified by their key and position, as defined by {@link CacheSpan#compareTo}.
+ */
+/* package */ final class SegmentedSpanQueue {
+
+  private static final class Entry {
+
+    public final CacheSpan span;
+    public final long order;
+    public final int segment;
+
+    public Entry(CacheSpan span, long order, int segment) {
+      this.span = span;
+      this.order = order;
+      this.segment = segment;
+    }
+  }
+
+  private final TreeMap<CacheSpan, Entry> entries;
+  private final ArrayList<TreeSet<Entry>> segments;
+  private final long[] segmentBytes;
+
+  private long totalBytes;
+  private long lastOrder;
+
+  /** @param segmentCount The number of segments. */
+  public SegmentedSpanQueue(int segmentCount) {
+    entries = new TreeMap<>();
+    segments = new ArrayList<>(segmentCount);
+    for (int i = 0; i < segmentCount; i++) {
+      segments.add(new TreeSet<>(SegmentedSpanQueue::compare));
+    }
+    segmentBytes = new long[segmentCount];
+  }
+
+  /** Returns the total length of the spans in all segments. */
+  public long getTotalBytes() {
+    return totalBytes;
+  }
+
+  /** Returns the total length of the spans in the given segment. */
+  public long getBytes(int segment) {
+    return segmentBytes[segment];
+  }
+
+  /**
+   * Returns the segment containing the span, or {@link C#INDEX_UNSET} if the span isn't in any
+   * segment.
+   */
+  public int getSegment(CacheSpan span) {
+    @Nullable Entry entry = entries.get(span);
+    return entry != null ? entry.segment : C.INDEX_UNSET;
+  }
+
+  /**
+   * Returns the least recently used span in the given segment, or {@code null} if the segment is
+   * empty.
+   */
+  @Nullable
+  public CacheSpan getLeastRecentlyUsed(int segment) {
+    TreeSet<Entry> segmentEntries = segments.get(segment);
+    return segmentEntries.isEmpty() ? null : segmentEntries.first().span;
+  }
+
+  /**
+   * Adds a span to a segment. The span is ordered within the segment by its {@link
+   * CacheSpan#lastTouchTimestamp}, which normally makes it the most recently used.
+   *
+   * @param span The span to add, which must not already be in any segment.
+   * @param segment The segment to add the span to.
+   */
+  public void add(CacheSpan span, int segment) {
+    lastOrder = Math.max(lastOrder, span.lastTouchTimestamp);
+    addEntry(new Entry(span, span.lastTouchTimestamp, segment));
+  }
+
+  /**
+   * Moves a span to a segment, where it becomes the most recently used span.
+   *
+   * @param span The span to move.
+   * @param segment The segment to move the span to.
+   */
+  public void move(CacheSpan span, int segment) {
+    if (remove(span) != C.INDEX_UNSET) {
+      addEntry(new Entry(span, ++lastOrder, segment));
+    }
+  }
+
+  /**
+   * Removes a span.
+   *
+   * @param span The span to remove.
+   * @return The segment from which the span was removed, or {@link C#INDEX_UNSET} if the span
+   *     wasn't in any segment.
+   */
+  public int remove(CacheSpan span) {
+    @Nullable Entry entry = entries.remove(span);
+    if (entry == null) {
+      return C.INDEX_UNSET;
+    }
+    segments.get(entry.segment).remove(entry);
+    segmentBytes[entry.segment] -= entry.span.length;
+    totalBytes -= entry.span.length;
+    return entry.segment;
+  }
+
+  private void addEntry(Entry entry) {
+    entries.put(entry.span, entry);
+    segments.get(entry.segment).add(entry);
+    segmentBytes[entry.segment] += entry.span.length;
+    totalBytes += entry.span.length;
+  }
+
+  private static int compare(Entry lhs, Entry rhs) {
+    if (lhs.order == rhs.order) {
+      // Use the standard compareTo method as a tie-break.
+      return lhs.span.compareTo(rhs.span);
+    }
+    return lhs.order < rhs.order ? -1 : 1;
+  }
+}
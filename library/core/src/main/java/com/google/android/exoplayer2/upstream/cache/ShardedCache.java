@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.Assertions;
+import java.io.File;
+import java.util.HashSet;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link Cache} that distributes content between a number of independent shards, selected by
+ * the hash of the cache key.
+ *
+ * <p>Each shard has its own lock, index and evictor. Operations on content that maps to different
+ * shards don't contend with one another, and persisting the index of one shard doesn't block
+ * operations on the others. This is useful when several downloads run in parallel while playback
+ * reads from the same cache.
+ *
+ * <p>Sharding doesn't remove contention between keys that map to the same shard. Operations on
+ * such keys are still serialized by the shard's lock, as are the shard's index flushes, which a
+ * {@link SimpleCache} shard performs while holding its lock whenever content is added or removed.
+ * Keys are only distributed evenly between shards on average, so a small number of concurrently
+ * accessed keys may well share a shard.
+ *
+ * <p>Shards are typically {@link SimpleCache} instances, each with a dedicated directory and
+ * evictor. For example, to create a cache with four shards limited to {@code maxBytes} in total:
+ *
+ * <pre>{@code
+ * Cache[] shards = new Cache[4];
+ * for (int i = 0; i < shards.length; i++) {
+ *   shards[i] =
+ *       new SimpleCache(
+ *           new File(cacheDir, "shard" + i),
+ *           new LeastRecentlyUsedCacheEvictor(maxBytes / shards.length),
+ *           databaseProvider);
+ * }
+ * Cache cache = new ShardedCache(shards);
+ * }</pre>
+ *
+ * <p>The shard for a key is derived from {@link String#hashCode()}, which is stable across runs.
+ * The same shards must always be passed in the same order, or cached content will not be found.
+ *
+ * <p>Listeners and evictors are notified by the shard that holds the content, which is the {@link
+ * Cache} passed to their callbacks.
+ */
+public final class ShardedCache implements Cache {
+
+  private final Cache[] shards;
+  private final ConcurrentHashMap<File, Cache> shardsByDirectory;
+
+  /**
+   * @param shards The shards between which content is distributed. Must not be empty, and each
+   *     shard must use a dedicated directory.
+   */
+  public ShardedCache(Cache... shards) {
+    Assertions.checkArgument(shards.length > 0);
+    this.shards = shards.clone();
+    shardsByDirectory = new ConcurrentHashMap<>();
+  }
+
+  /** Returns the number of shards. */
+  public int getShardCount() {
+    return shards.length;
+  }
+
+  /**
+   * Returns the shard that holds content for the given key.
+   *
+   * @param key The cache key.
+   * @return The shard.
+   */
+  public Cache getShard(String key) {
+    return shards[(key.hashCode() & Integer.MAX_VALUE) % shards.length];
+  }
+
+  /**
+   * Returns the UID of the first shard, or {@link #UID_UNSET} if the UID of any shard is not set.
+   */
+  @Override
+  public long getUid() {
+    for (Cache shard : shards) {
+      if (shard.getUid() == UID_UNSET) {
+        return UID_UNSET;
+      }
+    }
+    return shards[0].getUid();
+  }
+
+  @Override
+  public void release() {
+    for (Cache shard : shards) {
+      shard.release();
+    }
+  }
+
+  @Override
+  public NavigableSet<CacheSpan> addListener(String key, Listener listener) {
+    return getShard(key).addListener(key, listener);
+  }
+
+  @Override
+  public void removeListener(String key, Listener listener) {
+    getShard(key).removeListener(key, listener);
+  }
+
+  @Override
+  public NavigableSet<CacheSpan> getCachedSpans(String key) {
+    return getShard(key).getCachedSpans(key);
+  }
+
+  @Override
+  public Set<String> getKeys() {
+    HashSet<String> keys = new HashSet<>();
+    for (Cache shard : shards) {
+      keys.addAll(shard.getKeys());
+    }
+    return keys;
+  }
+
+  @Override
+  public long getCacheSpace() {
+    long cacheSpace = 0;
+    for (Cache shard : shards) {
+      cacheSpace += shard.getCacheSpace();
+    }
+    return cacheSpace;
+  }
+
+  @Override
+  public CacheSpan startReadWrite(String key, long position)
+      throws InterruptedException, CacheException {
+    return getShard(key).startReadWrite(key, position);
+  }
+
+  @Override
+  @Nullable
+  public CacheSpan startReadWriteNonBlocking(String key, long position) throws CacheException {
+    return getShard(key).startReadWriteNonBlocking(key, position);
+  }
+
+  @Override
+  public CacheSpan startReadWrite(String key, long position, long length)
+      throws InterruptedException, CacheException {
+    return getShard(key).startReadWrite(key, position, length);
+  }
+
+  @Override
+  @Nullable
+  public CacheSpan startReadWriteNonBlocking(String key, long position, long length)
+      throws CacheException {
+    return getShard(key).startReadWriteNonBlocking(key, position, length);
+  }
+
+  @Override
+  public File startFile(String key, long position, long length) throws CacheException {
+    Cache shard = getShard(key);
+    File file = shard.startFile(key, position, length);
+    // Each shard uses a dedicated directory, so the directory of the file identifies its shard.
+    // There are only a few such directories per shard, so they're remembered indefinitely.
+    shardsByDirectory.put(getDirectory(file), shard);
+    return file;
+  }
+
+  @Override
+  public void commitFile(File file, long length) throws CacheException {
+    Cache shard = Assertions.checkStateNotNull(shardsByDirectory.get(getDirectory(file)));
+    shard.commitFile(file, length);
+  }
+
+  @Override
+  public void releaseHoleSpan(CacheSpan holeSpan) {
+    getShard(holeSpan.key).releaseHoleSpan(holeSpan);
+  }
+
+  @Override
+  public void removeSpan(CacheSpan span) throws CacheException {
+    getShard(span.key).removeSpan(span);
+  }
+
+  @Override
+  public boolean isCached(String key, long position, long length) {
+    return getShard(key).isCached(key, position, length);
+  }
+
+  @Override
+  public long getCachedLength(String key, long position, long length) {
+    return getShard(key).getCachedLength(key, position, length);
+  }
+
+  @Override
+  public void applyContentMetadataMutations(String key, ContentMetadataMutations mutations)
+      throws CacheException {
+    getShard(key).applyContentMetadataMutations(key, mutations);
+  }
+
+  @Override
+  public ContentMetadata getContentMetadata(String key) {
+    return getShard(key).getContentMetadata(key);
+  }
+
+  private static File getDirectory(File file) {
+    return Assertions.checkNotNull(file.getParentFile());
+  }
+}
@@ -18,6 +18,7 @@ package com.google.android.exoplayer2.upstream.cache;
 import android.os.ConditionVariable;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.database.DatabaseIOException;
@@ -74,6 +75,11 @@ public final class SimpleCache implements Cache {
   private long totalSpace;
   private boolean released;
   private @MonotonicNonNull CacheException initializationException;
+  /**
+   * Files started since the spans were restored from a snapshot, or null if the cache directory
+   * isn't being reconciled with restored spans.
+   */
+  @Nullable private HashSet<File> filesStartedDuringReconciliation;
 
   /**
    * Returns whether {@code cacheFolder} is locked by a {@link SimpleCache} instance. To unlock the
@@ -226,6 +232,51 @@ public final class SimpleCache implements Cache {
       @Nullable byte[] legacyIndexSecretKey,
       boolean legacyIndexEncrypt,
       boolean preferLegacyIndex) {
+    this(
+        cacheDir,
+        evictor,
+        databaseProvider,
+        legacyIndexSecretKey,
+        legacyIndexEncrypt,
+        preferLegacyIndex,
+        /* useJournaledIndex= */ false);
+  }
+
+  /**
+   * Constructs the cache. The cache will delete any unrecognized files from the cache directory.
+   * Hence the directory cannot be used to store other files.
+   *
+   * <p>A journaled index is stored in the cache directory. Rather than rewriting the index when it's
+   * stored, only the changes made since it was last stored are appended to a journal, which is
+   * compacted once enough changes have accumulated. This keeps the cost of storing the index
+   * proportional to the number of changes, rather than to the size of the cache.
+   *
+   * @param cacheDir A dedicated cache directory.
+   * @param evictor The evictor to be used. For download use cases where cache eviction should not
+   *     occur, use {@link NoOpCacheEvictor}.
+   * @param databaseProvider Provides the database in which the cache index is stored, or {@code
+   *     null} to use a legacy index. If {@code useJournaledIndex} is true, an existing database
+   *     index is migrated into the journaled index instead.
+   * @param legacyIndexSecretKey A 16 byte AES key for reading, and optionally writing, the legacy
+   *     index. Not used by the database index, however should still be provided when using the
+   *     database index in cases where upgrading from the legacy index may be necessary.
+   * @param legacyIndexEncrypt Whether to encrypt when writing to the legacy index. Must be {@code
+   *     false} if {@code legacyIndexSecretKey} is {@code null}, or if {@code useJournaledIndex} is
+   *     {@code true}. Not used by the database index.
+   * @param preferLegacyIndex Whether to use the legacy index even if a {@code databaseProvider} is
+   *     provided. Should be {@code false} in nearly all cases. Setting this to {@code true} is only
+   *     useful for downgrading from the database index back to the legacy index. Must be {@code
+   *     false} if {@code useJournaledIndex} is {@code true}.
+   * @param useJournaledIndex Whether to store the index in a journal in the cache directory.
+   */
+  public SimpleCache(
+      File cacheDir,
+      CacheEvictor evictor,
+      @Nullable DatabaseProvider databaseProvider,
+      @Nullable byte[] legacyIndexSecretKey,
+      boolean legacyIndexEncrypt,
+      boolean preferLegacyIndex,
+      boolean useJournaledIndex) {
     this(
         cacheDir,
         evictor,
@@ -234,10 +285,14 @@ public final class SimpleCache implements Cache {
             cacheDir,
             legacyIndexSecretKey,
             legacyIndexEncrypt,
-            preferLegacyIndex),
-        databaseProvider != null && !preferLegacyIndex
-            ? new CacheFileMetadataIndex(databaseProvider)
-            : null);
+            preferLegacyIndex,
+            useJournaledIndex),
+        useJournaledIndex
+            ? new CacheFileMetadataIndex(
+                new File(cacheDir, CacheFileMetadataIndex.FILE_NAME_JOURNAL), databaseProvider)
+            : databaseProvider != null && !preferLegacyIndex
+                ? new CacheFileMetadataIndex(databaseProvider)
+                : null);
   }
 
   /* package */ SimpleCache(
@@ -263,11 +318,15 @@ public final class SimpleCache implements Cache {
     new Thread("SimpleCache.initialize()") {
       @Override
       public void run() {
+        boolean restoredFromSnapshot;
         synchronized (SimpleCache.this) {
           conditionVariable.open();
-          initialize();
+          restoredFromSnapshot = initialize();
           SimpleCache.this.evictor.onCacheInitialized();
         }
+        if (restoredFromSnapshot) {
+          reconcileDirectory();
+        }
       }
     }.start();
     conditionVariable.block();
@@ -298,9 +357,17 @@ public final class SimpleCache implements Cache {
     removeStaleSpans();
     try {
       contentIndex.store();
+      if (initializationException == null) {
+        try {
+          CacheSpanSnapshot.write(cacheDir, uid, contentIndex.getAll());
+        } catch (IOException e) {
+          Log.w(TAG, "Storing span snapshot failed", e);
+        }
+      }
     } catch (IOException e) {
       Log.e(TAG, "Storing index file failed", e);
     } finally {
+      contentIndex.release();
       unlockFolder(cacheDir);
       released = true;
     }
@@ -357,11 +424,17 @@ public final class SimpleCache implements Cache {
   @Override
   public synchronized CacheSpan startReadWrite(String key, long position)
       throws InterruptedException, CacheException {
+    return startReadWrite(key, position, C.LENGTH_UNSET);
+  }
+
+  @Override
+  public synchronized CacheSpan startReadWrite(String key, long position, long length)
+      throws InterruptedException, CacheException {
     Assertions.checkState(!released);
     checkInitialization();
 
     while (true) {
-      CacheSpan span = startReadWriteNonBlocking(key, position);
+      CacheSpan span = startReadWriteNonBlocking(key, position, length);
       if (span != null) {
         return span;
       } else {
@@ -369,7 +442,8 @@ public final class SimpleCache implements Cache {
         // released. We'll be able to make progress when either:
         // 1. A span is added for the requested key that covers the requested position, in which
         //    case a read can be started.
-        // 2. The lock for the requested key is released, in which case a write can be started.
+        // 2. A lock for the requested key is released, after which the requested range may no
+        //    longer intersect a locked range, in which case a write can be started.
         wait();
       }
     }
@@ -379,10 +453,17 @@ public final class SimpleCache implements Cache {
   @Nullable
   public synchronized CacheSpan startReadWriteNonBlocking(String key, long position)
       throws CacheException {
+    return startReadWriteNonBlocking(key, position, C.LENGTH_UNSET);
+  }
+
+  @Override
+  @Nullable
+  public synchronized CacheSpan startReadWriteNonBlocking(String key, long position, long length)
+      throws CacheException {
     Assertions.checkState(!released);
     checkInitialization();
 
-    SimpleCacheSpan span = getSpan(key, position);
+    SimpleCacheSpan span = getSpan(key, position, length);
 
     if (span.isCached) {
       // Read case.
@@ -390,9 +471,8 @@ public final class SimpleCache implements Cache {
     }
 
     CachedContent cachedContent = contentIndex.getOrAdd(key);
-    if (!cachedContent.isLocked()) {
+    if (cachedContent.lockRange(position, span.length)) {
       // Write case.
-      cachedContent.setLocked(true);
       return span;
     }
 
@@ -407,7 +487,7 @@ public final class SimpleCache implements Cache {
 
     CachedContent cachedContent = contentIndex.get(key);
     Assertions.checkNotNull(cachedContent);
-    Assertions.checkState(cachedContent.isLocked());
+    Assertions.checkState(cachedContent.isFullyLocked(position, length));
     if (!cacheDir.exists()) {
       // For some reason the cache directory doesn't exist. Make a best effort to create it.
       cacheDir.mkdirs();
@@ -420,7 +500,12 @@ public final class SimpleCache implements Cache {
       fileDir.mkdir();
     }
     long lastTouchTimestamp = System.currentTimeMillis();
-    return SimpleCacheSpan.getCacheFile(fileDir, cachedContent.id, position, lastTouchTimestamp);
+    File file =
+        SimpleCacheSpan.getCacheFile(fileDir, cachedContent.id, position, lastTouchTimestamp);
+    if (filesStartedDuringReconciliation != null) {
+      filesStartedDuringReconciliation.add(file);
+    }
+    return file;
   }
 
   @Override
@@ -437,7 +522,7 @@ public final class SimpleCache implements Cache {
     SimpleCacheSpan span =
         Assertions.checkNotNull(SimpleCacheSpan.createCacheEntry(file, length, contentIndex));
     CachedContent cachedContent = Assertions.checkNotNull(contentIndex.get(span.key));
-    Assertions.checkState(cachedContent.isLocked());
+    Assertions.checkState(cachedContent.isFullyLocked(span.position, span.length));
 
     // Check if the span conflicts with the set content length
     long contentLength = ContentMetadata.getContentLength(cachedContent.getMetadata());
@@ -466,8 +551,7 @@ public final class SimpleCache implements Cache {
   public synchronized void releaseHoleSpan(CacheSpan holeSpan) {
     Assertions.checkState(!released);
     CachedContent cachedContent = Assertions.checkNotNull(contentIndex.get(holeSpan.key));
-    Assertions.checkState(cachedContent.isLocked());
-    cachedContent.setLocked(false);
+    cachedContent.unlockRange(holeSpan.position);
     contentIndex.maybeRemove(cachedContent.key);
     notifyAll();
   }
@@ -512,14 +596,19 @@ public final class SimpleCache implements Cache {
     return contentIndex.getContentMetadata(key);
   }
 
-  /** Ensures that the cache's in-memory representation has been initialized. */
-  private void initialize() {
+  /**
+   * Ensures that the cache's in-memory representation has been initialized.
+   *
+   * @return Whether the spans were restored from a snapshot, in which case the cache directory
+   *     should be reconciled with the in-memory representation by {@link #reconcileDirectory()}.
+   */
+  private boolean initialize() {
     if (!cacheDir.exists()) {
       if (!cacheDir.mkdirs()) {
         String message = "Failed to create cache directory: " + cacheDir;
         Log.e(TAG, message);
         initializationException = new CacheException(message);
-        return;
+        return false;
       }
     }
 
@@ -528,7 +617,7 @@ public final class SimpleCache implements Cache {
       String message = "Failed to list cache directory files: " + cacheDir;
       Log.e(TAG, message);
       initializationException = new CacheException(message);
-      return;
+      return false;
     }
 
     uid = loadUid(files);
@@ -539,14 +628,28 @@ public final class SimpleCache implements Cache {
         String message = "Failed to create cache UID: " + cacheDir;
         Log.e(TAG, message, e);
         initializationException = new CacheException(message, e);
-        return;
+        return false;
       }
     }
 
+    boolean restoredFromSnapshot = false;
     try {
       contentIndex.initialize(uid);
       if (fileIndex != null) {
         fileIndex.initialize(uid);
+      }
+      @Nullable
+      ArrayList<SimpleCacheSpan> snapshotSpans =
+          CacheSpanSnapshot.readAndDelete(cacheDir, uid, contentIndex);
+      if (snapshotSpans != null) {
+        // The cache was released cleanly, so the snapshot can be trusted. The cache directory is
+        // reconciled with it after initialization, without blocking use of the cache.
+        for (int i = 0; i < snapshotSpans.size(); i++) {
+          addSpan(snapshotSpans.get(i));
+        }
+        filesStartedDuringReconciliation = new HashSet<>();
+        restoredFromSnapshot = true;
+      } else if (fileIndex != null) {
         Map<String, CacheFileMetadata> fileMetadata = fileIndex.getAll();
         loadDirectory(cacheDir, /* isRoot= */ true, files, fileMetadata);
         fileIndex.removeAll(fileMetadata.keySet());
@@ -557,7 +660,7 @@ public final class SimpleCache implements Cache {
       String message = "Failed to initialize cache indices: " + cacheDir;
       Log.e(TAG, message, e);
       initializationException = new CacheException(message, e);
-      return;
+      return false;
     }
 
     contentIndex.removeEmpty();
@@ -566,6 +669,158 @@ public final class SimpleCache implements Cache {
     } catch (IOException e) {
       Log.e(TAG, "Storing index file failed", e);
     }
+    return restoredFromSnapshot;
+  }
+
+  /**
+   * Reconciles the cache directory with spans that were restored from a snapshot, removing spans
+   * whose files no longer match and loading any files that aren't in the snapshot. The cache
+   * directory is listed and the files of the restored spans are checked without holding the cache
+   * lock, so that the cache can be used while reconciliation is in progress.
+   */
+  private void reconcileDirectory() {
+    ArrayList<File> files = new ArrayList<>();
+    listCacheFiles(cacheDir, /* isRoot= */ true, files);
+    ArrayList<SimpleCacheSpan> restoredSpans = new ArrayList<>();
+    synchronized (this) {
+      if (released) {
+        return;
+      }
+      for (CachedContent cachedContent : contentIndex.getAll()) {
+        restoredSpans.addAll(cachedContent.getSpans());
+      }
+    }
+
+    HashSet<File> restoredFiles = new HashSet<>();
+    ArrayList<SimpleCacheSpan> staleSpans = new ArrayList<>();
+    for (int i = 0; i < restoredSpans.size(); i++) {
+      SimpleCacheSpan span = restoredSpans.get(i);
+      File file = Assertions.checkNotNull(span.file);
+      restoredFiles.add(file);
+      if (file.length() != span.length) {
+        staleSpans.add(span);
+      }
+    }
+
+    synchronized (this) {
+      HashSet<File> startedFiles = Assertions.checkNotNull(filesStartedDuringReconciliation);
+      filesStartedDuringReconciliation = null;
+      if (released) {
+        return;
+      }
+      for (int i = 0; i < staleSpans.size(); i++) {
+        removeStaleRestoredSpan(staleSpans.get(i));
+      }
+
+      @Nullable Map<String, CacheFileMetadata> fileMetadata = null;
+      if (fileIndex != null) {
+        try {
+          fileMetadata = fileIndex.getAll();
+        } catch (IOException e) {
+          Log.w(TAG, "Failed to load file index during reconciliation", e);
+        }
+      }
+      for (int i = 0; i < files.size(); i++) {
+        File file = files.get(i);
+        if (restoredFiles.contains(file) || startedFiles.contains(file)) {
+          continue;
+        }
+        // The file was in the cache directory before the cache was initialized, but not in the
+        // snapshot. Handle it as it would have been handled by loadDirectory.
+        long length = C.LENGTH_UNSET;
+        long lastTouchTimestamp = C.TIME_UNSET;
+        @Nullable
+        CacheFileMetadata metadata =
+            fileMetadata != null ? fileMetadata.remove(file.getName()) : null;
+        if (metadata != null) {
+          length = metadata.length;
+          lastTouchTimestamp = metadata.lastTouchTimestamp;
+        }
+        @Nullable
+        SimpleCacheSpan span =
+            SimpleCacheSpan.createCacheEntry(file, length, lastTouchTimestamp, contentIndex);
+        if (span != null) {
+          addSpan(span);
+        } else {
+          file.delete();
+        }
+      }
+      if (fileIndex != null && fileMetadata != null) {
+        for (File file : restoredFiles) {
+          fileMetadata.remove(file.getName());
+        }
+        for (File file : startedFiles) {
+          fileMetadata.remove(file.getName());
+        }
+        try {
+          fileIndex.removeAll(fileMetadata.keySet());
+        } catch (IOException e) {
+          Log.w(TAG, "Failed to remove unused file index entries", e);
+        }
+      }
+
+      contentIndex.removeEmpty();
+      try {
+        contentIndex.store();
+      } catch (IOException e) {
+        Log.e(TAG, "Storing index file failed", e);
+      }
+    }
+  }
+
+  /**
+   * Removes a restored span whose file was found not to match it during reconciliation, if the
+   * span is still in the cache. The span may have been touched, which renames its file, or removed
+   * and replaced by a new span at the same position since it was checked. Since spans are matched
+   * by key and position when they're removed, the live span is only removed if it's still backed
+   * by the checked file.
+   *
+   * @param span The restored span that was found to be stale.
+   */
+  @VisibleForTesting
+  /* package */ synchronized void removeStaleRestoredSpan(SimpleCacheSpan span) {
+    @Nullable CachedContent cachedContent = contentIndex.get(span.key);
+    if (cachedContent == null) {
+      return;
+    }
+    SimpleCacheSpan currentSpan = cachedContent.getSpan(span.position);
+    File file = Assertions.checkNotNull(span.file);
+    if (currentSpan.isCached
+        && file.equals(currentSpan.file)
+        && file.length() != currentSpan.length) {
+      removeSpanInternal(currentSpan);
+    }
+  }
+
+  /**
+   * Lists the cache files in a cache directory. If the root directory is passed, also lists the
+   * files in any subdirectories.
+   *
+   * @param directory The directory.
+   * @param isRoot Whether the directory is the root directory.
+   * @param files A list to which the cache files are added.
+   */
+  private static void listCacheFiles(File directory, boolean isRoot, ArrayList<File> files) {
+    @Nullable File[] directoryFiles = directory.listFiles();
+    if (directoryFiles == null) {
+      return;
+    }
+    for (File file : directoryFiles) {
+      String fileName = file.getName();
+      if (isRoot && fileName.indexOf('.') == -1) {
+        listCacheFiles(file, /* isRoot= */ false, files);
+      } else if (!isRoot || !isNonCacheFile(fileName)) {
+        files.add(file);
+      }
+    }
+  }
+
+  /** Returns whether a file in the root cache directory is an index, snapshot or UID file. */
+  private static boolean isNonCacheFile(String fileName) {
+    return CachedContentIndex.isIndexFile(fileName)
+        || CacheFileMetadataIndex.isIndexFile(fileName)
+        || CacheSpanSnapshot.isSnapshotFile(fileName)
+        || fileName.endsWith(UID_FILE_SUFFIX);
   }
 
   /**
@@ -597,8 +852,7 @@ public final class SimpleCache implements Cache {
       if (isRoot && fileName.indexOf('.') == -1) {
         loadDirectory(file, /* isRoot= */ false, file.listFiles(), fileMetadata);
       } else {
-        if (isRoot
-            && (CachedContentIndex.isIndexFile(fileName) || fileName.endsWith(UID_FILE_SUFFIX))) {
+        if (isRoot && isNonCacheFile(fileName)) {
           // Skip expected UID and index files in the root directory.
           continue;
         }
@@ -664,15 +918,19 @@ public final class SimpleCache implements Cache {
    *
    * @param key The key of the span being requested.
    * @param position The position of the span being requested.
+   * @param length The maximum length of a returned hole span, or {@link C#LENGTH_UNSET} if
+   *     unbounded.
    * @return The corresponding cache {@link SimpleCacheSpan}.
    */
-  private SimpleCacheSpan getSpan(String key, long position) {
+  private SimpleCacheSpan getSpan(String key, long position, long length) {
     @Nullable CachedContent cachedContent = contentIndex.get(key);
     if (cachedContent == null) {
-      return SimpleCacheSpan.createOpenHole(key, position);
+      return length == C.LENGTH_UNSET
+          ? SimpleCacheSpan.createOpenHole(key, position)
+          : SimpleCacheSpan.createClosedHole(key, position, length);
     }
     while (true) {
-      SimpleCacheSpan span = cachedContent.getSpan(position);
+      SimpleCacheSpan span = cachedContent.getSpan(position, length);
       if (span.isCached && span.file.length() != span.length) {
         // The file has been modified or deleted underneath us. It's likely that other files will
         // have been modified too, so scan the whole in-memory representation.
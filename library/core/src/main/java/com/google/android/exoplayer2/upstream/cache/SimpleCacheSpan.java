@@ -84,6 +84,21 @@ import java.util.regex.Pattern;
     return new SimpleCacheSpan(key, position, length, C.TIME_UNSET, null);
   }
 
+  /**
+   * Creates a cache span for a cache file whose properties are already known.
+   *
+   * @param key The cache key.
+   * @param position The position of the span in the original stream.
+   * @param length The length of the cache file in bytes.
+   * @param lastTouchTimestamp The last touch timestamp.
+   * @param file The cache file.
+   * @return The span.
+   */
+  public static SimpleCacheSpan createCacheEntry(
+      String key, long position, long length, long lastTouchTimestamp, File file) {
+    return new SimpleCacheSpan(key, position, length, lastTouchTimestamp, file);
+  }
+
   /**
    * Creates a cache span from an underlying cache file. Upgrades the file if necessary.
    *
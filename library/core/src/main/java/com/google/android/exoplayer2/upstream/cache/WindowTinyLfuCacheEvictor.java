@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.cache.Cache.CacheException;
+import com.google.android.exoplayer2.util.Assertions;
+
+/**
+ * Evicts cache files using a W-TinyLFU policy, which combines recency with an estimate of how
+ * frequently each file has been read.
+ *
+ * <p>Newly cached files enter a small admission window, ordered by recency. Files that overflow the
+ * window become candidates for admission to the main space, which is managed as a segmented LRU
+ * (see {@link SegmentedLruCacheEvictor}). When the main space is full a candidate is only admitted
+ * if it's been read more frequently than the file that would be evicted to make room for it.
+ * Otherwise the candidate itself is evicted. This prevents content that's only read once, such as a
+ * sequential scan through a long piece of media, from displacing content that's read repeatedly.
+ *
+ * <p>Read frequencies are estimated by a count-min sketch with 4-bit counters, which are
+ * periodically halved so that the estimates favor recent reads. Files are identified by their cache
+ * key and position.
+ */
+public final class WindowTinyLfuCacheEvictor implements CacheEvictor {
+
+  /** The default fraction of the cache used for the admission window. */
+  public static final float DEFAULT_WINDOW_FRACTION = 0.01f;
+  /** The default number of cache files for which read frequencies are tracked accurately. */
+  public static final int DEFAULT_EXPECTED_SPAN_COUNT = 16384;
+
+  private static final int SEGMENT_WINDOW = 0;
+  private static final int SEGMENT_PROBATIONARY = 1;
+  private static final int SEGMENT_PROTECTED = 2;
+
+  private static final float PROTECTED_FRACTION = 0.8f;
+
+  private final long maxBytes;
+  private final long maxWindowBytes;
+  private final long maxMainBytes;
+  private final long maxProtectedBytes;
+  private final SegmentedSpanQueue queue;
+  private final FrequencySketch sketch;
+
+  /**
+   * Constructs an instance with {@link #DEFAULT_WINDOW_FRACTION} and {@link
+   * #DEFAULT_EXPECTED_SPAN_COUNT}.
+   *
+   * @param maxBytes The maximum size of the cache in bytes.
+   */
+  public WindowTinyLfuCacheEvictor(long maxBytes) {
+    this(maxBytes, DEFAULT_WINDOW_FRACTION, DEFAULT_EXPECTED_SPAN_COUNT);
+  }
+
+  /**
+   * @param maxBytes The maximum size of the cache in bytes.
+   * @param windowFraction The fraction of {@code maxBytes} used for the admission window. Must be
+   *     in the range [0, 1].
+   * @param expectedSpanCount The number of cache files for which read frequencies should be tracked
+   *     accurately. This is typically the maximum number of files that fit in the cache. The
+   *     frequency sketch uses between four and eight bytes per expected file.
+   */
+  public WindowTinyLfuCacheEvictor(long maxBytes, float windowFraction, int expectedSpanCount) {
+    Assertions.checkArgument(windowFraction >= 0 && windowFraction <= 1);
+    Assertions.checkArgument(expectedSpanCount > 0);
+    this.maxBytes = maxBytes;
+    maxWindowBytes = (long) (maxBytes * (double) windowFraction);
+    maxMainBytes = maxBytes - maxWindowBytes;
+    maxProtectedBytes = (long) (maxMainBytes * (double) PROTECTED_FRACTION);
+    queue = new SegmentedSpanQueue(/* segmentCount= */ 3);
+    sketch = new FrequencySketch(expectedSpanCount);
+  }
+
+  @Override
+  public boolean requiresCacheSpanTouches() {
+    return true;
+  }
+
+  @Override
+  public void onCacheInitialized() {
+    // Do nothing.
+  }
+
+  @Override
+  public void onStartFile(Cache cache, String key, long position, long length) {
+    if (length != C.LENGTH_UNSET) {
+      evictCache(cache, length);
+    }
+  }
+
+  @Override
+  public void onSpanAdded(Cache cache, CacheSpan span) {
+    sketch.increment(span);
+    queue.add(span, SEGMENT_WINDOW);
+    evictCache(cache, 0);
+  }
+
+  @Override
+  public void onSpanRemoved(Cache cache, CacheSpan span) {
+    queue.remove(span);
+  }
+
+  @Override
+  public void onSpanTouched(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+    int segment = queue.remove(oldSpan);
+    if (segment == C.INDEX_UNSET) {
+      onSpanAdded(cache, newSpan);
+      return;
+    }
+    sketch.increment(newSpan);
+    if (segment == SEGMENT_WINDOW) {
+      queue.add(newSpan, SEGMENT_WINDOW);
+      return;
+    }
+    queue.add(newSpan, SEGMENT_PROTECTED);
+    while (queue.getBytes(SEGMENT_PROTECTED) > maxProtectedBytes) {
+      queue.move(
+          Assertions.checkNotNull(queue.getLeastRecentlyUsed(SEGMENT_PROTECTED)),
+          SEGMENT_PROBATIONARY);
+    }
+  }
+
+  private void evictCache(Cache cache, long requiredSpace) {
+    // The required space is for a file that will be added to the window.
+    while (queue.getBytes(SEGMENT_WINDOW) + requiredSpace > maxWindowBytes) {
+      @Nullable CacheSpan candidate = queue.getLeastRecentlyUsed(SEGMENT_WINDOW);
+      if (candidate == null) {
+        break;
+      }
+      queue.move(candidate, SEGMENT_PROBATIONARY);
+      admitOrEvict(cache, candidate);
+    }
+    while (queue.getTotalBytes() + requiredSpace > maxBytes) {
+      @Nullable CacheSpan span = queue.getLeastRecentlyUsed(SEGMENT_PROBATIONARY);
+      if (span == null) {
+        span = queue.getLeastRecentlyUsed(SEGMENT_PROTECTED);
+      }
+      if (span == null) {
+        span = queue.getLeastRecentlyUsed(SEGMENT_WINDOW);
+      }
+      if (span == null) {
+        return;
+      }
+      removeSpan(cache, span);
+    }
+  }
+
+  /**
+   * Evicts files from the main space until the candidate fits, or evicts the candidate if it's been
+   * read less frequently than a file that would have to be evicted.
+   */
+  private void admitOrEvict(Cache cache, CacheSpan candidate) {
+    int candidateFrequency = sketch.frequency(candidate);
+    while (queue.getBytes(SEGMENT_PROBATIONARY) + queue.getBytes(SEGMENT_PROTECTED) > maxMainBytes
+        && queue.getSegment(candidate) != C.INDEX_UNSET) {
+      @Nullable CacheSpan victim = queue.getLeastRecentlyUsed(SEGMENT_PROBATIONARY);
+      if (victim == null || victim.compareTo(candidate) == 0) {
+        victim = queue.getLeastRecentlyUsed(SEGMENT_PROTECTED);
+      }
+      if (victim == null || candidateFrequency <= sketch.frequency(victim)) {
+        removeSpan(cache, candidate);
+        return;
+      }
+      removeSpan(cache, victim);
+    }
+  }
+
+  private static void removeSpan(Cache cache, CacheSpan span) {
+    try {
+      cache.removeSpan(span);
+    } catch (CacheException e) {
+      // do nothing.
+    }
+  }
+
+  /**
+   * A count-min sketch that estimates how many times each cache file has been read, using four
+   * 4-bit counters per file. All counters are halved after a number of increments proportional to
+   * the size of the sketch.
+   */
+  private static final class FrequencySketch {
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+    private static final int MAX_TABLE_LENGTH = 1 << 24;
+    private static final long[] SEEDS = {
+      0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+    };
+
+    private final long[] table;
+    private final int counterMask;
+    private final int sampleSize;
+
+    private int incrementCount;
+
+    public FrequencySketch(int expectedSpanCount) {
+      // Each long holds 16 counters. Use between 8 and 16 counters per expected file.
+      int tableLength =
+          Math.min(MAX_TABLE_LENGTH, Math.max(1, Integer.highestOneBit(expectedSpanCount - 1)));
+      table = new long[tableLength];
+      counterMask = tableLength * 16 - 1;
+      sampleSize = 10 * Math.min(expectedSpanCount, MAX_TABLE_LENGTH);
+    }
+
+    public void increment(CacheSpan span) {
+      long hash = hash(span);
+      boolean incremented = false;
+      for (long seed : SEEDS) {
+        incremented |= incrementCounter(counterIndex(hash, seed));
+      }
+      if (incremented && ++incrementCount >= sampleSize) {
+        reset();
+      }
+    }
+
+    public int frequency(CacheSpan span) {
+      long hash = hash(span);
+      int frequency = MAX_COUNT;
+      for (long seed : SEEDS) {
+        frequency = Math.min(frequency, getCounter(counterIndex(hash, seed)));
+      }
+      return frequency;
+    }
+
+    private boolean incrementCounter(int counterIndex) {
+      int tableIndex = counterIndex >>> 4;
+      int shift = (counterIndex & 15) << 2;
+      if (((table[tableIndex] >>> shift) & MAX_COUNT) == MAX_COUNT) {
+        return false;
+      }
+      table[tableIndex] += 1L << shift;
+      return true;
+    }
+
+    private int getCounter(int counterIndex) {
+      return (int) ((table[counterIndex >>> 4] >>> ((counterIndex & 15) << 2)) & MAX_COUNT);
+    }
+
+    private int counterIndex(long hash, long seed) {
+      long mixed = (hash + seed) * seed;
+      mixed ^= mixed >>> 32;
+      return (int) mixed & counterMask;
+    }
+
+    private void reset() {
+      for (int i = 0; i < table.length; i++) {
+        table[i] = (table[i] >>> 1) & RESET_MASK;
+      }
+      incrementCount /= 2;
+    }
+
+    private static long hash(CacheSpan span) {
+      long hash = span.key.hashCode() * 0x9E3779B97F4A7C15L + span.position;
+      hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+      hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+      return hash ^ (hash >>> 31);
+    }
+  }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.offline;
+
+import static com.google.android.exoplayer2.testutil.CacheAsserts.assertCachedData;
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.testutil.FakeDataSet;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.upstream.cache.CacheUtil;
+import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link ProgressiveDownloader}. */
+@RunWith(AndroidJUnit4.class)
+public final class ProgressiveDownloaderTest {
+
+  private static final Uri TEST_URI = Uri.parse("test_uri");
+  private static final int CONTENT_LENGTH = 20 * 1024 * 1024;
+  // The first range is downloaded while resolving the content length. The remaining 12MB are split
+  // into two ranges, which are downloaded in parallel.
+  private static final int RANGE_LENGTH = 8 * 1024 * 1024;
+  private static final int PARALLEL_RANGE_COUNT = 2;
+
+  private File tempFolder;
+  private SimpleCache cache;
+  private FakeDataSet fakeDataSet;
+  private List<FakeDataSource> dataSources;
+  private DataSource.Factory upstreamFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    tempFolder =
+        Util.createTempDirectory(ApplicationProvider.getApplicationContext(), "ExoPlayerTest");
+    cache = new SimpleCache(tempFolder, new NoOpCacheEvictor());
+    fakeDataSet = new FakeDataSet().setRandomData(TEST_URI, CONTENT_LENGTH);
+    dataSources = Collections.synchronizedList(new ArrayList<>());
+    upstreamFactory =
+        () -> {
+          FakeDataSource dataSource = new FakeDataSource(fakeDataSet);
+          dataSources.add(dataSource);
+          return dataSource;
+        };
+  }
+
+  @After
+  public void tearDown() {
+    cache.release();
+    Util.recursiveDelete(tempFolder);
+  }
+
+  @Test
+  public void testDownload() throws Exception {
+    ProgressiveDownloader downloader = createDownloader(/* maxParallelDownloads= */ 1);
+    ProgressListener progressListener = new ProgressListener();
+
+    downloader.download(progressListener);
+
+    assertCachedData(cache, fakeDataSet);
+    assertThat(progressListener.bytesDownloaded).isEqualTo(CONTENT_LENGTH);
+    assertThat(dataSources).hasSize(1);
+  }
+
+  @Test
+  public void testDownloadInParallel() throws Exception {
+    ProgressiveDownloader downloader = createDownloader(/* maxParallelDownloads= */ 4);
+    ProgressListener progressListener = new ProgressListener();
+
+    downloader.download(progressListener);
+
+    assertCachedData(cache, fakeDataSet);
+    assertThat(progressListener.contentLength).isEqualTo(CONTENT_LENGTH);
+    assertThat(progressListener.bytesDownloaded).isEqualTo(CONTENT_LENGTH);
+    assertThat(progressListener.percentDownloaded).isEqualTo(100f);
+    assertThat(dataSources.size()).isGreaterThan(1);
+  }
+
+  @Test
+  public void testDownloadInParallel_downloadsRangesConcurrently() throws Exception {
+    CountDownLatch allRangesOpened = new CountDownLatch(PARALLEL_RANGE_COUNT);
+    AtomicInteger openRangeCount = new AtomicInteger();
+    AtomicInteger maxOpenRangeCount = new AtomicInteger();
+    upstreamFactory =
+        () ->
+            new RangeTrackingDataSource(
+                new FakeDataSource(fakeDataSet),
+                allRangesOpened,
+                openRangeCount,
+                maxOpenRangeCount);
+    ProgressiveDownloader downloader = createDownloader(/* maxParallelDownloads= */ 4);
+
+    downloader.download(/* progressListener= */ null);
+
+    assertThat(maxOpenRangeCount.get()).isEqualTo(PARALLEL_RANGE_COUNT);
+    assertCachedData(cache, fakeDataSet);
+  }
+
+  @Test
+  public void testDownloadInParallel_reportsProgressWhileResolvingContentLength()
+      throws Exception {
+    ProgressiveDownloader downloader = createDownloader(/* maxParallelDownloads= */ 4);
+    ProgressListener progressListener = new ProgressListener();
+
+    downloader.download(progressListener);
+
+    List<Long> reportedBytesDownloaded = progressListener.reportedBytesDownloaded;
+    assertThat(reportedBytesDownloaded.get(0)).isGreaterThan(0L);
+    assertThat(reportedBytesDownloaded).contains((long) RANGE_LENGTH);
+    for (int i = 1; i < reportedBytesDownloaded.size(); i++) {
+      assertThat(reportedBytesDownloaded.get(i)).isAtLeast(reportedBytesDownloaded.get(i - 1));
+    }
+    assertThat(progressListener.bytesDownloaded).isEqualTo(CONTENT_LENGTH);
+  }
+
+  @Test
+  public void testDownloadInParallel_onlyDownloadsMissingData() throws Exception {
+    long cachedLength = CONTENT_LENGTH / 2;
+    CacheUtil.cache(
+        new DataSpec(TEST_URI, /* position= */ 0, cachedLength),
+        cache,
+        /* cacheKeyFactory= */ null,
+        new FakeDataSource(fakeDataSet),
+        /* progressListener= */ null,
+        /* isCanceled= */ null);
+    ProgressiveDownloader downloader = createDownloader(/* maxParallelDownloads= */ 4);
+    ProgressListener progressListener = new ProgressListener();
+
+    downloader.download(progressListener);
+
+    assertCachedData(cache, fakeDataSet);
+    assertThat(progressListener.bytesDownloaded).isEqualTo(CONTENT_LENGTH);
+    for (FakeDataSource dataSource : dataSources) {
+      for (DataSpec dataSpec : dataSource.getAndClearOpenedDataSpecs()) {
+        assertThat(dataSpec.position).isAtLeast(cachedLength);
+      }
+    }
+  }
+
+  private ProgressiveDownloader createDownloader(int maxParallelDownloads) {
+    DownloaderConstructorHelper constructorHelper =
+        new DownloaderConstructorHelper(
+            cache,
+            upstreamFactory,
+            /* cacheReadDataSourceFactory= */ null,
+            /* cacheWriteDataSinkFactory= */ null,
+            /* priorityTaskManager= */ null,
+            /* cacheKeyFactory= */ null,
+            maxParallelDownloads);
+    return new ProgressiveDownloader(TEST_URI, /* customCacheKey= */ null, constructorHelper);
+  }
+
+  private static final class ProgressListener implements Downloader.ProgressListener {
+
+    private volatile long contentLength;
+    private volatile long bytesDownloaded;
+    private volatile float percentDownloaded;
+    private final List<Long> reportedBytesDownloaded =
+        Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public void onProgress(long contentLength, long bytesDownloaded, float percentDownloaded) {
+      this.contentLength = contentLength;
+      this.bytesDownloaded = bytesDownloaded;
+      this.percentDownloaded = percentDownloaded;
+      reportedBytesDownloaded.add(bytesDownloaded);
+    }
+  }
+
+  /**
+   * Tracks how many bounded ranges are open at the same time. Opening a range waits until all
+   * ranges have been opened, or until a timeout if the ranges are downloaded one after another.
+   */
+  private static final class RangeTrackingDataSource implements DataSource {
+
+    private final DataSource upstream;
+    private final CountDownLatch allRangesOpened;
+    private final AtomicInteger openRangeCount;
+    private final AtomicInteger maxOpenRangeCount;
+
+    private boolean isRangeOpen;
+
+    public RangeTrackingDataSource(
+        DataSource upstream,
+        CountDownLatch allRangesOpened,
+        AtomicInteger openRangeCount,
+        AtomicInteger maxOpenRangeCount) {
+      this.upstream = upstream;
+      this.allRangesOpened = allRangesOpened;
+      this.openRangeCount = openRangeCount;
+      this.maxOpenRangeCount = maxOpenRangeCount;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+      upstream.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      long length = upstream.open(dataSpec);
+      if (dataSpec.length != C.LENGTH_UNSET) {
+        isRangeOpen = true;
+        int count = openRangeCount.incrementAndGet();
+        maxOpenRangeCount.accumulateAndGet(count, Math::max);
+        allRangesOpened.countDown();
+        try {
+          allRangesOpened.await(/* timeout= */ 5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return length;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+      return upstream.read(buffer, offset, readLength);
+    }
+
+    @Override
+    @Nullable
+    public Uri getUri() {
+      return upstream.getUri();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (isRangeOpen) {
+        isRangeOpen = false;
+        openRangeCount.decrementAndGet();
+      }
+      upstream.close();
+    }
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.extractor.IndexSeekMap;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link ContentMetadataSeekMapCache}. */
+@RunWith(AndroidJUnit4.class)
+public final class ContentMetadataSeekMapCacheTest {
+
+  private static final String KEY = "key";
+  private static final long CONTENT_LENGTH = 10_000;
+  private static final String ETAG = "etag";
+
+  private File tempFolder;
+  private SimpleCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    tempFolder =
+        Util.createTempDirectory(ApplicationProvider.getApplicationContext(), "ExoPlayerTest");
+    cache = new SimpleCache(tempFolder, new NoOpCacheEvictor());
+    addCache(cache, KEY);
+  }
+
+  @After
+  public void tearDown() {
+    cache.release();
+    Util.recursiveDelete(tempFolder);
+  }
+
+  @Test
+  public void get_withoutStoredIndex_returnsNull() {
+    ContentMetadataSeekMapCache seekMapCache = new ContentMetadataSeekMapCache(cache);
+
+    assertThat(seekMapCache.get(KEY, CONTENT_LENGTH, ETAG)).isNull();
+  }
+
+  @Test
+  public void get_afterPut_returnsStoredIndex() {
+    ContentMetadataSeekMapCache seekMapCache =
+        new ContentMetadataSeekMapCache(cache, /* minTimeBetweenPointsUs= */ 0);
+    IndexSeekMap index =
+        new IndexSeekMap(
+            /* positions= */ new long[] {100, 1_000, 2_000},
+            /* timesUs= */ new long[] {0, 500_000, 1_000_000},
+            /* durationUs= */ 1_500_000);
+
+    seekMapCache.put(KEY, CONTENT_LENGTH, ETAG, index);
+    IndexSeekMap storedIndex = seekMapCache.get(KEY, CONTENT_LENGTH, ETAG);
+
+    assertThat(storedIndex).isNotNull();
+    assertThat(storedIndex.positions).isEqualTo(index.positions);
+    assertThat(storedIndex.timesUs).isEqualTo(index.timesUs);
+    assertThat(storedIndex.getDurationUs()).isEqualTo(1_500_000);
+  }
+
+  @Test
+  public void put_dropsPointsCloserThanMinTimeBetweenPoints() {
+    ContentMetadataSeekMapCache seekMapCache =
+        new ContentMetadataSeekMapCache(cache, /* minTimeBetweenPointsUs= */ 1_000_000);
+    IndexSeekMap index =
+        new IndexSeekMap(
+            /* positions= */ new long[] {100, 1_000, 2_000, 3_000, 4_000},
+            /* timesUs= */ new long[] {0, 500_000, 1_000_000, 1_500_000, 2_100_000},
+            /* durationUs= */ 2_500_000);
+
+    seekMapCache.put(KEY, CONTENT_LENGTH, ETAG, index);
+    IndexSeekMap storedIndex = seekMapCache.get(KEY, CONTENT_LENGTH, ETAG);
+
+    assertThat(storedIndex.positions).isEqualTo(new long[] {100, 2_000, 4_000});
+    assertThat(storedIndex.timesUs).isEqualTo(new long[] {0, 1_000_000, 2_100_000});
+    assertThat(storedIndex.getDurationUs()).isEqualTo(2_500_000);
+  }
+
+  @Test
+  public void get_withDifferentContentLength_returnsNull() {
+    ContentMetadataSeekMapCache seekMapCache = new ContentMetadataSeekMapCache(cache);
+
+    seekMapCache.put(KEY, CONTENT_LENGTH, ETAG, createIndex());
+
+    assertThat(seekMapCache.get(KEY, CONTENT_LENGTH + 1, ETAG)).isNull();
+  }
+
+  @Test
+  public void get_withDifferentETag_returnsNull() {
+    ContentMetadataSeekMapCache seekMapCache = new ContentMetadataSeekMapCache(cache);
+
+    seekMapCache.put(KEY, CONTENT_LENGTH, ETAG, createIndex());
+
+    assertThat(seekMapCache.get(KEY, CONTENT_LENGTH, "other")).isNull();
+  }
+
+  @Test
+  public void get_withUnknownETag_returnsStoredIndex() {
+    ContentMetadataSeekMapCache seekMapCache = new ContentMetadataSeekMapCache(cache);
+
+    seekMapCache.put(KEY, CONTENT_LENGTH, ETAG, createIndex());
+
+    assertThat(seekMapCache.get(KEY, CONTENT_LENGTH, /* eTag= */ null)).isNotNull();
+  }
+
+  @Test
+  public void put_withKeyNotInCache_doesNotAddKey() {
+    ContentMetadataSeekMapCache seekMapCache = new ContentMetadataSeekMapCache(cache);
+
+    seekMapCache.put("other", CONTENT_LENGTH, ETAG, createIndex());
+
+    assertThat(cache.getKeys()).containsExactly(KEY);
+    assertThat(seekMapCache.get("other", CONTENT_LENGTH, ETAG)).isNull();
+  }
+
+  private static void addCache(SimpleCache cache, String key)
+      throws IOException, InterruptedException {
+    CacheSpan holeSpan = cache.startReadWrite(key, /* position= */ 0);
+    File file = cache.startFile(key, /* position= */ 0, /* length= */ 10);
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(new byte[10]);
+    }
+    cache.commitFile(file, /* length= */ 10);
+    cache.releaseHoleSpan(holeSpan);
+  }
+
+  private static IndexSeekMap createIndex() {
+    return new IndexSeekMap(
+        /* positions= */ new long[] {100, 1_000},
+        /* timesUs= */ new long[] {0, 1_000_000},
+        /* durationUs= */ 1_500_000);
+  }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.shadows.ShadowBaseLooper.shadowMainLooper;
+
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.FormatHolder;
+import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
+import com.google.android.exoplayer2.drm.DrmSessionManager;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.mp3.Mp3Extractor;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
+import com.google.android.exoplayer2.source.MediaSourceEventListener.EventDispatcher;
+import com.google.android.exoplayer2.testutil.FakeDataSet;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.FakeTrackOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.trackselection.FixedTrackSelection;
+import com.google.android.exoplayer2.trackselection.TrackSelection;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.upstream.DefaultLoadErrorHandlingPolicy;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.LooperMode;
+
+/** Unit test for {@link ProgressiveMediaPeriod}. */
+@RunWith(AndroidJUnit4.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public final class ProgressiveMediaPeriodTest {
+
+  private static final Uri URI = Uri.parse("https://example.com/sample");
+  private static final String SAMPLE_MP4 = "mp4/sample.mp4";
+  private static final String SAMPLE_MP3 = "mp3/bear-cbr-variable-frame-size-no-seek-table.mp3";
+  // The edit lists of the sample are ignored so that the sample tables of its tracks aren't needed
+  // to determine their formats, and are only parsed once the tracks are selected.
+  private static final int MP4_EXTRACTOR_FLAGS =
+      Mp4Extractor.FLAG_SKIP_DISCARDED_TRACKS | Mp4Extractor.FLAG_WORKAROUND_IGNORE_EDIT_LISTS;
+
+  private FakeTrackOutput expectedVideoOutput;
+  private FakeTrackOutput expectedAudioOutput;
+  private DefaultAllocator allocator;
+  private ProgressiveMediaPeriod mediaPeriod;
+  private boolean prepared;
+
+  @Before
+  public void setUp() {
+    allocator =
+        new DefaultAllocator(/* trimOnReset= */ true, /* individualAllocationSize= */ 1024);
+  }
+
+  @After
+  public void tearDown() {
+    if (mediaPeriod != null) {
+      mediaPeriod.release();
+    }
+  }
+
+  @Test
+  public void prepare_withMp4_pausesLoadingUntilTracksAreSelected() throws Exception {
+    setUpMediaPeriod(SAMPLE_MP4, () -> new Mp4Extractor(MP4_EXTRACTOR_FLAGS));
+    prepareMediaPeriod();
+
+    // Loading paused when the seek map was output, before any sample was read.
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(0);
+  }
+
+  @Test
+  public void selectTracks_withOtherExtractor_extractsAllSamples() throws Exception {
+    setUpMediaPeriod(SAMPLE_MP3, Mp3Extractor::new);
+    prepareMediaPeriod();
+    SampleStream[] streams = new SampleStream[1];
+    mediaPeriod.selectTracks(
+        new TrackSelection[] {getTrackSelection(mediaPeriod.getTrackGroups(), C.TRACK_TYPE_AUDIO)},
+        /* mayRetainStreamFlags= */ new boolean[1],
+        streams,
+        /* streamResetFlags= */ new boolean[1],
+        /* positionUs= */ 0);
+
+    continueLoadingUntilEnd();
+
+    assertSamples(streams[0], expectedAudioOutput);
+  }
+
+  @Test
+  public void selectTracks_withVideoTrackOnly_doesNotExtractAudioSamples() throws Exception {
+    setUpMediaPeriod(SAMPLE_MP4, () -> new Mp4Extractor(MP4_EXTRACTOR_FLAGS));
+    prepareMediaPeriod();
+    TrackGroupArray trackGroups = mediaPeriod.getTrackGroups();
+    SampleStream[] streams = new SampleStream[1];
+    mediaPeriod.selectTracks(
+        new TrackSelection[] {getTrackSelection(trackGroups, C.TRACK_TYPE_VIDEO)},
+        /* mayRetainStreamFlags= */ new boolean[1],
+        streams,
+        /* streamResetFlags= */ new boolean[1],
+        /* positionUs= */ 0);
+
+    continueLoadingUntilEnd();
+
+    // The audio samples would take more than the remaining space of the allocations.
+    int videoAndAudioBytes =
+        getSampleDataLength(expectedVideoOutput) + getSampleDataLength(expectedAudioOutput);
+    assertThat(allocator.getTotalBytesAllocated()).isLessThan(videoAndAudioBytes);
+    assertSamples(streams[0], expectedVideoOutput);
+  }
+
+  @Test
+  public void selectTracks_enablingDiscardedTrack_seeksAndExtractsItsSamples() throws Exception {
+    setUpMediaPeriod(SAMPLE_MP4, () -> new Mp4Extractor(MP4_EXTRACTOR_FLAGS));
+    prepareMediaPeriod();
+    TrackGroupArray trackGroups = mediaPeriod.getTrackGroups();
+    TrackSelection videoSelection = getTrackSelection(trackGroups, C.TRACK_TYPE_VIDEO);
+    SampleStream[] streams = new SampleStream[2];
+    mediaPeriod.selectTracks(
+        new TrackSelection[] {videoSelection, null},
+        /* mayRetainStreamFlags= */ new boolean[2],
+        streams,
+        /* streamResetFlags= */ new boolean[2],
+        /* positionUs= */ 0);
+    continueLoadingUntilEnd();
+    assertSamples(streams[0], expectedVideoOutput);
+
+    boolean[] streamResetFlags = new boolean[2];
+    mediaPeriod.selectTracks(
+        new TrackSelection[] {videoSelection, getTrackSelection(trackGroups, C.TRACK_TYPE_AUDIO)},
+        /* mayRetainStreamFlags= */ new boolean[] {true, true},
+        streams,
+        streamResetFlags,
+        /* positionUs= */ 0);
+    continueLoadingUntilEnd();
+
+    assertThat(streamResetFlags).asList().containsExactly(true, true);
+    assertSamples(streams[0], expectedVideoOutput);
+    assertSamples(streams[1], expectedAudioOutput);
+  }
+
+  @Test
+  public void selectTracks_enablingTrackWithoutSkipDiscardedTracks_doesNotSeek()
+      throws Exception {
+    setUpMediaPeriod(
+        SAMPLE_MP4, () -> new Mp4Extractor(Mp4Extractor.FLAG_WORKAROUND_IGNORE_EDIT_LISTS));
+    prepareMediaPeriod();
+    TrackGroupArray trackGroups = mediaPeriod.getTrackGroups();
+    TrackSelection videoSelection = getTrackSelection(trackGroups, C.TRACK_TYPE_VIDEO);
+    SampleStream[] streams = new SampleStream[2];
+    mediaPeriod.selectTracks(
+        new TrackSelection[] {videoSelection, null},
+        /* mayRetainStreamFlags= */ new boolean[2],
+        streams,
+        /* streamResetFlags= */ new boolean[2],
+        /* positionUs= */ 0);
+    continueLoadingUntilEnd();
+
+    boolean[] streamResetFlags = new boolean[2];
+    mediaPeriod.selectTracks(
+        new TrackSelection[] {videoSelection, getTrackSelection(trackGroups, C.TRACK_TYPE_AUDIO)},
+        /* mayRetainStreamFlags= */ new boolean[] {true, true},
+        streams,
+        streamResetFlags,
+        /* positionUs= */ 0);
+
+    // The audio samples were extracted while the track was disabled, so no seek is needed.
+    assertThat(streamResetFlags).asList().containsExactly(false, true);
+    assertSamples(streams[0], expectedVideoOutput);
+    assertSamples(streams[1], expectedAudioOutput);
+  }
+
+  private void setUpMediaPeriod(String assetPath, ExtractorFactory extractorFactory)
+      throws Exception {
+    FakeExtractorOutput expectedOutput =
+        TestUtil.extractAllSamplesFromFile(
+            extractorFactory.create(), ApplicationProvider.getApplicationContext(), assetPath);
+    for (int i = 0; i < expectedOutput.trackOutputs.size(); i++) {
+      FakeTrackOutput trackOutput = expectedOutput.trackOutputs.valueAt(i);
+      if (MimeTypes.isVideo(trackOutput.lastFormat.sampleMimeType)) {
+        expectedVideoOutput = trackOutput;
+      } else {
+        expectedAudioOutput = trackOutput;
+      }
+    }
+    FakeDataSet fakeDataSet =
+        new FakeDataSet()
+            .setData(
+                URI, TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), assetPath));
+    mediaPeriod =
+        new ProgressiveMediaPeriod(
+            URI,
+            new FakeDataSource(fakeDataSet),
+            () -> new Extractor[] {extractorFactory.create()},
+            DrmSessionManager.getDummyDrmSessionManager(),
+            new DefaultLoadErrorHandlingPolicy(),
+            new EventDispatcher()
+                .withParameters(
+                    /* windowIndex= */ 0,
+                    new MediaPeriodId(/* periodUid= */ new Object()),
+                    /* mediaTimeOffsetMs= */ 0),
+            (durationUs, isSeekable, isLive) -> {},
+            allocator,
+            /* customCacheKey= */ null,
+            /* continueLoadingCheckIntervalBytes= */ 1024 * 1024,
+            /* seekMapCache= */ null);
+  }
+
+  private void prepareMediaPeriod() {
+    mediaPeriod.prepare(
+        new MediaPeriod.Callback() {
+          @Override
+          public void onPrepared(MediaPeriod mediaPeriod) {
+            prepared = true;
+          }
+
+          @Override
+          public void onContinueLoadingRequested(MediaPeriod source) {
+            source.continueLoading(/* positionUs= */ 0);
+          }
+        },
+        /* positionUs= */ 0);
+    runMainLooperUntil(() -> prepared);
+  }
+
+  private void continueLoadingUntilEnd() {
+    mediaPeriod.continueLoading(/* positionUs= */ 0);
+    runMainLooperUntil(() -> mediaPeriod.getBufferedPositionUs() == C.TIME_END_OF_SOURCE);
+  }
+
+  private static TrackSelection getTrackSelection(TrackGroupArray trackGroups, int trackType) {
+    for (int i = 0; i < trackGroups.length; i++) {
+      TrackGroup trackGroup = trackGroups.get(i);
+      if (MimeTypes.getTrackType(trackGroup.getFormat(0).sampleMimeType) == trackType) {
+        return new FixedTrackSelection(trackGroup, /* track= */ 0);
+      }
+    }
+    throw new IllegalArgumentException();
+  }
+
+  private static int getSampleDataLength(FakeTrackOutput trackOutput) {
+    int length = 0;
+    for (int i = 0; i < trackOutput.getSampleCount(); i++) {
+      length += trackOutput.getSampleData(i).length;
+    }
+    return length;
+  }
+
+  private static void assertSamples(SampleStream stream, FakeTrackOutput expectedOutput) {
+    FormatHolder formatHolder = new FormatHolder();
+    DecoderInputBuffer buffer =
+        new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+    List<Long> sampleTimesUs = new ArrayList<>();
+    while (true) {
+      buffer.clear();
+      int result = stream.readData(formatHolder, buffer, /* formatRequired= */ false);
+      if (result == C.RESULT_NOTHING_READ || buffer.isEndOfStream()) {
+        break;
+      } else if (result == C.RESULT_BUFFER_READ) {
+        buffer.flip();
+        byte[] sampleData = new byte[buffer.data.remaining()];
+        buffer.data.get(sampleData);
+        int sampleIndex = sampleTimesUs.size();
+        assertThat(sampleIndex).isLessThan(expectedOutput.getSampleCount());
+        assertThat(sampleData).isEqualTo(expectedOutput.getSampleData(sampleIndex));
+        sampleTimesUs.add(buffer.timeUs);
+      }
+    }
+    assertThat(sampleTimesUs).containsExactlyElementsIn(expectedOutput.getSampleTimesUs()).inOrder();
+  }
+
+  private static void runMainLooperUntil(Condition condition) {
+    while (!condition.isMet()) {
+      shadowMainLooper().idleFor(shadowMainLooper().getNextScheduledTaskTime());
+    }
+  }
+
+  private interface Condition {
+    boolean isMet();
+  }
+
+  private interface ExtractorFactory {
+    Extractor create();
+  }
+}
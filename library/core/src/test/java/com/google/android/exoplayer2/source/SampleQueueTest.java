@@ -37,9 +37,11 @@ import com.google.android.exoplayer2.drm.DrmSession;
 import com.google.android.exoplayer2.drm.DrmSessionManager;
 import com.google.android.exoplayer2.drm.ExoMediaCrypto;
 import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
 import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.upstream.DirectBufferAllocator;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import java.io.IOException;
 import java.util.Arrays;
@@ -306,6 +308,72 @@ public final class SampleQueueTest {
     assertAllocationCount(0);
   }
 
+  @Test
+  public void testReadMultiSamplesWithDirectAllocations() {
+    allocator = new DirectBufferAllocator(/* trimOnReset= */ false, ALLOCATION_SIZE);
+    sampleQueue = new SampleQueue(allocator, mockDrmSessionManager);
+
+    writeTestData();
+    assertAllocationCount(10);
+    assertReadTestData();
+    sampleQueue.discardToRead();
+    assertAllocationCount(0);
+  }
+
+  @Test
+  public void testReadSampleDataReaderSampleWithDirectAllocations() throws Exception {
+    allocator = new DirectBufferAllocator(/* trimOnReset= */ false, ALLOCATION_SIZE);
+    sampleQueue = new SampleQueue(allocator, mockDrmSessionManager);
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(DATA).build();
+
+    sampleQueue.format(FORMAT_1);
+    int bytesWritten = 0;
+    while (bytesWritten < DATA.length) {
+      bytesWritten +=
+          sampleQueue.sampleData(input, DATA.length - bytesWritten, /* allowEndOfInput= */ false);
+    }
+    sampleQueue.sampleMetadata(
+        /* timeUs= */ 0, C.BUFFER_FLAG_KEY_FRAME, DATA.length, /* offset= */ 0, null);
+
+    assertReadFormat(/* formatRequired= */ false, FORMAT_1);
+    assertReadSample(
+        /* timeUs= */ 0, /* isKeyFrame= */ true, /* isEncrypted= */ false, DATA, 0, DATA.length);
+  }
+
+  @Test
+  public void testReadBorrowedDataRetainsAllocationsUntilBufferCleared() {
+    allocator = new DirectBufferAllocator(/* trimOnReset= */ false, ALLOCATION_SIZE);
+    sampleQueue = new SampleQueue(allocator, mockDrmSessionManager);
+    inputBuffer = new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_DIRECT);
+    inputBuffer.setBorrowedDataAllowed(true);
+    sampleQueue.format(FORMAT_1);
+    sampleQueue.sampleData(new ParsableByteArray(DATA), ALLOCATION_SIZE * 2);
+    sampleQueue.sampleMetadata(0, C.BUFFER_FLAG_KEY_FRAME, ALLOCATION_SIZE * 2, 0, null);
+
+    assertReadFormat(/* formatRequired= */ false, FORMAT_1);
+    assertReadSample(0, true, /* isEncrypted= */ false, DATA, 0, ALLOCATION_SIZE * 2);
+    assertThat(inputBuffer.hasBorrowedData()).isTrue();
+    sampleQueue.discardToRead();
+    assertAllocationCount(2);
+    inputBuffer.clear();
+    assertAllocationCount(0);
+  }
+
+  @Test
+  public void testReadHeapDataIntoDirectBufferCopiesData() {
+    inputBuffer = new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_DIRECT);
+    inputBuffer.setBorrowedDataAllowed(true);
+    sampleQueue.format(FORMAT_1);
+    sampleQueue.sampleData(new ParsableByteArray(DATA), ALLOCATION_SIZE);
+    sampleQueue.sampleMetadata(0, C.BUFFER_FLAG_KEY_FRAME, ALLOCATION_SIZE, 0, null);
+
+    assertReadFormat(/* formatRequired= */ false, FORMAT_1);
+    assertReadSample(0, true, /* isEncrypted= */ false, DATA, 0, ALLOCATION_SIZE);
+    assertThat(inputBuffer.hasBorrowedData()).isFalse();
+    sampleQueue.discardToRead();
+    assertAllocationCount(0);
+  }
+
   @Test
   public void testReadMultiSamplesTwice() {
     writeTestData();
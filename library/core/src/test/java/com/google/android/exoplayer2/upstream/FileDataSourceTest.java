@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link FileDataSource}. */
+@RunWith(AndroidJUnit4.class)
+public final class FileDataSourceTest {
+
+  private static final byte[] TEST_DATA = TestUtil.buildTestData(/* length= */ 1000);
+
+  private File file;
+  private Uri uri;
+
+  @Before
+  public void setUp() throws Exception {
+    file = Util.createTempFile(ApplicationProvider.getApplicationContext(), "ExoPlayerTest");
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(TEST_DATA);
+    }
+    uri = Uri.fromFile(file);
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Test
+  public void read_returnsFileData() throws Exception {
+    FileDataSource dataSource = new FileDataSource();
+
+    assertThat(dataSource.open(new DataSpec(uri))).isEqualTo(TEST_DATA.length);
+    byte[] data = TestUtil.readToEnd(dataSource);
+    dataSource.close();
+
+    assertThat(data).isEqualTo(TEST_DATA);
+  }
+
+  @Test
+  public void read_withMemoryMapping_returnsFileData() throws Exception {
+    FileDataSource dataSource = new FileDataSource(/* memoryMappingEnabled= */ true);
+
+    assertThat(dataSource.open(new DataSpec(uri))).isEqualTo(TEST_DATA.length);
+    byte[] data = TestUtil.readToEnd(dataSource);
+    dataSource.close();
+
+    assertThat(data).isEqualTo(TEST_DATA);
+  }
+
+  @Test
+  public void read_withMemoryMappingAcrossRegions_returnsRequestedRange() throws Exception {
+    FileDataSource dataSource =
+        new FileDataSource(/* memoryMappingEnabled= */ true, /* maxMappedRegionSize= */ 64);
+
+    dataSource.open(new DataSpec(uri, /* position= */ 100, /* length= */ 500, /* key= */ null));
+    byte[] data = TestUtil.readToEnd(dataSource);
+    dataSource.close();
+
+    assertThat(data).isEqualTo(Arrays.copyOfRange(TEST_DATA, 100, 600));
+  }
+
+  @Test
+  public void read_withMemoryMappingPastEndOfFile_returnsEndOfInput() throws Exception {
+    FileDataSource dataSource = new FileDataSource(/* memoryMappingEnabled= */ true);
+    byte[] buffer = new byte[100];
+
+    dataSource.open(new DataSpec(uri, /* position= */ 950, /* length= */ 100, /* key= */ null));
+    int bytesRead = dataSource.read(buffer, /* offset= */ 0, buffer.length);
+    int result = dataSource.read(buffer, /* offset= */ 0, buffer.length);
+    dataSource.close();
+
+    assertThat(bytesRead).isEqualTo(50);
+    assertThat(result).isEqualTo(C.RESULT_END_OF_INPUT);
+  }
+
+  @Test
+  public void read_withMemoryMappingAfterReopen_returnsRequestedRange() throws Exception {
+    FileDataSource dataSource = new FileDataSource(/* memoryMappingEnabled= */ true);
+
+    dataSource.open(new DataSpec(uri, /* position= */ 0, /* length= */ 100, /* key= */ null));
+    byte[] data1 = TestUtil.readToEnd(dataSource);
+    dataSource.close();
+    dataSource.open(new DataSpec(uri, /* position= */ 500, /* length= */ 200, /* key= */ null));
+    byte[] data2 = TestUtil.readToEnd(dataSource);
+    dataSource.close();
+    dataSource.open(new DataSpec(uri, /* position= */ 50, /* length= */ 100, /* key= */ null));
+    byte[] data3 = TestUtil.readToEnd(dataSource);
+    dataSource.close();
+
+    assertThat(data1).isEqualTo(Arrays.copyOf(TEST_DATA, 100));
+    assertThat(data2).isEqualTo(Arrays.copyOfRange(TEST_DATA, 500, 700));
+    assertThat(data3).isEqualTo(Arrays.copyOfRange(TEST_DATA, 50, 150));
+  }
+
+  @Test
+  public void read_withMemoryMappingAfterFileTruncated_returnsNewFileData() throws Exception {
+    FileDataSource dataSource = new FileDataSource(/* memoryMappingEnabled= */ true);
+    dataSource.open(new DataSpec(uri));
+    TestUtil.readToEnd(dataSource);
+    dataSource.close();
+    byte[] newData = TestUtil.buildTestData(/* length= */ 100, /* seed= */ 1);
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(newData);
+    }
+
+    assertThat(dataSource.open(new DataSpec(uri))).isEqualTo(newData.length);
+    byte[] data = TestUtil.readToEnd(dataSource);
+    dataSource.close();
+
+    assertThat(data).isEqualTo(newData);
+  }
+}
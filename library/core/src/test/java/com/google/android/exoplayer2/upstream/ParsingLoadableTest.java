@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.HttpDataSource.InvalidResponseCodeException;
+import com.google.android.exoplayer2.util.Util;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link ParsingLoadable}. */
+@RunWith(AndroidJUnit4.class)
+public final class ParsingLoadableTest {
+
+  private static final Uri URI = Uri.parse("https://example.com/manifest");
+
+  private int parseCount;
+
+  @Test
+  public void load_withCacheAndNotModifiedResponse_keepsPreviousResult() throws Exception {
+    FakeHttpDataSource dataSource = new FakeHttpDataSource("data", /* entityTag= */ "\"v1\"");
+    ParsedResponseCache<String> cache = new ParsedResponseCache<>();
+
+    String firstResult = load(dataSource, cache);
+    String secondResult = load(dataSource, cache);
+
+    assertThat(dataSource.lastRequestHeaders).containsEntry("If-None-Match", "\"v1\"");
+    assertThat(dataSource.notModifiedResponseCount).isEqualTo(1);
+    assertThat(secondResult).isSameInstanceAs(firstResult);
+    assertThat(parseCount).isEqualTo(1);
+  }
+
+  @Test
+  public void load_withCacheAndIdenticalResponse_keepsPreviousResult() throws Exception {
+    FakeHttpDataSource dataSource = new FakeHttpDataSource("data", /* entityTag= */ null);
+    ParsedResponseCache<String> cache = new ParsedResponseCache<>();
+
+    String firstResult = load(dataSource, cache);
+    String secondResult = load(dataSource, cache);
+
+    assertThat(dataSource.lastRequestHeaders).isEmpty();
+    assertThat(secondResult).isSameInstanceAs(firstResult);
+    assertThat(parseCount).isEqualTo(1);
+  }
+
+  @Test
+  public void load_withCacheAndChangedResponse_parsesResponse() throws Exception {
+    FakeHttpDataSource dataSource = new FakeHttpDataSource("data", /* entityTag= */ "\"v1\"");
+    ParsedResponseCache<String> cache = new ParsedResponseCache<>();
+
+    load(dataSource, cache);
+    dataSource.setResponse("new data", /* entityTag= */ "\"v2\"");
+    String secondResult = load(dataSource, cache);
+    String thirdResult = load(dataSource, cache);
+
+    assertThat(secondResult).isEqualTo("new data");
+    assertThat(thirdResult).isSameInstanceAs(secondResult);
+    assertThat(dataSource.lastRequestHeaders).containsEntry("If-None-Match", "\"v2\"");
+    assertThat(parseCount).isEqualTo(2);
+  }
+
+  @Test
+  public void load_withoutCache_parsesEachResponse() throws Exception {
+    FakeHttpDataSource dataSource = new FakeHttpDataSource("data", /* entityTag= */ "\"v1\"");
+
+    load(dataSource, /* cache= */ null);
+    load(dataSource, /* cache= */ null);
+
+    assertThat(dataSource.lastRequestHeaders).isEmpty();
+    assertThat(parseCount).isEqualTo(2);
+  }
+
+  private String load(DataSource dataSource, @Nullable ParsedResponseCache<String> cache)
+      throws IOException {
+    ParsingLoadable<String> loadable =
+        new ParsingLoadable<>(
+            dataSource,
+            URI,
+            C.DATA_TYPE_MANIFEST,
+            (uri, inputStream) -> {
+              parseCount++;
+              return Util.fromUtf8Bytes(Util.toByteArray(inputStream));
+            },
+            cache);
+    loadable.load();
+    return loadable.getResult();
+  }
+
+  /**
+   * A {@link DataSource} that serves a single response with an optional ETag, and responds that it
+   * isn't modified to requests that are conditional on its current ETag.
+   */
+  private static final class FakeHttpDataSource extends BaseDataSource {
+
+    public Map<String, String> lastRequestHeaders;
+    public int notModifiedResponseCount;
+
+    private byte[] data;
+    @Nullable private String entityTag;
+    @Nullable private Uri uri;
+    private int readPosition;
+
+    public FakeHttpDataSource(String data, @Nullable String entityTag) {
+      super(/* isNetwork= */ true);
+      setResponse(data, entityTag);
+      lastRequestHeaders = Collections.emptyMap();
+    }
+
+    public void setResponse(String data, @Nullable String entityTag) {
+      this.data = Util.getUtf8Bytes(data);
+      this.entityTag = entityTag;
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      lastRequestHeaders = dataSpec.httpRequestHeaders;
+      if (entityTag != null && entityTag.equals(lastRequestHeaders.get("If-None-Match"))) {
+        notModifiedResponseCount++;
+        throw new InvalidResponseCodeException(
+            HttpURLConnection.HTTP_NOT_MODIFIED,
+            /* responseMessage= */ null,
+            Collections.emptyMap(),
+            dataSpec);
+      }
+      uri = dataSpec.uri;
+      readPosition = 0;
+      return data.length;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) {
+      if (readPosition == data.length) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      int bytesRead = Math.min(readLength, data.length - readPosition);
+      System.arraycopy(data, readPosition, buffer, offset, bytesRead);
+      readPosition += bytesRead;
+      return bytesRead;
+    }
+
+    @Override
+    @Nullable
+    public Uri getUri() {
+      return uri;
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+      return entityTag != null
+          ? Collections.singletonMap("etag", Collections.singletonList(entityTag))
+          : Collections.emptyMap();
+    }
+
+    @Override
+    public void close() {
+      uri = null;
+    }
+  }
+}
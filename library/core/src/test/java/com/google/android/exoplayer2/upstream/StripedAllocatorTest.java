@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link StripedAllocator}. */
+@RunWith(AndroidJUnit4.class)
+public final class StripedAllocatorTest {
+
+  private static final int ALLOCATION_SIZE = 16;
+
+  @Test
+  public void testAllocateAndRelease_updatesTotalBytesAllocated() {
+    StripedAllocator allocator = new StripedAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+
+    Allocation allocation1 = allocator.allocate();
+    Allocation allocation2 = allocator.allocate();
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(2 * ALLOCATION_SIZE);
+
+    allocator.release(allocation1);
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(ALLOCATION_SIZE);
+    allocator.release(new Allocation[] {allocation2});
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(0);
+  }
+
+  @Test
+  public void testAllocate_reusesReleasedAllocations() {
+    StripedAllocator allocator = new StripedAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+    IdentityHashMap<Allocation, Boolean> released = new IdentityHashMap<>();
+    Allocation[] allocations = new Allocation[40];
+    for (int i = 0; i < allocations.length; i++) {
+      allocations[i] = allocator.allocate();
+      released.put(allocations[i], true);
+    }
+    allocator.release(allocations);
+
+    for (int i = 0; i < allocations.length; i++) {
+      assertThat(released).containsKey(allocator.allocate());
+    }
+  }
+
+  @Test
+  public void testTrim_discardsAllocationsBeyondTarget() {
+    StripedAllocator allocator = new StripedAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+    allocator.setTargetBufferSize(4 * ALLOCATION_SIZE);
+    Allocation[] allocations = new Allocation[40];
+    for (int i = 0; i < allocations.length; i++) {
+      allocations[i] = allocator.allocate();
+    }
+    allocator.release(allocations);
+
+    allocator.trim();
+
+    IdentityHashMap<Allocation, Boolean> reused = new IdentityHashMap<>();
+    for (Allocation allocation : allocations) {
+      reused.put(allocation, true);
+    }
+    int reusedCount = 0;
+    for (int i = 0; i < allocations.length; i++) {
+      if (reused.containsKey(allocator.allocate())) {
+        reusedCount++;
+      }
+    }
+    assertThat(reusedCount).isEqualTo(4);
+  }
+
+  @Test
+  public void testReset_keepsInitialAllocations() {
+    StripedAllocator allocator =
+        new StripedAllocator(
+            /* trimOnReset= */ true, ALLOCATION_SIZE, /* initialAllocationCount= */ 3);
+    allocator.setTargetBufferSize(10 * ALLOCATION_SIZE);
+    Allocation[] allocations = new Allocation[10];
+    for (int i = 0; i < allocations.length; i++) {
+      allocations[i] = allocator.allocate();
+    }
+    allocator.release(allocations);
+
+    allocator.reset();
+
+    int initialBlockAllocationCount = 0;
+    for (int i = 0; i < allocations.length; i++) {
+      if (allocator.allocate().data.length == 3 * ALLOCATION_SIZE) {
+        initialBlockAllocationCount++;
+      }
+    }
+    assertThat(initialBlockAllocationCount).isEqualTo(3);
+  }
+
+  @Test
+  public void testConcurrentAllocateAndRelease_neverHandsOutAllocationTwice() throws Exception {
+    StripedAllocator allocator =
+        new StripedAllocator(
+            /* trimOnReset= */ true,
+            ALLOCATION_SIZE,
+            /* initialAllocationCount= */ 0,
+            /* stripeCount= */ 2);
+    int threadCount = 8;
+    int iterationCount = 10000;
+    CountDownLatch startLatch = new CountDownLatch(1);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      byte threadMarker = (byte) (i + 1);
+      Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  startLatch.await();
+                  Allocation[] held = new Allocation[4];
+                  for (int j = 0; j < iterationCount; j++) {
+                    for (int k = 0; k < held.length; k++) {
+                      held[k] = allocator.allocate();
+                      held[k].data[held[k].offset] = threadMarker;
+                    }
+                    for (Allocation allocation : held) {
+                      if (allocation.data[allocation.offset] != threadMarker) {
+                        throw new IllegalStateException("Allocation shared between threads");
+                      }
+                    }
+                    if (j % 2 == 0) {
+                      allocator.release(held);
+                    } else {
+                      for (Allocation allocation : held) {
+                        allocator.release(allocation);
+                      }
+                    }
+                  }
+                } catch (Throwable e) {
+                  failure.compareAndSet(null, e);
+                }
+              });
+      threads.add(thread);
+      thread.start();
+    }
+    startLatch.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(failure.get()).isNull();
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(0);
+  }
+}
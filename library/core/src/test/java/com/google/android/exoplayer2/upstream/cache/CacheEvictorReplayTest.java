@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Replays span access traces through {@link CacheEvictor} implementations, and compares their hit
+ * ratios.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class CacheEvictorReplayTest {
+
+  private static final int SPAN_LENGTH = 100;
+  private static final int MAX_SPAN_COUNT = 50;
+  private static final long MAX_BYTES = MAX_SPAN_COUNT * SPAN_LENGTH;
+
+  @Test
+  public void testReplay_hotSpansWithoutScan_allEvictorsHitEqually() throws Exception {
+    List<CacheSpan> trace = createTrace(/* hotSpanCount= */ 30, /* scanSpanCount= */ 0);
+
+    double lruHitRatio = replay(new LeastRecentlyUsedCacheEvictor(MAX_BYTES), trace);
+    double slruHitRatio = replay(new SegmentedLruCacheEvictor(MAX_BYTES), trace);
+    double tinyLfuHitRatio = replay(new WindowTinyLfuCacheEvictor(MAX_BYTES), trace);
+
+    assertThat(slruHitRatio).isEqualTo(lruHitRatio);
+    assertThat(tinyLfuHitRatio).isEqualTo(lruHitRatio);
+  }
+
+  @Test
+  public void testReplay_hotSpansWithScan_segmentedLruBeatsLru() throws Exception {
+    List<CacheSpan> trace = createTrace(/* hotSpanCount= */ 30, /* scanSpanCount= */ 2000);
+
+    double lruHitRatio = replay(new LeastRecentlyUsedCacheEvictor(MAX_BYTES), trace);
+    double slruHitRatio = replay(new SegmentedLruCacheEvictor(MAX_BYTES), trace);
+
+    assertThat(slruHitRatio).isGreaterThan(lruHitRatio);
+  }
+
+  @Test
+  public void testReplay_hotSpansWithScan_windowTinyLfuBeatsLru() throws Exception {
+    List<CacheSpan> trace = createTrace(/* hotSpanCount= */ 30, /* scanSpanCount= */ 2000);
+
+    double lruHitRatio = replay(new LeastRecentlyUsedCacheEvictor(MAX_BYTES), trace);
+    double tinyLfuHitRatio = replay(new WindowTinyLfuCacheEvictor(MAX_BYTES), trace);
+
+    assertThat(tinyLfuHitRatio).isGreaterThan(lruHitRatio);
+  }
+
+  /**
+   * Replays a trace of span accesses through an evictor, and returns the fraction of accesses for
+   * which the span was cached.
+   *
+   * @param evictor The evictor.
+   * @param trace The accessed spans, in the order in which they were accessed. Spans are identified
+   *     by their key and position.
+   * @return The hit ratio.
+   */
+  /* package */ static double replay(CacheEvictor evictor, List<CacheSpan> trace)
+      throws Exception {
+    TreeSet<CacheSpan> cachedSpans = new TreeSet<>();
+    Cache cache = mock(Cache.class);
+    doAnswer(
+            invocation -> {
+              CacheSpan span = invocation.getArgument(0);
+              if (cachedSpans.remove(span)) {
+                evictor.onSpanRemoved(cache, span);
+              }
+              return null;
+            })
+        .when(cache)
+        .removeSpan(any());
+
+    evictor.onCacheInitialized();
+    long timestamp = 0;
+    int hitCount = 0;
+    for (CacheSpan access : trace) {
+      timestamp++;
+      CacheSpan span =
+          new CacheSpan(
+              access.key, access.position, access.length, timestamp, new File(access.key));
+      CacheSpan cachedSpan = cachedSpans.floor(span);
+      if (cachedSpan != null && cachedSpan.compareTo(span) == 0) {
+        hitCount++;
+        cachedSpans.remove(cachedSpan);
+        cachedSpans.add(span);
+        evictor.onSpanTouched(cache, cachedSpan, span);
+      } else {
+        evictor.onStartFile(cache, span.key, span.position, span.length);
+        cachedSpans.add(span);
+        evictor.onSpanAdded(cache, span);
+      }
+      assertThat(getLength(cachedSpans)).isAtMost(MAX_BYTES);
+    }
+    return (double) hitCount / trace.size();
+  }
+
+  /**
+   * Creates a trace in which a set of hot spans, such as those at the live edge of a stream, is
+   * accessed repeatedly in random order, interleaved with a single sequential scan through a long
+   * stream.
+   */
+  private static List<CacheSpan> createTrace(int hotSpanCount, int scanSpanCount) {
+    Random random = new Random(/* seed= */ 0);
+    List<CacheSpan> trace = new ArrayList<>();
+    int hotAccessCount = 3 * scanSpanCount + 1000;
+    int scanPosition = 0;
+    for (int i = 0; i < hotAccessCount; i++) {
+      long hotPosition = (long) random.nextInt(hotSpanCount) * SPAN_LENGTH;
+      trace.add(new CacheSpan("hot", hotPosition, SPAN_LENGTH));
+      if (i % 3 == 0 && scanPosition < scanSpanCount) {
+        trace.add(new CacheSpan("scan", (long) scanPosition++ * SPAN_LENGTH, SPAN_LENGTH));
+      }
+    }
+    return trace;
+  }
+
+  private static long getLength(Iterable<CacheSpan> spans) {
+    long length = 0;
+    for (CacheSpan span : spans) {
+      length += span.length;
+    }
+    return length;
+  }
+}
@@ -17,9 +17,14 @@ package com.google.android.exoplayer2.upstream.cache;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
-import com.google.android.exoplayer2.database.DatabaseIOException;
+import com.google.android.exoplayer2.database.DatabaseProvider;
 import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.HashSet;
 import java.util.Map;
 import org.junit.Test;
@@ -30,13 +35,13 @@ import org.junit.runner.RunWith;
 public class CacheFileMetadataIndexTest {
 
   @Test
-  public void initiallyEmpty() throws DatabaseIOException {
+  public void initiallyEmpty() throws IOException {
     CacheFileMetadataIndex index = newInitializedIndex();
     assertThat(index.getAll()).isEmpty();
   }
 
   @Test
-  public void insert() throws DatabaseIOException {
+  public void insert() throws IOException {
     CacheFileMetadataIndex index = newInitializedIndex();
 
     index.set("name1", /* length= */ 123, /* lastTouchTimestamp= */ 456);
@@ -60,7 +65,7 @@ public class CacheFileMetadataIndexTest {
   }
 
   @Test
-  public void insertAndRemove() throws DatabaseIOException {
+  public void insertAndRemove() throws IOException {
     CacheFileMetadataIndex index = newInitializedIndex();
 
     index.set("name1", /* length= */ 123, /* lastTouchTimestamp= */ 456);
@@ -89,7 +94,7 @@ public class CacheFileMetadataIndexTest {
   }
 
   @Test
-  public void insertAndRemoveAll() throws DatabaseIOException {
+  public void insertAndRemoveAll() throws IOException {
     CacheFileMetadataIndex index = newInitializedIndex();
 
     index.set("name1", /* length= */ 123, /* lastTouchTimestamp= */ 456);
@@ -111,7 +116,7 @@ public class CacheFileMetadataIndexTest {
   }
 
   @Test
-  public void insertAndReplace() throws DatabaseIOException {
+  public void insertAndReplace() throws IOException {
     CacheFileMetadataIndex index = newInitializedIndex();
 
     index.set("name1", /* length= */ 123, /* lastTouchTimestamp= */ 456);
@@ -126,10 +131,113 @@ public class CacheFileMetadataIndexTest {
     assertThat(metadata.lastTouchTimestamp).isEqualTo(123);
   }
 
-  private static CacheFileMetadataIndex newInitializedIndex() throws DatabaseIOException {
+  @Test
+  public void journalInsertRemoveAndReload() throws IOException {
+    File journalFile = newJournalFile();
+    try {
+      CacheFileMetadataIndex index = newInitializedJournalIndex(journalFile);
+      index.set("name1", /* length= */ 123, /* lastTouchTimestamp= */ 456);
+      index.set("name2", /* length= */ 789, /* lastTouchTimestamp= */ 123);
+      index.set("name1", /* length= */ 123, /* lastTouchTimestamp= */ 789);
+      index.remove("name2");
+
+      Map<String, CacheFileMetadata> all = newInitializedJournalIndex(journalFile).getAll();
+      assertThat(all.keySet()).containsExactly("name1");
+      assertThat(all.get("name1").length).isEqualTo(123);
+      assertThat(all.get("name1").lastTouchTimestamp).isEqualTo(789);
+    } finally {
+      Util.recursiveDelete(journalFile.getParentFile());
+    }
+  }
+
+  @Test
+  public void journalPartiallyWrittenRecordIsDiscarded() throws IOException {
+    File journalFile = newJournalFile();
+    try {
+      CacheFileMetadataIndex index = newInitializedJournalIndex(journalFile);
+      index.set("name1", /* length= */ 123, /* lastTouchTimestamp= */ 456);
+      long validLength = journalFile.length();
+      index.set("name2", /* length= */ 789, /* lastTouchTimestamp= */ 123);
+      // Simulate the process being killed while the second record was being written.
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(journalFile, "rw")) {
+        randomAccessFile.setLength(journalFile.length() - 3);
+      }
+
+      index = newInitializedJournalIndex(journalFile);
+      assertThat(index.getAll().keySet()).containsExactly("name1");
+      assertThat(journalFile.length()).isEqualTo(validLength);
+
+      // Records appended after recovery should be readable.
+      index.set("name3", /* length= */ 1, /* lastTouchTimestamp= */ 2);
+      assertThat(newInitializedJournalIndex(journalFile).getAll().keySet())
+          .containsExactly("name1", "name3");
+    } finally {
+      Util.recursiveDelete(journalFile.getParentFile());
+    }
+  }
+
+  @Test
+  public void journalIsCompacted() throws IOException {
+    File journalFile = newJournalFile();
+    try {
+      CacheFileMetadataIndex index = newInitializedJournalIndex(journalFile);
+      int setCount = 10000;
+      for (int i = 0; i < setCount; i++) {
+        index.set("name" + (i % 10), /* length= */ i, /* lastTouchTimestamp= */ i);
+      }
+
+      // Each record takes more than 8 bytes, so the journal must have been compacted.
+      assertThat(journalFile.length()).isLessThan(setCount * 8L);
+      Map<String, CacheFileMetadata> all = newInitializedJournalIndex(journalFile).getAll();
+      assertThat(all).hasSize(10);
+      assertThat(all.get("name9").length).isEqualTo(setCount - 1);
+    } finally {
+      Util.recursiveDelete(journalFile.getParentFile());
+    }
+  }
+
+  @Test
+  public void journalMigratesFromDatabase() throws IOException {
+    File journalFile = newJournalFile();
+    try {
+      DatabaseProvider databaseProvider = TestUtil.getInMemoryDatabaseProvider();
+      CacheFileMetadataIndex databaseIndex = new CacheFileMetadataIndex(databaseProvider);
+      databaseIndex.initialize(/* uid= */ 1234);
+      databaseIndex.set("name1", /* length= */ 123, /* lastTouchTimestamp= */ 456);
+
+      CacheFileMetadataIndex index = new CacheFileMetadataIndex(journalFile, databaseProvider);
+      index.initialize(/* uid= */ 1234);
+
+      assertThat(index.getAll().keySet()).containsExactly("name1");
+      assertThat(newInitializedJournalIndex(journalFile).getAll().keySet())
+          .containsExactly("name1");
+      // The migrated database index should have been deleted.
+      databaseIndex = new CacheFileMetadataIndex(databaseProvider);
+      databaseIndex.initialize(/* uid= */ 1234);
+      assertThat(databaseIndex.getAll()).isEmpty();
+    } finally {
+      Util.recursiveDelete(journalFile.getParentFile());
+    }
+  }
+
+  private static CacheFileMetadataIndex newInitializedIndex() throws IOException {
     CacheFileMetadataIndex index =
         new CacheFileMetadataIndex(TestUtil.getInMemoryDatabaseProvider());
     index.initialize(/* uid= */ 1234);
     return index;
   }
+
+  private static File newJournalFile() throws IOException {
+    File directory =
+        Util.createTempDirectory(ApplicationProvider.getApplicationContext(), "ExoPlayerTest");
+    return new File(directory, CacheFileMetadataIndex.FILE_NAME_JOURNAL);
+  }
+
+  private static CacheFileMetadataIndex newInitializedJournalIndex(File journalFile)
+      throws IOException {
+    CacheFileMetadataIndex index =
+        new CacheFileMetadataIndex(journalFile, /* databaseProvider= */ null);
+    index.initialize(/* uid= */ 1234);
+    return index;
+  }
 }
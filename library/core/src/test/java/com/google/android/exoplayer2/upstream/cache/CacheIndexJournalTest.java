@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link CacheIndexJournal}. */
+@RunWith(AndroidJUnit4.class)
+public final class CacheIndexJournalTest {
+
+  private File cacheDir;
+  private File file;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir =
+        Util.createTempDirectory(ApplicationProvider.getApplicationContext(), "ExoPlayerTest");
+    file = new File(cacheDir, "journal");
+  }
+
+  @After
+  public void tearDown() {
+    Util.recursiveDelete(cacheDir);
+  }
+
+  @Test
+  public void commitThenReplay_returnsCommittedRecords() throws Exception {
+    CacheIndexJournal journal = new CacheIndexJournal(file);
+    journal.replay(record -> {});
+    appendRecords(journal, 1, 2);
+    appendRecords(journal, 3);
+
+    assertThat(replay(new CacheIndexJournal(file))).containsExactly(1, 2, 3).inOrder();
+  }
+
+  @Test
+  public void commitAfterFailedCommit_overwritesPartiallyWrittenRecords() throws Exception {
+    CacheIndexJournal journal = new CacheIndexJournal(file);
+    journal.replay(record -> {});
+    appendRecords(journal, 1);
+    // Simulate a commit that failed after writing part of a record, and whose partial write
+    // couldn't be truncated.
+    try (FileOutputStream outputStream = new FileOutputStream(file, /* append= */ true)) {
+      outputStream.write(new byte[] {0, 0, 0, 4, 1, 2});
+    }
+
+    appendRecords(journal, 2, 3);
+
+    CacheIndexJournal replayedJournal = new CacheIndexJournal(file);
+    assertThat(replay(replayedJournal)).containsExactly(1, 2, 3).inOrder();
+    assertThat(replayedJournal.getRecordCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void commitAfterReplayOfPartiallyWrittenRecord_appendsAfterValidRecords()
+      throws Exception {
+    CacheIndexJournal journal = new CacheIndexJournal(file);
+    journal.replay(record -> {});
+    appendRecords(journal, 1);
+    try (FileOutputStream outputStream = new FileOutputStream(file, /* append= */ true)) {
+      outputStream.write(new byte[] {0, 0});
+    }
+
+    CacheIndexJournal reopenedJournal = new CacheIndexJournal(file);
+    assertThat(replay(reopenedJournal)).containsExactly(1);
+    appendRecords(reopenedJournal, 2);
+
+    assertThat(replay(new CacheIndexJournal(file))).containsExactly(1, 2).inOrder();
+  }
+
+  @Test
+  public void commitAfterCompact_appendsAfterCompactedRecords() throws Exception {
+    CacheIndexJournal journal = new CacheIndexJournal(file);
+    journal.replay(record -> {});
+    appendRecords(journal, 1, 2);
+    journal.startRecord().writeInt(3);
+    journal.endRecord();
+    journal.compact();
+
+    appendRecords(journal, 4);
+
+    assertThat(replay(new CacheIndexJournal(file))).containsExactly(3, 4).inOrder();
+  }
+
+  @Test
+  public void commitDuringCompaction_appendsToCompactedRecords() throws Exception {
+    CacheIndexJournal journal = new CacheIndexJournal(file);
+    journal.replay(record -> {});
+    appendRecords(journal, 1, 2);
+    journal.startRecord().writeInt(3);
+    journal.endRecord();
+    journal.startCompaction();
+
+    appendRecords(journal, 4);
+    journal.blockUntilCompacted();
+    appendRecords(journal, 5);
+
+    assertThat(journal.isCompacting()).isFalse();
+    CacheIndexJournal replayedJournal = new CacheIndexJournal(file);
+    assertThat(replay(replayedJournal)).containsExactly(3, 4, 5).inOrder();
+    assertThat(replayedJournal.getRecordCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void cancelCompaction_keepsJournal() throws Exception {
+    CacheIndexJournal journal = new CacheIndexJournal(file);
+    journal.replay(record -> {});
+    appendRecords(journal, 1, 2);
+    journal.startRecord().writeInt(3);
+    journal.endRecord();
+    journal.startCompaction();
+
+    journal.cancelCompaction();
+    journal.blockUntilCompacted();
+    appendRecords(journal, 4);
+
+    assertThat(replay(new CacheIndexJournal(file))).containsExactly(1, 2, 4).inOrder();
+  }
+
+  private static void appendRecords(CacheIndexJournal journal, int... values) throws IOException {
+    for (int value : values) {
+      journal.startRecord().writeInt(value);
+      journal.endRecord();
+    }
+    journal.commit(/* sync= */ false);
+  }
+
+  private static List<Integer> replay(CacheIndexJournal journal) throws IOException {
+    List<Integer> values = new ArrayList<>();
+    assertThat(journal.replay(record -> values.add(record.readInt()))).isTrue();
+    return values;
+  }
+}
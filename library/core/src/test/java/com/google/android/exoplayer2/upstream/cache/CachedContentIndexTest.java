@@ -24,6 +24,7 @@ import android.util.SparseArray;
 import androidx.annotation.Nullable;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.util.Util;
 import java.io.File;
@@ -191,6 +192,49 @@ public class CachedContentIndexTest {
     assertThat(ContentMetadata.getContentLength(metadata2)).isEqualTo(2560);
   }
 
+  @Test
+  public void testJournalStoreAndLoad() throws Exception {
+    assertStoredAndLoadedEqual(newJournalInstance(), newJournalInstance());
+  }
+
+  @Test
+  public void testJournalStoreRemoveAndLoad() throws Exception {
+    CachedContentIndex index = newJournalInstance();
+    index.initialize(/* uid= */ 0);
+    index.getOrAdd("ABCDE");
+    index.getOrAdd("KLMNO");
+    index.store();
+    ContentMetadataMutations mutations = new ContentMetadataMutations();
+    ContentMetadataMutations.setContentLength(mutations, 10);
+    index.applyContentMetadataMutations("KLMNO", mutations);
+    index.maybeRemove("ABCDE");
+    index.store();
+
+    CachedContentIndex index2 = newJournalInstance();
+    index2.initialize(/* uid= */ 0);
+    assertThat(index2.getKeys()).containsExactly("KLMNO");
+    assertThat(index2.get("KLMNO")).isEqualTo(index.get("KLMNO"));
+    assertThat(ContentMetadata.getContentLength(index2.getContentMetadata("KLMNO")))
+        .isEqualTo(10);
+  }
+
+  @Test
+  public void testJournalMigratesFromLegacy() throws Exception {
+    CachedContentIndex legacyIndex = newLegacyInstance();
+    legacyIndex.initialize(/* uid= */ 0);
+    legacyIndex.getOrAdd("ABCDE");
+    legacyIndex.store();
+
+    CachedContentIndex index = newJournalInstance();
+    index.initialize(/* uid= */ 0);
+
+    assertThat(index.getKeys()).containsExactly("ABCDE");
+    assertThat(new File(cacheDir, CachedContentIndex.FILE_NAME_ATOMIC).exists()).isFalse();
+    CachedContentIndex index2 = newJournalInstance();
+    index2.initialize(/* uid= */ 0);
+    assertThat(index2.getKeys()).containsExactly("ABCDE");
+  }
+
   @Test
   public void testAssignIdForKeyAndGetKeyForId() {
     CachedContentIndex index = newInstance();
@@ -301,7 +345,7 @@ public class CachedContentIndexTest {
   public void testCantRemoveLockedCachedContent() {
     CachedContentIndex index = newInstance();
     CachedContent cachedContent = index.getOrAdd("key1");
-    cachedContent.setLocked(true);
+    cachedContent.lockRange(/* position= */ 0, /* length= */ C.LENGTH_UNSET);
 
     index.maybeRemove(cachedContent.key);
 
@@ -332,6 +376,16 @@ public class CachedContentIndexTest {
     return new CachedContentIndex(TestUtil.getInMemoryDatabaseProvider());
   }
 
+  private CachedContentIndex newJournalInstance() {
+    return new CachedContentIndex(
+        /* databaseProvider= */ null,
+        cacheDir,
+        /* legacyStorageSecretKey= */ null,
+        /* legacyStorageEncrypt= */ false,
+        /* preferLegacyStorage= */ false,
+        /* useJournalStorage= */ true);
+  }
+
   private CachedContentIndex newLegacyInstance() {
     return newLegacyInstance(null);
   }
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.android.exoplayer2.util.Util.toByteArray;
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link ShardedCache}. */
+@RunWith(AndroidJUnit4.class)
+public final class ShardedCacheTest {
+
+  private static final int SHARD_COUNT = 4;
+
+  private File cacheDir;
+  private ShardedCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir =
+        Util.createTempDirectory(ApplicationProvider.getApplicationContext(), "ExoPlayerTest");
+    Cache[] shards = new Cache[SHARD_COUNT];
+    for (int i = 0; i < SHARD_COUNT; i++) {
+      shards[i] = new SimpleCache(new File(cacheDir, "shard" + i), new NoOpCacheEvictor());
+    }
+    cache = new ShardedCache(shards);
+  }
+
+  @After
+  public void tearDown() {
+    cache.release();
+    Util.recursiveDelete(cacheDir);
+  }
+
+  @Test
+  public void testContentIsStoredInShardForKey() throws Exception {
+    addCache(cache, "key1", /* position= */ 0, /* length= */ 15);
+    addCache(cache, "key2", /* position= */ 0, /* length= */ 10);
+
+    assertThat(cache.getShard("key1").getCachedSpans("key1")).hasSize(1);
+    assertThat(cache.getShard("key2").getCachedSpans("key2")).hasSize(1);
+    assertThat(cache.getKeys()).containsExactly("key1", "key2");
+    assertThat(cache.getCacheSpace()).isEqualTo(25);
+    assertThat(cache.isCached("key1", /* position= */ 0, /* length= */ 15)).isTrue();
+    assertThat(cache.getCachedLength("key2", /* position= */ 0, /* length= */ 20)).isEqualTo(10);
+  }
+
+  @Test
+  public void testKeysAreDistributedBetweenShards() {
+    Set<Cache> usedShards = new HashSet<>();
+    for (int i = 0; i < 100; i++) {
+      usedShards.add(cache.getShard("key" + i));
+    }
+    assertThat(usedShards).hasSize(SHARD_COUNT);
+  }
+
+  @Test
+  public void testConcurrentReadWriteOfDifferentKeys() throws Exception {
+    int threadCount = 8;
+    int spanCount = 20;
+    CountDownLatch startLatch = new CountDownLatch(1);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      String key = "key" + i;
+      Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  startLatch.await();
+                  for (int j = 0; j < spanCount; j++) {
+                    addCache(cache, key, /* position= */ j * 10, /* length= */ 10);
+                    CacheSpan cachedSpan = cache.startReadWrite(key, /* position= */ j * 10);
+                    assertCachedDataReadCorrect(cachedSpan);
+                  }
+                } catch (Throwable e) {
+                  failure.compareAndSet(null, e);
+                }
+              });
+      threads.add(thread);
+      thread.start();
+    }
+    startLatch.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(failure.get()).isNull();
+    assertThat(cache.getKeys()).hasSize(threadCount);
+    assertThat(cache.getCacheSpace()).isEqualTo(threadCount * spanCount * 10);
+    for (int i = 0; i < threadCount; i++) {
+      assertThat(cache.isCached("key" + i, /* position= */ 0, /* length= */ spanCount * 10))
+          .isTrue();
+    }
+  }
+
+  private static void addCache(Cache cache, String key, int position, int length)
+      throws IOException, InterruptedException {
+    CacheSpan holeSpan = cache.startReadWrite(key, position);
+    File file = cache.startFile(key, position, length);
+    try (FileOutputStream fos = new FileOutputStream(file)) {
+      fos.write(generateData(key, position, length));
+    }
+    cache.commitFile(file, length);
+    cache.releaseHoleSpan(holeSpan);
+  }
+
+  private static void assertCachedDataReadCorrect(CacheSpan cacheSpan) throws IOException {
+    assertThat(cacheSpan.isCached).isTrue();
+    byte[] expected = generateData(cacheSpan.key, (int) cacheSpan.position, (int) cacheSpan.length);
+    try (FileInputStream inputStream = new FileInputStream(cacheSpan.file)) {
+      assertThat(toByteArray(inputStream)).isEqualTo(expected);
+    }
+  }
+
+  private static byte[] generateData(String key, int position, int length) {
+    byte[] bytes = new byte[length];
+    new Random((long) (key.hashCode() ^ position)).nextBytes(bytes);
+    return bytes;
+  }
+}
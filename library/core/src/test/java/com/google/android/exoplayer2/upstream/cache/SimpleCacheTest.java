@@ -33,6 +33,8 @@ import java.io.IOException;
 import java.util.NavigableSet;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -132,6 +134,83 @@ public class SimpleCacheTest {
     simpleCache.releaseHoleSpan(cacheSpan1);
   }
 
+  @Test
+  public void testStartReadWriteNonBlocking_withOverlappingRange_returnsNull() throws Exception {
+    SimpleCache simpleCache = getSimpleCache();
+    CacheSpan holeSpan = simpleCache.startReadWriteNonBlocking(KEY_1, 10, 10);
+
+    assertThat(holeSpan.isCached).isFalse();
+    assertThat(holeSpan.position).isEqualTo(10);
+    assertThat(holeSpan.length).isEqualTo(10);
+    assertThat(simpleCache.startReadWriteNonBlocking(KEY_1, 15, 10)).isNull();
+    assertThat(simpleCache.startReadWriteNonBlocking(KEY_1, 5, 10)).isNull();
+    assertThat(simpleCache.startReadWriteNonBlocking(KEY_1, 19, 1)).isNull();
+    assertThat(simpleCache.startReadWriteNonBlocking(KEY_1, 0)).isNull();
+    // Other keys aren't affected.
+    assertThat(simpleCache.startReadWriteNonBlocking(KEY_2, 10, 10)).isNotNull();
+  }
+
+  @Test
+  public void testStartReadWriteNonBlocking_withAdjacentRanges_locksEachRange() throws Exception {
+    SimpleCache simpleCache = getSimpleCache();
+    CacheSpan holeSpan1 = simpleCache.startReadWriteNonBlocking(KEY_1, 10, 10);
+    CacheSpan holeSpan2 = simpleCache.startReadWriteNonBlocking(KEY_1, 20, LENGTH_UNSET);
+    CacheSpan holeSpan3 = simpleCache.startReadWriteNonBlocking(KEY_1, 0, 10);
+
+    assertThat(holeSpan1).isNotNull();
+    assertThat(holeSpan2).isNotNull();
+    assertThat(holeSpan3).isNotNull();
+    addCache(simpleCache, KEY_1, 0, 10);
+    addCache(simpleCache, KEY_1, 10, 10);
+    addCache(simpleCache, KEY_1, 20, 10);
+    simpleCache.releaseHoleSpan(holeSpan1);
+    simpleCache.releaseHoleSpan(holeSpan2);
+    simpleCache.releaseHoleSpan(holeSpan3);
+
+    assertThat(simpleCache.getCachedLength(KEY_1, 0, 30)).isEqualTo(30);
+    assertThat(simpleCache.getCachedSpans(KEY_1)).hasSize(3);
+  }
+
+  @Test
+  public void testReleaseHoleSpan_unlocksReleasedRangeOnly() throws Exception {
+    SimpleCache simpleCache = getSimpleCache();
+    CacheSpan holeSpan1 = simpleCache.startReadWriteNonBlocking(KEY_1, 0, 10);
+    CacheSpan holeSpan2 = simpleCache.startReadWriteNonBlocking(KEY_1, 10, 10);
+
+    simpleCache.releaseHoleSpan(holeSpan1);
+
+    assertThat(simpleCache.startReadWriteNonBlocking(KEY_1, 15, 1)).isNull();
+    CacheSpan holeSpan3 = simpleCache.startReadWriteNonBlocking(KEY_1, 0, 10);
+    assertThat(holeSpan3).isNotNull();
+    simpleCache.releaseHoleSpan(holeSpan2);
+    simpleCache.releaseHoleSpan(holeSpan3);
+    // Once every range is released, the whole content can be locked again.
+    assertThat(simpleCache.startReadWriteNonBlocking(KEY_1, 0)).isNotNull();
+  }
+
+  @Test
+  public void testStartReadWrite_blocksUntilOverlappingRangeIsReleased() throws Exception {
+    SimpleCache simpleCache = getSimpleCache();
+    CacheSpan holeSpan = simpleCache.startReadWrite(KEY_1, 0, 10);
+    CountDownLatch lockedLatch = new CountDownLatch(1);
+    Thread thread =
+        new Thread(
+            () -> {
+              try {
+                simpleCache.startReadWrite(KEY_1, 5, 10);
+                lockedLatch.countDown();
+              } catch (InterruptedException | CacheException e) {
+                // Do nothing. The latch isn't counted down.
+              }
+            });
+    thread.start();
+
+    assertThat(lockedLatch.await(100, TimeUnit.MILLISECONDS)).isFalse();
+    simpleCache.releaseHoleSpan(holeSpan);
+    assertThat(lockedLatch.await(5, TimeUnit.SECONDS)).isTrue();
+    thread.join();
+  }
+
   @Test
   public void testSetGetContentMetadata() throws Exception {
     SimpleCache simpleCache = getSimpleCache();
@@ -190,6 +269,107 @@ public class SimpleCacheTest {
     assertCachedDataReadCorrect(cacheSpan2);
   }
 
+  @Test
+  public void testReloadCache_restoresSpansFromSnapshot() throws Exception {
+    SimpleCache simpleCache = getSimpleCache();
+    CacheSpan cacheSpan1 = simpleCache.startReadWrite(KEY_1, 0);
+    addCache(simpleCache, KEY_1, 0, 15);
+    addCache(simpleCache, KEY_1, 15, 15);
+    simpleCache.releaseHoleSpan(cacheSpan1);
+    simpleCache.release();
+    File snapshotFile = new File(cacheDir, CacheSpanSnapshot.FILE_NAME);
+    assertThat(snapshotFile.exists()).isTrue();
+
+    simpleCache = getSimpleCache();
+
+    assertThat(simpleCache.getCachedSpans(KEY_1)).hasSize(2);
+    // The snapshot should only be trusted once.
+    assertThat(snapshotFile.exists()).isFalse();
+    assertThat(simpleCache.getCacheSpace()).isEqualTo(30);
+    assertCachedDataReadCorrect(simpleCache.startReadWrite(KEY_1, 0));
+    assertCachedDataReadCorrect(simpleCache.startReadWrite(KEY_1, 15));
+  }
+
+  @Test
+  public void testReloadCache_withSnapshotAndDeletedFile_removesSpan() throws Exception {
+    SimpleCache simpleCache = getSimpleCache();
+    CacheSpan cacheSpan1 = simpleCache.startReadWrite(KEY_1, 0);
+    addCache(simpleCache, KEY_1, 0, 15);
+    simpleCache.releaseHoleSpan(cacheSpan1);
+    File file = simpleCache.getCachedSpans(KEY_1).first().file;
+    simpleCache.release();
+    assertThat(file.delete()).isTrue();
+
+    simpleCache = getSimpleCache();
+    CacheSpan cacheSpan2 = simpleCache.startReadWrite(KEY_1, 0);
+
+    assertThat(cacheSpan2.isCached).isFalse();
+    assertThat(simpleCache.getCachedSpans(KEY_1)).isEmpty();
+  }
+
+  @Test
+  public void testRemoveStaleRestoredSpan_afterSpanTouched_keepsTouchedSpan() throws Exception {
+    SimpleCache simpleCache =
+        new SimpleCache(cacheDir, new LeastRecentlyUsedCacheEvictor(Long.MAX_VALUE));
+    CacheSpan holeSpan = simpleCache.startReadWrite(KEY_1, 0);
+    addCache(simpleCache, KEY_1, 0, 15);
+    simpleCache.releaseHoleSpan(holeSpan);
+    SimpleCacheSpan checkedSpan = (SimpleCacheSpan) simpleCache.getCachedSpans(KEY_1).first();
+    // Make sure touching the span gives its file a new name.
+    Thread.sleep(5);
+
+    // Touching the span renames its file, so the checked span looks stale.
+    CacheSpan touchedSpan = simpleCache.startReadWrite(KEY_1, 0);
+    assertThat(touchedSpan.file).isNotEqualTo(checkedSpan.file);
+    simpleCache.removeStaleRestoredSpan(checkedSpan);
+
+    assertThat(simpleCache.getCachedSpans(KEY_1)).hasSize(1);
+    assertThat(simpleCache.getCacheSpace()).isEqualTo(15);
+    assertCachedDataReadCorrect(simpleCache.startReadWrite(KEY_1, 0));
+  }
+
+  @Test
+  public void testRemoveStaleRestoredSpan_afterSpanRewritten_keepsNewSpan() throws Exception {
+    SimpleCache simpleCache = getSimpleCache();
+    CacheSpan holeSpan = simpleCache.startReadWrite(KEY_1, 0);
+    addCache(simpleCache, KEY_1, 0, 15);
+    simpleCache.releaseHoleSpan(holeSpan);
+    SimpleCacheSpan checkedSpan = (SimpleCacheSpan) simpleCache.getCachedSpans(KEY_1).first();
+    Thread.sleep(5);
+
+    // Evict the span and write a new one at the same position.
+    simpleCache.removeSpan(checkedSpan);
+    holeSpan = simpleCache.startReadWrite(KEY_1, 0);
+    addCache(simpleCache, KEY_1, 0, 15);
+    simpleCache.releaseHoleSpan(holeSpan);
+    assertThat(simpleCache.getCachedSpans(KEY_1).first().file).isNotEqualTo(checkedSpan.file);
+    simpleCache.removeStaleRestoredSpan(checkedSpan);
+
+    assertThat(simpleCache.getCachedSpans(KEY_1)).hasSize(1);
+    assertThat(simpleCache.getCacheSpace()).isEqualTo(15);
+    assertCachedDataReadCorrect(simpleCache.startReadWrite(KEY_1, 0));
+  }
+
+  @Test
+  public void testReloadCache_withCorruptSnapshot_loadsDirectory() throws Exception {
+    SimpleCache simpleCache = getSimpleCache();
+    CacheSpan cacheSpan1 = simpleCache.startReadWrite(KEY_1, 0);
+    addCache(simpleCache, KEY_1, 0, 15);
+    simpleCache.releaseHoleSpan(cacheSpan1);
+    simpleCache.release();
+    File snapshotFile = new File(cacheDir, CacheSpanSnapshot.FILE_NAME);
+    byte[] snapshot = Util.toByteArray(new FileInputStream(snapshotFile));
+    snapshot[snapshot.length / 2] ^= 0xFF;
+    try (FileOutputStream outputStream = new FileOutputStream(snapshotFile)) {
+      outputStream.write(snapshot);
+    }
+
+    simpleCache = getSimpleCache();
+
+    assertCachedDataReadCorrect(simpleCache.startReadWrite(KEY_1, 0));
+    assertThat(snapshotFile.exists()).isFalse();
+  }
+
   @Test
   public void testReloadCacheWithoutRelease() throws Exception {
     SimpleCache simpleCache = getSimpleCache();
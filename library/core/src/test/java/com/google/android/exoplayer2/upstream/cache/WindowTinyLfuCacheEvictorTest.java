@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.io.File;
+import java.util.TreeSet;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link WindowTinyLfuCacheEvictor}. */
+@RunWith(AndroidJUnit4.class)
+public final class WindowTinyLfuCacheEvictorTest {
+
+  private static final int SPAN_LENGTH = 10;
+
+  private TreeSet<CacheSpan> cachedSpans;
+  private Cache cache;
+  private WindowTinyLfuCacheEvictor evictor;
+  private long timestamp;
+
+  @Before
+  public void setUp() throws Exception {
+    cachedSpans = new TreeSet<>();
+    cache = mock(Cache.class);
+    doAnswer(
+            invocation -> {
+              CacheSpan span = invocation.getArgument(0);
+              if (cachedSpans.remove(span)) {
+                evictor.onSpanRemoved(cache, span);
+              }
+              return null;
+            })
+        .when(cache)
+        .removeSpan(any());
+  }
+
+  @Test
+  public void testContentBiggerThanMaxSizeDoesNotThrowException() {
+    int maxBytes = 100;
+    evictor = new WindowTinyLfuCacheEvictor(maxBytes);
+    evictor.onCacheInitialized();
+    evictor.onStartFile(cache, "key", 0, maxBytes + 1);
+  }
+
+  @Test
+  public void testSpansAreAdmittedWhileCacheHasSpace() {
+    evictor = createEvictor(/* maxSpanCount= */ 5);
+    for (int i = 0; i < 5; i++) {
+      addSpan(i);
+    }
+
+    assertThat(getCachedIndices()).containsExactly(0, 1, 2, 3, 4);
+  }
+
+  @Test
+  public void testInfrequentlyReadCandidateIsEvicted() {
+    evictor = createEvictor(/* maxSpanCount= */ 5);
+    for (int i = 0; i < 5; i++) {
+      addSpan(i);
+      touchSpan(i);
+    }
+
+    // Span 5 is only read once, so it shouldn't displace any of the spans that were read twice.
+    addSpan(5);
+    addSpan(6);
+
+    assertThat(getCachedIndices()).containsExactly(0, 1, 2, 3, 4, 6);
+  }
+
+  @Test
+  public void testFrequentlyReadCandidateIsAdmitted() {
+    evictor = createEvictor(/* maxSpanCount= */ 5);
+    for (int i = 0; i < 5; i++) {
+      addSpan(i);
+    }
+
+    addSpan(5);
+    touchSpan(5);
+    addSpan(6);
+
+    // Span 5 was read more often than span 0, which is evicted to make room for it.
+    assertThat(getCachedIndices()).containsExactly(1, 2, 3, 4, 5, 6);
+  }
+
+  @Test
+  public void testFrequentlyReadSpanSurvivesScan() {
+    evictor = createEvictor(/* maxSpanCount= */ 5);
+    addSpan(0);
+    touchSpan(0);
+    touchSpan(0);
+
+    for (int i = 1; i < 100; i++) {
+      addSpan(i);
+    }
+
+    assertThat(getCachedIndices()).contains(0);
+  }
+
+  /**
+   * Creates an evictor whose window holds a single span, and whose main space holds the given
+   * number of spans.
+   */
+  private static WindowTinyLfuCacheEvictor createEvictor(int maxSpanCount) {
+    int maxBytes = (maxSpanCount + 1) * SPAN_LENGTH;
+    return new WindowTinyLfuCacheEvictor(
+        maxBytes,
+        /* windowFraction= */ (float) SPAN_LENGTH / maxBytes,
+        WindowTinyLfuCacheEvictor.DEFAULT_EXPECTED_SPAN_COUNT);
+  }
+
+  private void addSpan(int index) {
+    CacheSpan span = createSpan(index);
+    evictor.onStartFile(cache, span.key, span.position, span.length);
+    cachedSpans.add(span);
+    evictor.onSpanAdded(cache, span);
+  }
+
+  private void touchSpan(int index) {
+    CacheSpan newSpan = createSpan(index);
+    CacheSpan oldSpan = cachedSpans.ceiling(newSpan);
+    assertThat(oldSpan.compareTo(newSpan)).isEqualTo(0);
+    cachedSpans.remove(oldSpan);
+    cachedSpans.add(newSpan);
+    evictor.onSpanTouched(cache, oldSpan, newSpan);
+  }
+
+  private CacheSpan createSpan(int index) {
+    return new CacheSpan(
+        "key", (long) index * SPAN_LENGTH, SPAN_LENGTH, ++timestamp, new File("key" + index));
+  }
+
+  private TreeSet<Integer> getCachedIndices() {
+    TreeSet<Integer> indices = new TreeSet<>();
+    for (CacheSpan span : cachedSpans) {
+      indices.add((int) (span.position / SPAN_LENGTH));
+    }
+    return indices;
+  }
+}
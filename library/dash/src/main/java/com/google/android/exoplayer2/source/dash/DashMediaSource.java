@@ -50,6 +50,7 @@ import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy;
 import com.google.android.exoplayer2.upstream.Loader;
 import com.google.android.exoplayer2.upstream.Loader.LoadErrorAction;
 import com.google.android.exoplayer2.upstream.LoaderErrorThrower;
+import com.google.android.exoplayer2.upstream.ParsedResponseCache;
 import com.google.android.exoplayer2.upstream.ParsingLoadable;
 import com.google.android.exoplayer2.upstream.TransferListener;
 import com.google.android.exoplayer2.util.Assertions;
@@ -371,6 +372,7 @@ public final class DashMediaSource extends BaseMediaSource {
   private final boolean livePresentationDelayOverridesManifest;
   private final EventDispatcher manifestEventDispatcher;
   private final ParsingLoadable.Parser<? extends DashManifest> manifestParser;
+  private final ParsedResponseCache<DashManifest> manifestCache;
   private final ManifestCallback manifestCallback;
   private final Object manifestUriLock;
   private final SparseArray<DashMediaPeriod> periodsById;
@@ -601,6 +603,7 @@ public final class DashMediaSource extends BaseMediaSource {
     sideloadedManifest = manifest != null;
     manifestEventDispatcher = createEventDispatcher(/* mediaPeriodId= */ null);
     manifestUriLock = new Object();
+    manifestCache = new ParsedResponseCache<>();
     periodsById = new SparseArray<>();
     playerEmsgCallback = new DefaultPlayerEmsgCallback();
     expiredManifestPublishTimeUs = C.TIME_UNSET;
@@ -701,6 +704,7 @@ public final class DashMediaSource extends BaseMediaSource {
     manifestLoadStartTimestampMs = 0;
     manifestLoadEndTimestampMs = 0;
     manifest = sideloadedManifest ? manifest : null;
+    manifestCache.clear();
     manifestUri = initialManifestUri;
     manifestFatalError = null;
     if (handler != null) {
@@ -1086,8 +1090,16 @@ public final class DashMediaSource extends BaseMediaSource {
       manifestUri = this.manifestUri;
     }
     manifestLoadPending = false;
+    ParsingLoadable.Parser<? extends DashManifest> parser = manifestParser;
+    if (manifest != null && manifestParser instanceof DashManifestParser) {
+      // Reuse the periods of the current manifest that can't have changed.
+      DashManifestParser dashManifestParser = (DashManifestParser) manifestParser;
+      DashManifest previousManifest = manifest;
+      parser =
+          (uri, inputStream) -> dashManifestParser.parse(uri, inputStream, previousManifest);
+    }
     startLoading(
-        new ParsingLoadable<>(dataSource, manifestUri, C.DATA_TYPE_MANIFEST, manifestParser),
+        new ParsingLoadable<>(dataSource, manifestUri, C.DATA_TYPE_MANIFEST, parser, manifestCache),
         manifestCallback,
         loadErrorHandlingPolicy.getMinimumLoadableRetryCount(C.DATA_TYPE_MANIFEST));
   }
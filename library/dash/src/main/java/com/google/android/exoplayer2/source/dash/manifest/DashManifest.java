@@ -90,6 +90,12 @@ public class DashManifest implements FilterableManifest<DashManifest> {
 
   private final List<Period> periods;
 
+  /**
+   * The base URL against which the periods were resolved, if the manifest was parsed by {@link
+   * DashManifestParser}. Used to reuse the periods when a new version of the manifest is parsed.
+   */
+  @Nullable /* package */ String parsedBaseUrl;
+
   /**
    * @deprecated Use {@link #DashManifest(long, long, long, boolean, long, long, long, long,
    *     ProgramInformation, UtcTimingElement, Uri, List)}.
@@ -30,6 +30,7 @@ import com.google.android.exoplayer2.extractor.mp4.PsshAtomUtil;
 import com.google.android.exoplayer2.metadata.emsg.EventMessage;
 import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SegmentList;
 import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SegmentTemplate;
+import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SegmentTimeline;
 import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SegmentTimelineElement;
 import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SingleSegmentBase;
 import com.google.android.exoplayer2.upstream.ParsingLoadable;
@@ -83,6 +84,27 @@ public class DashManifestParser extends DefaultHandler
 
   @Override
   public DashManifest parse(Uri uri, InputStream inputStream) throws IOException {
+    return parse(uri, inputStream, /* previousManifest= */ null);
+  }
+
+  /**
+   * Parses a manifest, reusing the periods of a previous version of the manifest that can't have
+   * changed.
+   *
+   * <p>The periods of a dynamic manifest that are followed by another period are complete. A period
+   * in the parsed manifest that has the same id and start time as a complete period of {@code
+   * previousManifest} is skipped, and the period of {@code previousManifest} is reused, provided
+   * that the base URL of the manifest is unchanged.
+   *
+   * @param uri The {@link Uri} from which the manifest is being read.
+   * @param inputStream An {@link InputStream} from which the manifest data can be read.
+   * @param previousManifest The previous version of the manifest, or null if there isn't one.
+   * @return The parsed manifest.
+   * @throws IOException If an error occurs reading the data.
+   */
+  public DashManifest parse(
+      Uri uri, InputStream inputStream, @Nullable DashManifest previousManifest)
+      throws IOException {
     try {
       XmlPullParser xpp = xmlParserFactory.newPullParser();
       xpp.setInput(inputStream, null);
@@ -91,7 +113,9 @@ public class DashManifestParser extends DefaultHandler
         throw new ParserException(
             "inputStream does not contain a valid media presentation description");
       }
-      return parseMediaPresentationDescription(xpp, uri.toString());
+      return previousManifest == null
+          ? parseMediaPresentationDescription(xpp, uri.toString())
+          : parseMediaPresentationDescription(xpp, uri.toString(), previousManifest);
     } catch (XmlPullParserException e) {
       throw new ParserException(e);
     }
@@ -99,6 +123,12 @@ public class DashManifestParser extends DefaultHandler
 
   protected DashManifest parseMediaPresentationDescription(XmlPullParser xpp,
       String baseUrl) throws XmlPullParserException, IOException {
+    return parseMediaPresentationDescription(xpp, baseUrl, /* previousManifest= */ null);
+  }
+
+  protected DashManifest parseMediaPresentationDescription(
+      XmlPullParser xpp, String baseUrl, @Nullable DashManifest previousManifest)
+      throws XmlPullParserException, IOException {
     long availabilityStartTime = parseDateTime(xpp, "availabilityStartTime", C.TIME_UNSET);
     long durationMs = parseDuration(xpp, "mediaPresentationDuration", C.TIME_UNSET);
     long minBufferTimeMs = parseDuration(xpp, "minBufferTime", C.TIME_UNSET);
@@ -133,7 +163,19 @@ public class DashManifestParser extends DefaultHandler
       } else if (XmlPullParserUtil.isStartTag(xpp, "Location")) {
         location = Uri.parse(xpp.nextText());
       } else if (XmlPullParserUtil.isStartTag(xpp, "Period") && !seenEarlyAccessPeriod) {
-        Pair<Period, Long> periodWithDurationMs = parsePeriod(xpp, baseUrl, nextPeriodStartMs);
+        @Nullable
+        Period reusablePeriod =
+            previousManifest != null
+                ? getReusablePeriod(xpp, previousManifest, baseUrl, nextPeriodStartMs)
+                : null;
+        Pair<Period, Long> periodWithDurationMs;
+        if (reusablePeriod != null) {
+          periodWithDurationMs =
+              Pair.create(reusablePeriod, parseDuration(xpp, "duration", C.TIME_UNSET));
+          maybeSkipTag(xpp);
+        } else {
+          periodWithDurationMs = parsePeriod(xpp, baseUrl, nextPeriodStartMs);
+        }
         Period period = periodWithDurationMs.first;
         if (period.startMs == C.TIME_UNSET) {
           if (dynamic) {
@@ -167,19 +209,22 @@ public class DashManifestParser extends DefaultHandler
       throw new ParserException("No periods found.");
     }
 
-    return buildMediaPresentationDescription(
-        availabilityStartTime,
-        durationMs,
-        minBufferTimeMs,
-        dynamic,
-        minUpdateTimeMs,
-        timeShiftBufferDepthMs,
-        suggestedPresentationDelayMs,
-        publishTimeMs,
-        programInformation,
-        utcTiming,
-        location,
-        periods);
+    DashManifest manifest =
+        buildMediaPresentationDescription(
+            availabilityStartTime,
+            durationMs,
+            minBufferTimeMs,
+            dynamic,
+            minUpdateTimeMs,
+            timeShiftBufferDepthMs,
+            suggestedPresentationDelayMs,
+            publishTimeMs,
+            programInformation,
+            utcTiming,
+            location,
+            periods);
+    manifest.parsedBaseUrl = baseUrl;
+    return manifest;
   }
 
   protected DashManifest buildMediaPresentationDescription(
@@ -210,6 +255,33 @@ public class DashManifestParser extends DefaultHandler
         periods);
   }
 
+  /**
+   * Returns the period of a previous version of the manifest that can be reused instead of parsing
+   * the period at the current position of {@code xpp}, or null if there isn't one.
+   */
+  @Nullable
+  private static Period getReusablePeriod(
+      XmlPullParser xpp, DashManifest previousManifest, String baseUrl, long defaultStartMs) {
+    @Nullable String id = xpp.getAttributeValue(null, "id");
+    if (id == null
+        || !previousManifest.dynamic
+        || !baseUrl.equals(previousManifest.parsedBaseUrl)) {
+      return null;
+    }
+    long startMs = parseDuration(xpp, "start", defaultStartMs);
+    if (startMs == C.TIME_UNSET) {
+      return null;
+    }
+    // The last period may still be extended, so only the periods before it are reusable.
+    for (int i = 0; i < previousManifest.getPeriodCount() - 1; i++) {
+      Period period = previousManifest.getPeriod(i);
+      if (id.equals(period.id) && period.startMs == startMs) {
+        return period;
+      }
+    }
+    return null;
+  }
+
   protected UtcTimingElement parseUtcTiming(XmlPullParser xpp) {
     String schemeIdUri = xpp.getAttributeValue(null, "schemeIdUri");
     String value = xpp.getAttributeValue(null, "value");
@@ -1006,7 +1078,7 @@ public class DashManifestParser extends DefaultHandler
   protected List<SegmentTimelineElement> parseSegmentTimeline(
       XmlPullParser xpp, long timescale, long periodDurationMs)
       throws XmlPullParserException, IOException {
-    List<SegmentTimelineElement> segmentTimeline = new ArrayList<>();
+    SegmentTimeline.Builder segmentTimeline = new SegmentTimeline.Builder();
     long startTime = 0;
     long elementDuration = C.TIME_UNSET;
     int elementRepeatCount = 0;
@@ -1043,12 +1115,13 @@ public class DashManifestParser extends DefaultHandler
           elementRepeatCount,
           /* endTime= */ periodDuration);
     }
-    return segmentTimeline;
+    return segmentTimeline.build();
   }
 
   /**
    * Adds timeline elements for one S tag to the segment timeline.
    *
+   * @param segmentTimeline The builder of the segment timeline.
    * @param startTime Start time of the first timeline element.
    * @param elementDuration Duration of one timeline element.
    * @param elementRepeatCount Number of timeline elements minus one. May be negative to indicate
@@ -1058,7 +1131,7 @@ public class DashManifestParser extends DefaultHandler
    * @return Calculated next start time.
    */
   private long addSegmentTimelineElementsToList(
-      List<SegmentTimelineElement> segmentTimeline,
+      SegmentTimeline.Builder segmentTimeline,
       long startTime,
       long elementDuration,
       int elementRepeatCount,
@@ -1067,13 +1140,39 @@ public class DashManifestParser extends DefaultHandler
         elementRepeatCount >= 0
             ? 1 + elementRepeatCount
             : (int) Util.ceilDivide(endTime - startTime, elementDuration);
-    for (int i = 0; i < count; i++) {
-      segmentTimeline.add(buildSegmentTimelineElement(startTime, elementDuration));
-      startTime += elementDuration;
+    if (count <= 0) {
+      return startTime;
     }
-    return startTime;
+    addSegmentTimelineRun(segmentTimeline, startTime, elementDuration, count);
+    return startTime + count * elementDuration;
   }
 
+  /**
+   * Adds a run of contiguous timeline elements that have the same duration to the segment
+   * timeline.
+   *
+   * <p>The default implementation builds the first element of the run with {@link
+   * #buildSegmentTimelineElement(long, long)}, and adds {@code count} elements starting at its
+   * start time, with its duration.
+   *
+   * @param segmentTimeline The builder of the segment timeline.
+   * @param startTime The start time of the first element.
+   * @param duration The duration of each element.
+   * @param count The number of elements, which is positive.
+   */
+  @SuppressWarnings("deprecation") // Calling the deprecated method for subclasses that override it.
+  protected void addSegmentTimelineRun(
+      SegmentTimeline.Builder segmentTimeline, long startTime, long duration, int count) {
+    SegmentTimelineElement element = buildSegmentTimelineElement(startTime, duration);
+    segmentTimeline.add(element.startTime, element.duration, count);
+  }
+
+  /**
+   * @deprecated Segment timelines are built as runs of elements, and this method is called once for
+   *     the first element of each run. Override {@link
+   *     #addSegmentTimelineRun(SegmentTimeline.Builder, long, long, int)} instead.
+   */
+  @Deprecated
   protected SegmentTimelineElement buildSegmentTimelineElement(long startTime, long duration) {
     return new SegmentTimelineElement(startTime, duration);
   }
@@ -36,6 +36,7 @@ public final class RangedUri {
   public final long length;
 
   private final String referenceUri;
+  private final boolean isResolved;
 
   private int hashCode;
 
@@ -48,9 +49,23 @@ public final class RangedUri {
    *     unbounded.
    */
   public RangedUri(@Nullable String referenceUri, long start, long length) {
+    this(referenceUri, start, length, /* isResolved= */ false);
+  }
+
+  /**
+   * @param referenceUri The reference uri.
+   * @param start The (zero based) index of the first byte of the range.
+   * @param length The length of the range, or {@link C#LENGTH_UNSET} to indicate that the range is
+   *     unbounded.
+   * @param isResolved Whether {@code referenceUri} is an absolute uri without dot segments, which
+   *     any base uri resolves to itself.
+   */
+  /* package */ RangedUri(
+      @Nullable String referenceUri, long start, long length, boolean isResolved) {
     this.referenceUri = referenceUri == null ? "" : referenceUri;
     this.start = start;
     this.length = length;
+    this.isResolved = isResolved;
   }
 
   /**
@@ -60,7 +75,7 @@ public final class RangedUri {
    * @return The {@link Uri} represented by the instance.
    */
   public Uri resolveUri(String baseUri) {
-    return UriUtil.resolveToUri(baseUri, referenceUri);
+    return isResolved ? Uri.parse(referenceUri) : UriUtil.resolveToUri(baseUri, referenceUri);
   }
 
   /**
@@ -70,7 +85,7 @@ public final class RangedUri {
    * @return The uri represented by the instance.
    */
   public String resolveUriString(String baseUri) {
-    return UriUtil.resolve(baseUri, referenceUri);
+    return isResolved ? referenceUri : UriUtil.resolve(baseUri, referenceUri);
   }
 
   /**
@@ -102,6 +117,73 @@ public final class RangedUri {
     }
   }
 
+  /**
+   * Returns the prefix to which relative references can be appended to resolve them against a base
+   * uri, if they satisfy {@link #isAppendableReference(CharSequence, int)}, or null if the base uri
+   * isn't absolute.
+   *
+   * @param baseUri The base uri.
+   * @return The absolute prefix, ending with a slash, or null.
+   */
+  @Nullable
+  /* package */ static String getResolutionPrefix(String baseUri) {
+    // Resolving a single segment path normalizes the base uri, and appends the segment after the
+    // last slash of its path.
+    String resolvedUri = UriUtil.resolve(baseUri, "_");
+    String prefix = resolvedUri.substring(0, resolvedUri.length() - 1);
+    int schemeColonIndex = prefix.indexOf(':');
+    return schemeColonIndex > 0
+            && schemeColonIndex < prefix.indexOf('/')
+            && prefix.endsWith("/")
+        ? prefix
+        : null;
+  }
+
+  /**
+   * Returns whether a reference, from {@code start} to the end of {@code uri}, is a relative path
+   * that can be appended to a prefix returned by {@link #getResolutionPrefix(String)} to resolve
+   * it. That's the case if it doesn't start with a slash, query or fragment, doesn't have a scheme,
+   * and doesn't have dot segments in its path.
+   *
+   * @param uri The {@link CharSequence} containing the reference.
+   * @param start The index of the start of the reference in {@code uri}.
+   * @return Whether the reference can be appended to a resolution prefix.
+   */
+  /* package */ static boolean isAppendableReference(CharSequence uri, int start) {
+    int end = uri.length();
+    if (start == end) {
+      return false;
+    }
+    int segmentStart = start;
+    boolean isFirstSegment = true;
+    for (int i = start; i <= end; i++) {
+      char c = i < end ? uri.charAt(i) : '/';
+      if (c == ':' && isFirstSegment) {
+        // The reference has a scheme, or its first segment would be taken to be one.
+        return false;
+      }
+      if (c == '/' || c == '?' || c == '#') {
+        if (i == start) {
+          return false;
+        }
+        int segmentLength = i - segmentStart;
+        if ((segmentLength == 1 && uri.charAt(segmentStart) == '.')
+            || (segmentLength == 2
+                && uri.charAt(segmentStart) == '.'
+                && uri.charAt(segmentStart + 1) == '.')) {
+          return false;
+        }
+        if (c != '/') {
+          // The rest of the reference is the query or fragment.
+          return true;
+        }
+        isFirstSegment = false;
+        segmentStart = i + 1;
+      }
+    }
+    return true;
+  }
+
   @Override
   public int hashCode() {
     if (hashCode == 0) {
@@ -59,6 +59,9 @@ public abstract class Representation {
 
   private final RangedUri initializationUri;
 
+  // Lazily initialized. Empty if the base URL doesn't have a resolution prefix.
+  @Nullable private String baseUrlResolutionPrefix;
+
   /**
    * Constructs a new instance.
    *
@@ -171,6 +174,25 @@ public abstract class Representation {
   @Nullable
   public abstract String getCacheKey();
 
+  /**
+   * Returns the absolute prefix to which relative segment urls can be appended to resolve them
+   * against {@link #baseUrl}, or null if there isn't one.
+   *
+   * @see RangedUri#getResolutionPrefix(String)
+   */
+  @Nullable
+  /* package */ String getBaseUrlResolutionPrefix() {
+    @Nullable String prefix = baseUrlResolutionPrefix;
+    if (prefix == null) {
+      prefix = RangedUri.getResolutionPrefix(baseUrl);
+      if (prefix == null) {
+        prefix = "";
+      }
+      baseUrlResolutionPrefix = prefix;
+    }
+    return prefix.isEmpty() ? null : prefix;
+  }
+
   /**
    * A DASH representation consisting of a single segment.
    */
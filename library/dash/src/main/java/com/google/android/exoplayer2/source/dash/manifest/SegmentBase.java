@@ -19,7 +19,10 @@ import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.source.dash.DashSegmentIndex;
 import com.google.android.exoplayer2.util.Util;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * An approximate representation of a SegmentBase manifest element.
@@ -116,7 +119,7 @@ public abstract class SegmentBase {
 
     /* package */ final long startNumber;
     /* package */ final long duration;
-    @Nullable /* package */ final List<SegmentTimelineElement> segmentTimeline;
+    @Nullable /* package */ final SegmentTimeline segmentTimeline;
 
     /**
      * @param initialization A {@link RangedUri} corresponding to initialization data, if such data
@@ -142,7 +145,8 @@ public abstract class SegmentBase {
       super(initialization, timescale, presentationTimeOffset);
       this.startNumber = startNumber;
       this.duration = duration;
-      this.segmentTimeline = segmentTimeline;
+      this.segmentTimeline =
+          segmentTimeline != null ? SegmentTimeline.copyOf(segmentTimeline) : null;
     }
 
     /** @see DashSegmentIndex#getSegmentNum(long, long) */
@@ -182,7 +186,7 @@ public abstract class SegmentBase {
     /** @see DashSegmentIndex#getDurationUs(long, long) */
     public final long getSegmentDurationUs(long sequenceNumber, long periodDurationUs) {
       if (segmentTimeline != null) {
-        long duration = segmentTimeline.get((int) (sequenceNumber - startNumber)).duration;
+        long duration = segmentTimeline.getDuration((int) (sequenceNumber - startNumber));
         return (duration * C.MICROS_PER_SECOND) / timescale;
       } else {
         int segmentCount = getSegmentCount(periodDurationUs);
@@ -198,7 +202,7 @@ public abstract class SegmentBase {
       long unscaledSegmentTime;
       if (segmentTimeline != null) {
         unscaledSegmentTime =
-            segmentTimeline.get((int) (sequenceNumber - startNumber)).startTime
+            segmentTimeline.getStartTime((int) (sequenceNumber - startNumber))
                 - presentationTimeOffset;
       } else {
         unscaledSegmentTime = (sequenceNumber - startNumber) * duration;
@@ -350,13 +354,26 @@ public abstract class SegmentBase {
     public RangedUri getSegmentUrl(Representation representation, long sequenceNumber) {
       long time;
       if (segmentTimeline != null) {
-        time = segmentTimeline.get((int) (sequenceNumber - startNumber)).startTime;
+        time = segmentTimeline.getStartTime((int) (sequenceNumber - startNumber));
       } else {
         time = (sequenceNumber - startNumber) * duration;
       }
-      String uriString = mediaTemplate.buildUri(representation.format.id, sequenceNumber,
-          representation.format.bitrate, time);
-      return new RangedUri(uriString, 0, C.LENGTH_UNSET);
+      @Nullable String prefix = representation.getBaseUrlResolutionPrefix();
+      if (prefix == null) {
+        String uriString = mediaTemplate.buildUri(representation.format.id, sequenceNumber,
+            representation.format.bitrate, time);
+        return new RangedUri(uriString, 0, C.LENGTH_UNSET);
+      }
+      // Build the url after the resolution prefix, so that it's resolved without further copies if
+      // possible.
+      StringBuilder builder = new StringBuilder(prefix.length() + 64).append(prefix);
+      mediaTemplate.appendUri(
+          builder, representation.format.id, sequenceNumber, representation.format.bitrate, time);
+      if (RangedUri.isAppendableReference(builder, prefix.length())) {
+        return new RangedUri(
+            builder.toString(), /* start= */ 0, C.LENGTH_UNSET, /* isResolved= */ true);
+      }
+      return new RangedUri(builder.substring(prefix.length()), 0, C.LENGTH_UNSET);
     }
 
     @Override
@@ -409,4 +426,187 @@ public abstract class SegmentBase {
     }
   }
 
+  /**
+   * A segment timeline, stored as runs of contiguous elements that have the same duration.
+   *
+   * <p>Manifests typically describe a timeline using few S elements with repeat counts, and each
+   * run is stored as the index and start time of its first element and a duration, rather than as
+   * one {@link SegmentTimelineElement} per segment. The start time and duration of an element are
+   * resolved using a binary search over the runs. Elements returned by {@link #get(int)} are
+   * created on each call.
+   */
+  public static final class SegmentTimeline extends AbstractList<SegmentTimelineElement>
+      implements RandomAccess {
+
+    /** Builds a {@link SegmentTimeline} from elements added in order. */
+    public static final class Builder {
+
+      private static final int INITIAL_RUN_CAPACITY = 4;
+
+      private int size;
+      private int runCount;
+      private int[] runFirstIndices;
+      private long[] runStartTimes;
+      private long[] runDurations;
+
+      public Builder() {
+        runFirstIndices = new int[INITIAL_RUN_CAPACITY];
+        runStartTimes = new long[INITIAL_RUN_CAPACITY];
+        runDurations = new long[INITIAL_RUN_CAPACITY];
+      }
+
+      /**
+       * Adds contiguous elements that have the same duration. They're merged into the last run if
+       * it has the same duration and ends at {@code startTime}.
+       *
+       * @param startTime The start time of the first element.
+       * @param duration The duration of each element.
+       * @param count The number of elements. Nothing is added if it's not positive.
+       * @return This builder.
+       */
+      public Builder add(long startTime, long duration, int count) {
+        if (count <= 0) {
+          return this;
+        }
+        int lastRunIndex = runCount - 1;
+        if (runCount == 0
+            || runDurations[lastRunIndex] != duration
+            || runStartTimes[lastRunIndex] + (size - runFirstIndices[lastRunIndex]) * duration
+                != startTime) {
+          if (runCount == runFirstIndices.length) {
+            int newCapacity = runCount * 2;
+            runFirstIndices = Arrays.copyOf(runFirstIndices, newCapacity);
+            runStartTimes = Arrays.copyOf(runStartTimes, newCapacity);
+            runDurations = Arrays.copyOf(runDurations, newCapacity);
+          }
+          runFirstIndices[runCount] = size;
+          runStartTimes[runCount] = startTime;
+          runDurations[runCount] = duration;
+          runCount++;
+        }
+        size += count;
+        return this;
+      }
+
+      /** Builds a timeline containing all of the elements that have been added. */
+      public SegmentTimeline build() {
+        return new SegmentTimeline(
+            size,
+            Arrays.copyOf(runFirstIndices, runCount),
+            Arrays.copyOf(runStartTimes, runCount),
+            Arrays.copyOf(runDurations, runCount));
+      }
+    }
+
+    private final int size;
+    private final int[] runFirstIndices;
+    private final long[] runStartTimes;
+    private final long[] runDurations;
+
+    private SegmentTimeline(
+        int size, int[] runFirstIndices, long[] runStartTimes, long[] runDurations) {
+      this.size = size;
+      this.runFirstIndices = runFirstIndices;
+      this.runStartTimes = runStartTimes;
+      this.runDurations = runDurations;
+    }
+
+    /**
+     * Returns a timeline containing the specified elements. If {@code elements} is a {@link
+     * SegmentTimeline}, it's returned.
+     */
+    public static SegmentTimeline copyOf(List<SegmentTimelineElement> elements) {
+      if (elements instanceof SegmentTimeline) {
+        return (SegmentTimeline) elements;
+      }
+      Builder builder = new Builder();
+      for (int i = 0; i < elements.size(); i++) {
+        SegmentTimelineElement element = elements.get(i);
+        builder.add(element.startTime, element.duration, /* count= */ 1);
+      }
+      return builder.build();
+    }
+
+    /**
+     * Returns the start time of an element. The value in seconds is the division of this value and
+     * the {@code timescale} of the enclosing element.
+     *
+     * @param index The index of the element.
+     * @return The start time of the element.
+     */
+    public long getStartTime(int index) {
+      int runIndex = getRunIndex(index);
+      return runStartTimes[runIndex] + (index - runFirstIndices[runIndex]) * runDurations[runIndex];
+    }
+
+    /**
+     * Returns the duration of an element. The value in seconds is the division of this value and
+     * the {@code timescale} of the enclosing element.
+     *
+     * @param index The index of the element.
+     * @return The duration of the element.
+     */
+    public long getDuration(int index) {
+      return runDurations[getRunIndex(index)];
+    }
+
+    @Override
+    public SegmentTimelineElement get(int index) {
+      int runIndex = getRunIndex(index);
+      return new SegmentTimelineElement(
+          runStartTimes[runIndex] + (index - runFirstIndices[runIndex]) * runDurations[runIndex],
+          runDurations[runIndex]);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof SegmentTimeline)) {
+        return super.equals(o);
+      }
+      // Contiguous elements that have the same duration are always in the same run, so equal
+      // timelines have the same runs.
+      SegmentTimeline that = (SegmentTimeline) o;
+      return size == that.size
+          && Arrays.equals(runFirstIndices, that.runFirstIndices)
+          && Arrays.equals(runStartTimes, that.runStartTimes)
+          && Arrays.equals(runDurations, that.runDurations);
+    }
+
+    @Override
+    public int hashCode() {
+      // Equal to the List hash code, so that it's consistent with equality to other lists, but
+      // computed from the runs without creating the elements.
+      int hashCode = 1;
+      for (int runIndex = 0; runIndex < runFirstIndices.length; runIndex++) {
+        int runEndIndex =
+            runIndex + 1 < runFirstIndices.length ? runFirstIndices[runIndex + 1] : size;
+        long startTime = runStartTimes[runIndex];
+        long duration = runDurations[runIndex];
+        for (int i = runFirstIndices[runIndex]; i < runEndIndex; i++) {
+          hashCode = 31 * hashCode + 31 * (int) startTime + (int) duration;
+          startTime += duration;
+        }
+      }
+      return hashCode;
+    }
+
+    private int getRunIndex(int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+      }
+      return runFirstIndices.length == 1
+          ? 0
+          : Util.binarySearchFloor(
+              runFirstIndices, index, /* inclusive= */ true, /* stayInBounds= */ false);
+    }
+  }
+
 }
@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer2.source.dash.manifest;
 
+import com.google.android.exoplayer2.C;
 import java.util.Locale;
 
 /**
@@ -39,6 +40,7 @@ public final class UrlTemplate {
   private final String[] urlPieces;
   private final int[] identifiers;
   private final String[] identifierFormatTags;
+  private final int[] identifierWidths;
   private final int identifierCount;
 
   /**
@@ -67,6 +69,11 @@ public final class UrlTemplate {
     this.identifiers = identifiers;
     this.identifierFormatTags = identifierFormatTags;
     this.identifierCount = identifierCount;
+    identifierWidths = new int[identifierCount];
+    for (int i = 0; i < identifierCount; i++) {
+      identifierWidths[i] =
+          identifiers[i] == REPRESENTATION_ID ? 0 : parseDecimalWidth(identifierFormatTags[i]);
+    }
   }
 
   /**
@@ -82,20 +89,88 @@ public final class UrlTemplate {
    */
   public String buildUri(String representationId, long segmentNumber, int bandwidth, long time) {
     StringBuilder builder = new StringBuilder();
+    appendUri(builder, representationId, segmentNumber, bandwidth, time);
+    return builder.toString();
+  }
+
+  /**
+   * Like {@link #buildUri(String, long, int, long)}, but appends the Uri to a {@link StringBuilder}
+   * instead of returning it, so that a builder can be reused to build several Uris, or to build a
+   * Uri after a prefix.
+   *
+   * @param builder The {@link StringBuilder} to which the Uri is appended.
+   * @param representationId The representation identifier.
+   * @param segmentNumber The segment number.
+   * @param bandwidth The bandwidth.
+   * @param time The time as specified by the segment timeline.
+   */
+  public void appendUri(
+      StringBuilder builder,
+      String representationId,
+      long segmentNumber,
+      int bandwidth,
+      long time) {
     for (int i = 0; i < identifierCount; i++) {
       builder.append(urlPieces[i]);
       if (identifiers[i] == REPRESENTATION_ID) {
         builder.append(representationId);
       } else if (identifiers[i] == NUMBER_ID) {
-        builder.append(String.format(Locale.US, identifierFormatTags[i], segmentNumber));
+        appendFormattedValue(builder, i, segmentNumber);
       } else if (identifiers[i] == BANDWIDTH_ID) {
-        builder.append(String.format(Locale.US, identifierFormatTags[i], bandwidth));
+        appendFormattedValue(builder, i, bandwidth);
       } else if (identifiers[i] == TIME_ID) {
-        builder.append(String.format(Locale.US, identifierFormatTags[i], time));
+        appendFormattedValue(builder, i, time);
       }
     }
     builder.append(urlPieces[identifierCount]);
-    return builder.toString();
+  }
+
+  private void appendFormattedValue(StringBuilder builder, int identifierIndex, long value) {
+    int width = identifierWidths[identifierIndex];
+    if (width == C.LENGTH_UNSET || value < 0) {
+      // Bandwidths are formatted as ints, which matters for negative hexadecimal values.
+      Object argument;
+      if (identifiers[identifierIndex] == BANDWIDTH_ID) {
+        argument = (int) value;
+      } else {
+        argument = value;
+      }
+      builder.append(String.format(Locale.US, identifierFormatTags[identifierIndex], argument));
+      return;
+    }
+    // Equivalent to formatting with the tag, which pads the value with leading zeros.
+    int digitCount = 1;
+    for (long remainder = value / 10; remainder != 0; remainder /= 10) {
+      digitCount++;
+    }
+    for (int i = digitCount; i < width; i++) {
+      builder.append('0');
+    }
+    builder.append(value);
+  }
+
+  /**
+   * Returns the minimum width of values formatted with a decimal integer format tag, or {@link
+   * C#LENGTH_UNSET} if the tag isn't of the form {@code %0<width>d}.
+   */
+  private static int parseDecimalWidth(String formatTag) {
+    int widthEnd = formatTag.length() - 1;
+    if (widthEnd <= 2
+        || formatTag.charAt(0) != '%'
+        || formatTag.charAt(1) != '0'
+        || formatTag.charAt(widthEnd) != 'd') {
+      // Other tags, such as space padded widths, are formatted with String.format.
+      return C.LENGTH_UNSET;
+    }
+    int width = 0;
+    for (int i = 2; i < widthEnd; i++) {
+      char c = formatTag.charAt(i);
+      if (c < '0' || c > '9' || width > 1000) {
+        return C.LENGTH_UNSET;
+      }
+      width = width * 10 + (c - '0');
+    }
+    return width;
   }
 
   /**
@@ -23,10 +23,13 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.metadata.emsg.EventMessage;
+import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SegmentTimeline;
 import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SegmentTimelineElement;
 import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.util.Util;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.util.Collections;
@@ -267,6 +270,106 @@ public class DashManifestParserTest {
     assertNextTag(xpp);
   }
 
+  @Test
+  @SuppressWarnings("deprecation") // Testing the deprecated method.
+  public void parseSegmentTimeline_withOverriddenBuildSegmentTimelineElement_usesOverride()
+      throws Exception {
+    DashManifestParser parser =
+        new DashManifestParser() {
+          @Override
+          protected SegmentTimelineElement buildSegmentTimelineElement(
+              long startTime, long duration) {
+            return new SegmentTimelineElement(startTime + 1000, duration);
+          }
+        };
+    XmlPullParser xpp = XmlPullParserFactory.newInstance().newPullParser();
+    xpp.setInput(
+        new StringReader(
+            "<SegmentTimeline><S d=\"96000\" r=\"1\"/></SegmentTimeline>" + NEXT_TAG));
+    xpp.next();
+
+    List<SegmentTimelineElement> elements =
+        parser.parseSegmentTimeline(xpp, /* timescale= */ 48000, /* periodDurationMs= */ 10000);
+
+    assertThat(elements)
+        .containsExactly(
+            new SegmentTimelineElement(/* startTime= */ 1000, /* duration= */ 96000),
+            new SegmentTimelineElement(/* startTime= */ 97000, /* duration= */ 96000))
+        .inOrder();
+    assertNextTag(xpp);
+  }
+
+  @Test
+  public void parseSegmentTimeline_withOverriddenAddSegmentTimelineRun_usesOverride()
+      throws Exception {
+    DashManifestParser parser =
+        new DashManifestParser() {
+          @Override
+          protected void addSegmentTimelineRun(
+              SegmentTimeline.Builder segmentTimeline, long startTime, long duration, int count) {
+            segmentTimeline.add(startTime, duration / 2, count * 2);
+          }
+        };
+    XmlPullParser xpp = XmlPullParserFactory.newInstance().newPullParser();
+    xpp.setInput(
+        new StringReader(
+            "<SegmentTimeline><S d=\"96000\" r=\"1\"/></SegmentTimeline>" + NEXT_TAG));
+    xpp.next();
+
+    List<SegmentTimelineElement> elements =
+        parser.parseSegmentTimeline(xpp, /* timescale= */ 48000, /* periodDurationMs= */ 10000);
+
+    assertThat(elements)
+        .containsExactly(
+            new SegmentTimelineElement(/* startTime= */ 0, /* duration= */ 48000),
+            new SegmentTimelineElement(/* startTime= */ 48000, /* duration= */ 48000),
+            new SegmentTimelineElement(/* startTime= */ 96000, /* duration= */ 48000),
+            new SegmentTimelineElement(/* startTime= */ 144000, /* duration= */ 48000))
+        .inOrder();
+    assertNextTag(xpp);
+  }
+
+  @Test
+  public void parse_withPreviousManifest_reusesCompletePeriods() throws Exception {
+    DashManifestParser parser = new DashManifestParser();
+    Uri uri = Uri.parse("https://example.com/test.mpd");
+    DashManifest previousManifest =
+        parser.parse(uri, createMultiPeriodManifestInputStream(/* periodCount= */ 2));
+
+    DashManifest manifest =
+        parser.parse(
+            uri, createMultiPeriodManifestInputStream(/* periodCount= */ 3), previousManifest);
+
+    assertThat(manifest.getPeriodCount()).isEqualTo(3);
+    assertThat(manifest.getPeriod(0)).isSameInstanceAs(previousManifest.getPeriod(0));
+    // The last period of the previous manifest may have been extended.
+    assertThat(manifest.getPeriod(1)).isNotSameInstanceAs(previousManifest.getPeriod(1));
+    assertThat(manifest.getPeriod(1).startMs).isEqualTo(10_000);
+    assertThat(manifest.getPeriod(2).id).isEqualTo("3");
+    assertThat(manifest.getPeriod(2).startMs).isEqualTo(20_000);
+    assertThat(manifest.durationMs).isEqualTo(previousManifest.durationMs);
+  }
+
+  @Test
+  public void parse_withPreviousManifestFromOtherBaseUrl_parsesAllPeriods() throws Exception {
+    DashManifestParser parser = new DashManifestParser();
+    DashManifest previousManifest =
+        parser.parse(
+            Uri.parse("https://example.com/test.mpd"),
+            createMultiPeriodManifestInputStream(/* periodCount= */ 2));
+
+    DashManifest manifest =
+        parser.parse(
+            Uri.parse("https://cdn.example.com/test.mpd"),
+            createMultiPeriodManifestInputStream(/* periodCount= */ 3),
+            previousManifest);
+
+    Period period = manifest.getPeriod(0);
+    assertThat(period).isNotSameInstanceAs(previousManifest.getPeriod(0));
+    assertThat(period.adaptationSets.get(0).representations.get(0).baseUrl)
+        .isEqualTo("https://cdn.example.com/test.mpd");
+  }
+
   @Test
   public void parseLabel() throws Exception {
     DashManifestParser parser = new DashManifestParser();
@@ -377,6 +480,26 @@ public class DashManifestParserTest {
         .isEqualTo(Format.NO_VALUE);
   }
 
+  private static InputStream createMultiPeriodManifestInputStream(int periodCount) {
+    StringBuilder manifest =
+        new StringBuilder(
+            "<MPD type=\"dynamic\" availabilityStartTime=\"2020-01-01T00:00:00Z\" "
+                + "minimumUpdatePeriod=\"PT2S\">");
+    for (int i = 1; i <= periodCount; i++) {
+      manifest
+          .append("<Period id=\"")
+          .append(i)
+          .append("\" start=\"PT")
+          .append((i - 1) * 10)
+          .append("S\"><AdaptationSet mimeType=\"video/mp4\">")
+          .append("<SegmentTemplate timescale=\"1000\" duration=\"2000\" media=\"$Number$.m4s\"/>")
+          .append("<Representation id=\"0\" bandwidth=\"1000\" codecs=\"avc1.42c01e\"/>")
+          .append("</AdaptationSet></Period>");
+    }
+    manifest.append("</MPD>");
+    return new ByteArrayInputStream(Util.getUtf8Bytes(manifest.toString()));
+  }
+
   private static List<Descriptor> buildCea608AccessibilityDescriptors(String value) {
     return Collections.singletonList(new Descriptor("urn:scte:dash:cc:cea-608:2015", value, null));
   }
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.dash.manifest;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SegmentTemplate;
+import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SegmentTimeline;
+import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SegmentTimelineElement;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.UriUtil;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link SegmentBase}. */
+@RunWith(AndroidJUnit4.class)
+public final class SegmentBaseTest {
+
+  @Test
+  public void segmentTimeline_builder_mergesContiguousElementsWithSameDuration() {
+    SegmentTimeline timeline =
+        new SegmentTimeline.Builder()
+            .add(/* startTime= */ 0, /* duration= */ 10, /* count= */ 2)
+            .add(/* startTime= */ 20, /* duration= */ 10, /* count= */ 1)
+            .add(/* startTime= */ 40, /* duration= */ 10, /* count= */ 1)
+            .add(/* startTime= */ 50, /* duration= */ 5, /* count= */ 2)
+            .add(/* startTime= */ 60, /* duration= */ 5, /* count= */ 0)
+            .build();
+
+    assertThat(timeline)
+        .containsExactly(
+            new SegmentTimelineElement(/* startTime= */ 0, /* duration= */ 10),
+            new SegmentTimelineElement(/* startTime= */ 10, /* duration= */ 10),
+            new SegmentTimelineElement(/* startTime= */ 20, /* duration= */ 10),
+            new SegmentTimelineElement(/* startTime= */ 40, /* duration= */ 10),
+            new SegmentTimelineElement(/* startTime= */ 50, /* duration= */ 5),
+            new SegmentTimelineElement(/* startTime= */ 55, /* duration= */ 5))
+        .inOrder();
+    assertThat(timeline.getStartTime(/* index= */ 2)).isEqualTo(20);
+    assertThat(timeline.getStartTime(/* index= */ 5)).isEqualTo(55);
+    assertThat(timeline.getDuration(/* index= */ 3)).isEqualTo(10);
+    assertThat(timeline.getDuration(/* index= */ 4)).isEqualTo(5);
+  }
+
+  @Test
+  public void segmentTimeline_copyOf_equalsBuiltTimeline() {
+    List<SegmentTimelineElement> elements =
+        Arrays.asList(
+            new SegmentTimelineElement(/* startTime= */ 0, /* duration= */ 10),
+            new SegmentTimelineElement(/* startTime= */ 10, /* duration= */ 10),
+            new SegmentTimelineElement(/* startTime= */ 20, /* duration= */ 5));
+    SegmentTimeline builtTimeline =
+        new SegmentTimeline.Builder()
+            .add(/* startTime= */ 0, /* duration= */ 10, /* count= */ 2)
+            .add(/* startTime= */ 20, /* duration= */ 5, /* count= */ 1)
+            .build();
+
+    SegmentTimeline copiedTimeline = SegmentTimeline.copyOf(elements);
+
+    assertThat(copiedTimeline).isEqualTo(builtTimeline);
+    assertThat(copiedTimeline).isEqualTo(elements);
+    assertThat(copiedTimeline.hashCode()).isEqualTo(elements.hashCode());
+    assertThat(SegmentTimeline.copyOf(builtTimeline)).isSameInstanceAs(builtTimeline);
+  }
+
+  @Test
+  public void segmentTemplate_withSegmentTimeline_resolvesSegmentsFromRuns() {
+    SegmentTimeline timeline =
+        new SegmentTimeline.Builder()
+            .add(/* startTime= */ 1000, /* duration= */ 2000, /* count= */ 3)
+            .add(/* startTime= */ 7000, /* duration= */ 1000, /* count= */ 2)
+            .build();
+    SegmentTemplate segmentTemplate =
+        new SegmentTemplate(
+            /* initialization= */ null,
+            /* timescale= */ 1000,
+            /* presentationTimeOffset= */ 1000,
+            /* startNumber= */ 10,
+            /* endNumber= */ C.INDEX_UNSET,
+            /* duration= */ 0,
+            timeline,
+            /* initializationTemplate= */ null,
+            /* mediaTemplate= */ null);
+
+    assertThat(segmentTemplate.getSegmentCount(C.TIME_UNSET)).isEqualTo(5);
+    assertThat(segmentTemplate.getSegmentTimeUs(/* sequenceNumber= */ 12)).isEqualTo(4_000_000);
+    assertThat(segmentTemplate.getSegmentTimeUs(/* sequenceNumber= */ 14)).isEqualTo(7_000_000);
+    assertThat(segmentTemplate.getSegmentDurationUs(/* sequenceNumber= */ 13, C.TIME_UNSET))
+        .isEqualTo(1_000_000);
+    assertThat(segmentTemplate.getSegmentNum(/* timeUs= */ 0, C.TIME_UNSET)).isEqualTo(10);
+    assertThat(segmentTemplate.getSegmentNum(/* timeUs= */ 5_000_000, C.TIME_UNSET))
+        .isEqualTo(12);
+    assertThat(segmentTemplate.getSegmentNum(/* timeUs= */ 6_000_000, C.TIME_UNSET))
+        .isEqualTo(13);
+    assertThat(segmentTemplate.getSegmentNum(/* timeUs= */ 60_000_000, C.TIME_UNSET))
+        .isEqualTo(14);
+  }
+
+  @Test
+  public void segmentTemplate_getSegmentUrl_resolvesAgainstBaseUrl() {
+    String[] baseUrls = {
+      "https://example.com",
+      "https://example.com/dash/",
+      "https://example.com/dash/manifest.mpd?token=1#fragment",
+      "https://example.com/a/../dash/./video/",
+      "relative/base/"
+    };
+    String[] templates = {
+      "$RepresentationID$/$Number%05d$.m4s",
+      "seg-$Time$.m4s?token=$Bandwidth$",
+      "../$RepresentationID$/$Number$.m4s",
+      "./$Number$.m4s",
+      "/root/$Number$.m4s",
+      "//cdn.example.com/$Number$.m4s",
+      "?number=$Number$",
+      "https://cdn.example.com/$Number$.m4s",
+      "seg:$Number$.m4s"
+    };
+    Format format =
+        Format.createContainerFormat(
+            /* id= */ "video.1",
+            /* label= */ null,
+            MimeTypes.VIDEO_MP4,
+            /* sampleMimeType= */ null,
+            /* codecs= */ null,
+            /* bitrate= */ 128000,
+            /* selectionFlags= */ 0,
+            /* roleFlags= */ 0,
+            /* language= */ null);
+
+    for (String baseUrl : baseUrls) {
+      for (String template : templates) {
+        SegmentTemplate segmentTemplate =
+            new SegmentTemplate(
+                /* initialization= */ null,
+                /* timescale= */ 1000,
+                /* presentationTimeOffset= */ 0,
+                /* startNumber= */ 1,
+                /* endNumber= */ C.INDEX_UNSET,
+                /* duration= */ 2000,
+                /* segmentTimeline= */ null,
+                /* initializationTemplate= */ null,
+                UrlTemplate.compile(template));
+        Representation representation =
+            Representation.newInstance(/* revisionId= */ 0, format, baseUrl, segmentTemplate);
+
+        RangedUri segmentUri =
+            segmentTemplate.getSegmentUrl(representation, /* sequenceNumber= */ 3);
+
+        String expectedUri =
+            UriUtil.resolve(
+                baseUrl,
+                UrlTemplate.compile(template)
+                    .buildUri(
+                        /* representationId= */ "video.1",
+                        /* segmentNumber= */ 3,
+                        /* bandwidth= */ 128000,
+                        /* time= */ 4000));
+        assertThat(segmentUri.resolveUriString(baseUrl)).isEqualTo(expectedUri);
+        assertThat(segmentUri.resolveUri(baseUrl).toString()).isEqualTo(expectedUri);
+      }
+    }
+  }
+}
@@ -60,6 +60,31 @@ public class UrlTemplateTest {
     assertThat(url).isEqualTo("$650000$_a$_abc1_b_5000_c_10$");
   }
 
+  @Test
+  public void testFormatTags() {
+    String template = "$Bandwidth%08d$_$Time%05$_$Number%03d$_$Number%06x$";
+    UrlTemplate urlTemplate = UrlTemplate.compile(template);
+    String url = urlTemplate.buildUri("abc1", 1234, 650000, 5000);
+    assertThat(url).isEqualTo("00650000_05000_1234_0004d2");
+  }
+
+  @Test
+  public void testFormatTagsWithNegativeValue() {
+    String template = "$Time%05d$";
+    UrlTemplate urlTemplate = UrlTemplate.compile(template);
+    String url = urlTemplate.buildUri("abc1", 10, 650000, -42);
+    assertThat(url).isEqualTo(String.format("%05d", -42L));
+  }
+
+  @Test
+  public void testAppendUri() {
+    String template = "$RepresentationID$/$Number%05d$.m4s";
+    UrlTemplate urlTemplate = UrlTemplate.compile(template);
+    StringBuilder builder = new StringBuilder("https://example.com/");
+    urlTemplate.appendUri(builder, "abc1", 10, 650000, 5000);
+    assertThat(builder.toString()).isEqualTo("https://example.com/abc1/00010.m4s");
+  }
+
   @Test
   public void testInvalidSubstitution() {
     String template = "$IllegalId$";
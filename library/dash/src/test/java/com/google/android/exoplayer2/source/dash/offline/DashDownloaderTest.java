@@ -288,6 +288,62 @@ public class DashDownloaderTest {
     progressListener.assertBytesDownloaded(10 + 4 + 5 + 6);
   }
 
+  @Test
+  public void testDownloadRepresentationsInParallel() throws Exception {
+    FakeDataSet fakeDataSet =
+        new FakeDataSet()
+            .setData(TEST_MPD_URI, TEST_MPD)
+            .setRandomData("audio_init_data", 10)
+            .setRandomData("audio_segment_1", 4)
+            .setRandomData("audio_segment_2", 5)
+            .setRandomData("audio_segment_3", 6)
+            .setRandomData("text_segment_1", 1)
+            .setRandomData("text_segment_2", 2)
+            .setRandomData("text_segment_3", 3);
+
+    DashDownloader dashDownloader =
+        getDashDownloader(
+            new Factory().setFakeDataSet(fakeDataSet),
+            /* maxParallelDownloads= */ 4,
+            new StreamKey(0, 0, 0),
+            new StreamKey(0, 1, 0));
+    dashDownloader.download(progressListener);
+
+    assertCachedData(cache, new RequestSet(fakeDataSet).useBoundedDataSpecFor("audio_init_data"));
+    progressListener.assertBytesDownloaded(10 + 4 + 5 + 6 + 1 + 2 + 3);
+  }
+
+  @Test
+  public void testDownloadRepresentationInParallelFailure() throws Exception {
+    FakeDataSet fakeDataSet =
+        new FakeDataSet()
+            .setData(TEST_MPD_URI, TEST_MPD)
+            .setRandomData("audio_init_data", 10)
+            .setRandomData("audio_segment_1", 4)
+            .newData("audio_segment_2")
+            .appendReadData(TestUtil.buildTestData(2))
+            .appendReadError(new IOException())
+            .appendReadData(TestUtil.buildTestData(3))
+            .endData()
+            .setRandomData("audio_segment_3", 6);
+
+    DashDownloader dashDownloader =
+        getDashDownloader(
+            new Factory().setFakeDataSet(fakeDataSet),
+            /* maxParallelDownloads= */ 4,
+            new StreamKey(0, 0, 0));
+    try {
+      dashDownloader.download(progressListener);
+      fail();
+    } catch (IOException e) {
+      // Expected.
+    }
+    dashDownloader.download(progressListener);
+
+    assertCachedData(cache, new RequestSet(fakeDataSet).useBoundedDataSpecFor("audio_init_data"));
+    progressListener.assertBytesDownloaded(10 + 4 + 5 + 6);
+  }
+
   @Test
   public void testRemove() throws Exception {
     FakeDataSet fakeDataSet =
@@ -335,6 +391,20 @@ public class DashDownloaderTest {
         TEST_MPD_URI, keysList(keys), new DownloaderConstructorHelper(cache, factory));
   }
 
+  private DashDownloader getDashDownloader(
+      Factory factory, int maxParallelDownloads, StreamKey... keys) {
+    DownloaderConstructorHelper constructorHelper =
+        new DownloaderConstructorHelper(
+            cache,
+            factory,
+            /* cacheReadDataSourceFactory= */ null,
+            /* cacheWriteDataSinkFactory= */ null,
+            /* priorityTaskManager= */ null,
+            /* cacheKeyFactory= */ null,
+            maxParallelDownloads);
+    return new DashDownloader(TEST_MPD_URI, keysList(keys), constructorHelper);
+  }
+
   private static ArrayList<StreamKey> keysList(StreamKey... keys) {
     ArrayList<StreamKey> keysList = new ArrayList<>();
     Collections.addAll(keysList, keys);
@@ -343,7 +413,7 @@ public class DashDownloaderTest {
 
   private static final class ProgressListener implements Downloader.ProgressListener {
 
-    private long bytesDownloaded;
+    private volatile long bytesDownloaded;
 
     @Override
     public void onProgress(long contentLength, long bytesDownloaded, float percentDownloaded) {
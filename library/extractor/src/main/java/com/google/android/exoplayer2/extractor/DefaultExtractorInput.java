@@ -21,10 +21,13 @@ import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
 import java.io.EOFException;
 import java.io.IOException;
-import java.util.Arrays;
 
 /**
  * An {@link ExtractorInput} that wraps a {@link DataSource}.
+ *
+ * <p>Peeked data is held in a buffer from which it's read without being moved. The data is only
+ * moved to the start of the buffer when there isn't enough space left after it for a peek, or when
+ * the buffer is resized.
  */
 public final class DefaultExtractorInput implements ExtractorInput {
 
@@ -38,6 +41,7 @@ public final class DefaultExtractorInput implements ExtractorInput {
 
   private long position;
   private byte[] peekBuffer;
+  private int peekBufferStart;
   private int peekBufferPosition;
   private int peekBufferLength;
 
@@ -121,7 +125,7 @@ public final class DefaultExtractorInput implements ExtractorInput {
       bytesPeeked =
           readFromDataSource(
               peekBuffer,
-              peekBufferPosition,
+              peekBufferStart + peekBufferPosition,
               length,
               /* bytesAlreadyRead= */ 0,
               /* allowEndOfInput= */ true);
@@ -132,7 +136,7 @@ public final class DefaultExtractorInput implements ExtractorInput {
     } else {
       bytesPeeked = Math.min(length, peekBufferRemainingBytes);
     }
-    System.arraycopy(peekBuffer, peekBufferPosition, target, offset, bytesPeeked);
+    System.arraycopy(peekBuffer, peekBufferStart + peekBufferPosition, target, offset, bytesPeeked);
     peekBufferPosition += bytesPeeked;
     return bytesPeeked;
   }
@@ -143,7 +147,8 @@ public final class DefaultExtractorInput implements ExtractorInput {
     if (!advancePeekPosition(length, allowEndOfInput)) {
       return false;
     }
-    System.arraycopy(peekBuffer, peekBufferPosition - length, target, offset, length);
+    System.arraycopy(
+        peekBuffer, peekBufferStart + peekBufferPosition - length, target, offset, length);
     return true;
   }
 
@@ -159,8 +164,13 @@ public final class DefaultExtractorInput implements ExtractorInput {
     ensureSpaceForPeek(length);
     int bytesPeeked = peekBufferLength - peekBufferPosition;
     while (bytesPeeked < length) {
-      bytesPeeked = readFromDataSource(peekBuffer, peekBufferPosition, length, bytesPeeked,
-          allowEndOfInput);
+      bytesPeeked =
+          readFromDataSource(
+              peekBuffer,
+              peekBufferStart + peekBufferPosition,
+              length,
+              bytesPeeked,
+              allowEndOfInput);
       if (bytesPeeked == C.RESULT_END_OF_INPUT) {
         return false;
       }
@@ -175,6 +185,11 @@ public final class DefaultExtractorInput implements ExtractorInput {
     advancePeekPosition(length, false);
   }
 
+  @Override
+  public void hintPeekLength(int length) {
+    ensureSpaceForPeek(length);
+  }
+
   @Override
   public void resetPeekPosition() {
     peekBufferPosition = 0;
@@ -208,11 +223,18 @@ public final class DefaultExtractorInput implements ExtractorInput {
    */
   private void ensureSpaceForPeek(int length) {
     int requiredLength = peekBufferPosition + length;
+    if (peekBufferStart + requiredLength <= peekBuffer.length) {
+      return;
+    }
+    byte[] newPeekBuffer = peekBuffer;
     if (requiredLength > peekBuffer.length) {
       int newPeekCapacity = Util.constrainValue(peekBuffer.length * 2,
           requiredLength + PEEK_MIN_FREE_SPACE_AFTER_RESIZE, requiredLength + PEEK_MAX_FREE_SPACE);
-      peekBuffer = Arrays.copyOf(peekBuffer, newPeekCapacity);
+      newPeekBuffer = new byte[newPeekCapacity];
     }
+    System.arraycopy(peekBuffer, peekBufferStart, newPeekBuffer, 0, peekBufferLength);
+    peekBuffer = newPeekBuffer;
+    peekBufferStart = 0;
   }
 
   /**
@@ -240,7 +262,7 @@ public final class DefaultExtractorInput implements ExtractorInput {
       return 0;
     }
     int peekBytes = Math.min(peekBufferLength, length);
-    System.arraycopy(peekBuffer, 0, target, offset, peekBytes);
+    System.arraycopy(peekBuffer, peekBufferStart, target, offset, peekBytes);
     updatePeekBuffer(peekBytes);
     return peekBytes;
   }
@@ -253,12 +275,17 @@ public final class DefaultExtractorInput implements ExtractorInput {
   private void updatePeekBuffer(int bytesConsumed) {
     peekBufferLength -= bytesConsumed;
     peekBufferPosition = 0;
-    byte[] newPeekBuffer = peekBuffer;
     if (peekBufferLength < peekBuffer.length - PEEK_MAX_FREE_SPACE) {
-      newPeekBuffer = new byte[peekBufferLength + PEEK_MIN_FREE_SPACE_AFTER_RESIZE];
+      byte[] newPeekBuffer = new byte[peekBufferLength + PEEK_MIN_FREE_SPACE_AFTER_RESIZE];
+      System.arraycopy(
+          peekBuffer, peekBufferStart + bytesConsumed, newPeekBuffer, 0, peekBufferLength);
+      peekBuffer = newPeekBuffer;
+      peekBufferStart = 0;
+    } else if (peekBufferLength == 0) {
+      peekBufferStart = 0;
+    } else {
+      peekBufferStart += bytesConsumed;
     }
-    System.arraycopy(peekBuffer, bytesConsumed, newPeekBuffer, 0, peekBufferLength);
-    peekBuffer = newPeekBuffer;
   }
 
   /**
@@ -15,6 +15,8 @@
  */
 package com.google.android.exoplayer2.extractor;
 
+import android.net.Uri;
+import androidx.annotation.IntDef;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.extractor.amr.AmrExtractor;
 import com.google.android.exoplayer2.extractor.flac.FlacExtractor;
@@ -33,7 +35,16 @@ import com.google.android.exoplayer2.extractor.ts.TsExtractor;
 import com.google.android.exoplayer2.extractor.ts.TsPayloadReader;
 import com.google.android.exoplayer2.extractor.wav.WavExtractor;
 import com.google.android.exoplayer2.util.TimestampAdjuster;
+import com.google.android.exoplayer2.util.Util;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * An {@link ExtractorsFactory} that provides an array of extractors for the following formats:
@@ -60,9 +71,75 @@ import java.lang.reflect.Constructor;
  *             extension of the FFMPEG extension.
  *       </ul>
  * </ul>
+ *
+ * <p>When the {@link Uri} or the response headers of the stream are passed to {@link
+ * #createExtractors(Uri, Map)}, the extractors for the format indicated by the {@code Content-Type}
+ * header come first, followed by the extractors for the format indicated by the file extension,
+ * so that the matching extractor is usually the first one to be sniffed. The type of the extractor
+ * selected for a {@link Uri}, as reported to {@link #onExtractorSelected(Uri, Extractor)}, comes
+ * before all of them when extractors are next created for the same {@link Uri}.
  */
 public final class DefaultExtractorsFactory implements ExtractorsFactory {
 
+  /** Types of file, for which extractors are added together. */
+  @Documented
+  @Retention(RetentionPolicy.SOURCE)
+  @IntDef({
+    FILE_TYPE_UNKNOWN,
+    FILE_TYPE_MATROSKA,
+    FILE_TYPE_MP4,
+    FILE_TYPE_MP3,
+    FILE_TYPE_ADTS,
+    FILE_TYPE_AC3,
+    FILE_TYPE_TS,
+    FILE_TYPE_FLV,
+    FILE_TYPE_OGG,
+    FILE_TYPE_PS,
+    FILE_TYPE_WAV,
+    FILE_TYPE_AMR,
+    FILE_TYPE_AC4,
+    FILE_TYPE_FLAC
+  })
+  private @interface FileType {}
+
+  private static final int FILE_TYPE_UNKNOWN = -1;
+  private static final int FILE_TYPE_MATROSKA = 0;
+  private static final int FILE_TYPE_MP4 = 1;
+  private static final int FILE_TYPE_MP3 = 2;
+  private static final int FILE_TYPE_ADTS = 3;
+  private static final int FILE_TYPE_AC3 = 4;
+  private static final int FILE_TYPE_TS = 5;
+  private static final int FILE_TYPE_FLV = 6;
+  private static final int FILE_TYPE_OGG = 7;
+  private static final int FILE_TYPE_PS = 8;
+  private static final int FILE_TYPE_WAV = 9;
+  private static final int FILE_TYPE_AMR = 10;
+  private static final int FILE_TYPE_AC4 = 11;
+  private static final int FILE_TYPE_FLAC = 12;
+
+  /** The order in which extractors are returned when the format of the stream is unknown. */
+  @FileType
+  private static final int[] DEFAULT_FILE_TYPE_ORDER =
+      new int[] {
+        FILE_TYPE_MATROSKA,
+        FILE_TYPE_MP4,
+        FILE_TYPE_MP3,
+        FILE_TYPE_ADTS,
+        FILE_TYPE_AC3,
+        FILE_TYPE_TS,
+        FILE_TYPE_FLV,
+        FILE_TYPE_OGG,
+        FILE_TYPE_PS,
+        FILE_TYPE_WAV,
+        FILE_TYPE_AMR,
+        FILE_TYPE_AC4,
+        FILE_TYPE_FLAC
+      };
+
+  private static final String HEADER_CONTENT_TYPE = "Content-Type";
+  /** The maximum number of {@link Uri}s for which the type of the selected extractor is kept. */
+  private static final int MAX_SELECTED_EXTRACTOR_URI_COUNT = 16;
+
   @Nullable
   private static final Constructor<? extends Extractor> FLAC_EXTENSION_EXTRACTOR_CONSTRUCTOR;
 
@@ -92,6 +169,8 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
     FLAC_EXTENSION_EXTRACTOR_CONSTRUCTOR = flacExtensionExtractorConstructor;
   }
 
+  private final LinkedHashMap<Uri, Class<? extends Extractor>> selectedExtractorClasses;
+
   private boolean constantBitrateSeekingEnabled;
   private @AdtsExtractor.Flags int adtsFlags;
   private @AmrExtractor.Flags int amrFlags;
@@ -104,6 +183,16 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
 
   public DefaultExtractorsFactory() {
     tsMode = TsExtractor.MODE_SINGLE_PMT;
+    selectedExtractorClasses =
+        new LinkedHashMap<Uri, Class<? extends Extractor>>(
+            /* initialCapacity= */ MAX_SELECTED_EXTRACTOR_URI_COUNT + 1,
+            /* loadFactor= */ 1,
+            /* accessOrder= */ true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Uri, Class<? extends Extractor>> eldest) {
+            return size() > MAX_SELECTED_EXTRACTOR_URI_COUNT;
+          }
+        };
   }
 
   /**
@@ -226,46 +315,233 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
 
   @Override
   public synchronized Extractor[] createExtractors() {
-    Extractor[] extractors = new Extractor[14];
-    extractors[0] = new MatroskaExtractor(matroskaFlags);
-    extractors[1] = new FragmentedMp4Extractor(fragmentedMp4Flags);
-    extractors[2] = new Mp4Extractor(mp4Flags);
-    extractors[3] =
-        new Mp3Extractor(
-            mp3Flags
-                | (constantBitrateSeekingEnabled
-                    ? Mp3Extractor.FLAG_ENABLE_CONSTANT_BITRATE_SEEKING
-                    : 0));
-    extractors[4] =
-        new AdtsExtractor(
-            adtsFlags
-                | (constantBitrateSeekingEnabled
-                    ? AdtsExtractor.FLAG_ENABLE_CONSTANT_BITRATE_SEEKING
-                    : 0));
-    extractors[5] = new Ac3Extractor();
-    extractors[6] = new TsExtractor(tsMode, tsFlags);
-    extractors[7] = new FlvExtractor();
-    extractors[8] = new OggExtractor();
-    extractors[9] = new PsExtractor();
-    extractors[10] = new WavExtractor();
-    extractors[11] =
-        new AmrExtractor(
-            amrFlags
-                | (constantBitrateSeekingEnabled
-                    ? AmrExtractor.FLAG_ENABLE_CONSTANT_BITRATE_SEEKING
-                    : 0));
-    extractors[12] = new Ac4Extractor();
-    if (FLAC_EXTENSION_EXTRACTOR_CONSTRUCTOR != null) {
-      try {
-        extractors[13] = FLAC_EXTENSION_EXTRACTOR_CONSTRUCTOR.newInstance();
-      } catch (Exception e) {
-        // Should never happen.
-        throw new IllegalStateException("Unexpected error creating FLAC extractor", e);
+    return createExtractors(Uri.EMPTY, Collections.emptyMap());
+  }
+
+  @Override
+  public synchronized Extractor[] createExtractors(
+      Uri uri, Map<String, List<String>> responseHeaders) {
+    List<Extractor> extractors = new ArrayList<>(/* initialCapacity= */ 14);
+    @FileType int responseHeadersFileType = inferFileTypeFromResponseHeaders(responseHeaders);
+    if (responseHeadersFileType != FILE_TYPE_UNKNOWN) {
+      addExtractorsForFileType(responseHeadersFileType, extractors);
+    }
+    @FileType int uriFileType = inferFileTypeFromUri(uri);
+    if (uriFileType != FILE_TYPE_UNKNOWN && uriFileType != responseHeadersFileType) {
+      addExtractorsForFileType(uriFileType, extractors);
+    }
+    for (@FileType int fileType : DEFAULT_FILE_TYPE_ORDER) {
+      if (fileType != responseHeadersFileType && fileType != uriFileType) {
+        addExtractorsForFileType(fileType, extractors);
+      }
+    }
+    @Nullable Class<? extends Extractor> selectedExtractorClass = selectedExtractorClasses.get(uri);
+    if (selectedExtractorClass != null) {
+      for (int i = 0; i < extractors.size(); i++) {
+        if (extractors.get(i).getClass() == selectedExtractorClass) {
+          extractors.add(0, extractors.remove(i));
+          break;
+        }
       }
-    } else {
-      extractors[13] = new FlacExtractor();
     }
-    return extractors;
+    return extractors.toArray(new Extractor[0]);
   }
 
+  @Override
+  public synchronized void onExtractorSelected(Uri uri, Extractor extractor) {
+    if (!Uri.EMPTY.equals(uri)) {
+      selectedExtractorClasses.put(uri, extractor.getClass());
+    }
+  }
+
+  private void addExtractorsForFileType(@FileType int fileType, List<Extractor> extractors) {
+    switch (fileType) {
+      case FILE_TYPE_MATROSKA:
+        extractors.add(new MatroskaExtractor(matroskaFlags));
+        break;
+      case FILE_TYPE_MP4:
+        extractors.add(new FragmentedMp4Extractor(fragmentedMp4Flags));
+        extractors.add(new Mp4Extractor(mp4Flags));
+        break;
+      case FILE_TYPE_MP3:
+        extractors.add(
+            new Mp3Extractor(
+                mp3Flags
+                    | (constantBitrateSeekingEnabled
+                        ? Mp3Extractor.FLAG_ENABLE_CONSTANT_BITRATE_SEEKING
+                        : 0)));
+        break;
+      case FILE_TYPE_ADTS:
+        extractors.add(
+            new AdtsExtractor(
+                adtsFlags
+                    | (constantBitrateSeekingEnabled
+                        ? AdtsExtractor.FLAG_ENABLE_CONSTANT_BITRATE_SEEKING
+                        : 0)));
+        break;
+      case FILE_TYPE_AC3:
+        extractors.add(new Ac3Extractor());
+        break;
+      case FILE_TYPE_TS:
+        extractors.add(new TsExtractor(tsMode, tsFlags));
+        break;
+      case FILE_TYPE_FLV:
+        extractors.add(new FlvExtractor());
+        break;
+      case FILE_TYPE_OGG:
+        extractors.add(new OggExtractor());
+        break;
+      case FILE_TYPE_PS:
+        extractors.add(new PsExtractor());
+        break;
+      case FILE_TYPE_WAV:
+        extractors.add(new WavExtractor());
+        break;
+      case FILE_TYPE_AMR:
+        extractors.add(
+            new AmrExtractor(
+                amrFlags
+                    | (constantBitrateSeekingEnabled
+                        ? AmrExtractor.FLAG_ENABLE_CONSTANT_BITRATE_SEEKING
+                        : 0)));
+        break;
+      case FILE_TYPE_AC4:
+        extractors.add(new Ac4Extractor());
+        break;
+      case FILE_TYPE_FLAC:
+        if (FLAC_EXTENSION_EXTRACTOR_CONSTRUCTOR != null) {
+          try {
+            extractors.add(FLAC_EXTENSION_EXTRACTOR_CONSTRUCTOR.newInstance());
+          } catch (Exception e) {
+            // Should never happen.
+            throw new IllegalStateException("Unexpected error creating FLAC extractor", e);
+          }
+        } else {
+          extractors.add(new FlacExtractor());
+        }
+        break;
+      default:
+        throw new IllegalArgumentException();
+    }
+  }
+
+  @FileType
+  private static int inferFileTypeFromResponseHeaders(Map<String, List<String>> responseHeaders) {
+    @Nullable String contentType = null;
+    // Header names are case insensitive, and may be keyed in the case in which they were received.
+    for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+      if (HEADER_CONTENT_TYPE.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+        contentType = header.getValue().get(0);
+        break;
+      }
+    }
+    if (contentType == null) {
+      return FILE_TYPE_UNKNOWN;
+    }
+    int parametersIndex = contentType.indexOf(';');
+    if (parametersIndex != -1) {
+      contentType = contentType.substring(0, parametersIndex);
+    }
+    switch (Util.toLowerInvariant(contentType.trim())) {
+      case "video/x-matroska":
+      case "audio/x-matroska":
+      case "video/webm":
+      case "audio/webm":
+      case "application/webm":
+        return FILE_TYPE_MATROSKA;
+      case "video/mp4":
+      case "audio/mp4":
+      case "application/mp4":
+        return FILE_TYPE_MP4;
+      case "audio/mpeg":
+        return FILE_TYPE_MP3;
+      case "audio/aac":
+      case "audio/aacp":
+        return FILE_TYPE_ADTS;
+      case "audio/ac3":
+      case "audio/eac3":
+        return FILE_TYPE_AC3;
+      case "video/mp2t":
+        return FILE_TYPE_TS;
+      case "video/x-flv":
+        return FILE_TYPE_FLV;
+      case "audio/ogg":
+      case "video/ogg":
+      case "application/ogg":
+        return FILE_TYPE_OGG;
+      case "video/mp2p":
+        return FILE_TYPE_PS;
+      case "audio/wav":
+      case "audio/wave":
+      case "audio/x-wav":
+        return FILE_TYPE_WAV;
+      case "audio/amr":
+      case "audio/amr-wb":
+        return FILE_TYPE_AMR;
+      case "audio/ac4":
+        return FILE_TYPE_AC4;
+      case "audio/flac":
+      case "audio/x-flac":
+        return FILE_TYPE_FLAC;
+      default:
+        return FILE_TYPE_UNKNOWN;
+    }
+  }
+
+  @FileType
+  private static int inferFileTypeFromUri(Uri uri) {
+    @Nullable String filename = uri.getLastPathSegment();
+    if (filename == null) {
+      return FILE_TYPE_UNKNOWN;
+    }
+    int extensionIndex = filename.lastIndexOf('.');
+    if (extensionIndex == -1) {
+      return FILE_TYPE_UNKNOWN;
+    }
+    switch (Util.toLowerInvariant(filename.substring(extensionIndex + 1))) {
+      case "mkv":
+      case "mka":
+      case "mk3d":
+      case "webm":
+        return FILE_TYPE_MATROSKA;
+      case "mp4":
+      case "m4a":
+      case "m4v":
+      case "mov":
+      case "3gp":
+        return FILE_TYPE_MP4;
+      case "mp3":
+        return FILE_TYPE_MP3;
+      case "aac":
+      case "adts":
+        return FILE_TYPE_ADTS;
+      case "ac3":
+      case "ec3":
+        return FILE_TYPE_AC3;
+      case "ts":
+        return FILE_TYPE_TS;
+      case "flv":
+        return FILE_TYPE_FLV;
+      case "ogg":
+      case "oga":
+      case "ogv":
+      case "opus":
+        return FILE_TYPE_OGG;
+      case "ps":
+      case "mpg":
+      case "mpeg":
+        return FILE_TYPE_PS;
+      case "wav":
+      case "wave":
+        return FILE_TYPE_WAV;
+      case "amr":
+        return FILE_TYPE_AMR;
+      case "ac4":
+        return FILE_TYPE_AC4;
+      case "flac":
+        return FILE_TYPE_FLAC;
+      default:
+        return FILE_TYPE_UNKNOWN;
+    }
+  }
 }
@@ -59,4 +59,9 @@ public final class DummyTrackOutput implements TrackOutput {
       @Nullable CryptoData cryptoData) {
     // Do nothing.
   }
+
+  @Override
+  public boolean isDiscardingSamples() {
+    return true;
+  }
 }
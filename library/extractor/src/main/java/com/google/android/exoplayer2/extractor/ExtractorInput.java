@@ -240,6 +240,17 @@ public interface ExtractorInput extends SampleDataReader {
    */
   void advancePeekPosition(int length) throws IOException, InterruptedException;
 
+  /**
+   * Hints that up to {@code length} bytes are about to be peeked from the current peek position.
+   * Implementations may use the hint to make space for the peeked data once, rather than growing
+   * the space as the data is peeked. The default implementation does nothing.
+   *
+   * @param length The number of bytes that are about to be peeked.
+   */
+  default void hintPeekLength(int length) {
+    // Do nothing.
+  }
+
   /**
    * Resets the peek position to equal the current read position.
    */
@@ -15,9 +15,41 @@
  */
 package com.google.android.exoplayer2.extractor;
 
+import android.net.Uri;
+import java.util.List;
+import java.util.Map;
+
 /** Factory for arrays of {@link Extractor} instances. */
 public interface ExtractorsFactory {
 
   /** Returns an array of new {@link Extractor} instances. */
   Extractor[] createExtractors();
+
+  /**
+   * Returns an array of new {@link Extractor} instances to extract the stream at {@code uri}.
+   * Extractors are sniffed in order, so the ones most likely to read the stream should come first.
+   *
+   * <p>The default implementation returns {@link #createExtractors()}.
+   *
+   * @param uri The {@link Uri} of the stream.
+   * @param responseHeaders The response headers of the stream, keyed by header name.
+   * @return The {@link Extractor} instances.
+   */
+  default Extractor[] createExtractors(Uri uri, Map<String, List<String>> responseHeaders) {
+    return createExtractors();
+  }
+
+  /**
+   * Called when {@code extractor}, one of the extractors returned by {@link #createExtractors(Uri,
+   * Map)}, has been selected to extract the stream at {@code uri}. Implementations may return an
+   * extractor of the same type first when extractors are next created for the same {@link Uri}.
+   *
+   * <p>The default implementation does nothing.
+   *
+   * @param uri The {@link Uri} of the stream.
+   * @param extractor The selected {@link Extractor}.
+   */
+  default void onExtractorSelected(Uri uri, Extractor extractor) {
+    // Do nothing.
+  }
 }
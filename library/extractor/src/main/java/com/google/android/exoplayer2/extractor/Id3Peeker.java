@@ -66,6 +66,8 @@ public final class Id3Peeker {
       scratch.skipBytes(3); // Skip major version, minor version and flags.
       int framesLength = scratch.readSynchSafeInt();
       int tagLength = Id3Decoder.ID3_HEADER_LENGTH + framesLength;
+      // Make space for the frames and the header of a possible next tag in one go.
+      input.hintPeekLength(framesLength + Id3Decoder.ID3_HEADER_LENGTH);
 
       if (metadata == null) {
         byte[] id3Data = new byte[tagLength];
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.util.Arrays;
+
+/** A {@link SeekMap} backed by an index of seek points, sorted by time and by position. */
+public final class IndexSeekMap implements SeekMap {
+
+  /** The byte positions of the seek points. */
+  public final long[] positions;
+
+  /** The times of the seek points, in microseconds. */
+  public final long[] timesUs;
+
+  private final long durationUs;
+
+  /**
+   * @param positions The byte positions of the seek points.
+   * @param timesUs The times of the seek points, in microseconds.
+   * @param durationUs The duration of the media, in microseconds, or {@link C#TIME_UNSET} if
+   *     unknown.
+   */
+  public IndexSeekMap(long[] positions, long[] timesUs, long durationUs) {
+    Assertions.checkArgument(positions.length == timesUs.length);
+    this.positions = positions;
+    this.timesUs = timesUs;
+    this.durationUs = durationUs;
+  }
+
+  // SeekMap implementation.
+
+  @Override
+  public boolean isSeekable() {
+    return timesUs.length > 0;
+  }
+
+  @Override
+  public long getDurationUs() {
+    return durationUs;
+  }
+
+  @Override
+  public SeekPoints getSeekPoints(long timeUs) {
+    if (timesUs.length == 0) {
+      return new SeekPoints(SeekPoint.START);
+    }
+    int targetIndex =
+        Util.binarySearchFloor(timesUs, timeUs, /* inclusive= */ true, /* stayInBounds= */ true);
+    SeekPoint seekPoint = new SeekPoint(timesUs[targetIndex], positions[targetIndex]);
+    if (seekPoint.timeUs >= timeUs || targetIndex == timesUs.length - 1) {
+      return new SeekPoints(seekPoint);
+    } else {
+      SeekPoint nextSeekPoint =
+          new SeekPoint(timesUs[targetIndex + 1], positions[targetIndex + 1]);
+      return new SeekPoints(seekPoint, nextSeekPoint);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "IndexSeekMap("
+        + "positions="
+        + Arrays.toString(positions)
+        + ", timesUs="
+        + Arrays.toString(timesUs)
+        + ", durationUs="
+        + durationUs
+        + ")";
+  }
+}
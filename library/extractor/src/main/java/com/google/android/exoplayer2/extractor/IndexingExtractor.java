@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor;
+
+import androidx.annotation.Nullable;
+
+/**
+ * An {@link Extractor} that may need to read the media to build an index of its seek points,
+ * because the container doesn't provide one.
+ *
+ * <p>Once the whole input has been read, the index can be stored, and set on the extractor that
+ * reads the same media next, which is then seekable without reading the media again.
+ */
+public interface IndexingExtractor extends Extractor {
+
+  /**
+   * Returns the index built by reading the input, or {@code null} if the end of the input hasn't
+   * been reached or if the extractor isn't building an index of the input.
+   */
+  @Nullable
+  IndexSeekMap getIndex();
+
+  /**
+   * Sets an index built by a previous extractor reading the same media. Must be called before
+   * {@link #read(ExtractorInput, PositionHolder)}. The index is ignored if the extractor doesn't
+   * build an index of the input, or if it doesn't match the input.
+   *
+   * @param index The index returned by {@link #getIndex()}.
+   */
+  void setIndex(IndexSeekMap index);
+}
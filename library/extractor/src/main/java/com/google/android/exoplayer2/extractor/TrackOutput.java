@@ -144,4 +144,16 @@ public interface TrackOutput {
       int size,
       int offset,
       @Nullable CryptoData encryptionData);
+
+  /**
+   * Returns whether the output is discarding the samples written to it. Extractors may skip writing
+   * samples to an output that's discarding them. The returned value may change between calls to
+   * {@link Extractor#read(ExtractorInput, PositionHolder)}, in which case the output should be
+   * resumed by seeking the extractor.
+   *
+   * <p>The default implementation returns {@code false}.
+   */
+  default boolean isDiscardingSamples() {
+    return false;
+  }
 }
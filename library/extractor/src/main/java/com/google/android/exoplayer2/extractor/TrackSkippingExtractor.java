@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor;
+
+/**
+ * An {@link Extractor} that may skip reading the samples of tracks whose {@link TrackOutput} is
+ * {@link TrackOutput#isDiscardingSamples() discarding samples}.
+ *
+ * <p>Samples that are skipped are never output, so a track that starts being read again must be
+ * read from a position before the samples that it needs.
+ */
+public interface TrackSkippingExtractor extends Extractor {
+
+  /**
+   * Returns whether the extractor skips the samples of tracks whose {@link TrackOutput} is
+   * discarding samples. If {@code false}, the extractor outputs the samples of all tracks.
+   */
+  boolean skipsDiscardedTracks();
+}
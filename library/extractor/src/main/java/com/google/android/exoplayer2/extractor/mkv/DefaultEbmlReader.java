@@ -26,7 +26,7 @@ import java.io.IOException;
 import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
-import java.util.ArrayDeque;
+import java.util.Arrays;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 import org.checkerframework.checker.nullness.qual.RequiresNonNull;
 
@@ -51,10 +51,18 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
   private static final int VALID_FLOAT32_ELEMENT_SIZE_BYTES = 4;
   private static final int VALID_FLOAT64_ELEMENT_SIZE_BYTES = 8;
 
+  private static final int INITIAL_MASTER_ELEMENTS_STACK_CAPACITY = 8;
+
   private final byte[] scratch;
-  private final ArrayDeque<MasterElement> masterElementsStack;
   private final VarintReader varintReader;
 
+  // A stack of the master elements that are being read, used to track when each of them ends so
+  // that EbmlProcessor.endMasterElement(int) can be called. Master elements such as BlockGroups are
+  // read for every block, so the stack is kept in arrays rather than allocating an object for each.
+  private int[] masterElementIds;
+  private long[] masterElementEndPositions;
+  private int masterElementCount;
+
   private @MonotonicNonNull EbmlProcessor processor;
   private @ElementState int elementState;
   private int elementId;
@@ -62,8 +70,9 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
 
   public DefaultEbmlReader() {
     scratch = new byte[8];
-    masterElementsStack = new ArrayDeque<>();
     varintReader = new VarintReader();
+    masterElementIds = new int[INITIAL_MASTER_ELEMENTS_STACK_CAPACITY];
+    masterElementEndPositions = new long[INITIAL_MASTER_ELEMENTS_STACK_CAPACITY];
   }
 
   @Override
@@ -74,7 +83,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
   @Override
   public void reset() {
     elementState = ELEMENT_STATE_READ_ID;
-    masterElementsStack.clear();
+    masterElementCount = 0;
     varintReader.reset();
   }
 
@@ -82,9 +91,9 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
   public boolean read(ExtractorInput input) throws IOException, InterruptedException {
     Assertions.checkStateNotNull(processor);
     while (true) {
-      MasterElement head = masterElementsStack.peek();
-      if (head != null && input.getPosition() >= head.elementEndPosition) {
-        processor.endMasterElement(masterElementsStack.pop().elementId);
+      if (masterElementCount > 0
+          && input.getPosition() >= masterElementEndPositions[masterElementCount - 1]) {
+        processor.endMasterElement(masterElementIds[--masterElementCount]);
         return true;
       }
 
@@ -111,7 +120,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
         case EbmlProcessor.ELEMENT_TYPE_MASTER:
           long elementContentPosition = input.getPosition();
           long elementEndPosition = elementContentPosition + elementContentSize;
-          masterElementsStack.push(new MasterElement(elementId, elementEndPosition));
+          pushMasterElement(elementId, elementEndPosition);
           processor.startMasterElement(elementId, elementContentPosition, elementContentSize);
           elementState = ELEMENT_STATE_READ_ID;
           return true;
@@ -151,6 +160,17 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
     }
   }
 
+  private void pushMasterElement(int elementId, long elementEndPosition) {
+    if (masterElementCount == masterElementIds.length) {
+      int newCapacity = masterElementCount * 2;
+      masterElementIds = Arrays.copyOf(masterElementIds, newCapacity);
+      masterElementEndPositions = Arrays.copyOf(masterElementEndPositions, newCapacity);
+    }
+    masterElementIds[masterElementCount] = elementId;
+    masterElementEndPositions[masterElementCount] = elementEndPosition;
+    masterElementCount++;
+  }
+
   /**
    * Does a byte by byte search to try and find the next level 1 element. This method is called if
    * some invalid data is encountered in the parser.
@@ -245,20 +265,4 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
     return new String(stringBytes, 0, trimmedLength);
   }
 
-  /**
-   * Used in {@link #masterElementsStack} to track when the current master element ends, so that
-   * {@link EbmlProcessor#endMasterElement(int)} can be called.
-   */
-  private static final class MasterElement {
-
-    private final int elementId;
-    private final long elementEndPosition;
-
-    private MasterElement(int elementId, long elementEndPosition) {
-      this.elementId = elementId;
-      this.elementEndPosition = elementEndPosition;
-    }
-
-  }
-
 }
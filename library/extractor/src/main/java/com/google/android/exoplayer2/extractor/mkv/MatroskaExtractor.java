@@ -262,6 +262,10 @@ public class MatroskaExtractor implements Extractor {
    * in a subrip timecode (milliseconds).
    */
   private static final long SUBRIP_TIMECODE_LAST_VALUE_SCALING_FACTOR = 1000;
+  /**
+   * The length in bytes of a subrip timecode.
+   */
+  private static final int SUBRIP_TIMECODE_LENGTH = 12;
   /**
    * The format of a subrip timecode.
    */
@@ -297,6 +301,10 @@ public class MatroskaExtractor implements Extractor {
    * in an SSA timecode (1/100ths of a second).
    */
   private static final long SSA_TIMECODE_LAST_VALUE_SCALING_FACTOR = 10000;
+  /**
+   * The length in bytes of an SSA timecode.
+   */
+  private static final int SSA_TIMECODE_LENGTH = 10;
   /**
    * The format of an SSA timecode.
    */
@@ -475,6 +483,10 @@ public class MatroskaExtractor implements Extractor {
   @CallSuper
   @EbmlProcessor.ElementType
   protected int getElementType(int id) {
+    if (id == ID_CUES && sentSeekMap) {
+      // We have already built the cues. Skip them rather than parsing them again.
+      return EbmlProcessor.ELEMENT_TYPE_UNKNOWN;
+    }
     switch (id) {
       case ID_EBML:
       case ID_SEGMENT:
@@ -1534,35 +1546,28 @@ public class MatroskaExtractor implements Extractor {
    *     parameter).
    */
   private static void setSubtitleEndTime(String codecId, long durationUs, byte[] subtitleData) {
-    byte[] endTimecode;
+    String timecodeFormat;
+    long lastTimecodeValueScalingFactor;
     int endTimecodeOffset;
+    int endTimecodeLength;
     switch (codecId) {
       case CODEC_ID_SUBRIP:
-        endTimecode =
-            formatSubtitleTimecode(
-                durationUs, SUBRIP_TIMECODE_FORMAT, SUBRIP_TIMECODE_LAST_VALUE_SCALING_FACTOR);
+        timecodeFormat = SUBRIP_TIMECODE_FORMAT;
+        lastTimecodeValueScalingFactor = SUBRIP_TIMECODE_LAST_VALUE_SCALING_FACTOR;
         endTimecodeOffset = SUBRIP_PREFIX_END_TIMECODE_OFFSET;
+        endTimecodeLength = SUBRIP_TIMECODE_LENGTH;
         break;
       case CODEC_ID_ASS:
-        endTimecode =
-            formatSubtitleTimecode(
-                durationUs, SSA_TIMECODE_FORMAT, SSA_TIMECODE_LAST_VALUE_SCALING_FACTOR);
+        timecodeFormat = SSA_TIMECODE_FORMAT;
+        lastTimecodeValueScalingFactor = SSA_TIMECODE_LAST_VALUE_SCALING_FACTOR;
         endTimecodeOffset = SSA_PREFIX_END_TIMECODE_OFFSET;
+        endTimecodeLength = SSA_TIMECODE_LENGTH;
         break;
       default:
         throw new IllegalArgumentException();
     }
-    System.arraycopy(endTimecode, 0, subtitleData, endTimecodeOffset, endTimecode.length);
-  }
-
-  /**
-   * Formats {@code timeUs} using {@code timecodeFormat}, and sets it as the end timecode in {@code
-   * subtitleSampleData}.
-   */
-  private static byte[] formatSubtitleTimecode(
-      long timeUs, String timecodeFormat, long lastTimecodeValueScalingFactor) {
-    Assertions.checkArgument(timeUs != C.TIME_UNSET);
-    byte[] timeCodeData;
+    Assertions.checkArgument(durationUs != C.TIME_UNSET);
+    long timeUs = durationUs;
     int hours = (int) (timeUs / (3600 * C.MICROS_PER_SECOND));
     timeUs -= (hours * 3600 * C.MICROS_PER_SECOND);
     int minutes = (int) (timeUs / (60 * C.MICROS_PER_SECOND));
@@ -1570,10 +1575,37 @@ public class MatroskaExtractor implements Extractor {
     int seconds = (int) (timeUs / C.MICROS_PER_SECOND);
     timeUs -= (seconds * C.MICROS_PER_SECOND);
     int lastValue = (int) (timeUs / lastTimecodeValueScalingFactor);
-    timeCodeData =
-        Util.getUtf8Bytes(
-            String.format(Locale.US, timecodeFormat, hours, minutes, seconds, lastValue));
-    return timeCodeData;
+    // Write the values in place, from last to first, skipping the separator between each of them.
+    int position = endTimecodeOffset + endTimecodeLength;
+    position = writeTimecodeValue(lastValue, subtitleData, position) - 1;
+    position = writeTimecodeValue(seconds, subtitleData, position) - 1;
+    position = writeTimecodeValue(minutes, subtitleData, position) - 1;
+    if (writeTimecodeValue(hours, subtitleData, position) == C.INDEX_UNSET) {
+      // The hours have more digits than the template. Fall back to formatting the timecode.
+      byte[] endTimecode =
+          Util.getUtf8Bytes(
+              String.format(Locale.US, timecodeFormat, hours, minutes, seconds, lastValue));
+      System.arraycopy(endTimecode, 0, subtitleData, endTimecodeOffset, endTimecode.length);
+    }
+  }
+
+  /**
+   * Writes {@code value} as zero padded decimal digits into the run of digits in {@code data} that
+   * ends at {@code endPosition}.
+   *
+   * @param value The non-negative value to write.
+   * @param data The data containing the timecode (output parameter).
+   * @param endPosition The position after the last digit of the run.
+   * @return The position of the first digit of the run, or {@link C#INDEX_UNSET} if {@code value}
+   *     has more digits than the run.
+   */
+  private static int writeTimecodeValue(int value, byte[] data, int endPosition) {
+    int position = endPosition;
+    while (position > 0 && data[position - 1] >= '0' && data[position - 1] <= '9') {
+      data[--position] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    return value == 0 ? position : C.INDEX_UNSET;
   }
 
   /**
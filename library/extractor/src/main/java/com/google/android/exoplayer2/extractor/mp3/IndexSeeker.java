@@ -17,7 +17,9 @@ package com.google.android.exoplayer2.extractor.mp3;
 
 import androidx.annotation.VisibleForTesting;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.IndexSeekMap;
 import com.google.android.exoplayer2.extractor.SeekPoint;
+import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.LongArray;
 import com.google.android.exoplayer2.util.Util;
 
@@ -109,4 +111,33 @@ import com.google.android.exoplayer2.util.Util;
   /* package */ void setDurationUs(long durationUs) {
     this.durationUs = durationUs;
   }
+
+  /** Returns an {@link IndexSeekMap} holding the points of the index. */
+  public IndexSeekMap toIndexSeekMap() {
+    return new IndexSeekMap(positions.toArray(), timesUs.toArray(), durationUs);
+  }
+
+  /**
+   * Adds the points of an index built by a previous seeker for the same stream, and takes its
+   * duration, if its first point matches the first point of this index and its points are before
+   * the end of the data.
+   *
+   * <p>Must be called before any point is added to the index.
+   *
+   * @param index The index returned by {@link #toIndexSeekMap()} from the previous seeker.
+   */
+  public void restoreIndex(IndexSeekMap index) {
+    Assertions.checkState(timesUs.size() == 1);
+    if (index.timesUs.length == 0
+        || index.timesUs[0] != timesUs.get(0)
+        || index.positions[0] != positions.get(0)
+        || (dataEndPosition != C.POSITION_UNSET
+            && index.positions[index.positions.length - 1] >= dataEndPosition)) {
+      return;
+    }
+    for (int i = 1; i < index.timesUs.length; i++) {
+      maybeAddSeekPoint(index.timesUs[i], index.positions[i]);
+    }
+    durationUs = index.getDurationUs();
+  }
 }
@@ -28,6 +28,8 @@ import com.google.android.exoplayer2.extractor.ExtractorOutput;
 import com.google.android.exoplayer2.extractor.ExtractorsFactory;
 import com.google.android.exoplayer2.extractor.GaplessInfoHolder;
 import com.google.android.exoplayer2.extractor.Id3Peeker;
+import com.google.android.exoplayer2.extractor.IndexSeekMap;
+import com.google.android.exoplayer2.extractor.IndexingExtractor;
 import com.google.android.exoplayer2.extractor.PositionHolder;
 import com.google.android.exoplayer2.extractor.TrackOutput;
 import com.google.android.exoplayer2.extractor.mp3.Seeker.UnseekableSeeker;
@@ -50,7 +52,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
 /**
  * Extracts data from the MP3 container format.
  */
-public final class Mp3Extractor implements Extractor {
+public final class Mp3Extractor implements IndexingExtractor {
 
   /** Factory for {@link Mp3Extractor} instances. */
   public static final ExtractorsFactory FACTORY = () -> new Extractor[] {new Mp3Extractor()};
@@ -79,6 +81,8 @@ public final class Mp3Extractor implements Extractor {
   public static final int FLAG_ENABLE_CONSTANT_BITRATE_SEEKING = 1;
   /**
    * Flag to force index seeking, consisting in building a time-to-byte mapping as the file is read.
+   * Once the whole file has been read, the mapping is returned by {@link #getIndex()}, and can be
+   * passed to {@link #setIndex(IndexSeekMap)} when the same file is read again.
    *
    * <p>This seeker may require to scan a significant portion of the file to compute a seek point.
    * Therefore, it should only be used if:
@@ -148,6 +152,8 @@ public final class Mp3Extractor implements Extractor {
   private int sampleBytesRemaining;
 
   private @MonotonicNonNull Seeker seeker;
+  @Nullable private IndexSeekMap restoredIndex;
+  private boolean readEndOfInput;
   private boolean disableSeeking;
   private boolean isSeekInProgress;
   private long seekTimeUs;
@@ -217,6 +223,9 @@ public final class Mp3Extractor implements Extractor {
       throws IOException, InterruptedException {
     assertInitialized();
     int readResult = readInternal(input);
+    if (readResult == RESULT_END_OF_INPUT) {
+      readEndOfInput = true;
+    }
     if (readResult == RESULT_END_OF_INPUT && seeker instanceof IndexSeeker) {
       // Duration is exact when index seeker is used.
       long durationUs = computeTimeUs(samplesRead);
@@ -228,6 +237,23 @@ public final class Mp3Extractor implements Extractor {
     return readResult;
   }
 
+  // IndexingExtractor implementation.
+
+  @Override
+  @Nullable
+  public IndexSeekMap getIndex() {
+    // The index is built from the first frame onwards, so it's complete once the end of the input
+    // has been reached, whatever seeks happened before.
+    return readEndOfInput && seeker instanceof IndexSeeker
+        ? ((IndexSeeker) seeker).toIndexSeekMap()
+        : null;
+  }
+
+  @Override
+  public void setIndex(IndexSeekMap index) {
+    restoredIndex = index;
+  }
+
   /**
    * Disables the extractor from being able to seek through the media.
    *
@@ -452,9 +478,13 @@ public final class Mp3Extractor implements Extractor {
         durationUs = seekFrameSeeker.getDurationUs();
         dataEndPosition = seekFrameSeeker.getDataEndPosition();
       }
-      resultSeeker =
+      IndexSeeker indexSeeker =
           new IndexSeeker(
               durationUs, /* dataStartPosition= */ input.getPosition(), dataEndPosition);
+      if (restoredIndex != null) {
+        indexSeeker.restoreIndex(restoredIndex);
+      }
+      resultSeeker = indexSeeker;
     } else if (metadataSeeker != null) {
       resultSeeker = metadataSeeker;
     } else if (seekFrameSeeker != null) {
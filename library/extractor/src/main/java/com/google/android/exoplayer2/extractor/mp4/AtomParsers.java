@@ -143,33 +143,60 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
             stsdData.nalUnitLengthFieldLength, editListDurations, editListMediaTimes);
   }
 
+  /**
+   * Returns the number of samples described by an stbl atom, without parsing the rest of it.
+   *
+   * @param stblAtom stbl (sample table) atom to decode.
+   * @return The number of samples.
+   * @throws ParserException Thrown if the stbl atom has no sample size information.
+   */
+  public static int parseStblSampleCount(Atom.ContainerAtom stblAtom) throws ParserException {
+    return parseSampleSizeBox(stblAtom).getSampleCount();
+  }
+
+  /**
+   * Returns the size of the largest sample described by an stbl atom, without parsing the rest of
+   * it.
+   *
+   * @param stblAtom stbl (sample table) atom to decode.
+   * @return The size of the largest sample, in bytes.
+   * @throws ParserException Thrown if the stbl atom has no sample size information.
+   */
+  public static int parseStblMaximumSampleSize(Atom.ContainerAtom stblAtom)
+      throws ParserException {
+    SampleSizeBox sampleSizeBox = parseSampleSizeBox(stblAtom);
+    int sampleCount = sampleSizeBox.getSampleCount();
+    if (sampleSizeBox.isFixedSampleSize()) {
+      return sampleCount > 0 ? sampleSizeBox.readNextSampleSize() : 0;
+    }
+    int maximumSize = 0;
+    for (int i = 0; i < sampleCount; i++) {
+      maximumSize = Math.max(maximumSize, sampleSizeBox.readNextSampleSize());
+    }
+    return maximumSize;
+  }
+
   /**
    * Parses an stbl atom (defined in 14496-12).
    *
    * @param track Track to which this sample table corresponds.
    * @param stblAtom stbl (sample table) atom to decode.
    * @param gaplessInfoHolder Holder to populate with gapless playback information.
+   * @param preferCompactSampleTable Whether to return a {@link CompactTrackSampleTable} if the
+   *     track's samples and edit list can be represented by one.
    * @return Sample table described by the stbl atom.
    * @throws ParserException Thrown if the stbl atom can't be parsed.
    */
   public static TrackSampleTable parseStbl(
-      Track track, Atom.ContainerAtom stblAtom, GaplessInfoHolder gaplessInfoHolder)
+      Track track,
+      Atom.ContainerAtom stblAtom,
+      GaplessInfoHolder gaplessInfoHolder,
+      boolean preferCompactSampleTable)
       throws ParserException {
-    SampleSizeBox sampleSizeBox;
-    @Nullable Atom.LeafAtom stszAtom = stblAtom.getLeafAtomOfType(Atom.TYPE_stsz);
-    if (stszAtom != null) {
-      sampleSizeBox = new StszSampleSizeBox(stszAtom);
-    } else {
-      @Nullable Atom.LeafAtom stz2Atom = stblAtom.getLeafAtomOfType(Atom.TYPE_stz2);
-      if (stz2Atom == null) {
-        throw new ParserException("Track has no sample table size information");
-      }
-      sampleSizeBox = new Stz2SampleSizeBox(stz2Atom);
-    }
-
+    SampleSizeBox sampleSizeBox = parseSampleSizeBox(stblAtom);
     int sampleCount = sampleSizeBox.getSampleCount();
     if (sampleCount == 0) {
-      return new TrackSampleTable(
+      return new ExpandedTrackSampleTable(
           track,
           /* offsets= */ new long[0],
           /* sizes= */ new int[0],
@@ -237,6 +264,17 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
             && remainingTimestampOffsetChanges == 0
             && remainingSynchronizationSamples == 0;
 
+    // Compact sample tables support edit lists with a single edit, which covers most files.
+    @Nullable CompactTrackSampleTable.Builder compactSampleTableBuilder = null;
+    if (preferCompactSampleTable
+        && !isFixedSampleSizeRawAudio
+        && (track.editListDurations == null
+            || (track.editListDurations.length == 1 && track.editListMediaTimes[0] != -1))) {
+      compactSampleTableBuilder =
+          new CompactTrackSampleTable.Builder(
+              sampleCount, chunkIterator.length, chunkOffsetsAreLongs, stss == null);
+    }
+
     long[] offsets;
     int[] sizes;
     int maximumSize = 0;
@@ -246,10 +284,11 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     long duration;
 
     if (!isFixedSampleSizeRawAudio) {
-      offsets = new long[sampleCount];
-      sizes = new int[sampleCount];
-      timestamps = new long[sampleCount];
-      flags = new int[sampleCount];
+      int expandedSampleCount = compactSampleTableBuilder == null ? sampleCount : 0;
+      offsets = new long[expandedSampleCount];
+      sizes = new int[expandedSampleCount];
+      timestamps = new long[expandedSampleCount];
+      flags = new int[expandedSampleCount];
       long offset = 0;
       int remainingSamplesInChunk = 0;
 
@@ -259,14 +298,19 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
         while (remainingSamplesInChunk == 0 && (chunkDataComplete = chunkIterator.moveNext())) {
           offset = chunkIterator.offset;
           remainingSamplesInChunk = chunkIterator.numSamples;
+          if (compactSampleTableBuilder != null && remainingSamplesInChunk > 0) {
+            compactSampleTableBuilder.addChunk(offset, remainingSamplesInChunk);
+          }
         }
         if (!chunkDataComplete) {
           Log.w(TAG, "Unexpected end of chunk data");
           sampleCount = i;
-          offsets = Arrays.copyOf(offsets, sampleCount);
-          sizes = Arrays.copyOf(sizes, sampleCount);
-          timestamps = Arrays.copyOf(timestamps, sampleCount);
-          flags = Arrays.copyOf(flags, sampleCount);
+          if (compactSampleTableBuilder == null) {
+            offsets = Arrays.copyOf(offsets, sampleCount);
+            sizes = Arrays.copyOf(sizes, sampleCount);
+            timestamps = Arrays.copyOf(timestamps, sampleCount);
+            flags = Arrays.copyOf(flags, sampleCount);
+          }
           break;
         }
 
@@ -285,23 +329,31 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
           remainingSamplesAtTimestampOffset--;
         }
 
-        offsets[i] = offset;
-        sizes[i] = sampleSizeBox.readNextSampleSize();
-        if (sizes[i] > maximumSize) {
-          maximumSize = sizes[i];
+        int sampleSize = sampleSizeBox.readNextSampleSize();
+        if (sampleSize > maximumSize) {
+          maximumSize = sampleSize;
         }
-        timestamps[i] = timestampTimeUnits + timestampOffset;
 
         // All samples are synchronization samples if the stss is not present.
-        flags[i] = stss == null ? C.BUFFER_FLAG_KEY_FRAME : 0;
+        boolean isSynchronizationSample = stss == null;
         if (i == nextSynchronizationSampleIndex) {
-          flags[i] = C.BUFFER_FLAG_KEY_FRAME;
+          isSynchronizationSample = true;
           remainingSynchronizationSamples--;
           if (remainingSynchronizationSamples > 0) {
             nextSynchronizationSampleIndex = stss.readUnsignedIntToInt() - 1;
           }
         }
 
+        if (compactSampleTableBuilder != null) {
+          compactSampleTableBuilder.addSample(
+              sampleSize, timestampTimeUnits, timestampOffset, isSynchronizationSample);
+        } else {
+          offsets[i] = offset;
+          sizes[i] = sampleSize;
+          timestamps[i] = timestampTimeUnits + timestampOffset;
+          flags[i] = isSynchronizationSample ? C.BUFFER_FLAG_KEY_FRAME : 0;
+        }
+
         // Add on the duration of this sample.
         timestampTimeUnits += timestampDeltaInTimeUnits;
         remainingSamplesAtTimestampDelta--;
@@ -317,7 +369,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
           remainingTimestampDeltaChanges--;
         }
 
-        offset += sizes[i];
+        offset += sampleSize;
         remainingSamplesInChunk--;
       }
       duration = timestampTimeUnits + timestampOffset;
@@ -375,9 +427,15 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     }
     long durationUs = Util.scaleLargeTimestamp(duration, C.MICROS_PER_SECOND, track.timescale);
 
+    if (compactSampleTableBuilder != null) {
+      CompactTrackSampleTable sampleTable =
+          compactSampleTableBuilder.build(track, maximumSize, durationUs);
+      return applyEditList(track, sampleTable, duration, gaplessInfoHolder);
+    }
+
     if (track.editListDurations == null) {
       Util.scaleLargeTimestampsInPlace(timestamps, C.MICROS_PER_SECOND, track.timescale);
-      return new TrackSampleTable(
+      return new ExpandedTrackSampleTable(
           track, offsets, sizes, maximumSize, timestamps, flags, durationUs);
     }
 
@@ -408,7 +466,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
           long editedDurationUs =
               Util.scaleLargeTimestamp(
                   track.editListDurations[0], C.MICROS_PER_SECOND, track.movieTimescale);
-          return new TrackSampleTable(
+          return new ExpandedTrackSampleTable(
               track, offsets, sizes, maximumSize, timestamps, flags, editedDurationUs);
         }
       }
@@ -426,7 +484,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       }
       durationUs =
           Util.scaleLargeTimestamp(duration - editStartTime, C.MICROS_PER_SECOND, track.timescale);
-      return new TrackSampleTable(
+      return new ExpandedTrackSampleTable(
           track, offsets, sizes, maximumSize, timestamps, flags, durationUs);
     }
 
@@ -497,7 +555,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     }
     long editedDurationUs =
         Util.scaleLargeTimestamp(pts, C.MICROS_PER_SECOND, track.movieTimescale);
-    return new TrackSampleTable(
+    return new ExpandedTrackSampleTable(
         track,
         editedOffsets,
         editedSizes,
@@ -507,6 +565,108 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
         editedDurationUs);
   }
 
+  /**
+   * Applies the edit list of a track to its compact sample table, in the same way as {@link
+   * #parseStbl(Track, Atom.ContainerAtom, GaplessInfoHolder, boolean)} applies it to an expanded
+   * sample table.
+   *
+   * @param track The track.
+   * @param sampleTable The sample table of the track, containing all of its samples.
+   * @param duration The duration of the samples in the track's timescale.
+   * @param gaplessInfoHolder Holder to populate with gapless playback information.
+   * @return The edited sample table.
+   */
+  private static TrackSampleTable applyEditList(
+      Track track,
+      CompactTrackSampleTable sampleTable,
+      long duration,
+      GaplessInfoHolder gaplessInfoHolder) {
+    if (track.editListDurations == null) {
+      return sampleTable;
+    }
+    // The edit list contains a single edit, whose media time isn't -1.
+    long editStartTime = track.editListMediaTimes[0];
+    long editDuration =
+        Util.scaleLargeTimestamp(track.editListDurations[0], track.timescale, track.movieTimescale);
+    long editedDurationUs =
+        Util.scaleLargeTimestamp(
+            track.editListDurations[0], C.MICROS_PER_SECOND, track.movieTimescale);
+    int sampleCount = sampleTable.sampleCount;
+
+    if (track.type == C.TRACK_TYPE_AUDIO && sampleCount >= 2) {
+      long editEndTime = editStartTime + editDuration;
+      if (canApplyEditWithGaplessInfo(sampleTable, duration, editStartTime, editEndTime)) {
+        long paddingTimeUnits = duration - editEndTime;
+        long encoderDelay = Util.scaleLargeTimestamp(editStartTime - sampleTable.getTimestamp(0),
+            track.format.sampleRate, track.timescale);
+        long encoderPadding = Util.scaleLargeTimestamp(paddingTimeUnits,
+            track.format.sampleRate, track.timescale);
+        if ((encoderDelay != 0 || encoderPadding != 0) && encoderDelay <= Integer.MAX_VALUE
+            && encoderPadding <= Integer.MAX_VALUE) {
+          gaplessInfoHolder.encoderDelay = (int) encoderDelay;
+          gaplessInfoHolder.encoderPadding = (int) encoderPadding;
+          return sampleTable.copyWithSampleRange(
+              /* firstSampleIndex= */ 0,
+              sampleCount,
+              sampleTable.maximumSize,
+              /* timestampOffset= */ 0,
+              editedDurationUs);
+        }
+      }
+    }
+
+    if (track.editListDurations[0] == 0) {
+      // Include all samples in the edit. See parseStbl.
+      return sampleTable.copyWithSampleRange(
+          /* firstSampleIndex= */ 0,
+          sampleCount,
+          sampleTable.maximumSize,
+          /* timestampOffset= */ editStartTime,
+          Util.scaleLargeTimestamp(
+              duration - editStartTime, C.MICROS_PER_SECOND, track.timescale));
+    }
+
+    // Omit any sample at the end point of an edit for audio tracks.
+    boolean omitClippedSample = track.type == C.TRACK_TYPE_AUDIO;
+    int startIndex =
+        sampleTable.binarySearchCeilTimestamp(
+            editStartTime, /* inclusive= */ true, /* stayInBounds= */ true);
+    int endIndex =
+        sampleTable.binarySearchCeilTimestamp(
+            editStartTime + editDuration, omitClippedSample, /* stayInBounds= */ false);
+    while (startIndex < endIndex && !sampleTable.isSyncSample(startIndex)) {
+      // Advance to the next sync sample, as parseStbl does.
+      startIndex++;
+    }
+    int editedSampleCount = Math.max(0, endIndex - startIndex);
+    int editedMaximumSize = sampleTable.maximumSize;
+    if (editedSampleCount != sampleCount) {
+      editedMaximumSize = 0;
+      for (int i = startIndex; i < endIndex; i++) {
+        editedMaximumSize = Math.max(editedMaximumSize, sampleTable.getSize(i));
+      }
+    }
+    return sampleTable.copyWithSampleRange(
+        startIndex,
+        editedSampleCount,
+        editedMaximumSize,
+        /* timestampOffset= */ editStartTime,
+        editedDurationUs);
+  }
+
+  private static SampleSizeBox parseSampleSizeBox(Atom.ContainerAtom stblAtom)
+      throws ParserException {
+    @Nullable Atom.LeafAtom stszAtom = stblAtom.getLeafAtomOfType(Atom.TYPE_stsz);
+    if (stszAtom != null) {
+      return new StszSampleSizeBox(stszAtom);
+    }
+    @Nullable Atom.LeafAtom stz2Atom = stblAtom.getLeafAtomOfType(Atom.TYPE_stz2);
+    if (stz2Atom == null) {
+      throw new ParserException("Track has no sample table size information");
+    }
+    return new Stz2SampleSizeBox(stz2Atom);
+  }
+
   /**
    * Parses a udta atom.
    *
@@ -1454,6 +1614,23 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
         && editEndTime <= duration;
   }
 
+  /**
+   * Equivalent to {@link #canApplyEditWithGaplessInfo(long[], long, long, long)} for the
+   * timestamps of the samples in a compact sample table.
+   */
+  private static boolean canApplyEditWithGaplessInfo(
+      CompactTrackSampleTable sampleTable, long duration, long editStartTime, long editEndTime) {
+    int lastIndex = sampleTable.sampleCount - 1;
+    int latestDelayIndex = Util.constrainValue(MAX_GAPLESS_TRIM_SIZE_SAMPLES, 0, lastIndex);
+    int earliestPaddingIndex =
+        Util.constrainValue(
+            sampleTable.sampleCount - MAX_GAPLESS_TRIM_SIZE_SAMPLES, 0, lastIndex);
+    return sampleTable.getTimestamp(0) <= editStartTime
+        && editStartTime < sampleTable.getTimestamp(latestDelayIndex)
+        && sampleTable.getTimestamp(earliestPaddingIndex) < editEndTime
+        && editEndTime <= duration;
+  }
+
   private AtomParsers() {
     // Prevent instantiation.
   }
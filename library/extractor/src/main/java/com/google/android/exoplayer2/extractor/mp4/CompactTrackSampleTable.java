@@ -0,0 +1,669 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import static com.google.android.exoplayer2.util.Util.castNonNull;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Util;
+import java.util.Arrays;
+
+/**
+ * A {@link TrackSampleTable} that keeps the sample tables of a track run-length encoded, in a form
+ * close to that of the stbl atom from which they were read.
+ *
+ * <p>Only the sizes of the samples are stored for each sample, and only if they're not all the
+ * same. Offsets are stored for each chunk, and are resolved together with the sizes of the
+ * preceding samples in the chunk. Timestamps are stored as runs of samples with a constant
+ * duration, plus a composition offset that's stored either per sample as an index into a table of
+ * the distinct offsets, or as runs of samples with a constant offset, whichever is smaller.
+ * Synchronization samples are stored as a list of sample indices. The offset, timestamp and flags
+ * of a sample are resolved on each call using binary searches over the runs, which makes them more
+ * expensive to get than from an {@link ExpandedTrackSampleTable}. Sequential lookups, as made when
+ * reading the samples of a track in order, are mostly served from cached state.
+ *
+ * <p>A sample table may cover a contiguous range of the samples described by the stbl atom, so
+ * that single edits can be applied to it without copying the tables.
+ */
+/* package */ final class CompactTrackSampleTable extends TrackSampleTable {
+
+  /** Builds a {@link CompactTrackSampleTable} from the samples of a track, in decoding order. */
+  public static final class Builder {
+
+    private static final int INITIAL_RUN_CAPACITY = 16;
+    private static final int MAX_COMPOSITION_OFFSET_TABLE_SIZE = 256;
+
+    private final int maxSampleCount;
+    @Nullable private final int[] chunkOffsets;
+    @Nullable private final long[] longChunkOffsets;
+    private final boolean allSamplesAreSyncSamples;
+
+    private int sampleCount;
+    private int chunkCount;
+    private int firstSampleSize;
+    @Nullable private int[] sizes;
+
+    private int chunkRunCount;
+    private int[] chunkRunFirstChunks;
+    private int[] chunkRunFirstSamples;
+    private int[] chunkRunSamplesPerChunk;
+
+    private int timestampRunCount;
+    private int timestampRunLength;
+    private int[] timestampRunFirstSamples;
+    private long[] timestampRunFirstTimestamps;
+    private int[] timestampRunDurations;
+    private long previousDecodingTimestamp;
+
+    // Composition offsets are indexed in a table of the distinct offsets for as long as there are
+    // few enough of them, and are otherwise stored as runs.
+    @Nullable private int[] compositionOffsetTable;
+    private int compositionOffsetTableSize;
+    @Nullable private byte[] compositionOffsetIndices;
+    private int compositionOffsetIndex;
+    private int compositionOffsetRunCount;
+    @Nullable private int[] compositionOffsetRunFirstSamples;
+    @Nullable private int[] compositionOffsetRunOffsets;
+    private int previousCompositionOffset;
+
+    private int syncSampleCount;
+    private int[] syncSamples;
+
+    /**
+     * Creates a builder.
+     *
+     * @param maxSampleCount The maximum number of samples that will be added.
+     * @param maxChunkCount The maximum number of chunks that will be added.
+     * @param chunkOffsetsAreLongs Whether chunk offsets may not fit in 32 bits.
+     * @param allSamplesAreSyncSamples Whether all of the samples are synchronization samples.
+     */
+    public Builder(
+        int maxSampleCount,
+        int maxChunkCount,
+        boolean chunkOffsetsAreLongs,
+        boolean allSamplesAreSyncSamples) {
+      this.maxSampleCount = maxSampleCount;
+      this.allSamplesAreSyncSamples = allSamplesAreSyncSamples;
+      chunkOffsets = chunkOffsetsAreLongs ? null : new int[maxChunkCount];
+      longChunkOffsets = chunkOffsetsAreLongs ? new long[maxChunkCount] : null;
+      chunkRunFirstChunks = new int[INITIAL_RUN_CAPACITY];
+      chunkRunFirstSamples = new int[INITIAL_RUN_CAPACITY];
+      chunkRunSamplesPerChunk = new int[INITIAL_RUN_CAPACITY];
+      timestampRunFirstSamples = new int[INITIAL_RUN_CAPACITY];
+      timestampRunFirstTimestamps = new long[INITIAL_RUN_CAPACITY];
+      timestampRunDurations = new int[INITIAL_RUN_CAPACITY];
+      compositionOffsetTable = new int[INITIAL_RUN_CAPACITY];
+      syncSamples = new int[INITIAL_RUN_CAPACITY];
+    }
+
+    /**
+     * Starts a chunk. The samples that are subsequently added are in the chunk, up to {@code
+     * samplesInChunk} of them.
+     *
+     * @param offset The offset of the chunk in bytes.
+     * @param samplesInChunk The number of samples in the chunk. Must be positive.
+     */
+    public void addChunk(long offset, int samplesInChunk) {
+      if (longChunkOffsets != null) {
+        longChunkOffsets[chunkCount] = offset;
+      } else {
+        // Offsets of stco chunks are unsigned 32 bit integers.
+        castNonNull(chunkOffsets)[chunkCount] = (int) offset;
+      }
+      if (chunkRunCount == 0 || chunkRunSamplesPerChunk[chunkRunCount - 1] != samplesInChunk) {
+        if (chunkRunCount == chunkRunFirstChunks.length) {
+          int newCapacity = chunkRunCount * 2;
+          chunkRunFirstChunks = Arrays.copyOf(chunkRunFirstChunks, newCapacity);
+          chunkRunFirstSamples = Arrays.copyOf(chunkRunFirstSamples, newCapacity);
+          chunkRunSamplesPerChunk = Arrays.copyOf(chunkRunSamplesPerChunk, newCapacity);
+        }
+        chunkRunFirstChunks[chunkRunCount] = chunkCount;
+        chunkRunFirstSamples[chunkRunCount] = sampleCount;
+        chunkRunSamplesPerChunk[chunkRunCount] = samplesInChunk;
+        chunkRunCount++;
+      }
+      chunkCount++;
+    }
+
+    /**
+     * Adds a sample to the current chunk.
+     *
+     * @param size The size of the sample in bytes.
+     * @param decodingTimestamp The decoding timestamp of the sample, in the track's timescale.
+     * @param compositionOffset The offset of the sample's presentation timestamp from its decoding
+     *     timestamp, in the track's timescale.
+     * @param isSyncSample Whether the sample is a synchronization sample.
+     */
+    public void addSample(
+        int size, long decodingTimestamp, int compositionOffset, boolean isSyncSample) {
+      if (sampleCount == 0) {
+        firstSampleSize = size;
+      } else if (sizes == null && size != firstSampleSize) {
+        // Sample sizes are only stored once they're found to vary.
+        sizes = new int[maxSampleCount];
+        Arrays.fill(sizes, 0, sampleCount, firstSampleSize);
+      }
+      if (sizes != null) {
+        sizes[sampleCount] = size;
+      }
+
+      long duration = decodingTimestamp - previousDecodingTimestamp;
+      if (timestampRunLength > 1 && duration == timestampRunDurations[timestampRunCount - 1]) {
+        timestampRunLength++;
+      } else if (timestampRunLength == 1) {
+        // The duration of the run is set by its second sample.
+        timestampRunDurations[timestampRunCount - 1] = (int) duration;
+        timestampRunLength++;
+      } else {
+        if (timestampRunCount == timestampRunFirstSamples.length) {
+          int newCapacity = timestampRunCount * 2;
+          timestampRunFirstSamples = Arrays.copyOf(timestampRunFirstSamples, newCapacity);
+          timestampRunFirstTimestamps = Arrays.copyOf(timestampRunFirstTimestamps, newCapacity);
+          timestampRunDurations = Arrays.copyOf(timestampRunDurations, newCapacity);
+        }
+        timestampRunFirstSamples[timestampRunCount] = sampleCount;
+        timestampRunFirstTimestamps[timestampRunCount] = decodingTimestamp;
+        timestampRunDurations[timestampRunCount] = 0;
+        timestampRunCount++;
+        timestampRunLength = 1;
+      }
+      previousDecodingTimestamp = decodingTimestamp;
+
+      boolean startsCompositionOffsetRun =
+          sampleCount == 0 || compositionOffset != previousCompositionOffset;
+      if (compositionOffsetTable != null) {
+        if (startsCompositionOffsetRun) {
+          compositionOffsetIndex = getCompositionOffsetIndex(compositionOffset);
+        }
+        if (compositionOffsetIndex == C.INDEX_UNSET) {
+          convertCompositionOffsetsToRuns();
+        } else {
+          if (compositionOffsetIndices == null && compositionOffsetIndex != 0) {
+            // Indices are only stored once offsets are found to vary.
+            compositionOffsetIndices = new byte[maxSampleCount];
+          }
+          if (compositionOffsetIndices != null) {
+            compositionOffsetIndices[sampleCount] = (byte) compositionOffsetIndex;
+          }
+        }
+      }
+      if (startsCompositionOffsetRun) {
+        addCompositionOffsetRun(sampleCount, compositionOffset);
+      }
+      previousCompositionOffset = compositionOffset;
+
+      if (isSyncSample && !allSamplesAreSyncSamples) {
+        if (syncSampleCount == syncSamples.length) {
+          syncSamples = Arrays.copyOf(syncSamples, syncSampleCount * 2);
+        }
+        syncSamples[syncSampleCount++] = sampleCount;
+      }
+
+      sampleCount++;
+    }
+
+    /** Returns the number of samples that have been added. */
+    public int getSampleCount() {
+      return sampleCount;
+    }
+
+    /**
+     * Builds a sample table containing all of the samples that have been added.
+     *
+     * @param track The track corresponding to the sample table.
+     * @param maximumSize The maximum size of the samples in bytes.
+     * @param durationUs The duration of the sample table in microseconds.
+     * @return The sample table.
+     */
+    public CompactTrackSampleTable build(Track track, int maximumSize, long durationUs) {
+      // Runs take eight bytes each, and indices one byte per sample.
+      if (compositionOffsetTable != null
+          && (compositionOffsetIndices == null
+              || (long) compositionOffsetRunCount * 8 < compositionOffsetIndices.length)) {
+        convertCompositionOffsetsToRuns();
+      }
+      return new CompactTrackSampleTable(
+          track,
+          sampleCount,
+          maximumSize,
+          durationUs,
+          firstSampleSize,
+          sizes,
+          chunkOffsets,
+          longChunkOffsets,
+          Arrays.copyOf(chunkRunFirstChunks, chunkRunCount),
+          Arrays.copyOf(chunkRunFirstSamples, chunkRunCount),
+          Arrays.copyOf(chunkRunSamplesPerChunk, chunkRunCount),
+          Arrays.copyOf(timestampRunFirstSamples, timestampRunCount),
+          Arrays.copyOf(timestampRunFirstTimestamps, timestampRunCount),
+          Arrays.copyOf(timestampRunDurations, timestampRunCount),
+          compositionOffsetTable != null
+              ? Arrays.copyOf(compositionOffsetTable, compositionOffsetTableSize)
+              : null,
+          compositionOffsetIndices,
+          compositionOffsetTable == null
+              ? Arrays.copyOf(
+                  castNonNull(compositionOffsetRunFirstSamples), compositionOffsetRunCount)
+              : null,
+          compositionOffsetTable == null
+              ? Arrays.copyOf(castNonNull(compositionOffsetRunOffsets), compositionOffsetRunCount)
+              : null,
+          allSamplesAreSyncSamples ? null : Arrays.copyOf(syncSamples, syncSampleCount));
+    }
+
+    /**
+     * Returns the index of a composition offset in the table of distinct offsets, adding it if
+     * necessary, or {@link C#INDEX_UNSET} if the table is full.
+     */
+    private int getCompositionOffsetIndex(int compositionOffset) {
+      int[] compositionOffsetTable = castNonNull(this.compositionOffsetTable);
+      for (int i = 0; i < compositionOffsetTableSize; i++) {
+        if (compositionOffsetTable[i] == compositionOffset) {
+          return i;
+        }
+      }
+      if (compositionOffsetTableSize == MAX_COMPOSITION_OFFSET_TABLE_SIZE) {
+        return C.INDEX_UNSET;
+      }
+      if (compositionOffsetTableSize == compositionOffsetTable.length) {
+        compositionOffsetTable =
+            Arrays.copyOf(compositionOffsetTable, compositionOffsetTableSize * 2);
+        this.compositionOffsetTable = compositionOffsetTable;
+      }
+      compositionOffsetTable[compositionOffsetTableSize] = compositionOffset;
+      return compositionOffsetTableSize++;
+    }
+
+    /** Converts the composition offsets of the samples added so far from indices to runs. */
+    private void convertCompositionOffsetsToRuns() {
+      int[] compositionOffsetTable = castNonNull(this.compositionOffsetTable);
+      @Nullable byte[] compositionOffsetIndices = this.compositionOffsetIndices;
+      this.compositionOffsetTable = null;
+      this.compositionOffsetIndices = null;
+      compositionOffsetRunCount = 0;
+      compositionOffsetRunFirstSamples = new int[INITIAL_RUN_CAPACITY];
+      compositionOffsetRunOffsets = new int[INITIAL_RUN_CAPACITY];
+      for (int i = 0; i < sampleCount; i++) {
+        int compositionOffset =
+            compositionOffsetTable[
+                compositionOffsetIndices == null ? 0 : compositionOffsetIndices[i] & 0xFF];
+        if (i == 0 || compositionOffset != previousCompositionOffset) {
+          addCompositionOffsetRun(i, compositionOffset);
+        }
+        previousCompositionOffset = compositionOffset;
+      }
+    }
+
+    /**
+     * Starts a run of samples with a constant composition offset. If the offsets are still indexed,
+     * only the number of runs is counted.
+     */
+    private void addCompositionOffsetRun(int firstSampleIndex, int compositionOffset) {
+      if (compositionOffsetTable == null) {
+        int[] runFirstSamples = castNonNull(compositionOffsetRunFirstSamples);
+        int[] runOffsets = castNonNull(compositionOffsetRunOffsets);
+        if (compositionOffsetRunCount == runFirstSamples.length) {
+          int newCapacity = compositionOffsetRunCount * 2;
+          runFirstSamples = Arrays.copyOf(runFirstSamples, newCapacity);
+          runOffsets = Arrays.copyOf(runOffsets, newCapacity);
+          compositionOffsetRunFirstSamples = runFirstSamples;
+          compositionOffsetRunOffsets = runOffsets;
+        }
+        runFirstSamples[compositionOffsetRunCount] = firstSampleIndex;
+        runOffsets[compositionOffsetRunCount] = compositionOffset;
+      }
+      compositionOffsetRunCount++;
+    }
+  }
+
+  // Sample indices in the tables below are the indices of the samples in the stbl atom. The sample
+  // at index i in this sample table is the sample at index firstSampleIndex + i in the stbl atom.
+
+  private final int firstSampleIndex;
+  private final long timestampOffset;
+  private final long timescale;
+
+  private final int fixedSampleSize;
+  @Nullable private final int[] sizes;
+  @Nullable private final int[] chunkOffsets;
+  @Nullable private final long[] longChunkOffsets;
+  private final int[] chunkRunFirstChunks;
+  private final int[] chunkRunFirstSamples;
+  private final int[] chunkRunSamplesPerChunk;
+  private final int[] timestampRunFirstSamples;
+  private final long[] timestampRunFirstTimestamps;
+  private final int[] timestampRunDurations;
+  @Nullable private final int[] compositionOffsetTable;
+  @Nullable private final byte[] compositionOffsetIndices;
+  @Nullable private final int[] compositionOffsetRunFirstSamples;
+  @Nullable private final int[] compositionOffsetRunOffsets;
+  @Nullable private final int[] syncSamples;
+
+  // State cached between lookups, to serve sequential ones cheaply. Seek points may be looked up on
+  // a different thread to the one reading samples. The run indices are only hints that are checked
+  // before they're used, but the cached offset spans several fields and is guarded by this table.
+  private int cachedOffsetSampleIndex;
+  private int cachedOffsetChunkEndIndex;
+  private long cachedOffset;
+  private int cachedTimestampRunIndex;
+  private int cachedCompositionOffsetRunIndex;
+
+  private CompactTrackSampleTable(
+      Track track,
+      int sampleCount,
+      int maximumSize,
+      long durationUs,
+      int fixedSampleSize,
+      @Nullable int[] sizes,
+      @Nullable int[] chunkOffsets,
+      @Nullable long[] longChunkOffsets,
+      int[] chunkRunFirstChunks,
+      int[] chunkRunFirstSamples,
+      int[] chunkRunSamplesPerChunk,
+      int[] timestampRunFirstSamples,
+      long[] timestampRunFirstTimestamps,
+      int[] timestampRunDurations,
+      @Nullable int[] compositionOffsetTable,
+      @Nullable byte[] compositionOffsetIndices,
+      @Nullable int[] compositionOffsetRunFirstSamples,
+      @Nullable int[] compositionOffsetRunOffsets,
+      @Nullable int[] syncSamples) {
+    super(track, sampleCount, maximumSize, durationUs);
+    firstSampleIndex = 0;
+    timestampOffset = 0;
+    timescale = track.timescale;
+    this.fixedSampleSize = fixedSampleSize;
+    this.sizes = sizes;
+    this.chunkOffsets = chunkOffsets;
+    this.longChunkOffsets = longChunkOffsets;
+    this.chunkRunFirstChunks = chunkRunFirstChunks;
+    this.chunkRunFirstSamples = chunkRunFirstSamples;
+    this.chunkRunSamplesPerChunk = chunkRunSamplesPerChunk;
+    this.timestampRunFirstSamples = timestampRunFirstSamples;
+    this.timestampRunFirstTimestamps = timestampRunFirstTimestamps;
+    this.timestampRunDurations = timestampRunDurations;
+    this.compositionOffsetTable = compositionOffsetTable;
+    this.compositionOffsetIndices = compositionOffsetIndices;
+    this.compositionOffsetRunFirstSamples = compositionOffsetRunFirstSamples;
+    this.compositionOffsetRunOffsets = compositionOffsetRunOffsets;
+    this.syncSamples = syncSamples;
+    cachedOffsetSampleIndex = C.INDEX_UNSET;
+  }
+
+  private CompactTrackSampleTable(
+      CompactTrackSampleTable sampleTable,
+      int firstSampleIndex,
+      int sampleCount,
+      int maximumSize,
+      long timestampOffset,
+      long durationUs) {
+    super(sampleTable.track, sampleCount, maximumSize, durationUs);
+    this.firstSampleIndex = sampleTable.firstSampleIndex + firstSampleIndex;
+    this.timestampOffset = timestampOffset;
+    timescale = sampleTable.timescale;
+    fixedSampleSize = sampleTable.fixedSampleSize;
+    sizes = sampleTable.sizes;
+    chunkOffsets = sampleTable.chunkOffsets;
+    longChunkOffsets = sampleTable.longChunkOffsets;
+    chunkRunFirstChunks = sampleTable.chunkRunFirstChunks;
+    chunkRunFirstSamples = sampleTable.chunkRunFirstSamples;
+    chunkRunSamplesPerChunk = sampleTable.chunkRunSamplesPerChunk;
+    timestampRunFirstSamples = sampleTable.timestampRunFirstSamples;
+    timestampRunFirstTimestamps = sampleTable.timestampRunFirstTimestamps;
+    timestampRunDurations = sampleTable.timestampRunDurations;
+    compositionOffsetTable = sampleTable.compositionOffsetTable;
+    compositionOffsetIndices = sampleTable.compositionOffsetIndices;
+    compositionOffsetRunFirstSamples = sampleTable.compositionOffsetRunFirstSamples;
+    compositionOffsetRunOffsets = sampleTable.compositionOffsetRunOffsets;
+    syncSamples = sampleTable.syncSamples;
+    cachedOffsetSampleIndex = C.INDEX_UNSET;
+  }
+
+  /**
+   * Returns a sample table containing a range of the samples of this table. The tables are shared
+   * with this table, and aren't copied.
+   *
+   * @param firstSampleIndex The index in this table of the first sample in the range.
+   * @param sampleCount The number of samples in the range.
+   * @param maximumSize The maximum size of the samples in the range in bytes.
+   * @param timestampOffset An offset to subtract from the timestamps of the samples, in the track's
+   *     timescale, before they're converted to microseconds.
+   * @param durationUs The duration of the new sample table in microseconds.
+   * @return The sample table.
+   */
+  public CompactTrackSampleTable copyWithSampleRange(
+      int firstSampleIndex,
+      int sampleCount,
+      int maximumSize,
+      long timestampOffset,
+      long durationUs) {
+    return new CompactTrackSampleTable(
+        this, firstSampleIndex, sampleCount, maximumSize, timestampOffset, durationUs);
+  }
+
+  /**
+   * Returns the timestamp of a sample in the track's timescale. The timestamp offset of the table
+   * isn't applied.
+   *
+   * @param sampleIndex The index of the sample.
+   * @return The timestamp of the sample in the track's timescale.
+   */
+  public long getTimestamp(int sampleIndex) {
+    int index = firstSampleIndex + sampleIndex;
+    int runIndex = findRun(timestampRunFirstSamples, index, cachedTimestampRunIndex);
+    cachedTimestampRunIndex = runIndex;
+    return timestampRunFirstTimestamps[runIndex]
+        + (long) (index - timestampRunFirstSamples[runIndex]) * timestampRunDurations[runIndex]
+        + getCompositionOffset(index);
+  }
+
+  /**
+   * Returns whether a sample is a synchronization sample.
+   *
+   * @param sampleIndex The index of the sample.
+   * @return Whether the sample is a synchronization sample.
+   */
+  public boolean isSyncSample(int sampleIndex) {
+    return syncSamples == null
+        || Arrays.binarySearch(syncSamples, firstSampleIndex + sampleIndex) >= 0;
+  }
+
+  /**
+   * Equivalent to {@link Util#binarySearchCeil(long[], long, boolean, boolean)} over the timestamps
+   * of the samples in the track's timescale, as returned by {@link #getTimestamp(int)}.
+   */
+  public int binarySearchCeilTimestamp(long timestamp, boolean inclusive, boolean stayInBounds) {
+    return binarySearchCeil(timestamp, /* inMicroseconds= */ false, inclusive, stayInBounds);
+  }
+
+  @Override
+  public synchronized long getOffset(int sampleIndex) {
+    int index = firstSampleIndex + sampleIndex;
+    int fromIndex;
+    long offset;
+    if (index >= cachedOffsetSampleIndex && index < cachedOffsetChunkEndIndex) {
+      fromIndex = cachedOffsetSampleIndex;
+      offset = cachedOffset;
+    } else {
+      int runIndex = Util.binarySearchFloor(chunkRunFirstSamples, index, true, false);
+      int runFirstSampleIndex = chunkRunFirstSamples[runIndex];
+      int samplesPerChunk = chunkRunSamplesPerChunk[runIndex];
+      int chunkIndexInRun = (index - runFirstSampleIndex) / samplesPerChunk;
+      fromIndex = runFirstSampleIndex + chunkIndexInRun * samplesPerChunk;
+      offset = getChunkOffset(chunkRunFirstChunks[runIndex] + chunkIndexInRun);
+      cachedOffsetChunkEndIndex = fromIndex + samplesPerChunk;
+    }
+    if (sizes == null) {
+      offset += (long) (index - fromIndex) * fixedSampleSize;
+    } else {
+      for (int i = fromIndex; i < index; i++) {
+        offset += sizes[i];
+      }
+    }
+    cachedOffsetSampleIndex = index;
+    cachedOffset = offset;
+    return offset;
+  }
+
+  @Override
+  public int getSize(int sampleIndex) {
+    return sizes == null ? fixedSampleSize : sizes[firstSampleIndex + sampleIndex];
+  }
+
+  @Override
+  public long getTimestampUs(int sampleIndex) {
+    return Util.scaleLargeTimestamp(
+        getTimestamp(sampleIndex) - timestampOffset, C.MICROS_PER_SECOND, timescale);
+  }
+
+  @Override
+  public int getFlags(int sampleIndex) {
+    int flags = isSyncSample(sampleIndex) ? C.BUFFER_FLAG_KEY_FRAME : 0;
+    if (sampleIndex == sampleCount - 1) {
+      flags |= C.BUFFER_FLAG_LAST_SAMPLE;
+    }
+    return flags;
+  }
+
+  @Override
+  public int getIndexOfEarlierOrEqualSynchronizationSample(long timeUs) {
+    // Video frame timestamps may not be sorted, so the behavior of this call can be undefined.
+    // Frames are not reordered past synchronization samples so this works in practice.
+    int startIndex =
+        binarySearchFloor(
+            timeUs, /* inMicroseconds= */ true, /* inclusive= */ true, /* stayInBounds= */ false);
+    if (startIndex < 0 || syncSamples == null) {
+      return startIndex < 0 ? C.INDEX_UNSET : startIndex;
+    }
+    int syncSampleIndex =
+        Util.binarySearchFloor(syncSamples, firstSampleIndex + startIndex, true, false);
+    if (syncSampleIndex < 0 || syncSamples[syncSampleIndex] < firstSampleIndex) {
+      return C.INDEX_UNSET;
+    }
+    return syncSamples[syncSampleIndex] - firstSampleIndex;
+  }
+
+  @Override
+  public int getIndexOfLaterOrEqualSynchronizationSample(long timeUs) {
+    int startIndex =
+        binarySearchCeil(
+            timeUs, /* inMicroseconds= */ true, /* inclusive= */ true, /* stayInBounds= */ false);
+    if (startIndex >= sampleCount || syncSamples == null) {
+      return startIndex >= sampleCount ? C.INDEX_UNSET : startIndex;
+    }
+    int syncSampleIndex =
+        Util.binarySearchCeil(syncSamples, firstSampleIndex + startIndex, true, false);
+    if (syncSampleIndex == syncSamples.length
+        || syncSamples[syncSampleIndex] >= firstSampleIndex + sampleCount) {
+      return C.INDEX_UNSET;
+    }
+    return syncSamples[syncSampleIndex] - firstSampleIndex;
+  }
+
+  // Internal methods.
+
+  private int getCompositionOffset(int index) {
+    if (compositionOffsetTable != null) {
+      return compositionOffsetTable[
+          compositionOffsetIndices == null ? 0 : compositionOffsetIndices[index] & 0xFF];
+    }
+    int[] runFirstSamples = castNonNull(compositionOffsetRunFirstSamples);
+    int runIndex = findRun(runFirstSamples, index, cachedCompositionOffsetRunIndex);
+    cachedCompositionOffsetRunIndex = runIndex;
+    return castNonNull(compositionOffsetRunOffsets)[runIndex];
+  }
+
+  private long getChunkOffset(int chunkIndex) {
+    return longChunkOffsets != null
+        ? longChunkOffsets[chunkIndex]
+        : castNonNull(chunkOffsets)[chunkIndex] & 0xFFFFFFFFL;
+  }
+
+  private long getTimestamp(int sampleIndex, boolean inMicroseconds) {
+    return inMicroseconds ? getTimestampUs(sampleIndex) : getTimestamp(sampleIndex);
+  }
+
+  /** Equivalent to {@link Util#binarySearchFloor(long[], long, boolean, boolean)}. */
+  private int binarySearchFloor(
+      long timestamp, boolean inMicroseconds, boolean inclusive, boolean stayInBounds) {
+    int index = binarySearch(timestamp, inMicroseconds);
+    if (index < 0) {
+      index = -(index + 2);
+    } else {
+      while (--index >= 0 && getTimestamp(index, inMicroseconds) == timestamp) {}
+      if (inclusive) {
+        index++;
+      }
+    }
+    return stayInBounds ? Math.max(0, index) : index;
+  }
+
+  /** Equivalent to {@link Util#binarySearchCeil(long[], long, boolean, boolean)}. */
+  private int binarySearchCeil(
+      long timestamp, boolean inMicroseconds, boolean inclusive, boolean stayInBounds) {
+    int index = binarySearch(timestamp, inMicroseconds);
+    if (index < 0) {
+      index = ~index;
+    } else {
+      while (++index < sampleCount && getTimestamp(index, inMicroseconds) == timestamp) {}
+      if (inclusive) {
+        index--;
+      }
+    }
+    return stayInBounds ? Math.min(sampleCount - 1, index) : index;
+  }
+
+  /**
+   * Equivalent to {@link Arrays#binarySearch(long[], long)} over the timestamps of the samples.
+   * Timestamps may not be sorted, so the same algorithm is used to get the same result.
+   */
+  private int binarySearch(long timestamp, boolean inMicroseconds) {
+    int low = 0;
+    int high = sampleCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midTimestamp = getTimestamp(mid, inMicroseconds);
+      if (midTimestamp < timestamp) {
+        low = mid + 1;
+      } else if (midTimestamp > timestamp) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+  /**
+   * Returns the index of the run that contains a sample.
+   *
+   * @param runFirstSamples The indices of the first samples of the runs.
+   * @param sampleIndex The index of the sample.
+   * @param hintRunIndex The index of a run that's likely to contain the sample, or the run before.
+   * @return The index of the run.
+   */
+  private static int findRun(int[] runFirstSamples, int sampleIndex, int hintRunIndex) {
+    int runCount = runFirstSamples.length;
+    for (int i = hintRunIndex; i < runCount && i <= hintRunIndex + 1; i++) {
+      if (runFirstSamples[i] <= sampleIndex
+          && (i + 1 == runCount || sampleIndex < runFirstSamples[i + 1])) {
+        return i;
+      }
+    }
+    return Util.binarySearchFloor(runFirstSamples, sampleIndex, true, false);
+  }
+}
@@ -31,6 +31,7 @@ import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
 import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.IndexSeekMap;
 import com.google.android.exoplayer2.extractor.PositionHolder;
 import com.google.android.exoplayer2.extractor.SeekMap;
 import com.google.android.exoplayer2.extractor.TrackOutput;
@@ -68,8 +69,8 @@ public class FragmentedMp4Extractor implements Extractor {
   /**
    * Flags controlling the behavior of the extractor. Possible flag values are {@link
    * #FLAG_WORKAROUND_EVERY_VIDEO_FRAME_IS_SYNC_FRAME}, {@link #FLAG_WORKAROUND_IGNORE_TFDT_BOX},
-   * {@link #FLAG_ENABLE_EMSG_TRACK}, {@link #FLAG_SIDELOADED} and {@link
-   * #FLAG_WORKAROUND_IGNORE_EDIT_LISTS}.
+   * {@link #FLAG_ENABLE_EMSG_TRACK}, {@link #FLAG_SIDELOADED}, {@link
+   * #FLAG_WORKAROUND_IGNORE_EDIT_LISTS} and {@link #FLAG_ENABLE_FRAGMENT_RANDOM_ACCESS}.
    */
   @Documented
   @Retention(RetentionPolicy.SOURCE)
@@ -80,7 +81,8 @@ public class FragmentedMp4Extractor implements Extractor {
         FLAG_WORKAROUND_IGNORE_TFDT_BOX,
         FLAG_ENABLE_EMSG_TRACK,
         FLAG_SIDELOADED,
-        FLAG_WORKAROUND_IGNORE_EDIT_LISTS
+        FLAG_WORKAROUND_IGNORE_EDIT_LISTS,
+        FLAG_ENABLE_FRAGMENT_RANDOM_ACCESS
       })
   public @interface Flags {}
   /**
@@ -105,6 +107,16 @@ public class FragmentedMp4Extractor implements Extractor {
   private static final int FLAG_SIDELOADED = 1 << 3; // 8
   /** Flag to ignore any edit lists in the stream. */
   public static final int FLAG_WORKAROUND_IGNORE_EDIT_LISTS = 1 << 4; // 16
+  /**
+   * Flag to read the movie fragment random access (mfra) box at the end of the stream if the stream
+   * doesn't start with a segment index (sidx), so that the stream is seekable to the fragments
+   * that contain sync samples. The mfra box is only read if the length of the stream is known.
+   *
+   * <p>Seeking uses the fragments listed in the mfra box, and reads from the start of the fragment
+   * that precedes the seek position. The moof and trun boxes of the stream aren't indexed, so the
+   * samples of that fragment are read up to the seek position as usual.
+   */
+  public static final int FLAG_ENABLE_FRAGMENT_RANDOM_ACCESS = 1 << 5; // 32
 
   private static final String TAG = "FragmentedMp4Extractor";
 
@@ -122,6 +134,12 @@ public class FragmentedMp4Extractor implements Extractor {
   private static final int STATE_READING_ENCRYPTION_DATA = 2;
   private static final int STATE_READING_SAMPLE_START = 3;
   private static final int STATE_READING_SAMPLE_CONTINUE = 4;
+  private static final int STATE_READING_FRAGMENT_RANDOM_ACCESS = 5;
+
+  /** The size of the mfro box, which ends a stream that has an mfra box. */
+  private static final int MFRO_SIZE = 16;
+  /** The maximum size of an mfra box that will be read. */
+  private static final int MAX_MFRA_SIZE = 4 * 1024 * 1024;
 
   // Workarounds.
   @Flags private final int flags;
@@ -175,6 +193,9 @@ public class FragmentedMp4Extractor implements Extractor {
 
   // Whether extractorOutput.seekMap has been called.
   private boolean haveOutputSeekMap;
+  // The position of the first mdat, and of the box being read in the mfra box of the stream.
+  private long firstMdatPosition;
+  private long fragmentRandomAccessPosition;
 
   public FragmentedMp4Extractor() {
     this(0);
@@ -263,6 +284,7 @@ public class FragmentedMp4Extractor implements Extractor {
     trackBundles = new SparseArray<>();
     durationUs = C.TIME_UNSET;
     pendingSeekTimeUs = C.TIME_UNSET;
+    fragmentRandomAccessPosition = C.POSITION_UNSET;
     segmentIndexEarliestPresentationTimeUs = C.TIME_UNSET;
     enterReadingAtomHeaderState();
   }
@@ -318,6 +340,8 @@ public class FragmentedMp4Extractor implements Extractor {
         case STATE_READING_ENCRYPTION_DATA:
           readEncryptionData(input);
           break;
+        case STATE_READING_FRAGMENT_RANDOM_ACCESS:
+          return readFragmentRandomAccess(input, seekPosition);
         default:
           if (readSample(input)) {
             return RESULT_CONTINUE;
@@ -382,6 +406,16 @@ public class FragmentedMp4Extractor implements Extractor {
       endOfMdatPosition = atomPosition + atomSize;
       if (!haveOutputSeekMap) {
         // This must be the first mdat in the stream.
+        long inputLength = input.getLength();
+        if ((flags & FLAG_ENABLE_FRAGMENT_RANDOM_ACCESS) != 0
+            && inputLength != C.LENGTH_UNSET
+            && inputLength - MFRO_SIZE > atomPosition) {
+          // Read the mfra box before returning to this mdat.
+          firstMdatPosition = atomPosition;
+          fragmentRandomAccessPosition = inputLength - MFRO_SIZE;
+          parserState = STATE_READING_FRAGMENT_RANDOM_ACCESS;
+          return true;
+        }
         extractorOutput.seekMap(new SeekMap.Unseekable(durationUs, atomPosition));
         haveOutputSeekMap = true;
       }
@@ -1170,6 +1204,145 @@ public class FragmentedMp4Extractor implements Extractor {
         new ChunkIndex(sizes, offsets, durationsUs, timesUs));
   }
 
+  /**
+   * Reads the mfro box that ends the stream, then the mfra box whose size it holds, and outputs a
+   * seek map built from the mfra box. Each call reads at most one of the boxes, and returns {@link
+   * #RESULT_SEEK} to the position of the next box to read, or back to the first mdat once the seek
+   * map has been output.
+   */
+  private int readFragmentRandomAccess(ExtractorInput input, PositionHolder seekPosition)
+      throws IOException, InterruptedException {
+    if (input.getPosition() != fragmentRandomAccessPosition) {
+      seekPosition.position = fragmentRandomAccessPosition;
+      return RESULT_SEEK;
+    }
+    long inputLength = input.getLength();
+    @Nullable SeekMap seekMap = null;
+    if (fragmentRandomAccessPosition == inputLength - MFRO_SIZE) {
+      input.readFully(scratch.data, 0, MFRO_SIZE);
+      scratch.setPosition(0);
+      long mfraSize = 0;
+      if (scratch.readUnsignedInt() == MFRO_SIZE && scratch.readInt() == Atom.TYPE_mfro) {
+        scratch.skipBytes(4); // version and flags
+        mfraSize = scratch.readUnsignedInt();
+      }
+      if (mfraSize > Atom.HEADER_SIZE + MFRO_SIZE
+          && mfraSize <= MAX_MFRA_SIZE
+          && mfraSize <= inputLength - firstMdatPosition) {
+        fragmentRandomAccessPosition = inputLength - mfraSize;
+        seekPosition.position = fragmentRandomAccessPosition;
+        return RESULT_SEEK;
+      }
+    } else {
+      ParsableByteArray mfra = new ParsableByteArray((int) (inputLength - input.getPosition()));
+      input.readFully(mfra.data, 0, mfra.limit());
+      seekMap = parseMfra(mfra, trackBundles, durationUs);
+    }
+    extractorOutput.seekMap(
+        seekMap != null ? seekMap : new SeekMap.Unseekable(durationUs, firstMdatPosition));
+    haveOutputSeekMap = true;
+    enterReadingAtomHeaderState();
+    seekPosition.position = firstMdatPosition;
+    return RESULT_SEEK;
+  }
+
+  /**
+   * Parses an mfra atom (defined in 14496-12), using the tfra atom of a video track if there is
+   * one, or else of the first track that has one.
+   *
+   * @param mfra The atom data.
+   * @param trackBundles The track bundles, keyed by track ID.
+   * @param durationUs The duration of the stream, in microseconds.
+   * @return The parsed {@link IndexSeekMap}, or {@code null} if the atom doesn't have a valid tfra
+   *     atom for any of the tracks.
+   */
+  @Nullable
+  private static IndexSeekMap parseMfra(
+      ParsableByteArray mfra, SparseArray<TrackBundle> trackBundles, long durationUs) {
+    if (mfra.readUnsignedInt() != mfra.limit() || mfra.readInt() != Atom.TYPE_mfra) {
+      return null;
+    }
+    @Nullable IndexSeekMap seekMap = null;
+    boolean isVideoSeekMap = false;
+    while (mfra.bytesLeft() >= Atom.FULL_HEADER_SIZE + 4 && !isVideoSeekMap) {
+      int childPosition = mfra.getPosition();
+      int childSize = mfra.readInt();
+      int childType = mfra.readInt();
+      if (childSize < Atom.HEADER_SIZE || childSize > mfra.limit() - childPosition) {
+        break;
+      }
+      if (childType == Atom.TYPE_tfra) {
+        int version = Atom.parseFullAtomVersion(mfra.readInt());
+        @Nullable TrackBundle trackBundle = trackBundles.get(mfra.readInt());
+        boolean isVideoTrack = trackBundle != null && trackBundle.track.type == C.TRACK_TYPE_VIDEO;
+        if (trackBundle != null && (seekMap == null || isVideoTrack)) {
+          mfra.setLimit(childPosition + childSize);
+          @Nullable
+          IndexSeekMap tfraSeekMap = parseTfra(mfra, version, trackBundle.track, durationUs);
+          mfra.setLimit(mfra.data.length);
+          if (tfraSeekMap != null) {
+            seekMap = tfraSeekMap;
+            isVideoSeekMap = isVideoTrack;
+          }
+        }
+      }
+      mfra.setPosition(childPosition + childSize);
+    }
+    return seekMap;
+  }
+
+  /**
+   * Parses the entries of a tfra atom (defined in 14496-12).
+   *
+   * @param tfra The atom data, positioned after the track ID.
+   * @param version The version of the atom.
+   * @param track The track that the atom indexes.
+   * @param durationUs The duration of the stream, in microseconds.
+   * @return The parsed {@link IndexSeekMap}, or {@code null} if the atom doesn't have any valid
+   *     entries.
+   */
+  @Nullable
+  private static IndexSeekMap parseTfra(
+      ParsableByteArray tfra, int version, Track track, long durationUs) {
+    int lengthSizes = tfra.readInt();
+    int entryTailLength =
+        ((lengthSizes >> 4) & 0x3) + ((lengthSizes >> 2) & 0x3) + (lengthSizes & 0x3) + 3;
+    int entryLength = (version == 1 ? 16 : 8) + entryTailLength;
+    long entryCount = tfra.readUnsignedInt();
+    if (entryCount == 0 || entryCount > tfra.bytesLeft() / entryLength) {
+      return null;
+    }
+
+    // The entries are treated the same way as the samples in parseTrun, with respect to edit lists.
+    long edtsOffsetUs = 0;
+    if (track.editListDurations != null && track.editListDurations.length == 1
+        && track.editListDurations[0] == 0) {
+      edtsOffsetUs =
+          Util.scaleLargeTimestamp(
+              track.editListMediaTimes[0], C.MICROS_PER_SECOND, track.timescale);
+    }
+
+    long[] positions = new long[(int) entryCount];
+    long[] timesUs = new long[(int) entryCount];
+    int pointCount = 0;
+    for (int i = 0; i < entryCount; i++) {
+      long time = version == 1 ? tfra.readUnsignedLongToLong() : tfra.readUnsignedInt();
+      long moofOffset = version == 1 ? tfra.readUnsignedLongToLong() : tfra.readUnsignedInt();
+      tfra.skipBytes(entryTailLength);
+      long timeUs =
+          Util.scaleLargeTimestamp(time, C.MICROS_PER_SECOND, track.timescale) - edtsOffsetUs;
+      // Keep the first entry of each fragment, and drop entries that aren't in order.
+      if (pointCount == 0
+          || (timeUs > timesUs[pointCount - 1] && moofOffset > positions[pointCount - 1])) {
+        positions[pointCount] = moofOffset;
+        timesUs[pointCount] = timeUs;
+        pointCount++;
+      }
+    }
+    return new IndexSeekMap(
+        Arrays.copyOf(positions, pointCount), Arrays.copyOf(timesUs, pointCount), durationUs);
+  }
+
   private void readEncryptionData(ExtractorInput input) throws IOException, InterruptedException {
     TrackBundle nextTrackBundle = null;
     long nextDataOffset = Long.MAX_VALUE;
@@ -21,6 +21,7 @@ import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.audio.Ac4Util;
+import com.google.android.exoplayer2.extractor.DummyTrackOutput;
 import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
@@ -30,6 +31,7 @@ import com.google.android.exoplayer2.extractor.PositionHolder;
 import com.google.android.exoplayer2.extractor.SeekMap;
 import com.google.android.exoplayer2.extractor.SeekPoint;
 import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.extractor.TrackSkippingExtractor;
 import com.google.android.exoplayer2.extractor.mp4.Atom.ContainerAtom;
 import com.google.android.exoplayer2.metadata.Metadata;
 import com.google.android.exoplayer2.util.Assertions;
@@ -43,30 +45,55 @@ import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
 /**
  * Extracts data from the MP4 container format.
  */
-public final class Mp4Extractor implements Extractor, SeekMap {
+public final class Mp4Extractor implements TrackSkippingExtractor, SeekMap {
 
   /** Factory for {@link Mp4Extractor} instances. */
   public static final ExtractorsFactory FACTORY = () -> new Extractor[] {new Mp4Extractor()};
 
   /**
-   * Flags controlling the behavior of the extractor. Possible flag value is {@link
-   * #FLAG_WORKAROUND_IGNORE_EDIT_LISTS}.
+   * Flags controlling the behavior of the extractor. Possible flag values are {@link
+   * #FLAG_WORKAROUND_IGNORE_EDIT_LISTS}, {@link #FLAG_COMPACT_SAMPLE_TABLES} and {@link
+   * #FLAG_SKIP_DISCARDED_TRACKS}.
    */
   @Documented
   @Retention(RetentionPolicy.SOURCE)
   @IntDef(
       flag = true,
-      value = {FLAG_WORKAROUND_IGNORE_EDIT_LISTS})
+      value = {
+        FLAG_WORKAROUND_IGNORE_EDIT_LISTS,
+        FLAG_COMPACT_SAMPLE_TABLES,
+        FLAG_SKIP_DISCARDED_TRACKS
+      })
   public @interface Flags {}
   /**
    * Flag to ignore any edit lists in the stream.
    */
   public static final int FLAG_WORKAROUND_IGNORE_EDIT_LISTS = 1;
+  /**
+   * Flag to keep the sample tables of tracks in a compact, run-length encoded form, rather than
+   * expanding them into the offset, size, timestamp and flags of every sample. This substantially
+   * reduces the memory used by long files, and the time taken to prepare them, at the cost of
+   * slightly more expensive sample lookups. The sample tables of tracks whose edit lists have more
+   * than one edit are always expanded.
+   */
+  public static final int FLAG_COMPACT_SAMPLE_TABLES = 1 << 1;
+  /**
+   * Flag to skip tracks whose {@link TrackOutput} is {@link TrackOutput#isDiscardingSamples()
+   * discarding samples}, such as a {@link DummyTrackOutput} or the sample queue of a track that
+   * isn't selected. The samples of skipped tracks aren't read or taken into account when seeking.
+   * The sample tables of tracks without edit lists are kept unparsed when the moov atom is read, and
+   * are only parsed once the track is read, which reduces the time taken to prepare files with many
+   * tracks and the memory used by the tracks that are never selected. Seek points are determined
+   * from the tracks that aren't discarding samples, and their sample tables are parsed by the
+   * thread that reads from the extractor when it's seeked. See {@link #getSeekPoints(long)}.
+   */
+  public static final int FLAG_SKIP_DISCARDED_TRACKS = 1 << 2;
 
   /** Parser states. */
   @Documented
@@ -118,7 +145,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   private @MonotonicNonNull ExtractorOutput extractorOutput;
   private Mp4Track[] tracks;
   private long[][] accumulatedSampleSizes;
-  private int firstVideoTrackIndex;
+  private long lastReadTimeUs;
+  private long pendingSeekTimeUs;
   private long durationUs;
   private boolean isQuickTime;
 
@@ -143,6 +171,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     nalLength = new ParsableByteArray(4);
     scratch = new ParsableByteArray();
     sampleTrackIndex = C.INDEX_UNSET;
+    pendingSeekTimeUs = C.TIME_UNSET;
   }
 
   @Override
@@ -163,8 +192,16 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     sampleBytesRead = 0;
     sampleBytesWritten = 0;
     sampleCurrentNalBytesRemaining = 0;
+    lastReadTimeUs = timeUs;
+    pendingSeekTimeUs = C.TIME_UNSET;
     if (position == 0) {
-      enterReadingAtomHeaderState();
+      if (tracks != null && (flags & FLAG_SKIP_DISCARDED_TRACKS) != 0) {
+        // The seek point may have been requested before the sample tables it depends on were
+        // parsed. Determine the seek position in the next read, rather than reading from the start.
+        pendingSeekTimeUs = timeUs;
+      } else {
+        enterReadingAtomHeaderState();
+      }
     } else if (tracks != null) {
       updateSampleIndices(timeUs);
     }
@@ -175,9 +212,18 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     // Do nothing
   }
 
+  @Override
+  public boolean skipsDiscardedTracks() {
+    return (flags & FLAG_SKIP_DISCARDED_TRACKS) != 0;
+  }
+
   @Override
   public int read(ExtractorInput input, PositionHolder seekPosition)
       throws IOException, InterruptedException {
+    if (pendingSeekTimeUs != C.TIME_UNSET) {
+      seekPosition.position = resolvePendingSeek();
+      return RESULT_SEEK;
+    }
     while (true) {
       switch (parserState) {
         case STATE_READING_ATOM_HEADER:
@@ -189,6 +235,11 @@ public final class Mp4Extractor implements Extractor, SeekMap {
           if (readAtomPayload(input, seekPosition)) {
             return RESULT_SEEK;
           }
+          if (parserState == STATE_READING_SAMPLE && (flags & FLAG_SKIP_DISCARDED_TRACKS) != 0) {
+            // The moov atom has been processed. Return so that the outputs of the tracks can start
+            // discarding samples before any sample is read.
+            return RESULT_CONTINUE;
+          }
           break;
         case STATE_READING_SAMPLE:
           return readSample(input, seekPosition);
@@ -210,9 +261,34 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     return durationUs;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>If {@link #FLAG_SKIP_DISCARDED_TRACKS} is set and the sample table of a track that isn't
+   * discarding samples hasn't been parsed yet, the returned seek point has the requested time and
+   * position 0. Seeking the extractor to it doesn't read the stream from the start. Instead, the
+   * sample tables are parsed by the next read, which then returns {@link #RESULT_SEEK} with the
+   * position of the seek point determined from them.
+   */
   @Override
   public SeekPoints getSeekPoints(long timeUs) {
-    if (tracks.length == 0) {
+    if (hasUnparsedSampleTables()) {
+      return new SeekPoints(new SeekPoint(timeUs, /* position= */ 0));
+    }
+    @NullableType TrackSampleTable[] sampleTables = new TrackSampleTable[tracks.length];
+    boolean haveSampleTables = false;
+    int firstVideoTrackIndex = C.INDEX_UNSET;
+    for (int i = 0; i < tracks.length; i++) {
+      sampleTables[i] = getSampleTableForSeeking(tracks[i]);
+      if (sampleTables[i] == null) {
+        continue;
+      }
+      haveSampleTables = true;
+      if (tracks[i].track.type == C.TRACK_TYPE_VIDEO && firstVideoTrackIndex == C.INDEX_UNSET) {
+        firstVideoTrackIndex = i;
+      }
+    }
+    if (!haveSampleTables) {
       return new SeekPoints(SeekPoint.START);
     }
 
@@ -223,19 +299,19 @@ public final class Mp4Extractor implements Extractor, SeekMap {
 
     // If we have a video track, use it to establish one or two seek points.
     if (firstVideoTrackIndex != C.INDEX_UNSET) {
-      TrackSampleTable sampleTable = tracks[firstVideoTrackIndex].sampleTable;
+      TrackSampleTable sampleTable = Assertions.checkNotNull(sampleTables[firstVideoTrackIndex]);
       int sampleIndex = getSynchronizationSampleIndex(sampleTable, timeUs);
       if (sampleIndex == C.INDEX_UNSET) {
         return new SeekPoints(SeekPoint.START);
       }
-      long sampleTimeUs = sampleTable.timestampsUs[sampleIndex];
+      long sampleTimeUs = sampleTable.getTimestampUs(sampleIndex);
       firstTimeUs = sampleTimeUs;
-      firstOffset = sampleTable.offsets[sampleIndex];
+      firstOffset = sampleTable.getOffset(sampleIndex);
       if (sampleTimeUs < timeUs && sampleIndex < sampleTable.sampleCount - 1) {
         int secondSampleIndex = sampleTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs);
         if (secondSampleIndex != C.INDEX_UNSET && secondSampleIndex != sampleIndex) {
-          secondTimeUs = sampleTable.timestampsUs[secondSampleIndex];
-          secondOffset = sampleTable.offsets[secondSampleIndex];
+          secondTimeUs = sampleTable.getTimestampUs(secondSampleIndex);
+          secondOffset = sampleTable.getOffset(secondSampleIndex);
         }
       }
     } else {
@@ -245,8 +321,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
 
     // Take into account other tracks.
     for (int i = 0; i < tracks.length; i++) {
-      if (i != firstVideoTrackIndex) {
-        TrackSampleTable sampleTable = tracks[i].sampleTable;
+      @Nullable TrackSampleTable sampleTable = sampleTables[i];
+      if (i != firstVideoTrackIndex && sampleTable != null) {
         firstOffset = maybeAdjustSeekOffset(sampleTable, firstTimeUs, firstOffset);
         if (secondTimeUs != C.TIME_UNSET) {
           secondOffset = maybeAdjustSeekOffset(sampleTable, secondTimeUs, secondOffset);
@@ -386,7 +462,6 @@ public final class Mp4Extractor implements Extractor, SeekMap {
    * Updates the stored track metadata to reflect the contents of the specified moov atom.
    */
   private void processMoovAtom(ContainerAtom moov) throws ParserException {
-    int firstVideoTrackIndex = C.INDEX_UNSET;
     long durationUs = C.TIME_UNSET;
     List<Mp4Track> tracks = new ArrayList<>();
 
@@ -407,40 +482,30 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     }
 
     boolean ignoreEditLists = (flags & FLAG_WORKAROUND_IGNORE_EDIT_LISTS) != 0;
-    ArrayList<TrackSampleTable> trackSampleTables =
-        getTrackSampleTables(moov, gaplessInfoHolder, ignoreEditLists);
+    ArrayList<Mp4Track> outputTracks = getTracks(moov, gaplessInfoHolder, ignoreEditLists);
 
-    int trackCount = trackSampleTables.size();
+    int trackCount = outputTracks.size();
     for (int i = 0; i < trackCount; i++) {
-      TrackSampleTable trackSampleTable = trackSampleTables.get(i);
-      Track track = trackSampleTable.track;
+      Mp4Track mp4Track = outputTracks.get(i);
+      Track track = mp4Track.track;
       long trackDurationUs =
-          track.durationUs != C.TIME_UNSET ? track.durationUs : trackSampleTable.durationUs;
+          track.durationUs != C.TIME_UNSET ? track.durationUs : mp4Track.sampleTable.durationUs;
       durationUs = Math.max(durationUs, trackDurationUs);
-      Mp4Track mp4Track = new Mp4Track(track, trackSampleTable,
-          extractorOutput.track(i, track.type));
 
       // Each sample has up to three bytes of overhead for the start code that replaces its length.
       // Allow ten source samples per output sample, like the platform extractor.
-      int maxInputSize = trackSampleTable.maximumSize + 3 * 10;
+      int maxInputSize = mp4Track.maximumSampleSize + 3 * 10;
       Format format = track.format.copyWithMaxInputSize(maxInputSize);
-      if (track.type == C.TRACK_TYPE_VIDEO
-          && trackDurationUs > 0
-          && trackSampleTable.sampleCount > 1) {
-        float frameRate = trackSampleTable.sampleCount / (trackDurationUs / 1000000f);
+      if (track.type == C.TRACK_TYPE_VIDEO && trackDurationUs > 0 && mp4Track.sampleCount > 1) {
+        float frameRate = mp4Track.sampleCount / (trackDurationUs / 1000000f);
         format = format.copyWithFrameRate(frameRate);
       }
       format =
           MetadataUtil.getFormatWithMetadata(
               track.type, format, udtaMetadata, mdtaMetadata, gaplessInfoHolder);
       mp4Track.trackOutput.format(format);
-
-      if (track.type == C.TRACK_TYPE_VIDEO && firstVideoTrackIndex == C.INDEX_UNSET) {
-        firstVideoTrackIndex = tracks.size();
-      }
       tracks.add(mp4Track);
     }
-    this.firstVideoTrackIndex = firstVideoTrackIndex;
     this.durationUs = durationUs;
     this.tracks = tracks.toArray(new Mp4Track[0]);
     accumulatedSampleSizes = calculateAccumulatedSampleSizes(this.tracks);
@@ -449,10 +514,17 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     extractorOutput.seekMap(this);
   }
 
-  private ArrayList<TrackSampleTable> getTrackSampleTables(
+  /**
+   * Returns the tracks to output. Tracks without samples aren't output. The sample tables of tracks
+   * whose format doesn't depend on them are left unparsed if {@link #FLAG_SKIP_DISCARDED_TRACKS} is
+   * set.
+   */
+  private ArrayList<Mp4Track> getTracks(
       ContainerAtom moov, GaplessInfoHolder gaplessInfoHolder, boolean ignoreEditLists)
       throws ParserException {
-    ArrayList<TrackSampleTable> trackSampleTables = new ArrayList<>();
+    boolean preferCompactSampleTables = (flags & FLAG_COMPACT_SAMPLE_TABLES) != 0;
+    boolean skipDiscardedTracks = (flags & FLAG_SKIP_DISCARDED_TRACKS) != 0;
+    ArrayList<Mp4Track> tracks = new ArrayList<>();
     for (int i = 0; i < moov.containerChildren.size(); i++) {
       Atom.ContainerAtom atom = moov.containerChildren.get(i);
       if (atom.type != Atom.TYPE_trak) {
@@ -474,13 +546,118 @@ public final class Mp4Extractor implements Extractor, SeekMap {
           atom.getContainerAtomOfType(Atom.TYPE_mdia)
               .getContainerAtomOfType(Atom.TYPE_minf)
               .getContainerAtomOfType(Atom.TYPE_stbl);
-      TrackSampleTable trackSampleTable = AtomParsers.parseStbl(track, stblAtom, gaplessInfoHolder);
-      if (trackSampleTable.sampleCount == 0) {
-        continue;
+      if (skipDiscardedTracks && canDeferSampleTableParsing(track)) {
+        // The sample count and maximum sample size are all the format needs from the sample table,
+        // which is kept as read from the moov atom until the track's samples are needed.
+        int sampleCount = AtomParsers.parseStblSampleCount(stblAtom);
+        if (sampleCount == 0) {
+          continue;
+        }
+        int maximumSampleSize = AtomParsers.parseStblMaximumSampleSize(stblAtom);
+        TrackOutput trackOutput = extractorOutput.track(tracks.size(), track.type);
+        tracks.add(
+            new Mp4Track(
+                track,
+                stblAtom,
+                sampleCount,
+                maximumSampleSize,
+                preferCompactSampleTables,
+                trackOutput));
+      } else {
+        TrackSampleTable trackSampleTable =
+            AtomParsers.parseStbl(track, stblAtom, gaplessInfoHolder, preferCompactSampleTables);
+        if (trackSampleTable.sampleCount == 0) {
+          continue;
+        }
+        TrackOutput trackOutput = extractorOutput.track(tracks.size(), track.type);
+        tracks.add(new Mp4Track(track, trackSampleTable, trackOutput));
       }
-      trackSampleTables.add(trackSampleTable);
     }
-    return trackSampleTables;
+    return tracks;
+  }
+
+  /**
+   * Returns whether the format of {@code track} can be determined without parsing its sample table.
+   * This isn't the case if the track's edit list determines its sample count and gapless
+   * information, or if its samples are rechunked.
+   */
+  private static boolean canDeferSampleTableParsing(Track track) {
+    return track.editListDurations == null
+        && track.durationUs != C.TIME_UNSET
+        && !MimeTypes.AUDIO_RAW.equals(track.format.sampleMimeType);
+  }
+
+  /**
+   * Returns the sample table to use when seeking, or null if the track is skipped or its sample
+   * table hasn't been parsed yet. Sample tables are only parsed by the thread that reads from the
+   * extractor, so that seeking never has to parse them.
+   */
+  @Nullable
+  private TrackSampleTable getSampleTableForSeeking(Mp4Track track) {
+    if (!track.isSampleTableParsed
+        || ((flags & FLAG_SKIP_DISCARDED_TRACKS) != 0
+            && track.trackOutput.isDiscardingSamples())) {
+      return null;
+    }
+    return track.sampleTable;
+  }
+
+  /**
+   * Returns whether the sample table of a track that isn't discarding samples hasn't been parsed
+   * yet. May be called from any thread.
+   */
+  private boolean hasUnparsedSampleTables() {
+    if ((flags & FLAG_SKIP_DISCARDED_TRACKS) == 0) {
+      return false;
+    }
+    for (Mp4Track track : tracks) {
+      if (!track.isSampleTableParsed && !track.trackOutput.isDiscardingSamples()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Parses the sample tables needed to seek to {@link #pendingSeekTimeUs}, and returns the position
+   * from which to read.
+   */
+  private long resolvePendingSeek() throws ParserException {
+    long timeUs = pendingSeekTimeUs;
+    pendingSeekTimeUs = C.TIME_UNSET;
+    maybeStartReadingTracks();
+    updateSampleIndices(timeUs);
+    return getSeekPoints(timeUs).first.position;
+  }
+
+  /**
+   * Makes the tracks whose sample tables haven't been parsed readable, if their outputs are no
+   * longer discarding samples. The samples of these tracks are read from the synchronization sample
+   * before or at the time of the last read sample.
+   */
+  private void maybeStartReadingTracks() throws ParserException {
+    boolean startedReadingTracks = false;
+    for (Mp4Track track : tracks) {
+      if (!track.isReadable && !track.trackOutput.isDiscardingSamples()) {
+        track.sampleIndex = getSynchronizationSampleIndex(track.parseSampleTable(), lastReadTimeUs);
+        track.isReadable = true;
+        startedReadingTracks = true;
+      }
+    }
+    if (startedReadingTracks) {
+      accumulatedSampleSizes = calculateAccumulatedSampleSizes(tracks);
+    }
+  }
+
+  private static TrackSampleTable createEmptySampleTable(Track track) {
+    return new ExpandedTrackSampleTable(
+        track,
+        /* offsets= */ new long[0],
+        /* sizes= */ new int[0],
+        /* maximumSize= */ 0,
+        /* timestampsUs= */ new long[0],
+        /* flags= */ new int[0],
+        /* durationUs= */ C.TIME_UNSET);
   }
 
   /**
@@ -503,6 +680,9 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       throws IOException, InterruptedException {
     long inputPosition = input.getPosition();
     if (sampleTrackIndex == C.INDEX_UNSET) {
+      if ((flags & FLAG_SKIP_DISCARDED_TRACKS) != 0) {
+        maybeStartReadingTracks();
+      }
       sampleTrackIndex = getTrackIndexOfNextReadSample(inputPosition);
       if (sampleTrackIndex == C.INDEX_UNSET) {
         return RESULT_END_OF_INPUT;
@@ -511,8 +691,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     Mp4Track track = tracks[sampleTrackIndex];
     TrackOutput trackOutput = track.trackOutput;
     int sampleIndex = track.sampleIndex;
-    long position = track.sampleTable.offsets[sampleIndex];
-    int sampleSize = track.sampleTable.sizes[sampleIndex];
+    long position = track.sampleTable.getOffset(sampleIndex);
+    int sampleSize = track.sampleTable.getSize(sampleIndex);
     long skipAmount = position - inputPosition + sampleBytesRead;
     if (skipAmount < 0 || skipAmount >= RELOAD_MINIMUM_SEEK_DISTANCE) {
       positionHolder.position = position;
@@ -577,8 +757,9 @@ public final class Mp4Extractor implements Extractor, SeekMap {
         sampleCurrentNalBytesRemaining -= writtenBytes;
       }
     }
-    trackOutput.sampleMetadata(track.sampleTable.timestampsUs[sampleIndex],
-        track.sampleTable.flags[sampleIndex], sampleSize, 0, null);
+    long timeUs = track.sampleTable.getTimestampUs(sampleIndex);
+    trackOutput.sampleMetadata(timeUs, track.sampleTable.getFlags(sampleIndex), sampleSize, 0, null);
+    lastReadTimeUs = timeUs;
     track.sampleIndex++;
     sampleTrackIndex = C.INDEX_UNSET;
     sampleBytesRead = 0;
@@ -608,13 +789,16 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     long minAccumulatedBytes = Long.MAX_VALUE;
     boolean minAccumulatedBytesRequiresReload = true;
     int minAccumulatedBytesTrackIndex = C.INDEX_UNSET;
+    boolean skipDiscardedTracks = (flags & FLAG_SKIP_DISCARDED_TRACKS) != 0;
     for (int trackIndex = 0; trackIndex < tracks.length; trackIndex++) {
       Mp4Track track = tracks[trackIndex];
       int sampleIndex = track.sampleIndex;
-      if (sampleIndex == track.sampleTable.sampleCount) {
+      if (!track.isReadable
+          || sampleIndex == track.sampleTable.sampleCount
+          || (skipDiscardedTracks && track.trackOutput.isDiscardingSamples())) {
         continue;
       }
-      long sampleOffset = track.sampleTable.offsets[sampleIndex];
+      long sampleOffset = track.sampleTable.getOffset(sampleIndex);
       long sampleAccumulatedBytes = accumulatedSampleSizes[trackIndex][sampleIndex];
       long skipAmount = sampleOffset - inputPosition;
       boolean requiresReload = skipAmount < 0 || skipAmount >= RELOAD_MINIMUM_SEEK_DISTANCE;
@@ -643,6 +827,9 @@ public final class Mp4Extractor implements Extractor, SeekMap {
    */
   private void updateSampleIndices(long timeUs) {
     for (Mp4Track track : tracks) {
+      if (!track.isReadable) {
+        continue;
+      }
       TrackSampleTable sampleTable = track.sampleTable;
       int sampleIndex = sampleTable.getIndexOfEarlierOrEqualSynchronizationSample(timeUs);
       if (sampleIndex == C.INDEX_UNSET) {
@@ -680,20 +867,26 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   }
 
   /**
-   * For each sample of each track, calculates accumulated size of all samples which need to be read
-   * before this sample can be used.
+   * For each sample of each readable track, calculates accumulated size of all samples which need
+   * to be read before this sample can be used.
    */
   private static long[][] calculateAccumulatedSampleSizes(Mp4Track[] tracks) {
     long[][] accumulatedSampleSizes = new long[tracks.length][];
     int[] nextSampleIndex = new int[tracks.length];
     long[] nextSampleTimesUs = new long[tracks.length];
     boolean[] tracksFinished = new boolean[tracks.length];
+    int finishedTracks = 0;
     for (int i = 0; i < tracks.length; i++) {
-      accumulatedSampleSizes[i] = new long[tracks[i].sampleTable.sampleCount];
-      nextSampleTimesUs[i] = tracks[i].sampleTable.timestampsUs[0];
+      int sampleCount = tracks[i].isReadable ? tracks[i].sampleTable.sampleCount : 0;
+      accumulatedSampleSizes[i] = new long[sampleCount];
+      if (sampleCount == 0) {
+        tracksFinished[i] = true;
+        finishedTracks++;
+      } else {
+        nextSampleTimesUs[i] = tracks[i].sampleTable.getTimestampUs(0);
+      }
     }
     long accumulatedSampleSize = 0;
-    int finishedTracks = 0;
     while (finishedTracks < tracks.length) {
       long minTimeUs = Long.MAX_VALUE;
       int minTimeTrackIndex = -1;
@@ -705,11 +898,11 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       }
       int trackSampleIndex = nextSampleIndex[minTimeTrackIndex];
       accumulatedSampleSizes[minTimeTrackIndex][trackSampleIndex] = accumulatedSampleSize;
-      accumulatedSampleSize += tracks[minTimeTrackIndex].sampleTable.sizes[trackSampleIndex];
+      accumulatedSampleSize += tracks[minTimeTrackIndex].sampleTable.getSize(trackSampleIndex);
       nextSampleIndex[minTimeTrackIndex] = ++trackSampleIndex;
       if (trackSampleIndex < accumulatedSampleSizes[minTimeTrackIndex].length) {
         nextSampleTimesUs[minTimeTrackIndex] =
-            tracks[minTimeTrackIndex].sampleTable.timestampsUs[trackSampleIndex];
+            tracks[minTimeTrackIndex].sampleTable.getTimestampUs(trackSampleIndex);
       } else {
         tracksFinished[minTimeTrackIndex] = true;
         finishedTracks++;
@@ -733,7 +926,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     if (sampleIndex == C.INDEX_UNSET) {
       return offset;
     }
-    long sampleOffset = sampleTable.offsets[sampleIndex];
+    long sampleOffset = sampleTable.getOffset(sampleIndex);
     return Math.min(sampleOffset, offset);
   }
 
@@ -814,17 +1007,67 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   private static final class Mp4Track {
 
     public final Track track;
-    public final TrackSampleTable sampleTable;
+    public final int sampleCount;
+    public final int maximumSampleSize;
     public final TrackOutput trackOutput;
 
+    /** The sample table, which is empty until {@link #parseSampleTable()} is first called. */
+    public volatile TrackSampleTable sampleTable;
+    /** Whether {@link #sampleTable} has been parsed. May be read from any thread. */
+    public volatile boolean isSampleTableParsed;
+    /**
+     * Whether the sample table is parsed, and the track's samples can be read. Only accessed by the
+     * thread that reads from the extractor.
+     */
+    public boolean isReadable;
     public int sampleIndex;
 
+    @Nullable private ContainerAtom stblAtom;
+    private final boolean preferCompactSampleTable;
+
     public Mp4Track(Track track, TrackSampleTable sampleTable, TrackOutput trackOutput) {
       this.track = track;
       this.sampleTable = sampleTable;
       this.trackOutput = trackOutput;
+      sampleCount = sampleTable.sampleCount;
+      maximumSampleSize = sampleTable.maximumSize;
+      isSampleTableParsed = true;
+      isReadable = true;
+      preferCompactSampleTable = false;
+    }
+
+    public Mp4Track(
+        Track track,
+        ContainerAtom stblAtom,
+        int sampleCount,
+        int maximumSampleSize,
+        boolean preferCompactSampleTable,
+        TrackOutput trackOutput) {
+      this.track = track;
+      this.stblAtom = stblAtom;
+      this.sampleCount = sampleCount;
+      this.maximumSampleSize = maximumSampleSize;
+      this.preferCompactSampleTable = preferCompactSampleTable;
+      this.trackOutput = trackOutput;
+      sampleTable = createEmptySampleTable(track);
     }
 
+    /**
+     * Returns the sample table, parsing it if it hasn't been parsed yet. Must only be called by the
+     * thread that reads from the extractor.
+     */
+    public TrackSampleTable parseSampleTable() throws ParserException {
+      @Nullable ContainerAtom stblAtom = this.stblAtom;
+      if (stblAtom != null) {
+        // The track has no edit list, so the gapless information is never set.
+        sampleTable =
+            AtomParsers.parseStbl(
+                track, stblAtom, new GaplessInfoHolder(), preferCompactSampleTable);
+        isSampleTableParsed = true;
+        this.stblAtom = null;
+      }
+      return sampleTable;
+    }
   }
 
 }
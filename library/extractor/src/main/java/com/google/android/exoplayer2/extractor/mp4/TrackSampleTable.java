@@ -16,59 +16,64 @@
 package com.google.android.exoplayer2.extractor.mp4;
 
 import com.google.android.exoplayer2.C;
-import com.google.android.exoplayer2.util.Assertions;
-import com.google.android.exoplayer2.util.Util;
 
 /**
  * Sample table for a track in an MP4 file.
  */
-/* package */ final class TrackSampleTable {
+/* package */ abstract class TrackSampleTable {
 
   /** The track corresponding to this sample table. */
   public final Track track;
   /** Number of samples. */
   public final int sampleCount;
-  /** Sample offsets in bytes. */
-  public final long[] offsets;
-  /** Sample sizes in bytes. */
-  public final int[] sizes;
-  /** Maximum sample size in {@link #sizes}. */
+  /** Maximum sample size in bytes. */
   public final int maximumSize;
-  /** Sample timestamps in microseconds. */
-  public final long[] timestampsUs;
-  /** Sample flags. */
-  public final int[] flags;
   /**
    * The duration of the track sample table in microseconds, or {@link C#TIME_UNSET} if the sample
    * table is empty.
    */
   public final long durationUs;
 
-  public TrackSampleTable(
-      Track track,
-      long[] offsets,
-      int[] sizes,
-      int maximumSize,
-      long[] timestampsUs,
-      int[] flags,
-      long durationUs) {
-    Assertions.checkArgument(sizes.length == timestampsUs.length);
-    Assertions.checkArgument(offsets.length == timestampsUs.length);
-    Assertions.checkArgument(flags.length == timestampsUs.length);
-
+  protected TrackSampleTable(Track track, int sampleCount, int maximumSize, long durationUs) {
     this.track = track;
-    this.offsets = offsets;
-    this.sizes = sizes;
+    this.sampleCount = sampleCount;
     this.maximumSize = maximumSize;
-    this.timestampsUs = timestampsUs;
-    this.flags = flags;
     this.durationUs = durationUs;
-    sampleCount = offsets.length;
-    if (flags.length > 0) {
-      flags[flags.length - 1] |= C.BUFFER_FLAG_LAST_SAMPLE;
-    }
   }
 
+  /**
+   * Returns the offset of a sample in bytes.
+   *
+   * @param sampleIndex The index of the sample.
+   * @return The offset of the sample in bytes.
+   */
+  public abstract long getOffset(int sampleIndex);
+
+  /**
+   * Returns the size of a sample in bytes.
+   *
+   * @param sampleIndex The index of the sample.
+   * @return The size of the sample in bytes.
+   */
+  public abstract int getSize(int sampleIndex);
+
+  /**
+   * Returns the timestamp of a sample in microseconds.
+   *
+   * @param sampleIndex The index of the sample.
+   * @return The timestamp of the sample in microseconds.
+   */
+  public abstract long getTimestampUs(int sampleIndex);
+
+  /**
+   * Returns the flags of a sample.
+   *
+   * @param sampleIndex The index of the sample.
+   * @return The flags of the sample. See {@link C.BufferFlags}.
+   */
+  @C.BufferFlags
+  public abstract int getFlags(int sampleIndex);
+
   /**
    * Returns the sample index of the closest synchronization sample at or before the given
    * timestamp, if one is available.
@@ -76,17 +81,7 @@ import com.google.android.exoplayer2.util.Util;
    * @param timeUs Timestamp adjacent to which to find a synchronization sample.
    * @return Index of the synchronization sample, or {@link C#INDEX_UNSET} if none.
    */
-  public int getIndexOfEarlierOrEqualSynchronizationSample(long timeUs) {
-    // Video frame timestamps may not be sorted, so the behavior of this call can be undefined.
-    // Frames are not reordered past synchronization samples so this works in practice.
-    int startIndex = Util.binarySearchFloor(timestampsUs, timeUs, true, false);
-    for (int i = startIndex; i >= 0; i--) {
-      if ((flags[i] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
-        return i;
-      }
-    }
-    return C.INDEX_UNSET;
-  }
+  public abstract int getIndexOfEarlierOrEqualSynchronizationSample(long timeUs);
 
   /**
    * Returns the sample index of the closest synchronization sample at or after the given timestamp,
@@ -95,14 +90,6 @@ import com.google.android.exoplayer2.util.Util;
    * @param timeUs Timestamp adjacent to which to find a synchronization sample.
    * @return index Index of the synchronization sample, or {@link C#INDEX_UNSET} if none.
    */
-  public int getIndexOfLaterOrEqualSynchronizationSample(long timeUs) {
-    int startIndex = Util.binarySearchCeil(timestampsUs, timeUs, true, false);
-    for (int i = startIndex; i < timestampsUs.length; i++) {
-      if ((flags[i] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
-        return i;
-      }
-    }
-    return C.INDEX_UNSET;
-  }
+  public abstract int getIndexOfLaterOrEqualSynchronizationSample(long timeUs);
 
 }
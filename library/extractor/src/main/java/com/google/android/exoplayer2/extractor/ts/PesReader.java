@@ -81,6 +81,13 @@ public final class PesReader implements TsPayloadReader {
     reader.seek();
   }
 
+  @Override
+  public final boolean canConsumePayloadRuns() {
+    // A PES packet always starts in a TS packet with the payload unit start indicator set, which
+    // starts a new run. Any data that follows the end of a PES packet in a run is stuffing.
+    return true;
+  }
+
   @Override
   public final void consume(ParsableByteArray data, @Flags int flags) throws ParserException {
     Assertions.checkStateNotNull(timestampAdjuster); // Asserts init has been called.
@@ -113,6 +113,7 @@ public final class TsExtractor implements Extractor {
   private final @Mode int mode;
   private final List<TimestampAdjuster> timestampAdjusters;
   private final ParsableByteArray tsPacketBuffer;
+  private final ParsableByteArray payloadRunBuffer;
   private final SparseIntArray continuityCounters;
   private final TsPayloadReader.Factory payloadReaderFactory;
   private final SparseArray<TsPayloadReader> tsPayloadReaders; // Indexed by pid
@@ -175,6 +176,7 @@ public final class TsExtractor implements Extractor {
       timestampAdjusters.add(timestampAdjuster);
     }
     tsPacketBuffer = new ParsableByteArray(new byte[BUFFER_SIZE], 0);
+    payloadRunBuffer = new ParsableByteArray(BUFFER_SIZE);
     trackIds = new SparseBooleanArray();
     trackPids = new SparseBooleanArray();
     tsPayloadReaders = new SparseArray<>();
@@ -277,12 +279,39 @@ public final class TsExtractor implements Extractor {
       return RESULT_END_OF_INPUT;
     }
 
-    int endOfPacket = findEndOfFirstTsPacketInBuffer();
-    int limit = tsPacketBuffer.limit();
-    if (endOfPacket > limit) {
-      return RESULT_CONTINUE;
+    // Read all of the packets in the buffer, unless the tracks end while doing so.
+    boolean wereTracksEnded = tracksEnded;
+    do {
+      int endOfPacket = findEndOfFirstTsPacketInBuffer();
+      if (endOfPacket > tsPacketBuffer.limit()) {
+        break;
+      }
+      readPacket(endOfPacket);
+    } while (tracksEnded == wereTracksEnded && tsPacketBuffer.bytesLeft() >= TS_PACKET_SIZE);
+
+    if (mode != MODE_HLS && !wereTracksEnded && tracksEnded && inputLength != C.LENGTH_UNSET) {
+      // We have read all tracks from all PMTs in this non-live stream. Now seek to the beginning
+      // and read again to make sure we output all media, including any contained in packets prior
+      // to those containing the track information.
+      pendingSeekToStart = true;
     }
+    return RESULT_CONTINUE;
+  }
 
+  // Internals.
+
+  /**
+   * Reads the TS packet at the position of the packet buffer. If the packet's payload is consumed
+   * by a payload reader that {@link TsPayloadReader#canConsumePayloadRuns() can consume payload
+   * runs}, the packets that continue the payload in the buffer are read too.
+   *
+   * <p>When the method returns, the position of the buffer is at the end of the packets read.
+   *
+   * @param endOfPacket The position of the end of the packet in the buffer.
+   * @throws ParserException If the payload could not be parsed.
+   */
+  private void readPacket(int endOfPacket) throws ParserException {
+    int limit = tsPacketBuffer.limit();
     @TsPayloadReader.Flags int packetHeaderFlags = 0;
 
     // Note: See ISO/IEC 13818-1, section 2.4.3.2 for details of the header format.
@@ -290,7 +319,7 @@ public final class TsExtractor implements Extractor {
     if ((tsPacketHeader & 0x800000) != 0) { // transport_error_indicator
       // There are uncorrectable errors in this packet.
       tsPacketBuffer.setPosition(endOfPacket);
-      return RESULT_CONTINUE;
+      return;
     }
     packetHeaderFlags |= (tsPacketHeader & 0x400000) != 0 ? FLAG_PAYLOAD_UNIT_START_INDICATOR : 0;
     // Ignoring transport_priority (tsPacketHeader & 0x200000)
@@ -302,7 +331,7 @@ public final class TsExtractor implements Extractor {
     TsPayloadReader payloadReader = payloadExists ? tsPayloadReaders.get(pid) : null;
     if (payloadReader == null) {
       tsPacketBuffer.setPosition(endOfPacket);
-      return RESULT_CONTINUE;
+      return;
     }
 
     // Discontinuity check.
@@ -313,7 +342,7 @@ public final class TsExtractor implements Extractor {
       if (previousCounter == continuityCounter) {
         // Duplicate packet found.
         tsPacketBuffer.setPosition(endOfPacket);
-        return RESULT_CONTINUE;
+        return;
       } else if (continuityCounter != ((previousCounter + 1) & 0xF)) {
         // Discontinuity found.
         payloadReader.seek();
@@ -333,24 +362,86 @@ public final class TsExtractor implements Extractor {
     }
 
     // Read the payload.
-    boolean wereTracksEnded = tracksEnded;
-    if (shouldConsumePacketPayload(pid)) {
+    if (!shouldConsumePacketPayload(pid)) {
+      tsPacketBuffer.setPosition(endOfPacket);
+      return;
+    }
+    int endOfRun = endOfPacket;
+    int continuationPayloadStart =
+        payloadReader.canConsumePayloadRuns() && endOfRun + TS_PACKET_SIZE <= limit
+            ? getContinuationPayloadStart(pid, endOfRun)
+            : C.POSITION_UNSET;
+    if (continuationPayloadStart == C.POSITION_UNSET) {
       tsPacketBuffer.setLimit(endOfPacket);
       payloadReader.consume(tsPacketBuffer, packetHeaderFlags);
       tsPacketBuffer.setLimit(limit);
+      tsPacketBuffer.setPosition(endOfPacket);
+      return;
     }
-    if (mode != MODE_HLS && !wereTracksEnded && tracksEnded && inputLength != C.LENGTH_UNSET) {
-      // We have read all tracks from all PMTs in this non-live stream. Now seek to the beginning
-      // and read again to make sure we output all media, including any contained in packets prior
-      // to those containing the track information.
-      pendingSeekToStart = true;
-    }
-
-    tsPacketBuffer.setPosition(endOfPacket);
-    return RESULT_CONTINUE;
+    // Concatenate the payloads of the run, and consume them together.
+    byte[] data = tsPacketBuffer.data;
+    byte[] runData = payloadRunBuffer.data;
+    int runLength = endOfPacket - tsPacketBuffer.getPosition();
+    System.arraycopy(data, tsPacketBuffer.getPosition(), runData, 0, runLength);
+    do {
+      int payloadLength = endOfRun + TS_PACKET_SIZE - continuationPayloadStart;
+      System.arraycopy(data, continuationPayloadStart, runData, runLength, payloadLength);
+      runLength += payloadLength;
+      endOfRun += TS_PACKET_SIZE;
+      continuationPayloadStart =
+          endOfRun + TS_PACKET_SIZE <= limit
+              ? getContinuationPayloadStart(pid, endOfRun)
+              : C.POSITION_UNSET;
+    } while (continuationPayloadStart != C.POSITION_UNSET);
+    payloadRunBuffer.reset(runLength);
+    payloadReader.consume(payloadRunBuffer, packetHeaderFlags);
+    tsPacketBuffer.setPosition(endOfRun);
   }
 
-  // Internals.
+  /**
+   * Returns the position of the payload of the TS packet at {@code position} in the packet buffer
+   * if the packet continues the payload of the preceding packet, or {@link C#POSITION_UNSET} if it
+   * doesn't. The packet must be fully contained in the buffer.
+   *
+   * <p>A packet continues the payload of the preceding packet if it has the same PID, has a payload
+   * whose unit start indicator isn't set, and is neither erroneous, a duplicate nor discontinuous.
+   * If it does, its continuity counter is recorded.
+   *
+   * @param pid The PID of the preceding packet.
+   * @param position The position of the packet in the buffer.
+   * @return The position of the packet's payload, or {@link C#POSITION_UNSET}.
+   */
+  private int getContinuationPayloadStart(int pid, int position) {
+    byte[] data = tsPacketBuffer.data;
+    if (data[position] != TS_SYNC_BYTE) {
+      return C.POSITION_UNSET;
+    }
+    int tsPacketHeader =
+        ((data[position + 1] & 0xFF) << 16)
+            | ((data[position + 2] & 0xFF) << 8)
+            | (data[position + 3] & 0xFF);
+    if ((tsPacketHeader & 0xC00000) != 0 // transport_error_indicator, payload_unit_start_indicator
+        || (tsPacketHeader & 0x10) == 0 // No payload.
+        || ((tsPacketHeader & 0x1FFF00) >> 8) != pid) {
+      return C.POSITION_UNSET;
+    }
+    int payloadStart = position + 4;
+    if ((tsPacketHeader & 0x20) != 0) {
+      // Skip the adaptation field.
+      payloadStart += 1 + (data[payloadStart] & 0xFF);
+      if (payloadStart > position + TS_PACKET_SIZE) {
+        return C.POSITION_UNSET;
+      }
+    }
+    if (mode != MODE_HLS) {
+      int continuityCounter = tsPacketHeader & 0xF;
+      if (continuityCounter != ((continuityCounters.get(pid) + 1) & 0xF)) {
+        return C.POSITION_UNSET;
+      }
+      continuityCounters.put(pid, continuityCounter);
+    }
+    return payloadStart;
+  }
 
   private void maybeOutputSeekMap(long inputLength) {
     if (!hasOutputSeekMap) {
@@ -229,9 +229,28 @@ public interface TsPayloadReader {
   /**
    * Consumes the payload of a TS packet.
    *
+   * <p>If {@link #canConsumePayloadRuns()} returns true, the payload may be followed by the payloads
+   * of consecutive TS packets that continue it. See {@link #canConsumePayloadRuns()}.
+   *
    * @param data The TS packet. The position will be set to the start of the payload.
    * @param flags See {@link Flags}.
    * @throws ParserException If the payload could not be parsed.
    */
   void consume(ParsableByteArray data, @Flags int flags) throws ParserException;
+
+  /**
+   * Returns whether the payloads of consecutive TS packets can be passed to a single call to {@link
+   * #consume(ParsableByteArray, int)}.
+   *
+   * <p>If true, the payload of a TS packet may be followed by the payloads of the TS packets that
+   * directly follow it in the stream, have the same PID, don't have the payload unit start indicator
+   * set, and continue it without a discontinuity. The flags passed are those of the first packet.
+   * Passing such runs of payloads together reduces the per packet overhead of demultiplexing.
+   *
+   * @return Whether the payloads of consecutive TS packets can be passed to a single call to {@link
+   *     #consume(ParsableByteArray, int)}. The default implementation returns false.
+   */
+  default boolean canConsumePayloadRuns() {
+    return false;
+  }
 }
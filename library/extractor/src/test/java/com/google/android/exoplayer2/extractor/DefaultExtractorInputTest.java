@@ -25,9 +25,11 @@ import android.net.Uri;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.upstream.DataSpec;
 import java.io.EOFException;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.Arrays;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -602,6 +604,65 @@ public class DefaultExtractorInputTest {
     }
   }
 
+  @Test
+  public void readInSmallChunksWhilePeekingAhead_returnsData() throws Exception {
+    byte[] data = TestUtil.buildTestData(/* length= */ 300_000);
+    DefaultExtractorInput input = createDefaultExtractorInput(data);
+    byte[] target = new byte[data.length];
+    input.peekFully(new byte[100_000], /* offset= */ 0, /* length= */ 100_000);
+
+    int position = 0;
+    while (position < data.length) {
+      int bytesRead = input.read(target, position, /* length= */ 1_000);
+      position += bytesRead;
+      // Keep peeking ahead of the read position, so that the peeked data needs to be moved.
+      input.resetPeekPosition();
+      input.advancePeekPosition(
+          Math.min(100_000, data.length - position), /* allowEndOfInput= */ true);
+    }
+
+    assertThat(target).isEqualTo(data);
+    assertThat(input.getPosition()).isEqualTo(data.length);
+  }
+
+  @Test
+  public void peekFullyAfterPartialRead_returnsData() throws Exception {
+    byte[] data = TestUtil.buildTestData(/* length= */ 200_000);
+    DefaultExtractorInput input = createDefaultExtractorInput(data);
+    input.peekFully(new byte[60_000], /* offset= */ 0, /* length= */ 60_000);
+    input.skipFully(50_000);
+
+    byte[] target = new byte[100_000];
+    input.peekFully(target, /* offset= */ 0, target.length);
+
+    assertThat(target).isEqualTo(copyOfRange(data, 50_000, 150_000));
+    assertThat(input.getPeekPosition()).isEqualTo(150_000);
+  }
+
+  @Test
+  public void peekAfterHintPeekLength_doesNotAllocate() throws Exception {
+    byte[] data = TestUtil.buildTestData(/* length= */ 500_000);
+    DefaultExtractorInput input = createDefaultExtractorInput(data);
+    byte[] target = new byte[4];
+    input.hintPeekLength(data.length);
+    // Peek the first half before measuring, so that one-off allocations by the test are excluded.
+    for (int i = 0; i < data.length / 2; i += target.length) {
+      input.peekFully(target, /* offset= */ 0, target.length);
+    }
+
+    // Measure the bytes allocated by measuring, so that they can be excluded.
+    long allocatedBytes = getAllocatedBytes();
+    long measurementAllocatedBytes = getAllocatedBytes() - allocatedBytes;
+    allocatedBytes = getAllocatedBytes();
+    for (int i = data.length / 2; i < data.length; i += target.length) {
+      input.peekFully(target, /* offset= */ 0, target.length);
+    }
+    allocatedBytes = getAllocatedBytes() - allocatedBytes - measurementAllocatedBytes;
+
+    assertThat(allocatedBytes).isEqualTo(0);
+    assertThat(target).isEqualTo(copyOfRange(data, data.length - 4, data.length));
+  }
+
   private static FakeDataSource buildDataSource() throws Exception {
     FakeDataSource testDataSource = new FakeDataSource();
     testDataSource.getDataSet().newDefaultData()
@@ -635,4 +696,17 @@ public class DefaultExtractorInputTest {
     return new DefaultExtractorInput(testDataSource, 0, C.LENGTH_UNSET);
   }
 
+  private static DefaultExtractorInput createDefaultExtractorInput(byte[] data) throws Exception {
+    FakeDataSource testDataSource = new FakeDataSource();
+    testDataSource.getDataSet().newDefaultData().appendReadData(data);
+    testDataSource.open(new DataSpec(Uri.parse(TEST_URI)));
+    return new DefaultExtractorInput(testDataSource, 0, C.LENGTH_UNSET);
+  }
+
+  /** Returns the number of bytes allocated by the current thread. */
+  private static long getAllocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
 }
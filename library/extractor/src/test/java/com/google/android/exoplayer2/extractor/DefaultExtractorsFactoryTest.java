@@ -17,6 +17,7 @@ package com.google.android.exoplayer2.extractor;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import android.net.Uri;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.extractor.amr.AmrExtractor;
 import com.google.android.exoplayer2.extractor.flac.FlacExtractor;
@@ -33,7 +34,9 @@ import com.google.android.exoplayer2.extractor.ts.PsExtractor;
 import com.google.android.exoplayer2.extractor.ts.TsExtractor;
 import com.google.android.exoplayer2.extractor.wav.WavExtractor;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -72,4 +75,76 @@ public final class DefaultExtractorsFactoryTest {
     assertThat(listCreatedExtractorClasses).containsNoDuplicates();
     assertThat(listCreatedExtractorClasses).containsExactlyElementsIn(expectedExtractorClassses);
   }
+
+  @Test
+  public void testCreateExtractors_withContentTypeHeader_returnsMatchingExtractorFirst() {
+    DefaultExtractorsFactory defaultExtractorsFactory = new DefaultExtractorsFactory();
+    Map<String, List<String>> responseHeaders =
+        Collections.singletonMap("Content-Type", Collections.singletonList("audio/mpeg"));
+
+    Extractor[] extractors =
+        defaultExtractorsFactory.createExtractors(Uri.parse("test.mp4"), responseHeaders);
+
+    assertThat(extractors).hasLength(14);
+    assertThat(extractors[0]).isInstanceOf(Mp3Extractor.class);
+    assertThat(extractors[1]).isInstanceOf(FragmentedMp4Extractor.class);
+    assertThat(extractors[2]).isInstanceOf(Mp4Extractor.class);
+    assertThat(extractors[3]).isInstanceOf(MatroskaExtractor.class);
+  }
+
+  @Test
+  public void testCreateExtractors_withFileExtension_returnsMatchingExtractorFirst() {
+    DefaultExtractorsFactory defaultExtractorsFactory = new DefaultExtractorsFactory();
+
+    Extractor[] extractors =
+        defaultExtractorsFactory.createExtractors(
+            Uri.parse("https://example.com/media/test.FLAC?id=1"), Collections.emptyMap());
+
+    assertThat(extractors).hasLength(14);
+    assertThat(extractors[0]).isInstanceOf(FlacExtractor.class);
+    assertThat(extractors[1]).isInstanceOf(MatroskaExtractor.class);
+  }
+
+  @Test
+  public void testCreateExtractors_withContentTypeParameters_ignoresParameters() {
+    DefaultExtractorsFactory defaultExtractorsFactory = new DefaultExtractorsFactory();
+    Map<String, List<String>> responseHeaders =
+        Collections.singletonMap(
+            "Content-Type", Collections.singletonList("Video/MP2T; charset=binary"));
+
+    Extractor[] extractors =
+        defaultExtractorsFactory.createExtractors(Uri.parse("stream"), responseHeaders);
+
+    assertThat(extractors[0]).isInstanceOf(TsExtractor.class);
+  }
+
+  @Test
+  public void testCreateExtractors_withLowerCaseContentTypeHeader_returnsMatchingExtractorFirst() {
+    DefaultExtractorsFactory defaultExtractorsFactory = new DefaultExtractorsFactory();
+    Map<String, List<String>> responseHeaders =
+        Collections.singletonMap("content-type", Collections.singletonList("audio/mpeg"));
+
+    Extractor[] extractors =
+        defaultExtractorsFactory.createExtractors(Uri.parse("stream"), responseHeaders);
+
+    assertThat(extractors[0]).isInstanceOf(Mp3Extractor.class);
+  }
+
+  @Test
+  public void testCreateExtractors_afterExtractorSelected_returnsSelectedExtractorFirst() {
+    DefaultExtractorsFactory defaultExtractorsFactory = new DefaultExtractorsFactory();
+    Uri uri = Uri.parse("stream.mp4");
+    Extractor[] extractors = defaultExtractorsFactory.createExtractors(uri, Collections.emptyMap());
+    assertThat(extractors[1]).isInstanceOf(Mp4Extractor.class);
+
+    defaultExtractorsFactory.onExtractorSelected(uri, extractors[1]);
+    extractors = defaultExtractorsFactory.createExtractors(uri, Collections.emptyMap());
+    Extractor[] otherUriExtractors =
+        defaultExtractorsFactory.createExtractors(Uri.parse("other.mp4"), Collections.emptyMap());
+
+    assertThat(extractors).hasLength(14);
+    assertThat(extractors[0]).isInstanceOf(Mp4Extractor.class);
+    assertThat(extractors[1]).isInstanceOf(FragmentedMp4Extractor.class);
+    assertThat(otherUriExtractors[0]).isInstanceOf(FragmentedMp4Extractor.class);
+  }
 }
@@ -15,8 +15,23 @@
  */
 package com.google.android.exoplayer2.extractor.mkv;
 
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.extractor.DummyTrackOutput;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.TrackOutput;
 import com.google.android.exoplayer2.testutil.ExtractorAsserts;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -24,6 +39,12 @@ import org.junit.runner.RunWith;
 @RunWith(AndroidJUnit4.class)
 public final class MatroskaExtractorTest {
 
+  /**
+   * The maximum number of bytes that reading a file after a seek may allocate. This covers
+   * re-reading the header of files without cues, and is independent of the number of samples.
+   */
+  private static final long MAX_ALLOCATED_BYTES = 4096;
+
   @Test
   public void testMkvSample() throws Exception {
     ExtractorAsserts.assertBehavior(MatroskaExtractor::new, "mkv/sample.mkv");
@@ -44,4 +65,111 @@ public final class MatroskaExtractorTest {
   public void testWebmSubsampleEncryptionWithAltrefFrames() throws Exception {
     ExtractorAsserts.assertBehavior(MatroskaExtractor::new, "mkv/subsample_encrypted_altref.webm");
   }
+
+  @Test
+  public void testReadSimpleBlocks_allocationIsBounded() throws Exception {
+    assertReadingAfterSeekAllocationIsBounded("mkv/sample.mkv");
+  }
+
+  @Test
+  public void testReadBlockGroups_allocationIsBounded() throws Exception {
+    assertReadingAfterSeekAllocationIsBounded("mkv/full_blocks.mkv");
+  }
+
+  @Test
+  public void testReadWebmSubsampleEncryption_allocationIsBounded() throws Exception {
+    assertReadingAfterSeekAllocationIsBounded("mkv/subsample_encrypted_noaltref.webm");
+  }
+
+  @Test
+  public void testReadWebmSubsampleEncryptionWithAltrefFrames_allocationIsBounded()
+      throws Exception {
+    assertReadingAfterSeekAllocationIsBounded("mkv/subsample_encrypted_altref.webm");
+  }
+
+  /**
+   * Asserts that reading a file from its first seek point, once the extractor has read the file
+   * once, allocates at most {@link #MAX_ALLOCATED_BYTES}. The samples are discarded, so that only
+   * the extractor's allocations are measured.
+   */
+  private static void assertReadingAfterSeekAllocationIsBounded(String file) throws Exception {
+    assumeTrue(isThreadAllocatedMemorySupported());
+    byte[] data = TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), file);
+    MatroskaExtractor extractor = new MatroskaExtractor();
+    SeekMapExtractorOutput output = new SeekMapExtractorOutput();
+    extractor.init(output);
+    PositionHolder positionHolder = new PositionHolder();
+    readToEnd(extractor, new FakeExtractorInput.Builder().setData(data).build(), positionHolder);
+    long seekPosition = output.seekMap.getSeekPoints(/* timeUs= */ 0).first.position;
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+    input.setPosition((int) seekPosition);
+    extractor.seek(seekPosition, /* timeUs= */ 0);
+
+    // Measure the bytes allocated by measuring, so that they can be excluded.
+    long allocatedBytes = getAllocatedBytes();
+    long measurementAllocatedBytes = getAllocatedBytes() - allocatedBytes;
+    allocatedBytes = getAllocatedBytes();
+    readToEnd(extractor, input, positionHolder);
+    allocatedBytes = getAllocatedBytes() - allocatedBytes - measurementAllocatedBytes;
+
+    assertThat(allocatedBytes).isAtMost(MAX_ALLOCATED_BYTES);
+  }
+
+  private static void readToEnd(
+      Extractor extractor, FakeExtractorInput input, PositionHolder positionHolder)
+      throws Exception {
+    int readResult = Extractor.RESULT_CONTINUE;
+    while (readResult != Extractor.RESULT_END_OF_INPUT) {
+      readResult = extractor.read(input, positionHolder);
+      if (readResult == Extractor.RESULT_SEEK) {
+        input.setPosition((int) positionHolder.position);
+      }
+    }
+  }
+
+  /** Returns whether the JVM can report the number of bytes allocated by a thread. */
+  private static boolean isThreadAllocatedMemorySupported() {
+    try {
+      ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+      return threadMXBean instanceof com.sun.management.ThreadMXBean
+          && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported()
+          && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled();
+    } catch (LinkageError e) {
+      // com.sun.management isn't available on this JVM.
+      return false;
+    }
+  }
+
+  /** Returns the number of bytes allocated by the current thread. */
+  private static long getAllocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /** An {@link ExtractorOutput} that keeps the {@link SeekMap} and discards all samples. */
+  private static final class SeekMapExtractorOutput implements ExtractorOutput {
+
+    private final DummyTrackOutput trackOutput;
+
+    @Nullable public SeekMap seekMap;
+
+    public SeekMapExtractorOutput() {
+      trackOutput = new DummyTrackOutput();
+    }
+
+    @Override
+    public TrackOutput track(int id, int type) {
+      return trackOutput;
+    }
+
+    @Override
+    public void endTracks() {
+      // Do nothing.
+    }
+
+    @Override
+    public void seekMap(SeekMap seekMap) {
+      this.seekMap = seekMap;
+    }
+  }
 }
@@ -23,6 +23,7 @@ import android.net.Uri;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.IndexSeekMap;
 import com.google.android.exoplayer2.extractor.SeekMap;
 import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
 import com.google.android.exoplayer2.testutil.FakeTrackOutput;
@@ -76,6 +77,56 @@ public class IndexSeekerTest {
     assertThat(seekMap.getDurationUs()).isEqualTo(TEST_FILE_NO_SEEK_TABLE_DURATION);
   }
 
+  @Test
+  public void mp3ExtractorReadsToEnd_returnsIndex() throws Exception {
+    extractAllSamplesFromFile(
+        extractor, ApplicationProvider.getApplicationContext(), TEST_FILE_NO_SEEK_TABLE);
+
+    IndexSeekMap index = extractor.getIndex();
+
+    assertThat(index).isNotNull();
+    assertThat(index.getDurationUs()).isEqualTo(TEST_FILE_NO_SEEK_TABLE_DURATION);
+  }
+
+  @Test
+  public void mp3ExtractorWithRestoredIndex_returnsCompleteSeekMap() throws Exception {
+    extractAllSamplesFromFile(
+        extractor, ApplicationProvider.getApplicationContext(), TEST_FILE_NO_SEEK_TABLE);
+    IndexSeekMap index = extractor.getIndex();
+    Mp3Extractor restoredExtractor = new Mp3Extractor(FLAG_ENABLE_INDEX_SEEKING);
+    restoredExtractor.setIndex(index);
+    Uri fileUri = TestUtil.buildAssetUri(TEST_FILE_NO_SEEK_TABLE);
+
+    SeekMap seekMap =
+        TestUtil.extractSeekMap(restoredExtractor, extractorOutput, dataSource, fileUri);
+
+    assertThat(seekMap.getDurationUs()).isEqualTo(TEST_FILE_NO_SEEK_TABLE_DURATION);
+    assertThat(seekMap.getSeekPoints(1_234_000)).isEqualTo(index.getSeekPoints(1_234_000));
+  }
+
+  @Test
+  public void seeking_withRestoredIndex_handlesSeekingForward() throws Exception {
+    extractAllSamplesFromFile(
+        extractor, ApplicationProvider.getApplicationContext(), TEST_FILE_NO_SEEK_TABLE);
+    Mp3Extractor restoredExtractor = new Mp3Extractor(FLAG_ENABLE_INDEX_SEEKING);
+    restoredExtractor.setIndex(extractor.getIndex());
+    String fileName = TEST_FILE_NO_SEEK_TABLE;
+    Uri fileUri = TestUtil.buildAssetUri(fileName);
+    SeekMap seekMap =
+        TestUtil.extractSeekMap(restoredExtractor, extractorOutput, dataSource, fileUri);
+    FakeTrackOutput trackOutput = extractorOutput.trackOutputs.get(0);
+
+    long targetSeekTimeUs = 1_234_000;
+    int extractedFrameIndex =
+        TestUtil.seekToTimeUs(
+            restoredExtractor, seekMap, targetSeekTimeUs, dataSource, trackOutput, fileUri);
+
+    assertThat(extractedFrameIndex).isNotEqualTo(C.INDEX_UNSET);
+    assertFirstFrameAfterSeekIsWithinMinDifference(
+        fileName, trackOutput, targetSeekTimeUs, extractedFrameIndex);
+    assertFirstFrameAfterSeekHasCorrectData(fileName, trackOutput, extractedFrameIndex);
+  }
+
   @Test
   public void seeking_handlesSeekToZero() throws Exception {
     String fileName = TEST_FILE_NO_SEEK_TABLE;
@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.Util;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests for {@link CompactTrackSampleTable}. */
+@RunWith(AndroidJUnit4.class)
+public final class CompactTrackSampleTableTest {
+
+  private static final int SAMPLE_COUNT = 1000;
+  private static final long TIMESCALE = 30000;
+  private static final Track TRACK =
+      new Track(
+          /* id= */ 1,
+          C.TRACK_TYPE_VIDEO,
+          TIMESCALE,
+          /* movieTimescale= */ 1000,
+          /* durationUs= */ C.TIME_UNSET,
+          Format.createSampleFormat(/* id= */ null, MimeTypes.VIDEO_H264),
+          Track.TRANSFORMATION_NONE,
+          /* sampleDescriptionEncryptionBoxes= */ null,
+          /* nalUnitLengthFieldLength= */ 4,
+          /* editListDurations= */ null,
+          /* editListMediaTimes= */ null);
+
+  @Test
+  public void testVariableSampleSizes_matchesExpandedSampleTable() {
+    assertMatchesExpandedSampleTable(
+        new Samples(/* fixedSampleSize= */ 0, /* firstChunkOffset= */ 48, /* seed= */ 0));
+  }
+
+  @Test
+  public void testConstantCompositionOffset_matchesExpandedSampleTable() {
+    assertMatchesExpandedSampleTable(
+        new Samples(
+            /* fixedSampleSize= */ 0,
+            /* firstChunkOffset= */ 48,
+            /* distinctCompositionOffsetCount= */ 1,
+            /* compositionOffsetRunLength= */ 1,
+            /* seed= */ 5));
+  }
+
+  @Test
+  public void testLongCompositionOffsetRuns_matchesExpandedSampleTable() {
+    assertMatchesExpandedSampleTable(
+        new Samples(
+            /* fixedSampleSize= */ 0,
+            /* firstChunkOffset= */ 48,
+            /* distinctCompositionOffsetCount= */ 3,
+            /* compositionOffsetRunLength= */ 100,
+            /* seed= */ 6));
+  }
+
+  @Test
+  public void testManyDistinctCompositionOffsets_matchesExpandedSampleTable() {
+    assertMatchesExpandedSampleTable(
+        new Samples(
+            /* fixedSampleSize= */ 0,
+            /* firstChunkOffset= */ 48,
+            /* distinctCompositionOffsetCount= */ 500,
+            /* compositionOffsetRunLength= */ 1,
+            /* seed= */ 7));
+  }
+
+  @Test
+  public void testFixedSampleSize_matchesExpandedSampleTable() {
+    assertMatchesExpandedSampleTable(
+        new Samples(/* fixedSampleSize= */ 1024, /* firstChunkOffset= */ 48, /* seed= */ 1));
+  }
+
+  @Test
+  public void testUnsignedChunkOffsets_matchesExpandedSampleTable() {
+    // Chunk offsets of stco atoms don't fit in a signed 32 bit integer from 2GB.
+    assertMatchesExpandedSampleTable(
+        new Samples(/* fixedSampleSize= */ 0, /* firstChunkOffset= */ 0x7FFF0000L, /* seed= */ 2));
+  }
+
+  @Test
+  public void testLongChunkOffsets_matchesExpandedSampleTable() {
+    assertMatchesExpandedSampleTable(
+        new Samples(/* fixedSampleSize= */ 0, /* firstChunkOffset= */ 0x1FFFF0000L, /* seed= */ 3));
+  }
+
+  @Test
+  public void testCopyWithSampleRange_matchesExpandedSampleTable() {
+    Samples samples =
+        new Samples(/* fixedSampleSize= */ 0, /* firstChunkOffset= */ 48, /* seed= */ 4);
+    int firstSampleIndex = 100;
+    int sampleCount = 500;
+    long timestampOffset = samples.timestamps[firstSampleIndex];
+    CompactTrackSampleTable sampleTable =
+        samples
+            .buildCompactSampleTable()
+            .copyWithSampleRange(
+                firstSampleIndex,
+                sampleCount,
+                samples.maximumSize,
+                timestampOffset,
+                /* durationUs= */ C.TIME_UNSET);
+
+    long[] timestampsUs = new long[sampleCount];
+    for (int i = 0; i < sampleCount; i++) {
+      timestampsUs[i] =
+          Util.scaleLargeTimestamp(
+              samples.timestamps[firstSampleIndex + i] - timestampOffset,
+              C.MICROS_PER_SECOND,
+              TIMESCALE);
+    }
+    int lastSampleIndex = firstSampleIndex + sampleCount;
+    ExpandedTrackSampleTable expectedSampleTable =
+        new ExpandedTrackSampleTable(
+            TRACK,
+            Arrays.copyOfRange(samples.offsets, firstSampleIndex, lastSampleIndex),
+            Arrays.copyOfRange(samples.sizes, firstSampleIndex, lastSampleIndex),
+            samples.maximumSize,
+            timestampsUs,
+            Arrays.copyOfRange(samples.flags, firstSampleIndex, lastSampleIndex),
+            /* durationUs= */ C.TIME_UNSET);
+    assertSampleTablesEqual(sampleTable, expectedSampleTable);
+  }
+
+  private static void assertMatchesExpandedSampleTable(Samples samples) {
+    assertSampleTablesEqual(
+        samples.buildCompactSampleTable(), samples.buildExpandedSampleTable());
+  }
+
+  private static void assertSampleTablesEqual(
+      TrackSampleTable sampleTable, TrackSampleTable expectedSampleTable) {
+    assertThat(sampleTable.sampleCount).isEqualTo(expectedSampleTable.sampleCount);
+    // Sequential lookups.
+    for (int i = 0; i < sampleTable.sampleCount; i++) {
+      assertSampleEquals(sampleTable, expectedSampleTable, i);
+    }
+    // Random lookups.
+    Random random = new Random(/* seed= */ 0);
+    for (int i = 0; i < sampleTable.sampleCount; i++) {
+      assertSampleEquals(
+          sampleTable, expectedSampleTable, random.nextInt(sampleTable.sampleCount));
+    }
+    long lastTimestampUs = expectedSampleTable.getTimestampUs(expectedSampleTable.sampleCount - 1);
+    for (long timeUs = -100_000; timeUs < lastTimestampUs + 100_000; timeUs += 3_333) {
+      assertThat(sampleTable.getIndexOfEarlierOrEqualSynchronizationSample(timeUs))
+          .isEqualTo(expectedSampleTable.getIndexOfEarlierOrEqualSynchronizationSample(timeUs));
+      assertThat(sampleTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs))
+          .isEqualTo(expectedSampleTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs));
+    }
+  }
+
+  private static void assertSampleEquals(
+      TrackSampleTable sampleTable, TrackSampleTable expectedSampleTable, int sampleIndex) {
+    assertThat(sampleTable.getOffset(sampleIndex))
+        .isEqualTo(expectedSampleTable.getOffset(sampleIndex));
+    assertThat(sampleTable.getSize(sampleIndex))
+        .isEqualTo(expectedSampleTable.getSize(sampleIndex));
+    assertThat(sampleTable.getTimestampUs(sampleIndex))
+        .isEqualTo(expectedSampleTable.getTimestampUs(sampleIndex));
+    assertThat(sampleTable.getFlags(sampleIndex))
+        .isEqualTo(expectedSampleTable.getFlags(sampleIndex));
+  }
+
+  /**
+   * Randomly generated samples of a video track with reordered frames, in chunks with varying
+   * numbers of samples.
+   */
+  private static final class Samples {
+
+    private final long[] chunkOffsets;
+    private final int[] chunkSampleCounts;
+    private final int chunkCount;
+    private final long[] offsets;
+    private final int[] sizes;
+    private final long[] decodingTimestamps;
+    private final int[] compositionOffsets;
+    private final long[] timestamps;
+    private final int[] flags;
+    private final int maximumSize;
+
+    public Samples(int fixedSampleSize, long firstChunkOffset, long seed) {
+      this(
+          fixedSampleSize,
+          firstChunkOffset,
+          /* distinctCompositionOffsetCount= */ 3,
+          /* compositionOffsetRunLength= */ 1,
+          seed);
+    }
+
+    public Samples(
+        int fixedSampleSize,
+        long firstChunkOffset,
+        int distinctCompositionOffsetCount,
+        int compositionOffsetRunLength,
+        long seed) {
+      Random random = new Random(seed);
+      chunkOffsets = new long[SAMPLE_COUNT];
+      chunkSampleCounts = new int[SAMPLE_COUNT];
+      offsets = new long[SAMPLE_COUNT];
+      sizes = new int[SAMPLE_COUNT];
+      decodingTimestamps = new long[SAMPLE_COUNT];
+      compositionOffsets = new int[SAMPLE_COUNT];
+      timestamps = new long[SAMPLE_COUNT];
+      flags = new int[SAMPLE_COUNT];
+
+      int chunkCount = 0;
+      int maximumSize = 0;
+      long chunkOffset = firstChunkOffset;
+      int samplesPerChunk = 1;
+      int remainingSamplesInChunk = 0;
+      long offset = 0;
+      long decodingTimestamp = 0;
+      for (int i = 0; i < SAMPLE_COUNT; i++) {
+        if (remainingSamplesInChunk == 0) {
+          if (random.nextInt(4) == 0) {
+            samplesPerChunk = 1 + random.nextInt(5);
+          }
+          chunkOffset += random.nextInt(10_000);
+          chunkOffsets[chunkCount] = chunkOffset;
+          chunkSampleCounts[chunkCount] = samplesPerChunk;
+          chunkCount++;
+          remainingSamplesInChunk = samplesPerChunk;
+          offset = chunkOffset;
+        }
+        int size = fixedSampleSize != 0 ? fixedSampleSize : 1 + random.nextInt(5_000);
+        offsets[i] = offset;
+        sizes[i] = size;
+        maximumSize = Math.max(maximumSize, size);
+        decodingTimestamps[i] = decodingTimestamp;
+        // Cycle through the composition offsets, with an occasional frame of a different duration.
+        compositionOffsets[i] =
+            ((i / compositionOffsetRunLength) % distinctCompositionOffsetCount) * 1001;
+        timestamps[i] = decodingTimestamp + compositionOffsets[i];
+        flags[i] = i % 30 == 0 || random.nextInt(20) == 0 ? C.BUFFER_FLAG_KEY_FRAME : 0;
+        decodingTimestamp += random.nextInt(10) == 0 ? 1000 : 1001;
+        offset += size;
+        chunkOffset = offset;
+        remainingSamplesInChunk--;
+      }
+      this.chunkCount = chunkCount;
+      this.maximumSize = maximumSize;
+    }
+
+    public CompactTrackSampleTable buildCompactSampleTable() {
+      CompactTrackSampleTable.Builder builder =
+          new CompactTrackSampleTable.Builder(
+              SAMPLE_COUNT,
+              chunkCount,
+              /* chunkOffsetsAreLongs= */ chunkOffsets[chunkCount - 1] > 0xFFFFFFFFL,
+              /* allSamplesAreSyncSamples= */ false);
+      int sampleIndex = 0;
+      for (int i = 0; i < chunkCount; i++) {
+        builder.addChunk(chunkOffsets[i], chunkSampleCounts[i]);
+        for (int j = 0; j < chunkSampleCounts[i] && sampleIndex < SAMPLE_COUNT; j++) {
+          builder.addSample(
+              sizes[sampleIndex],
+              decodingTimestamps[sampleIndex],
+              compositionOffsets[sampleIndex],
+              (flags[sampleIndex] & C.BUFFER_FLAG_KEY_FRAME) != 0);
+          sampleIndex++;
+        }
+      }
+      assertThat(builder.getSampleCount()).isEqualTo(SAMPLE_COUNT);
+      return builder.build(TRACK, maximumSize, /* durationUs= */ C.TIME_UNSET);
+    }
+
+    public ExpandedTrackSampleTable buildExpandedSampleTable() {
+      long[] timestampsUs = timestamps.clone();
+      Util.scaleLargeTimestampsInPlace(timestampsUs, C.MICROS_PER_SECOND, TIMESCALE);
+      return new ExpandedTrackSampleTable(
+          TRACK,
+          offsets,
+          sizes,
+          maximumSize,
+          timestampsUs,
+          flags.clone(),
+          /* durationUs= */ C.TIME_UNSET);
+    }
+  }
+}
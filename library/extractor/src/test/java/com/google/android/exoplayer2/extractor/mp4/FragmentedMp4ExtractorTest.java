@@ -15,10 +15,17 @@
  */
 package com.google.android.exoplayer2.extractor.mp4;
 
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.SeekPoint;
 import com.google.android.exoplayer2.testutil.ExtractorAsserts;
 import com.google.android.exoplayer2.testutil.ExtractorAsserts.ExtractorFactory;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.FakeTrackOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.common.collect.ImmutableList;
 import java.util.Collections;
@@ -74,6 +81,43 @@ public final class FragmentedMp4ExtractorTest {
         getExtractorFactory(ImmutableList.of()), "mp4/sample_eac3_fragmented.mp4");
   }
 
+  @Test
+  public void testSampleWithFragmentRandomAccess_outputsSeekMapFromMfra() throws Exception {
+    FakeExtractorOutput output =
+        TestUtil.extractAllSamplesFromFile(
+            new FragmentedMp4Extractor(FragmentedMp4Extractor.FLAG_ENABLE_FRAGMENT_RANDOM_ACCESS),
+            ApplicationProvider.getApplicationContext(),
+            "mp4/sample_fragmented.mp4");
+
+    assertThat(output.seekMap.isSeekable()).isTrue();
+    // The mfra box has a single entry, for the first moof.
+    assertThat(output.seekMap.getSeekPoints(/* timeUs= */ 500_000).first)
+        .isEqualTo(new SeekPoint(/* timeUs= */ 0, /* position= */ 1244));
+  }
+
+  @Test
+  public void testSampleWithFragmentRandomAccess_outputsSameSamples() throws Exception {
+    FakeExtractorOutput output =
+        TestUtil.extractAllSamplesFromFile(
+            new FragmentedMp4Extractor(FragmentedMp4Extractor.FLAG_ENABLE_FRAGMENT_RANDOM_ACCESS),
+            ApplicationProvider.getApplicationContext(),
+            "mp4/sample_fragmented.mp4");
+    FakeExtractorOutput expectedOutput =
+        TestUtil.extractAllSamplesFromFile(
+            new FragmentedMp4Extractor(),
+            ApplicationProvider.getApplicationContext(),
+            "mp4/sample_fragmented.mp4");
+
+    assertThat(output.numberOfTracks).isEqualTo(expectedOutput.numberOfTracks);
+    for (int i = 0; i < expectedOutput.trackOutputs.size(); i++) {
+      FakeTrackOutput trackOutput = output.trackOutputs.get(expectedOutput.trackOutputs.keyAt(i));
+      FakeTrackOutput expectedTrackOutput = expectedOutput.trackOutputs.valueAt(i);
+      assertThat(trackOutput.getSampleTimesUs())
+          .containsExactlyElementsIn(expectedTrackOutput.getSampleTimesUs())
+          .inOrder();
+    }
+  }
+
   private static ExtractorFactory getExtractorFactory(final List<Format> closedCaptionFormats) {
     return () ->
         new FragmentedMp4Extractor(
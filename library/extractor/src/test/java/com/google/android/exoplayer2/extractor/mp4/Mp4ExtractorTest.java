@@ -15,8 +15,28 @@
  */
 package com.google.android.exoplayer2.extractor.mp4;
 
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.DummyTrackOutput;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.SampleDataReader;
+import com.google.android.exoplayer2.extractor.SeekPoint;
+import com.google.android.exoplayer2.extractor.TrackOutput;
 import com.google.android.exoplayer2.testutil.ExtractorAsserts;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.FakeTrackOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import java.io.IOException;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -52,4 +72,174 @@ public final class Mp4ExtractorTest {
   public void testMp4SampleWithEac3Track() throws Exception {
     ExtractorAsserts.assertBehavior(Mp4Extractor::new, "mp4/sample_eac3.mp4");
   }
+
+  @Test
+  public void testMp4SampleWithCompactSampleTables() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        () -> new Mp4Extractor(Mp4Extractor.FLAG_COMPACT_SAMPLE_TABLES), "mp4/sample.mp4");
+  }
+
+  @Test
+  public void testMp4SampleWithSlowMotionMetadataWithCompactSampleTables() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        () -> new Mp4Extractor(Mp4Extractor.FLAG_COMPACT_SAMPLE_TABLES),
+        "mp4/sample_android_slow_motion.mp4");
+  }
+
+  @Test
+  public void testMp4SampleWithMdatTooLongWithCompactSampleTables() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        () -> new Mp4Extractor(Mp4Extractor.FLAG_COMPACT_SAMPLE_TABLES),
+        "mp4/sample_mdat_too_long.mp4");
+  }
+
+  @Test
+  public void testMp4SampleWithAc4TrackWithCompactSampleTables() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        () -> new Mp4Extractor(Mp4Extractor.FLAG_COMPACT_SAMPLE_TABLES), "mp4/sample_ac4.mp4");
+  }
+
+  @Test
+  public void testMp4SampleWithEac3TrackWithCompactSampleTables() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        () -> new Mp4Extractor(Mp4Extractor.FLAG_COMPACT_SAMPLE_TABLES), "mp4/sample_eac3.mp4");
+  }
+
+  @Test
+  public void testSkipDiscardedTracks_readsVideoTrackOnly() throws Exception {
+    FakeExtractorOutput expectedOutput =
+        TestUtil.extractAllSamplesFromFile(
+            new Mp4Extractor(), ApplicationProvider.getApplicationContext(), "mp4/sample.mp4");
+    byte[] data =
+        TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), "mp4/sample.mp4");
+    Mp4Extractor extractor = new Mp4Extractor(Mp4Extractor.FLAG_SKIP_DISCARDED_TRACKS);
+    VideoOnlyExtractorOutput output = new VideoOnlyExtractorOutput();
+    extractor.init(output);
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+    PositionHolder positionHolder = new PositionHolder();
+    int readResult = Extractor.RESULT_CONTINUE;
+    while (readResult != Extractor.RESULT_END_OF_INPUT) {
+      readResult = extractor.read(input, positionHolder);
+      if (readResult == Extractor.RESULT_SEEK) {
+        input.setPosition((int) positionHolder.position);
+      }
+    }
+
+    assertThat(output.fakeExtractorOutput.numberOfTracks).isEqualTo(1);
+    assertThat(output.fakeExtractorOutput.seekMap.getDurationUs())
+        .isEqualTo(expectedOutput.seekMap.getDurationUs());
+    FakeTrackOutput trackOutput = output.fakeExtractorOutput.trackOutputs.get(output.videoTrackId);
+    FakeTrackOutput expectedTrackOutput = expectedOutput.trackOutputs.get(output.videoTrackId);
+    assertThat(trackOutput.lastFormat).isEqualTo(expectedTrackOutput.lastFormat);
+    assertThat(trackOutput.getSampleTimesUs())
+        .containsExactlyElementsIn(expectedTrackOutput.getSampleTimesUs())
+        .inOrder();
+    for (int i = 0; i < expectedTrackOutput.getSampleCount(); i++) {
+      assertThat(trackOutput.getSampleData(i)).isEqualTo(expectedTrackOutput.getSampleData(i));
+      assertThat(trackOutput.getSampleFlags(i)).isEqualTo(expectedTrackOutput.getSampleFlags(i));
+    }
+  }
+
+  @Test
+  public void testSkipDiscardedTracks_seekBeforeSampleTableIsParsed_seeksToSamplePosition()
+      throws Exception {
+    byte[] data =
+        TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), "mp4/sample.mp4");
+    // Edit lists are ignored so that the sample table of the video track is parsed lazily.
+    Mp4Extractor extractor =
+        new Mp4Extractor(
+            Mp4Extractor.FLAG_SKIP_DISCARDED_TRACKS
+                | Mp4Extractor.FLAG_WORKAROUND_IGNORE_EDIT_LISTS);
+    VideoOnlyExtractorOutput output = new VideoOnlyExtractorOutput();
+    output.discardingVideoSamples = true;
+    extractor.init(output);
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+    PositionHolder positionHolder = new PositionHolder();
+    int readResult = Extractor.RESULT_CONTINUE;
+    while (readResult != Extractor.RESULT_END_OF_INPUT) {
+      readResult = extractor.read(input, positionHolder);
+      if (readResult == Extractor.RESULT_SEEK) {
+        input.setPosition((int) positionHolder.position);
+      }
+    }
+    SeekMap seekMap = output.fakeExtractorOutput.seekMap;
+
+    // The sample table of the video track isn't parsed when the seek point is requested, so its
+    // position is only determined by the next read after the seek.
+    output.discardingVideoSamples = false;
+    SeekPoint seekPoint = seekMap.getSeekPoints(/* timeUs= */ 1_000_000).first;
+    extractor.seek(seekPoint.position, seekPoint.timeUs);
+    input.setPosition((int) seekPoint.position);
+    readResult = extractor.read(input, positionHolder);
+
+    assertThat(seekPoint).isEqualTo(new SeekPoint(/* timeUs= */ 1_000_000, /* position= */ 0));
+    assertThat(readResult).isEqualTo(Extractor.RESULT_SEEK);
+    assertThat(positionHolder.position).isGreaterThan(0);
+    assertThat(positionHolder.position)
+        .isEqualTo(seekMap.getSeekPoints(/* timeUs= */ 1_000_000).first.position);
+  }
+
+  /** An {@link ExtractorOutput} that discards the samples of all but the video track. */
+  private static final class VideoOnlyExtractorOutput implements ExtractorOutput {
+
+    public final FakeExtractorOutput fakeExtractorOutput;
+    public int videoTrackId;
+    public boolean discardingVideoSamples;
+
+    public VideoOnlyExtractorOutput() {
+      fakeExtractorOutput = new FakeExtractorOutput();
+      videoTrackId = C.INDEX_UNSET;
+    }
+
+    @Override
+    public TrackOutput track(int id, int type) {
+      if (type != C.TRACK_TYPE_VIDEO) {
+        return new DummyTrackOutput();
+      }
+      videoTrackId = id;
+      TrackOutput trackOutput = fakeExtractorOutput.track(id, type);
+      return new TrackOutput() {
+        @Override
+        public void format(Format format) {
+          trackOutput.format(format);
+        }
+
+        @Override
+        public int sampleData(SampleDataReader input, int length, boolean allowEndOfInput)
+            throws IOException, InterruptedException {
+          return trackOutput.sampleData(input, length, allowEndOfInput);
+        }
+
+        @Override
+        public void sampleData(ParsableByteArray data, int length) {
+          trackOutput.sampleData(data, length);
+        }
+
+        @Override
+        public void sampleMetadata(
+            long timeUs,
+            @C.BufferFlags int flags,
+            int size,
+            int offset,
+            @Nullable TrackOutput.CryptoData encryptionData) {
+          trackOutput.sampleMetadata(timeUs, flags, size, offset, encryptionData);
+        }
+
+        @Override
+        public boolean isDiscardingSamples() {
+          return discardingVideoSamples;
+        }
+      };
+    }
+
+    @Override
+    public void endTracks() {
+      fakeExtractorOutput.endTracks();
+    }
+
+    @Override
+    public void seekMap(SeekMap seekMap) {
+      fakeExtractorOutput.seekMap(seekMap);
+    }
+  }
 }
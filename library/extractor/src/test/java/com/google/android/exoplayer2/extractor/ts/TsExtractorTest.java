@@ -111,6 +111,33 @@ public final class TsExtractorTest {
     assertThat(factory.sdtReader.consumedSdts).isEqualTo(2);
   }
 
+  @Test
+  public void testPayloadReaderWithoutPayloadRunsConsumesSinglePackets() throws Exception {
+    SinglePacketPayloadReaderFactory factory = new SinglePacketPayloadReaderFactory();
+    TsExtractor tsExtractor =
+        new TsExtractor(TsExtractor.MODE_SINGLE_PMT, new TimestampAdjuster(0), factory);
+    FakeExtractorInput input =
+        new FakeExtractorInput.Builder()
+            .setData(
+                TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), "ts/sample.ts"))
+            .setSimulateIOErrors(false)
+            .setSimulateUnknownLength(false)
+            .setSimulatePartialReads(false)
+            .build();
+    tsExtractor.init(new FakeExtractorOutput());
+    PositionHolder seekPositionHolder = new PositionHolder();
+    int readResult = Extractor.RESULT_CONTINUE;
+    while (readResult != Extractor.RESULT_END_OF_INPUT) {
+      readResult = tsExtractor.read(input, seekPositionHolder);
+      if (readResult == Extractor.RESULT_SEEK) {
+        input.setPosition((int) seekPositionHolder.position);
+      }
+    }
+    SinglePacketPayloadReader reader = factory.payloadReader;
+    assertThat(reader.consumeCount).isGreaterThan(1);
+    assertThat(reader.maxPayloadSize).isAtMost(TsExtractor.TS_PACKET_SIZE - 4);
+  }
+
   private static final class CustomTsPayloadReaderFactory implements TsPayloadReader.Factory {
 
     private final boolean provideSdtReader;
@@ -188,6 +215,57 @@ public final class TsExtractorTest {
     }
   }
 
+  private static final class SinglePacketPayloadReaderFactory implements TsPayloadReader.Factory {
+
+    private final TsPayloadReader.Factory defaultFactory;
+    private SinglePacketPayloadReader payloadReader;
+
+    public SinglePacketPayloadReaderFactory() {
+      defaultFactory = new DefaultTsPayloadReaderFactory();
+    }
+
+    @Override
+    public SparseArray<TsPayloadReader> createInitialPayloadReaders() {
+      return defaultFactory.createInitialPayloadReaders();
+    }
+
+    @Nullable
+    @Override
+    public TsPayloadReader createPayloadReader(int streamType, EsInfo esInfo) {
+      if (streamType == 3) {
+        payloadReader = new SinglePacketPayloadReader();
+        return payloadReader;
+      } else {
+        return defaultFactory.createPayloadReader(streamType, esInfo);
+      }
+    }
+  }
+
+  /** A payload reader that doesn't opt into consuming payload runs. */
+  private static final class SinglePacketPayloadReader implements TsPayloadReader {
+
+    private int consumeCount;
+    private int maxPayloadSize;
+
+    @Override
+    public void init(
+        TimestampAdjuster timestampAdjuster,
+        ExtractorOutput extractorOutput,
+        TrackIdGenerator idGenerator) {
+      // Do nothing.
+    }
+
+    @Override
+    public void seek() {}
+
+    @Override
+    public void consume(ParsableByteArray data, @Flags int flags) {
+      consumeCount++;
+      maxPayloadSize = Math.max(maxPayloadSize, data.bytesLeft());
+      data.skipBytes(data.bytesLeft());
+    }
+  }
+
   private static final class SdtSectionReader implements SectionPayloadReader {
 
     private int consumedSdts;
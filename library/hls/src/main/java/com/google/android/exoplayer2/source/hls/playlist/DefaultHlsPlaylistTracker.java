@@ -25,10 +25,12 @@ import com.google.android.exoplayer2.source.MediaSourceEventListener.EventDispat
 import com.google.android.exoplayer2.source.hls.HlsDataSourceFactory;
 import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist.Variant;
 import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist.Segment;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser.DeltaUpdateException;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy;
 import com.google.android.exoplayer2.upstream.Loader;
 import com.google.android.exoplayer2.upstream.Loader.LoadErrorAction;
+import com.google.android.exoplayer2.upstream.ParsedResponseCache;
 import com.google.android.exoplayer2.upstream.ParsingLoadable;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
@@ -57,7 +59,6 @@ public final class DefaultHlsPlaylistTracker
   private final List<PlaylistEventListener> listeners;
   private final double playlistStuckTargetDurationCoefficient;
 
-  @Nullable private ParsingLoadable.Parser<HlsPlaylist> mediaPlaylistParser;
   @Nullable private EventDispatcher eventDispatcher;
   @Nullable private Loader initialPlaylistLoader;
   @Nullable private Handler playlistRefreshHandler;
@@ -231,7 +232,6 @@ public final class DefaultHlsPlaylistTracker
       masterPlaylist = (HlsMasterPlaylist) result;
     }
     this.masterPlaylist = masterPlaylist;
-    mediaPlaylistParser = playlistParserFactory.createPlaylistParser(masterPlaylist);
     primaryMediaPlaylistUrl = masterPlaylist.variants.get(0).url;
     createBundles(masterPlaylist.mediaPlaylistUrls);
     MediaPlaylistBundle primaryBundle = playlistBundles.get(primaryMediaPlaylistUrl);
@@ -448,7 +448,8 @@ public final class DefaultHlsPlaylistTracker
 
     private final Uri playlistUrl;
     private final Loader mediaPlaylistLoader;
-    private final ParsingLoadable<HlsPlaylist> mediaPlaylistLoadable;
+    private final DataSource mediaPlaylistDataSource;
+    private final ParsedResponseCache<HlsPlaylist> mediaPlaylistCache;
 
     @Nullable private HlsMediaPlaylist playlistSnapshot;
     private long lastSnapshotLoadMs;
@@ -456,17 +457,14 @@ public final class DefaultHlsPlaylistTracker
     private long earliestNextLoadTimeMs;
     private long blacklistUntilMs;
     private boolean loadPending;
+    private boolean deltaUpdateFailed;
     private IOException playlistError;
 
     public MediaPlaylistBundle(Uri playlistUrl) {
       this.playlistUrl = playlistUrl;
       mediaPlaylistLoader = new Loader("DefaultHlsPlaylistTracker:MediaPlaylist");
-      mediaPlaylistLoadable =
-          new ParsingLoadable<>(
-              dataSourceFactory.createDataSource(C.DATA_TYPE_MANIFEST),
-              playlistUrl,
-              C.DATA_TYPE_MANIFEST,
-              mediaPlaylistParser);
+      mediaPlaylistDataSource = dataSourceFactory.createDataSource(C.DATA_TYPE_MANIFEST);
+      mediaPlaylistCache = new ParsedResponseCache<>();
     }
 
     @Nullable
@@ -556,6 +554,21 @@ public final class DefaultHlsPlaylistTracker
         long loadDurationMs,
         IOException error,
         int errorCount) {
+      if (error instanceof DeltaUpdateException) {
+        // The delta update skipped segments that the snapshot doesn't have. The load itself
+        // succeeded, so it's reported as completed before requesting the whole playlist instead.
+        eventDispatcher.loadCompleted(
+            loadable.dataSpec,
+            loadable.getUri(),
+            loadable.getResponseHeaders(),
+            C.DATA_TYPE_MANIFEST,
+            elapsedRealtimeMs,
+            loadDurationMs,
+            loadable.bytesLoaded());
+        deltaUpdateFailed = true;
+        loadPlaylistImmediately();
+        return Loader.DONT_RETRY;
+      }
       LoadErrorAction loadErrorAction;
 
       long blacklistDurationMs =
@@ -606,6 +619,15 @@ public final class DefaultHlsPlaylistTracker
     // Internal methods.
 
     private void loadPlaylistImmediately() {
+      ParsingLoadable.Parser<HlsPlaylist> mediaPlaylistParser =
+          playlistParserFactory.createPlaylistParser(masterPlaylist, playlistSnapshot);
+      ParsingLoadable<HlsPlaylist> mediaPlaylistLoadable =
+          new ParsingLoadable<>(
+              mediaPlaylistDataSource,
+              getMediaPlaylistUriForReload(),
+              C.DATA_TYPE_MANIFEST,
+              mediaPlaylistParser,
+              mediaPlaylistCache);
       long elapsedRealtime =
           mediaPlaylistLoader.startLoading(
               mediaPlaylistLoadable,
@@ -617,10 +639,32 @@ public final class DefaultHlsPlaylistTracker
           elapsedRealtime);
     }
 
+    /**
+     * Returns the URI from which to reload the playlist, which requests a delta update if the
+     * server supports them and the snapshot is recent enough for the update to apply to it. See
+     * RFC 8216bis, Section 6.2.5.1.
+     */
+    private Uri getMediaPlaylistUriForReload() {
+      if (playlistSnapshot == null
+          || playlistSnapshot.skipUntilUs == C.TIME_UNSET
+          || deltaUpdateFailed) {
+        return playlistUrl;
+      }
+      long snapshotAgeMs = SystemClock.elapsedRealtime() - lastSnapshotLoadMs;
+      if (snapshotAgeMs >= C.usToMs(playlistSnapshot.skipUntilUs) / 2) {
+        return playlistUrl;
+      }
+      return playlistUrl
+          .buildUpon()
+          .appendQueryParameter(HlsPlaylistParser.QUERY_PARAMETER_SKIP, "YES")
+          .build();
+    }
+
     private void processLoadedPlaylist(HlsMediaPlaylist loadedPlaylist, long loadDurationMs) {
       HlsMediaPlaylist oldPlaylist = playlistSnapshot;
       long currentTimeMs = SystemClock.elapsedRealtime();
       lastSnapshotLoadMs = currentTimeMs;
+      deltaUpdateFailed = false;
       playlistSnapshot = getLatestPlaylistSnapshot(oldPlaylist, loadedPlaylist);
       if (playlistSnapshot != oldPlaylist) {
         playlistError = null;
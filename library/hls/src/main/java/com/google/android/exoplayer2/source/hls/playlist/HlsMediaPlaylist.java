@@ -152,6 +152,30 @@ public final class HlsMediaPlaylist extends HlsPlaylist {
       this.hasGapTag = hasGapTag;
     }
 
+    /**
+     * Returns a segment identical to this one except for the start time and the discontinuity
+     * sequence, which are relative to the start of a different playlist.
+     *
+     * @param relativeStartTimeUs See {@link #relativeStartTimeUs}.
+     * @param relativeDiscontinuitySequence See {@link #relativeDiscontinuitySequence}.
+     * @return The copied segment.
+     */
+    public Segment copyWith(long relativeStartTimeUs, int relativeDiscontinuitySequence) {
+      return new Segment(
+          url,
+          initializationSegment,
+          title,
+          durationUs,
+          relativeDiscontinuitySequence,
+          relativeStartTimeUs,
+          drmInitData,
+          fullSegmentEncryptionKeyUri,
+          encryptionIV,
+          byterangeOffset,
+          byterangeLength,
+          hasGapTag);
+    }
+
     @Override
     public int compareTo(Long relativeStartTimeUs) {
       return this.relativeStartTimeUs > relativeStartTimeUs
@@ -230,6 +254,13 @@ public final class HlsMediaPlaylist extends HlsPlaylist {
    * The total duration of the playlist in microseconds.
    */
   public final long durationUs;
+  /**
+   * The skip boundary in microseconds, as defined by the CAN-SKIP-UNTIL attribute of
+   * #EXT-X-SERVER-CONTROL, or {@link C#TIME_UNSET} if the server doesn't support playlist delta
+   * updates. Segments further than the skip boundary from the end of the playlist may be replaced
+   * by #EXT-X-SKIP in delta updates.
+   */
+  public final long skipUntilUs;
 
   /**
    * @param playlistType See {@link #playlistType}.
@@ -247,6 +278,7 @@ public final class HlsMediaPlaylist extends HlsPlaylist {
    * @param protectionSchemes See {@link #protectionSchemes}.
    * @param hasProgramDateTime See {@link #hasProgramDateTime}.
    * @param segments See {@link #segments}.
+   * @param skipUntilUs See {@link #skipUntilUs}.
    */
   public HlsMediaPlaylist(
       @PlaylistType int playlistType,
@@ -263,7 +295,8 @@ public final class HlsMediaPlaylist extends HlsPlaylist {
       boolean hasEndTag,
       boolean hasProgramDateTime,
       @Nullable DrmInitData protectionSchemes,
-      List<Segment> segments) {
+      List<Segment> segments,
+      long skipUntilUs) {
     super(baseUri, tags, hasIndependentSegments);
     this.playlistType = playlistType;
     this.startTimeUs = startTimeUs;
@@ -276,6 +309,7 @@ public final class HlsMediaPlaylist extends HlsPlaylist {
     this.hasProgramDateTime = hasProgramDateTime;
     this.protectionSchemes = protectionSchemes;
     this.segments = Collections.unmodifiableList(segments);
+    this.skipUntilUs = skipUntilUs;
     if (!segments.isEmpty()) {
       Segment last = segments.get(segments.size() - 1);
       durationUs = last.relativeStartTimeUs + last.durationUs;
@@ -286,6 +320,46 @@ public final class HlsMediaPlaylist extends HlsPlaylist {
         : startOffsetUs >= 0 ? startOffsetUs : durationUs + startOffsetUs;
   }
 
+  /**
+   * @deprecated Use {@link #HlsMediaPlaylist(int, String, List, long, long, boolean, int, long,
+   *     int, long, boolean, boolean, boolean, DrmInitData, List, long)} instead.
+   */
+  @Deprecated
+  public HlsMediaPlaylist(
+      @PlaylistType int playlistType,
+      String baseUri,
+      List<String> tags,
+      long startOffsetUs,
+      long startTimeUs,
+      boolean hasDiscontinuitySequence,
+      int discontinuitySequence,
+      long mediaSequence,
+      int version,
+      long targetDurationUs,
+      boolean hasIndependentSegments,
+      boolean hasEndTag,
+      boolean hasProgramDateTime,
+      @Nullable DrmInitData protectionSchemes,
+      List<Segment> segments) {
+    this(
+        playlistType,
+        baseUri,
+        tags,
+        startOffsetUs,
+        startTimeUs,
+        hasDiscontinuitySequence,
+        discontinuitySequence,
+        mediaSequence,
+        version,
+        targetDurationUs,
+        hasIndependentSegments,
+        hasEndTag,
+        hasProgramDateTime,
+        protectionSchemes,
+        segments,
+        /* skipUntilUs= */ C.TIME_UNSET);
+  }
+
   @Override
   public HlsMediaPlaylist copy(List<StreamKey> streamKeys) {
     return this;
@@ -343,7 +417,8 @@ public final class HlsMediaPlaylist extends HlsPlaylist {
         hasEndTag,
         hasProgramDateTime,
         protectionSchemes,
-        segments);
+        segments,
+        skipUntilUs);
   }
 
   /**
@@ -369,7 +444,8 @@ public final class HlsMediaPlaylist extends HlsPlaylist {
         /* hasEndTag= */ true,
         hasProgramDateTime,
         protectionSchemes,
-        segments);
+        segments,
+        skipUntilUs);
   }
 
 }
@@ -43,6 +43,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -61,6 +62,9 @@ import org.checkerframework.checker.nullness.qual.PolyNull;
  */
 public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlaylist> {
 
+  /** The query parameter with which a playlist delta update is requested. */
+  /* package */ static final String QUERY_PARAMETER_SKIP = "_HLS_skip";
+
   private static final String PLAYLIST_HEADER = "#EXTM3U";
 
   private static final String TAG_PREFIX = "#EXT";
@@ -84,6 +88,8 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
   private static final String TAG_SESSION_KEY = "#EXT-X-SESSION-KEY";
   private static final String TAG_BYTERANGE = "#EXT-X-BYTERANGE";
   private static final String TAG_GAP = "#EXT-X-GAP";
+  private static final String TAG_SERVER_CONTROL = "#EXT-X-SERVER-CONTROL";
+  private static final String TAG_SKIP = "#EXT-X-SKIP";
 
   private static final String TYPE_AUDIO = "AUDIO";
   private static final String TYPE_VIDEO = "VIDEO";
@@ -103,21 +109,40 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
   private static final String KEYFORMAT_WIDEVINE_PSSH_JSON = "com.widevine";
 
   private static final String BOOLEAN_TRUE = "YES";
-  private static final String BOOLEAN_FALSE = "NO";
-
-  private static final String ATTR_CLOSED_CAPTIONS_NONE = "CLOSED-CAPTIONS=NONE";
-
-  private static final Pattern REGEX_AVERAGE_BANDWIDTH =
-      Pattern.compile("AVERAGE-BANDWIDTH=(\\d+)\\b");
-  private static final Pattern REGEX_VIDEO = Pattern.compile("VIDEO=\"(.+?)\"");
-  private static final Pattern REGEX_AUDIO = Pattern.compile("AUDIO=\"(.+?)\"");
-  private static final Pattern REGEX_SUBTITLES = Pattern.compile("SUBTITLES=\"(.+?)\"");
-  private static final Pattern REGEX_CLOSED_CAPTIONS = Pattern.compile("CLOSED-CAPTIONS=\"(.+?)\"");
-  private static final Pattern REGEX_BANDWIDTH = Pattern.compile("[^-]BANDWIDTH=(\\d+)\\b");
-  private static final Pattern REGEX_CHANNELS = Pattern.compile("CHANNELS=\"(.+?)\"");
-  private static final Pattern REGEX_CODECS = Pattern.compile("CODECS=\"(.+?)\"");
-  private static final Pattern REGEX_RESOLUTION = Pattern.compile("RESOLUTION=(\\d+x\\d+)");
-  private static final Pattern REGEX_FRAME_RATE = Pattern.compile("FRAME-RATE=([\\d\\.]+)\\b");
+
+  private static final String CLOSED_CAPTIONS_NONE = "NONE";
+
+  private static final String ATTR_AVERAGE_BANDWIDTH = "AVERAGE-BANDWIDTH";
+  private static final String ATTR_VIDEO = "VIDEO";
+  private static final String ATTR_AUDIO = "AUDIO";
+  private static final String ATTR_SUBTITLES = "SUBTITLES";
+  private static final String ATTR_CLOSED_CAPTIONS = "CLOSED-CAPTIONS";
+  private static final String ATTR_BANDWIDTH = "BANDWIDTH";
+  private static final String ATTR_CHANNELS = "CHANNELS";
+  private static final String ATTR_CODECS = "CODECS";
+  private static final String ATTR_RESOLUTION = "RESOLUTION";
+  private static final String ATTR_FRAME_RATE = "FRAME-RATE";
+  private static final String ATTR_TIME_OFFSET = "TIME-OFFSET";
+  private static final String ATTR_CAN_SKIP_UNTIL = "CAN-SKIP-UNTIL";
+  private static final String ATTR_SKIPPED_SEGMENTS = "SKIPPED-SEGMENTS";
+  private static final String ATTR_BYTERANGE = "BYTERANGE";
+  private static final String ATTR_METHOD = "METHOD";
+  private static final String ATTR_KEYFORMAT = "KEYFORMAT";
+  private static final String ATTR_KEYFORMATVERSIONS = "KEYFORMATVERSIONS";
+  private static final String ATTR_URI = "URI";
+  private static final String ATTR_IV = "IV";
+  private static final String ATTR_TYPE = "TYPE";
+  private static final String ATTR_LANGUAGE = "LANGUAGE";
+  private static final String ATTR_NAME = "NAME";
+  private static final String ATTR_GROUP_ID = "GROUP-ID";
+  private static final String ATTR_CHARACTERISTICS = "CHARACTERISTICS";
+  private static final String ATTR_INSTREAM_ID = "INSTREAM-ID";
+  private static final String ATTR_AUTOSELECT = "AUTOSELECT";
+  private static final String ATTR_DEFAULT = "DEFAULT";
+  private static final String ATTR_FORCED = "FORCED";
+  private static final String ATTR_VALUE = "VALUE";
+  private static final String ATTR_IMPORT = "IMPORT";
+
   private static final Pattern REGEX_TARGET_DURATION = Pattern.compile(TAG_TARGET_DURATION
       + ":(\\d+)\\b");
   private static final Pattern REGEX_VERSION = Pattern.compile(TAG_VERSION + ":(\\d+)\\b");
@@ -125,58 +150,24 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
       + ":(.+)\\b");
   private static final Pattern REGEX_MEDIA_SEQUENCE = Pattern.compile(TAG_MEDIA_SEQUENCE
       + ":(\\d+)\\b");
-  private static final Pattern REGEX_MEDIA_DURATION = Pattern.compile(TAG_MEDIA_DURATION
-      + ":([\\d\\.]+)\\b");
-  private static final Pattern REGEX_MEDIA_TITLE =
-      Pattern.compile(TAG_MEDIA_DURATION + ":[\\d\\.]+\\b,(.+)");
-  private static final Pattern REGEX_TIME_OFFSET = Pattern.compile("TIME-OFFSET=(-?[\\d\\.]+)\\b");
-  private static final Pattern REGEX_BYTERANGE = Pattern.compile(TAG_BYTERANGE
-      + ":(\\d+(?:@\\d+)?)\\b");
-  private static final Pattern REGEX_ATTR_BYTERANGE =
-      Pattern.compile("BYTERANGE=\"(\\d+(?:@\\d+)?)\\b\"");
-  private static final Pattern REGEX_METHOD =
-      Pattern.compile(
-          "METHOD=("
-              + METHOD_NONE
-              + "|"
-              + METHOD_AES_128
-              + "|"
-              + METHOD_SAMPLE_AES
-              + "|"
-              + METHOD_SAMPLE_AES_CENC
-              + "|"
-              + METHOD_SAMPLE_AES_CTR
-              + ")"
-              + "\\s*(?:,|$)");
-  private static final Pattern REGEX_KEYFORMAT = Pattern.compile("KEYFORMAT=\"(.+?)\"");
-  private static final Pattern REGEX_KEYFORMATVERSIONS =
-      Pattern.compile("KEYFORMATVERSIONS=\"(.+?)\"");
-  private static final Pattern REGEX_URI = Pattern.compile("URI=\"(.+?)\"");
-  private static final Pattern REGEX_IV = Pattern.compile("IV=([^,.*]+)");
-  private static final Pattern REGEX_TYPE = Pattern.compile("TYPE=(" + TYPE_AUDIO + "|" + TYPE_VIDEO
-      + "|" + TYPE_SUBTITLES + "|" + TYPE_CLOSED_CAPTIONS + ")");
-  private static final Pattern REGEX_LANGUAGE = Pattern.compile("LANGUAGE=\"(.+?)\"");
-  private static final Pattern REGEX_NAME = Pattern.compile("NAME=\"(.+?)\"");
-  private static final Pattern REGEX_GROUP_ID = Pattern.compile("GROUP-ID=\"(.+?)\"");
-  private static final Pattern REGEX_CHARACTERISTICS = Pattern.compile("CHARACTERISTICS=\"(.+?)\"");
-  private static final Pattern REGEX_INSTREAM_ID =
-      Pattern.compile("INSTREAM-ID=\"((?:CC|SERVICE)\\d+)\"");
-  private static final Pattern REGEX_AUTOSELECT = compileBooleanAttrPattern("AUTOSELECT");
-  private static final Pattern REGEX_DEFAULT = compileBooleanAttrPattern("DEFAULT");
-  private static final Pattern REGEX_FORCED = compileBooleanAttrPattern("FORCED");
-  private static final Pattern REGEX_VALUE = Pattern.compile("VALUE=\"(.+?)\"");
-  private static final Pattern REGEX_IMPORT = Pattern.compile("IMPORT=\"(.+?)\"");
   private static final Pattern REGEX_VARIABLE_REFERENCE =
       Pattern.compile("\\{\\$([a-zA-Z0-9\\-_]+)\\}");
 
+  /**
+   * Thrown when a playlist delta update skips segments that aren't in the previous playlist, so
+   * that the playlist has to be reloaded in full.
+   */
+  public static final class DeltaUpdateException extends IOException {}
+
   private final HlsMasterPlaylist masterPlaylist;
+  @Nullable private final HlsMediaPlaylist previousMediaPlaylist;
 
   /**
    * Creates an instance where media playlists are parsed without inheriting attributes from a
    * master playlist.
    */
   public HlsPlaylistParser() {
-    this(HlsMasterPlaylist.EMPTY);
+    this(HlsMasterPlaylist.EMPTY, /* previousMediaPlaylist= */ null);
   }
 
   /**
@@ -186,7 +177,22 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
    * @param masterPlaylist The master playlist from which media playlists will inherit attributes.
    */
   public HlsPlaylistParser(HlsMasterPlaylist masterPlaylist) {
+    this(masterPlaylist, /* previousMediaPlaylist= */ null);
+  }
+
+  /**
+   * Creates an instance where parsed media playlists inherit attributes from the given master
+   * playlist, and where the segments skipped by playlist delta updates are taken from the given
+   * previous media playlist.
+   *
+   * @param masterPlaylist The master playlist from which media playlists will inherit attributes.
+   * @param previousMediaPlaylist The previous version of the parsed media playlist, or null if
+   *     there isn't one.
+   */
+  public HlsPlaylistParser(
+      HlsMasterPlaylist masterPlaylist, @Nullable HlsMediaPlaylist previousMediaPlaylist) {
     this.masterPlaylist = masterPlaylist;
+    this.previousMediaPlaylist = previousMediaPlaylist;
   }
 
   @Override
@@ -216,7 +222,10 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
             || line.equals(TAG_ENDLIST)) {
           extraLines.add(line);
           return parseMediaPlaylist(
-              masterPlaylist, new LineIterator(extraLines, reader), uri.toString());
+              masterPlaylist,
+              previousMediaPlaylist,
+              new LineIterator(extraLines, reader),
+              uri.toString());
         } else {
           extraLines.add(line);
         }
@@ -272,6 +281,7 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     List<Format> muxedCaptionFormats = null;
     boolean noClosedCaptions = false;
     boolean hasIndependentSegmentsTag = false;
+    AttributeList attributes = new AttributeList();
 
     String line;
     while (iterator.hasNext()) {
@@ -283,9 +293,10 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
       }
 
       if (line.startsWith(TAG_DEFINE)) {
+        attributes.reset(line);
         variableDefinitions.put(
-            /* key= */ parseStringAttr(line, REGEX_NAME, variableDefinitions),
-            /* value= */ parseStringAttr(line, REGEX_VALUE, variableDefinitions));
+            /* key= */ parseStringAttr(attributes, ATTR_NAME, variableDefinitions),
+            /* value= */ parseStringAttr(attributes, ATTR_VALUE, variableDefinitions));
       } else if (line.equals(TAG_INDEPENDENT_SEGMENTS)) {
         hasIndependentSegmentsTag = true;
       } else if (line.startsWith(TAG_MEDIA)) {
@@ -293,21 +304,23 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
         // tags.
         mediaTags.add(line);
       } else if (line.startsWith(TAG_SESSION_KEY)) {
+        attributes.reset(line);
         String keyFormat =
-            parseOptionalStringAttr(line, REGEX_KEYFORMAT, KEYFORMAT_IDENTITY, variableDefinitions);
-        SchemeData schemeData = parseDrmSchemeData(line, keyFormat, variableDefinitions);
+            parseOptionalStringAttr(
+                attributes, ATTR_KEYFORMAT, KEYFORMAT_IDENTITY, variableDefinitions);
+        SchemeData schemeData = parseDrmSchemeData(attributes, keyFormat, variableDefinitions);
         if (schemeData != null) {
-          String method = parseStringAttr(line, REGEX_METHOD, variableDefinitions);
+          String method = parseMethodAttr(attributes, variableDefinitions);
           String scheme = parseEncryptionScheme(method);
           sessionKeyDrmInitData.add(new DrmInitData(scheme, schemeData));
         }
       } else if (line.startsWith(TAG_STREAM_INF)) {
-        noClosedCaptions |= line.contains(ATTR_CLOSED_CAPTIONS_NONE);
-        int peakBitrate = parseIntAttr(line, REGEX_BANDWIDTH);
-        int averageBitrate = parseOptionalIntAttr(line, REGEX_AVERAGE_BANDWIDTH, -1);
-        String codecs = parseOptionalStringAttr(line, REGEX_CODECS, variableDefinitions);
+        attributes.reset(line);
+        int peakBitrate = parseIntAttr(attributes, ATTR_BANDWIDTH);
+        int averageBitrate = parseOptionalIntAttr(attributes, ATTR_AVERAGE_BANDWIDTH, -1);
+        String codecs = parseOptionalStringAttr(attributes, ATTR_CODECS, variableDefinitions);
         String resolutionString =
-            parseOptionalStringAttr(line, REGEX_RESOLUTION, variableDefinitions);
+            parseOptionalStringAttr(attributes, ATTR_RESOLUTION, variableDefinitions);
         int width;
         int height;
         if (resolutionString != null) {
@@ -324,17 +337,22 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
           height = Format.NO_VALUE;
         }
         float frameRate = Format.NO_VALUE;
-        String frameRateString =
-            parseOptionalStringAttr(line, REGEX_FRAME_RATE, variableDefinitions);
+        String frameRateString = parseOptionalDecimalAttr(attributes, ATTR_FRAME_RATE);
         if (frameRateString != null) {
           frameRate = Float.parseFloat(frameRateString);
         }
-        String videoGroupId = parseOptionalStringAttr(line, REGEX_VIDEO, variableDefinitions);
-        String audioGroupId = parseOptionalStringAttr(line, REGEX_AUDIO, variableDefinitions);
+        String videoGroupId = parseOptionalStringAttr(attributes, ATTR_VIDEO, variableDefinitions);
+        String audioGroupId = parseOptionalStringAttr(attributes, ATTR_AUDIO, variableDefinitions);
         String subtitlesGroupId =
-            parseOptionalStringAttr(line, REGEX_SUBTITLES, variableDefinitions);
+            parseOptionalStringAttr(attributes, ATTR_SUBTITLES, variableDefinitions);
         String closedCaptionsGroupId =
-            parseOptionalStringAttr(line, REGEX_CLOSED_CAPTIONS, variableDefinitions);
+            parseOptionalStringAttr(attributes, ATTR_CLOSED_CAPTIONS, variableDefinitions);
+        if (CLOSED_CAPTIONS_NONE.equals(closedCaptionsGroupId)
+            && !attributes.isQuoted(ATTR_CLOSED_CAPTIONS)) {
+          // An enumerated NONE, rather than the quoted ID of a closed captions group.
+          noClosedCaptions = true;
+          closedCaptionsGroupId = null;
+        }
         if (!iterator.hasNext()) {
           throw new ParserException("#EXT-X-STREAM-INF tag must be followed by another line");
         }
@@ -397,19 +415,19 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     }
 
     for (int i = 0; i < mediaTags.size(); i++) {
-      line = mediaTags.get(i);
-      String groupId = parseStringAttr(line, REGEX_GROUP_ID, variableDefinitions);
-      String name = parseStringAttr(line, REGEX_NAME, variableDefinitions);
-      String referenceUri = parseOptionalStringAttr(line, REGEX_URI, variableDefinitions);
+      attributes.reset(mediaTags.get(i));
+      String groupId = parseStringAttr(attributes, ATTR_GROUP_ID, variableDefinitions);
+      String name = parseStringAttr(attributes, ATTR_NAME, variableDefinitions);
+      String referenceUri = parseOptionalStringAttr(attributes, ATTR_URI, variableDefinitions);
       Uri uri = referenceUri == null ? null : UriUtil.resolveToUri(baseUri, referenceUri);
-      String language = parseOptionalStringAttr(line, REGEX_LANGUAGE, variableDefinitions);
-      @C.SelectionFlags int selectionFlags = parseSelectionFlags(line);
-      @C.RoleFlags int roleFlags = parseRoleFlags(line, variableDefinitions);
+      String language = parseOptionalStringAttr(attributes, ATTR_LANGUAGE, variableDefinitions);
+      @C.SelectionFlags int selectionFlags = parseSelectionFlags(attributes);
+      @C.RoleFlags int roleFlags = parseRoleFlags(attributes, variableDefinitions);
       String formatId = groupId + ":" + name;
       Format format;
       Metadata metadata =
           new Metadata(new HlsTrackMetadataEntry(groupId, name, Collections.emptyList()));
-      switch (parseStringAttr(line, REGEX_TYPE, variableDefinitions)) {
+      switch (parseStringAttr(attributes, ATTR_TYPE, variableDefinitions)) {
         case TYPE_VIDEO:
           Variant variant = getVariantWithVideoGroup(variants, groupId);
           String codecs = null;
@@ -454,7 +472,7 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
                   : null;
           sampleMimeType = codecs != null ? MimeTypes.getMediaMimeType(codecs) : null;
           String channelsString =
-              parseOptionalStringAttr(line, REGEX_CHANNELS, variableDefinitions);
+              parseOptionalStringAttr(attributes, ATTR_CHANNELS, variableDefinitions);
           int channelCount = Format.NO_VALUE;
           if (channelsString != null) {
             channelCount = Integer.parseInt(Util.splitAtFirst(channelsString, "/")[0]);
@@ -500,15 +518,17 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
           subtitles.add(new Rendition(uri, format, groupId, name));
           break;
         case TYPE_CLOSED_CAPTIONS:
-          String instreamId = parseStringAttr(line, REGEX_INSTREAM_ID, variableDefinitions);
+          String instreamId = parseStringAttr(attributes, ATTR_INSTREAM_ID, variableDefinitions);
           String mimeType;
           int accessibilityChannel;
           if (instreamId.startsWith("CC")) {
             mimeType = MimeTypes.APPLICATION_CEA608;
             accessibilityChannel = Integer.parseInt(instreamId.substring(2));
-          } else /* starts with SERVICE */ {
+          } else if (instreamId.startsWith("SERVICE")) {
             mimeType = MimeTypes.APPLICATION_CEA708;
             accessibilityChannel = Integer.parseInt(instreamId.substring(7));
+          } else {
+            throw new ParserException("Invalid INSTREAM-ID in " + attributes.getLine());
           }
           if (muxedCaptionFormats == null) {
             muxedCaptionFormats = new ArrayList<>();
@@ -575,7 +595,11 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
   }
 
   private static HlsMediaPlaylist parseMediaPlaylist(
-      HlsMasterPlaylist masterPlaylist, LineIterator iterator, String baseUri) throws IOException {
+      HlsMasterPlaylist masterPlaylist,
+      @Nullable HlsMediaPlaylist previousMediaPlaylist,
+      LineIterator iterator,
+      String baseUri)
+      throws IOException {
     @HlsMediaPlaylist.PlaylistType int playlistType = HlsMediaPlaylist.PLAYLIST_TYPE_UNKNOWN;
     long startOffsetUs = C.TIME_UNSET;
     long mediaSequence = 0;
@@ -588,6 +612,7 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     List<Segment> segments = new ArrayList<>();
     List<String> tags = new ArrayList<>();
 
+    @Nullable String segmentDurationLine = null;
     long segmentDurationUs = 0;
     String segmentTitle = "";
     boolean hasDiscontinuitySequence = false;
@@ -599,6 +624,7 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     long segmentByteRangeLength = C.LENGTH_UNSET;
     long segmentMediaSequence = 0;
     boolean hasGapTag = false;
+    long skipUntilUs = C.TIME_UNSET;
 
     DrmInitData playlistProtectionSchemes = null;
     String fullSegmentEncryptionKeyUri = null;
@@ -606,6 +632,14 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     TreeMap<String, SchemeData> currentSchemeDatas = new TreeMap<>();
     String encryptionScheme = null;
     DrmInitData cachedDrmInitData = null;
+    AttributeList attributes = new AttributeList();
+    // Segments parsed from the previous playlist can only be reused if their URIs were resolved
+    // against the same playlist URI.
+    @Nullable
+    HlsMediaPlaylist reusableMediaPlaylist =
+        previousMediaPlaylist != null && isSamePlaylistUri(baseUri, previousMediaPlaylist.baseUri)
+            ? previousMediaPlaylist
+            : null;
 
     String line;
     while (iterator.hasNext()) {
@@ -624,10 +658,14 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
           playlistType = HlsMediaPlaylist.PLAYLIST_TYPE_EVENT;
         }
       } else if (line.startsWith(TAG_START)) {
-        startOffsetUs = (long) (parseDoubleAttr(line, REGEX_TIME_OFFSET) * C.MICROS_PER_SECOND);
+        attributes.reset(line);
+        startOffsetUs =
+            (long) (parseDoubleAttr(attributes, ATTR_TIME_OFFSET) * C.MICROS_PER_SECOND);
       } else if (line.startsWith(TAG_INIT_SEGMENT)) {
-        String uri = parseStringAttr(line, REGEX_URI, variableDefinitions);
-        String byteRange = parseOptionalStringAttr(line, REGEX_ATTR_BYTERANGE, variableDefinitions);
+        attributes.reset(line);
+        String uri = parseStringAttr(attributes, ATTR_URI, variableDefinitions);
+        String byteRange =
+            parseOptionalStringAttr(attributes, ATTR_BYTERANGE, variableDefinitions);
         if (byteRange != null) {
           String[] splitByteRange = byteRange.split("@");
           segmentByteRangeLength = Long.parseLong(splitByteRange[0]);
@@ -658,7 +696,8 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
       } else if (line.startsWith(TAG_VERSION)) {
         version = parseIntAttr(line, REGEX_VERSION);
       } else if (line.startsWith(TAG_DEFINE)) {
-        String importName = parseOptionalStringAttr(line, REGEX_IMPORT, variableDefinitions);
+        attributes.reset(line);
+        String importName = parseOptionalStringAttr(attributes, ATTR_IMPORT, variableDefinitions);
         if (importName != null) {
           String value = masterPlaylist.variableDefinitions.get(importName);
           if (value != null) {
@@ -668,28 +707,32 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
           }
         } else {
           variableDefinitions.put(
-              parseStringAttr(line, REGEX_NAME, variableDefinitions),
-              parseStringAttr(line, REGEX_VALUE, variableDefinitions));
+              parseStringAttr(attributes, ATTR_NAME, variableDefinitions),
+              parseStringAttr(attributes, ATTR_VALUE, variableDefinitions));
         }
       } else if (line.startsWith(TAG_MEDIA_DURATION)) {
-        segmentDurationUs =
-            (long) (parseDoubleAttr(line, REGEX_MEDIA_DURATION) * C.MICROS_PER_SECOND);
-        segmentTitle = parseOptionalStringAttr(line, REGEX_MEDIA_TITLE, "", variableDefinitions);
+        // Parsed with the segment URI, so that it is skipped for segments that are reused from the
+        // previous playlist.
+        segmentDurationLine = line;
       } else if (line.startsWith(TAG_KEY)) {
-        String method = parseStringAttr(line, REGEX_METHOD, variableDefinitions);
+        attributes.reset(line);
+        String method = parseMethodAttr(attributes, variableDefinitions);
         String keyFormat =
-            parseOptionalStringAttr(line, REGEX_KEYFORMAT, KEYFORMAT_IDENTITY, variableDefinitions);
+            parseOptionalStringAttr(
+                attributes, ATTR_KEYFORMAT, KEYFORMAT_IDENTITY, variableDefinitions);
         fullSegmentEncryptionKeyUri = null;
         fullSegmentEncryptionIV = null;
         if (METHOD_NONE.equals(method)) {
           currentSchemeDatas.clear();
           cachedDrmInitData = null;
         } else /* !METHOD_NONE.equals(method) */ {
-          fullSegmentEncryptionIV = parseOptionalStringAttr(line, REGEX_IV, variableDefinitions);
+          fullSegmentEncryptionIV =
+              parseOptionalStringAttr(attributes, ATTR_IV, variableDefinitions);
           if (KEYFORMAT_IDENTITY.equals(keyFormat)) {
             if (METHOD_AES_128.equals(method)) {
               // The segment is fully encrypted using an identity key.
-              fullSegmentEncryptionKeyUri = parseStringAttr(line, REGEX_URI, variableDefinitions);
+              fullSegmentEncryptionKeyUri =
+                  parseStringAttr(attributes, ATTR_URI, variableDefinitions);
             } else {
               // Do nothing. Samples are encrypted using an identity key, but this is not supported.
               // Hopefully, a traditional DRM alternative is also provided.
@@ -698,7 +741,8 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
             if (encryptionScheme == null) {
               encryptionScheme = parseEncryptionScheme(method);
             }
-            SchemeData schemeData = parseDrmSchemeData(line, keyFormat, variableDefinitions);
+            SchemeData schemeData =
+                parseDrmSchemeData(attributes, keyFormat, variableDefinitions);
             if (schemeData != null) {
               cachedDrmInitData = null;
               currentSchemeDatas.put(keyFormat, schemeData);
@@ -706,11 +750,16 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
           }
         }
       } else if (line.startsWith(TAG_BYTERANGE)) {
-        String byteRange = parseStringAttr(line, REGEX_BYTERANGE, variableDefinitions);
-        String[] splitByteRange = byteRange.split("@");
-        segmentByteRangeLength = Long.parseLong(splitByteRange[0]);
-        if (splitByteRange.length > 1) {
-          segmentByteRangeOffset = Long.parseLong(splitByteRange[1]);
+        // #EXT-X-BYTERANGE:<length>[@<offset>]
+        String byteRange =
+            replaceVariableReferences(
+                line.substring(TAG_BYTERANGE.length() + 1), variableDefinitions);
+        int offsetSeparatorIndex = byteRange.indexOf('@');
+        if (offsetSeparatorIndex == C.INDEX_UNSET) {
+          segmentByteRangeLength = Long.parseLong(byteRange);
+        } else {
+          segmentByteRangeLength = Long.parseLong(byteRange.substring(0, offsetSeparatorIndex));
+          segmentByteRangeOffset = Long.parseLong(byteRange.substring(offsetSeparatorIndex + 1));
         }
       } else if (line.startsWith(TAG_DISCONTINUITY_SEQUENCE)) {
         hasDiscontinuitySequence = true;
@@ -723,6 +772,70 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
               C.msToUs(Util.parseXsDateTime(line.substring(line.indexOf(':') + 1)));
           playlistStartTimeUs = programDatetimeUs - segmentStartTimeUs;
         }
+      } else if (line.startsWith(TAG_SERVER_CONTROL)) {
+        attributes.reset(line);
+        String skipUntil = parseOptionalDecimalAttr(attributes, ATTR_CAN_SKIP_UNTIL);
+        if (skipUntil != null) {
+          skipUntilUs = (long) (Double.parseDouble(skipUntil) * C.MICROS_PER_SECOND);
+        }
+      } else if (line.startsWith(TAG_SKIP)) {
+        // The segments replaced by the tag are taken from the previous playlist, rather than being
+        // transferred and parsed again. See RFC 8216bis, Section 6.2.5.1.
+        attributes.reset(line);
+        int skippedSegmentCount = parseIntAttr(attributes, ATTR_SKIPPED_SEGMENTS);
+        if (previousMediaPlaylist == null || !segments.isEmpty()) {
+          throw new DeltaUpdateException();
+        }
+        long startIndex = mediaSequence - previousMediaPlaylist.mediaSequence;
+        long endIndex = startIndex + skippedSegmentCount;
+        if (startIndex < 0 || endIndex > previousMediaPlaylist.segments.size()) {
+          throw new DeltaUpdateException();
+        }
+        for (int i = (int) startIndex; i < endIndex; i++) {
+          Segment segment = previousMediaPlaylist.segments.get(i);
+          if (mediaSequence != previousMediaPlaylist.mediaSequence) {
+            // The start time and the discontinuity sequence are relative to the start of the
+            // playlist, which has moved.
+            segment =
+                segment.copyWith(
+                    segmentStartTimeUs,
+                    previousMediaPlaylist.discontinuitySequence
+                        - playlistDiscontinuitySequence
+                        + segment.relativeDiscontinuitySequence);
+          }
+          segments.add(segment);
+          segmentStartTimeUs += segment.durationUs;
+          relativeDiscontinuitySequence = segment.relativeDiscontinuitySequence;
+          if (segment.byterangeLength != C.LENGTH_UNSET) {
+            segmentByteRangeOffset = segment.byterangeOffset + segment.byterangeLength;
+          }
+          initializationSegment = segment.initializationSegment;
+          fullSegmentEncryptionKeyUri = segment.fullSegmentEncryptionKeyUri;
+          // An explicit IV is always hexadecimal with a 0x prefix, so an IV that matches the media
+          // sequence number was implicit.
+          fullSegmentEncryptionIV =
+              segment.encryptionIV != null
+                      && segment.encryptionIV.equals(Long.toHexString(segmentMediaSequence))
+                  ? null
+                  : segment.encryptionIV;
+          cachedDrmInitData = segment.drmInitData;
+          currentSchemeDatas.clear();
+          if (segment.drmInitData != null) {
+            if (encryptionScheme == null) {
+              encryptionScheme = segment.drmInitData.schemeType;
+            }
+            SchemeData[] playlistSchemeDatas = new SchemeData[segment.drmInitData.schemeDataCount];
+            for (int j = 0; j < segment.drmInitData.schemeDataCount; j++) {
+              SchemeData schemeData = segment.drmInitData.get(j);
+              currentSchemeDatas.put(getKeyFormat(schemeData), schemeData);
+              playlistSchemeDatas[j] = schemeData.copyWithData(null);
+            }
+            if (playlistProtectionSchemes == null) {
+              playlistProtectionSchemes = new DrmInitData(encryptionScheme, playlistSchemeDatas);
+            }
+          }
+          segmentMediaSequence++;
+        }
       } else if (line.equals(TAG_GAP)) {
         hasGapTag = true;
       } else if (line.equals(TAG_INDEPENDENT_SEGMENTS)) {
@@ -730,6 +843,10 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
       } else if (line.equals(TAG_ENDLIST)) {
         hasEndTag = true;
       } else if (!line.startsWith("#")) {
+        String segmentUri = replaceVariableReferences(line, variableDefinitions);
+        @Nullable
+        Segment previousSegment =
+            getPreviousSegment(reusableMediaPlaylist, segmentMediaSequence, segmentUri);
         String segmentEncryptionIV;
         if (fullSegmentEncryptionKeyUri == null) {
           segmentEncryptionIV = null;
@@ -756,21 +873,55 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
           }
         }
 
-        segments.add(
-            new Segment(
-                replaceVariableReferences(line, variableDefinitions),
-                initializationSegment,
-                segmentTitle,
-                segmentDurationUs,
-                relativeDiscontinuitySequence,
-                segmentStartTimeUs,
-                cachedDrmInitData,
-                fullSegmentEncryptionKeyUri,
-                segmentEncryptionIV,
-                segmentByteRangeOffset,
-                segmentByteRangeLength,
-                hasGapTag));
-        segmentStartTimeUs += segmentDurationUs;
+        if (previousSegment != null) {
+          // A media segment never changes while it is in the playlist (see RFC 8216, Section
+          // 6.2.2), so the one parsed from the previous playlist is reused. Only its position,
+          // which is relative to the start of the playlist, may have changed.
+          if (previousSegment.relativeStartTimeUs != segmentStartTimeUs
+              || previousSegment.relativeDiscontinuitySequence != relativeDiscontinuitySequence) {
+            previousSegment =
+                previousSegment.copyWith(segmentStartTimeUs, relativeDiscontinuitySequence);
+          }
+          segments.add(previousSegment);
+          segmentStartTimeUs += previousSegment.durationUs;
+        } else {
+          if (segmentDurationLine != null) {
+            // #EXTINF:<duration>,[<title>]
+            int durationStartIndex = TAG_MEDIA_DURATION.length() + 1;
+            int durationEndIndex = indexOfDecimalEnd(segmentDurationLine, durationStartIndex);
+            if (durationEndIndex == durationStartIndex) {
+              throw new ParserException(
+                  "Couldn't parse the segment duration in " + segmentDurationLine);
+            }
+            segmentDurationUs =
+                (long)
+                    (Double.parseDouble(
+                            segmentDurationLine.substring(durationStartIndex, durationEndIndex))
+                        * C.MICROS_PER_SECOND);
+            segmentTitle =
+                durationEndIndex + 1 < segmentDurationLine.length()
+                        && segmentDurationLine.charAt(durationEndIndex) == ','
+                    ? replaceVariableReferences(
+                        segmentDurationLine.substring(durationEndIndex + 1), variableDefinitions)
+                    : "";
+          }
+          segments.add(
+              new Segment(
+                  segmentUri,
+                  initializationSegment,
+                  segmentTitle,
+                  segmentDurationUs,
+                  relativeDiscontinuitySequence,
+                  segmentStartTimeUs,
+                  cachedDrmInitData,
+                  fullSegmentEncryptionKeyUri,
+                  segmentEncryptionIV,
+                  segmentByteRangeOffset,
+                  segmentByteRangeLength,
+                  hasGapTag));
+          segmentStartTimeUs += segmentDurationUs;
+        }
+        segmentDurationLine = null;
         segmentDurationUs = 0;
         segmentTitle = "";
         if (segmentByteRangeLength != C.LENGTH_UNSET) {
@@ -795,28 +946,63 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
         hasEndTag,
         /* hasProgramDateTime= */ playlistStartTimeUs != 0,
         playlistProtectionSchemes,
-        segments);
+        segments,
+        skipUntilUs);
+  }
+
+  /**
+   * Returns the segment of the previous playlist with the given media sequence number, or null if
+   * the previous playlist doesn't contain it.
+   */
+  @Nullable
+  private static Segment getPreviousSegment(
+      @Nullable HlsMediaPlaylist previousMediaPlaylist,
+      long segmentMediaSequence,
+      String segmentUri) {
+    if (previousMediaPlaylist == null) {
+      return null;
+    }
+    long index = segmentMediaSequence - previousMediaPlaylist.mediaSequence;
+    if (index < 0 || index >= previousMediaPlaylist.segments.size()) {
+      return null;
+    }
+    Segment segment = previousMediaPlaylist.segments.get((int) index);
+    // Guards against servers that don't keep media sequence numbers consistent across reloads.
+    return segment.url.equals(segmentUri) ? segment : null;
+  }
+
+  /**
+   * Returns whether two playlist URIs identify the same playlist, ignoring whether either of them
+   * requested a delta update.
+   */
+  private static boolean isSamePlaylistUri(String baseUri, String otherBaseUri) {
+    if (baseUri.equals(otherBaseUri)) {
+      return true;
+    }
+    return UriUtil.removeQueryParameter(Uri.parse(baseUri), QUERY_PARAMETER_SKIP)
+        .equals(UriUtil.removeQueryParameter(Uri.parse(otherBaseUri), QUERY_PARAMETER_SKIP));
   }
 
   @C.SelectionFlags
-  private static int parseSelectionFlags(String line) {
+  private static int parseSelectionFlags(AttributeList attributes) {
     int flags = 0;
-    if (parseOptionalBooleanAttribute(line, REGEX_DEFAULT, false)) {
+    if (parseOptionalBooleanAttribute(attributes, ATTR_DEFAULT, false)) {
       flags |= C.SELECTION_FLAG_DEFAULT;
     }
-    if (parseOptionalBooleanAttribute(line, REGEX_FORCED, false)) {
+    if (parseOptionalBooleanAttribute(attributes, ATTR_FORCED, false)) {
       flags |= C.SELECTION_FLAG_FORCED;
     }
-    if (parseOptionalBooleanAttribute(line, REGEX_AUTOSELECT, false)) {
+    if (parseOptionalBooleanAttribute(attributes, ATTR_AUTOSELECT, false)) {
       flags |= C.SELECTION_FLAG_AUTOSELECT;
     }
     return flags;
   }
 
   @C.RoleFlags
-  private static int parseRoleFlags(String line, Map<String, String> variableDefinitions) {
+  private static int parseRoleFlags(
+      AttributeList attributes, Map<String, String> variableDefinitions) {
     String concatenatedCharacteristics =
-        parseOptionalStringAttr(line, REGEX_CHARACTERISTICS, variableDefinitions);
+        parseOptionalStringAttr(attributes, ATTR_CHARACTERISTICS, variableDefinitions);
     if (TextUtils.isEmpty(concatenatedCharacteristics)) {
       return 0;
     }
@@ -839,20 +1025,20 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
 
   @Nullable
   private static SchemeData parseDrmSchemeData(
-      String line, String keyFormat, Map<String, String> variableDefinitions)
+      AttributeList attributes, String keyFormat, Map<String, String> variableDefinitions)
       throws ParserException {
     String keyFormatVersions =
-        parseOptionalStringAttr(line, REGEX_KEYFORMATVERSIONS, "1", variableDefinitions);
+        parseOptionalStringAttr(attributes, ATTR_KEYFORMATVERSIONS, "1", variableDefinitions);
     if (KEYFORMAT_WIDEVINE_PSSH_BINARY.equals(keyFormat)) {
-      String uriString = parseStringAttr(line, REGEX_URI, variableDefinitions);
+      String uriString = parseStringAttr(attributes, ATTR_URI, variableDefinitions);
       return new SchemeData(
           C.WIDEVINE_UUID,
           MimeTypes.VIDEO_MP4,
           Base64.decode(uriString.substring(uriString.indexOf(',')), Base64.DEFAULT));
     } else if (KEYFORMAT_WIDEVINE_PSSH_JSON.equals(keyFormat)) {
-      return new SchemeData(C.WIDEVINE_UUID, "hls", Util.getUtf8Bytes(line));
+      return new SchemeData(C.WIDEVINE_UUID, "hls", Util.getUtf8Bytes(attributes.getLine()));
     } else if (KEYFORMAT_PLAYREADY.equals(keyFormat) && "1".equals(keyFormatVersions)) {
-      String uriString = parseStringAttr(line, REGEX_URI, variableDefinitions);
+      String uriString = parseStringAttr(attributes, ATTR_URI, variableDefinitions);
       byte[] data = Base64.decode(uriString.substring(uriString.indexOf(',')), Base64.DEFAULT);
       byte[] psshData = PsshAtomUtil.buildPsshAtom(C.PLAYREADY_UUID, data);
       return new SchemeData(C.PLAYREADY_UUID, MimeTypes.VIDEO_MP4, psshData);
@@ -860,62 +1046,166 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     return null;
   }
 
+  /**
+   * Returns the key format of a {@link SchemeData} created by {@link
+   * #parseDrmSchemeData(AttributeList, String, Map)}.
+   */
+  private static String getKeyFormat(SchemeData schemeData) {
+    if (schemeData.matches(C.PLAYREADY_UUID)) {
+      return KEYFORMAT_PLAYREADY;
+    }
+    return MimeTypes.VIDEO_MP4.equals(schemeData.mimeType)
+        ? KEYFORMAT_WIDEVINE_PSSH_BINARY
+        : KEYFORMAT_WIDEVINE_PSSH_JSON;
+  }
+
   private static String parseEncryptionScheme(String method) {
     return METHOD_SAMPLE_AES_CENC.equals(method) || METHOD_SAMPLE_AES_CTR.equals(method)
         ? C.CENC_TYPE_cenc
         : C.CENC_TYPE_cbcs;
   }
 
-  private static int parseIntAttr(String line, Pattern pattern) throws ParserException {
-    return Integer.parseInt(parseStringAttr(line, pattern, Collections.emptyMap()));
+  private static String parseMethodAttr(
+      AttributeList attributes, Map<String, String> variableDefinitions) throws ParserException {
+    String method = parseStringAttr(attributes, ATTR_METHOD, variableDefinitions);
+    switch (method) {
+      case METHOD_NONE:
+      case METHOD_AES_128:
+      case METHOD_SAMPLE_AES:
+      case METHOD_SAMPLE_AES_CENC:
+      case METHOD_SAMPLE_AES_CTR:
+        return method;
+      default:
+        throw new ParserException("Unsupported METHOD in " + attributes.getLine());
+    }
   }
 
-  private static int parseOptionalIntAttr(String line, Pattern pattern, int defaultValue) {
-    Matcher matcher = pattern.matcher(line);
-    if (matcher.find()) {
-      return Integer.parseInt(matcher.group(1));
-    }
-    return defaultValue;
+  private static int parseIntAttr(AttributeList attributes, String name) throws ParserException {
+    return Integer.parseInt(parseNumberAttr(attributes, name, /* isDecimal= */ false));
   }
 
-  private static long parseLongAttr(String line, Pattern pattern) throws ParserException {
-    return Long.parseLong(parseStringAttr(line, pattern, Collections.emptyMap()));
+  private static int parseOptionalIntAttr(AttributeList attributes, String name, int defaultValue) {
+    String value = parseOptionalNumberAttr(attributes, name, /* isDecimal= */ false);
+    return value != null ? Integer.parseInt(value) : defaultValue;
   }
 
-  private static double parseDoubleAttr(String line, Pattern pattern) throws ParserException {
-    return Double.parseDouble(parseStringAttr(line, pattern, Collections.emptyMap()));
+  private static double parseDoubleAttr(AttributeList attributes, String name)
+      throws ParserException {
+    return Double.parseDouble(parseNumberAttr(attributes, name, /* isDecimal= */ true));
+  }
+
+  @Nullable
+  private static String parseOptionalDecimalAttr(AttributeList attributes, String name) {
+    return parseOptionalNumberAttr(attributes, name, /* isDecimal= */ true);
+  }
+
+  private static String parseNumberAttr(AttributeList attributes, String name, boolean isDecimal)
+      throws ParserException {
+    String value = parseOptionalNumberAttr(attributes, name, isDecimal);
+    if (value != null) {
+      return value;
+    } else {
+      throw new ParserException("Couldn't find " + name + " in " + attributes.getLine());
+    }
+  }
+
+  /**
+   * Returns the number at the start of the value of an attribute, or null if the attribute is
+   * missing or its value doesn't start with a number.
+   */
+  @Nullable
+  private static String parseOptionalNumberAttr(
+      AttributeList attributes, String name, boolean isDecimal) {
+    @Nullable String value = attributes.get(name);
+    if (value == null) {
+      return null;
+    }
+    int startIndex = isDecimal && value.charAt(0) == '-' ? 1 : 0;
+    int endIndex =
+        isDecimal ? indexOfDecimalEnd(value, startIndex) : indexOfIntegerEnd(value, startIndex);
+    if (endIndex == startIndex) {
+      return null;
+    }
+    return endIndex == value.length() ? value : value.substring(0, endIndex);
   }
 
   private static String parseStringAttr(
-      String line, Pattern pattern, Map<String, String> variableDefinitions)
+      AttributeList attributes, String name, Map<String, String> variableDefinitions)
       throws ParserException {
-    String value = parseOptionalStringAttr(line, pattern, variableDefinitions);
+    String value = parseOptionalStringAttr(attributes, name, variableDefinitions);
     if (value != null) {
       return value;
     } else {
-      throw new ParserException("Couldn't match " + pattern.pattern() + " in " + line);
+      throw new ParserException("Couldn't find " + name + " in " + attributes.getLine());
     }
   }
 
   private static @Nullable String parseOptionalStringAttr(
-      String line, Pattern pattern, Map<String, String> variableDefinitions) {
-    return parseOptionalStringAttr(line, pattern, null, variableDefinitions);
+      AttributeList attributes, String name, Map<String, String> variableDefinitions) {
+    return parseOptionalStringAttr(attributes, name, null, variableDefinitions);
   }
 
   private static @PolyNull String parseOptionalStringAttr(
-      String line,
-      Pattern pattern,
+      AttributeList attributes,
+      String name,
       @PolyNull String defaultValue,
       Map<String, String> variableDefinitions) {
+    @Nullable String value = attributes.get(name);
+    return value == null ? defaultValue : replaceVariableReferences(value, variableDefinitions);
+  }
+
+  private static boolean parseOptionalBooleanAttribute(
+      AttributeList attributes, String name, boolean defaultValue) {
+    @Nullable String value = attributes.get(name);
+    return value != null ? BOOLEAN_TRUE.equals(value) : defaultValue;
+  }
+
+  private static int parseIntAttr(String line, Pattern pattern) throws ParserException {
+    return Integer.parseInt(parseStringAttr(line, pattern, Collections.emptyMap()));
+  }
+
+  private static long parseLongAttr(String line, Pattern pattern) throws ParserException {
+    return Long.parseLong(parseStringAttr(line, pattern, Collections.emptyMap()));
+  }
+
+  private static String parseStringAttr(
+      String line, Pattern pattern, Map<String, String> variableDefinitions)
+      throws ParserException {
     Matcher matcher = pattern.matcher(line);
-    String value = matcher.find() ? matcher.group(1) : defaultValue;
-    return variableDefinitions.isEmpty() || value == null
-        ? value
-        : replaceVariableReferences(value, variableDefinitions);
+    if (matcher.find()) {
+      return replaceVariableReferences(matcher.group(1), variableDefinitions);
+    } else {
+      throw new ParserException("Couldn't match " + pattern.pattern() + " in " + line);
+    }
+  }
+
+  private static int indexOfIntegerEnd(String string, int startIndex) {
+    int index = startIndex;
+    while (index < string.length() && isDigit(string.charAt(index))) {
+      index++;
+    }
+    return index;
+  }
+
+  private static int indexOfDecimalEnd(String string, int startIndex) {
+    int index = startIndex;
+    while (index < string.length()
+        && (isDigit(string.charAt(index)) || string.charAt(index) == '.')) {
+      index++;
+    }
+    return index;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
   }
 
   private static String replaceVariableReferences(
       String string, Map<String, String> variableDefinitions) {
+    if (variableDefinitions.isEmpty()) {
+      // There are no variables that could be referenced.
+      return string;
+    }
     Matcher matcher = REGEX_VARIABLE_REFERENCE.matcher(string);
     // TODO: Replace StringBuffer with StringBuilder once Java 9 is available.
     StringBuffer stringWithReplacements = new StringBuffer();
@@ -932,17 +1222,108 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     return stringWithReplacements.toString();
   }
 
-  private static boolean parseOptionalBooleanAttribute(
-      String line, Pattern pattern, boolean defaultValue) {
-    Matcher matcher = pattern.matcher(line);
-    if (matcher.find()) {
-      return matcher.group(1).equals(BOOLEAN_TRUE);
+  /**
+   * The attributes of a tag line, split in a single pass over the line. See RFC 8216, Section
+   * 4.2.
+   *
+   * <p>Instances are reused for all the tags of a playlist.
+   */
+  private static final class AttributeList {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String line;
+    private String[] names;
+    private String[] values;
+    private boolean[] quoted;
+    private int size;
+
+    public AttributeList() {
+      line = "";
+      names = new String[INITIAL_CAPACITY];
+      values = new String[INITIAL_CAPACITY];
+      quoted = new boolean[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Replaces the attributes with those of the given tag line.
+     *
+     * @param line A tag line of the form {@code #EXT-X-TAG:NAME=VALUE,NAME="VALUE",...}.
+     */
+    public void reset(String line) {
+      this.line = line;
+      size = 0;
+      int length = line.length();
+      int position = line.indexOf(':') + 1;
+      if (position == 0) {
+        return;
+      }
+      while (position < length) {
+        int equalsIndex = line.indexOf('=', position);
+        if (equalsIndex == C.INDEX_UNSET) {
+          break;
+        }
+        String name = line.substring(position, equalsIndex).trim();
+        int valueStartIndex = equalsIndex + 1;
+        if (valueStartIndex < length && line.charAt(valueStartIndex) == '"') {
+          // A quoted string, which may contain commas and equals signs.
+          int closingQuoteIndex = line.indexOf('"', valueStartIndex + 1);
+          if (closingQuoteIndex == C.INDEX_UNSET) {
+            break;
+          }
+          add(name, line.substring(valueStartIndex + 1, closingQuoteIndex), /* isQuoted= */ true);
+          int commaIndex = line.indexOf(',', closingQuoteIndex + 1);
+          position = commaIndex == C.INDEX_UNSET ? length : commaIndex + 1;
+        } else {
+          int commaIndex = line.indexOf(',', valueStartIndex);
+          int valueEndIndex = commaIndex == C.INDEX_UNSET ? length : commaIndex;
+          add(name, line.substring(valueStartIndex, valueEndIndex).trim(), /* isQuoted= */ false);
+          position = valueEndIndex + 1;
+        }
+      }
+    }
+
+    /** Returns the line from which the attributes were split. */
+    public String getLine() {
+      return line;
+    }
+
+    /**
+     * Returns the value of the first attribute with the given name, without quotes, or null if
+     * there's no such attribute or its value is empty.
+     */
+    @Nullable
+    public String get(String name) {
+      int index = indexOf(name);
+      return index == C.INDEX_UNSET || values[index].isEmpty() ? null : values[index];
+    }
+
+    /** Returns whether the value of the first attribute with the given name is quoted. */
+    public boolean isQuoted(String name) {
+      int index = indexOf(name);
+      return index != C.INDEX_UNSET && quoted[index];
     }
-    return defaultValue;
-  }
 
-  private static Pattern compileBooleanAttrPattern(String attribute) {
-    return Pattern.compile(attribute + "=(" + BOOLEAN_FALSE + "|" + BOOLEAN_TRUE + ")");
+    private int indexOf(String name) {
+      for (int i = 0; i < size; i++) {
+        if (names[i].equals(name)) {
+          return i;
+        }
+      }
+      return C.INDEX_UNSET;
+    }
+
+    private void add(String name, String value, boolean isQuoted) {
+      if (size == names.length) {
+        names = Arrays.copyOf(names, size * 2);
+        values = Arrays.copyOf(values, size * 2);
+        quoted = Arrays.copyOf(quoted, size * 2);
+      }
+      names[size] = name;
+      values[size] = value;
+      quoted[size] = isQuoted;
+      size++;
+    }
   }
 
   private static class LineIterator {
@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer2.source.hls.playlist;
 
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.upstream.ParsingLoadable;
 
 /** Factory for {@link HlsPlaylist} parsers. */
@@ -35,4 +36,25 @@ public interface HlsPlaylistParserFactory {
    * @return A parser for HLS playlists.
    */
   ParsingLoadable.Parser<HlsPlaylist> createPlaylistParser(HlsMasterPlaylist masterPlaylist);
+
+  /**
+   * Returns a playlist parser for playlists that were referenced by the given {@link
+   * HlsMasterPlaylist}. Returned {@link HlsMediaPlaylist} instances may inherit attributes from
+   * {@code masterPlaylist}, and may take the segments skipped by a playlist delta update from
+   * {@code previousMediaPlaylist}.
+   *
+   * <p>The default implementation ignores {@code previousMediaPlaylist}, and returns {@link
+   * #createPlaylistParser(HlsMasterPlaylist)}. An {@link HlsPlaylistParser} created without the
+   * previous playlist throws {@link HlsPlaylistParser.DeltaUpdateException} when it parses a delta
+   * update, after which {@link DefaultHlsPlaylistTracker} reloads the full playlist.
+   *
+   * @param masterPlaylist The master playlist that referenced any parsed media playlists.
+   * @param previousMediaPlaylist The previous version of the parsed media playlist, or null if
+   *     there isn't one.
+   * @return A parser for HLS playlists.
+   */
+  default ParsingLoadable.Parser<HlsPlaylist> createPlaylistParser(
+      HlsMasterPlaylist masterPlaylist, @Nullable HlsMediaPlaylist previousMediaPlaylist) {
+    return createPlaylistParser(masterPlaylist);
+  }
 }
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.hls.playlist;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.shadows.ShadowBaseLooper.shadowMainLooper;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.source.LoadEventInfo;
+import com.google.android.exoplayer2.source.MediaLoadData;
+import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
+import com.google.android.exoplayer2.source.MediaSourceEventListener;
+import com.google.android.exoplayer2.source.MediaSourceEventListener.EventDispatcher;
+import com.google.android.exoplayer2.testutil.FakeDataSet;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultLoadErrorHandlingPolicy;
+import com.google.android.exoplayer2.util.Util;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.LooperMode;
+
+/** Unit test for {@link DefaultHlsPlaylistTracker}. */
+@RunWith(AndroidJUnit4.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public final class DefaultHlsPlaylistTrackerTest {
+
+  private static final Uri PLAYLIST_URI = Uri.parse("https://example.com/test.m3u8");
+  private static final Uri DELTA_UPDATE_URI =
+      Uri.parse("https://example.com/test.m3u8?_HLS_skip=YES");
+
+  private static final String PLAYLIST =
+      "#EXTM3U\n"
+          + "#EXT-X-VERSION:9\n"
+          + "#EXT-X-TARGETDURATION:4\n"
+          + "#EXT-X-SERVER-CONTROL:CAN-SKIP-UNTIL=24.0\n"
+          + "#EXT-X-MEDIA-SEQUENCE:10\n"
+          + "#EXTINF:4.00000,\n"
+          + "segment10.ts\n"
+          + "#EXTINF:4.00000,\n"
+          + "segment11.ts\n"
+          + "#EXTINF:4.00000,\n"
+          + "segment12.ts\n";
+  private static final String DELTA_UPDATE =
+      "#EXTM3U\n"
+          + "#EXT-X-VERSION:9\n"
+          + "#EXT-X-TARGETDURATION:4\n"
+          + "#EXT-X-SERVER-CONTROL:CAN-SKIP-UNTIL=24.0\n"
+          + "#EXT-X-MEDIA-SEQUENCE:11\n"
+          + "#EXT-X-SKIP:SKIPPED-SEGMENTS=2\n"
+          + "#EXTINF:4.00000,\n"
+          + "segment13.ts\n";
+  private static final String DELTA_UPDATE_WITH_UNKNOWN_SEGMENTS =
+      "#EXTM3U\n"
+          + "#EXT-X-VERSION:9\n"
+          + "#EXT-X-TARGETDURATION:4\n"
+          + "#EXT-X-SERVER-CONTROL:CAN-SKIP-UNTIL=24.0\n"
+          + "#EXT-X-MEDIA-SEQUENCE:20\n"
+          + "#EXT-X-SKIP:SKIPPED-SEGMENTS=2\n"
+          + "#EXTINF:4.00000,\n"
+          + "segment22.ts\n";
+  private static final String UPDATED_PLAYLIST =
+      "#EXTM3U\n"
+          + "#EXT-X-VERSION:9\n"
+          + "#EXT-X-TARGETDURATION:4\n"
+          + "#EXT-X-SERVER-CONTROL:CAN-SKIP-UNTIL=24.0\n"
+          + "#EXT-X-MEDIA-SEQUENCE:11\n"
+          + "#EXTINF:4.00000,\n"
+          + "segment11.ts\n"
+          + "#EXTINF:4.00000,\n"
+          + "segment12.ts\n"
+          + "#EXTINF:4.00000,\n"
+          + "segment13.ts\n";
+
+  private FakeDataSet fakeDataSet;
+  private FakeDataSource dataSource;
+  private DefaultHlsPlaylistTracker playlistTracker;
+  private EventDispatcher eventDispatcher;
+  private List<Uri> completedLoadUris;
+  private List<Uri> failedLoadUris;
+  @Nullable private HlsMediaPlaylist primaryPlaylist;
+
+  @Before
+  public void setUp() {
+    fakeDataSet = new FakeDataSet();
+    dataSource = new FakeDataSource(fakeDataSet);
+    playlistTracker =
+        new DefaultHlsPlaylistTracker(
+            dataType -> dataSource,
+            new DefaultLoadErrorHandlingPolicy(),
+            new DefaultHlsPlaylistParserFactory());
+    completedLoadUris = new ArrayList<>();
+    failedLoadUris = new ArrayList<>();
+    eventDispatcher =
+        new EventDispatcher()
+            .withParameters(
+                /* windowIndex= */ 0, /* mediaPeriodId= */ null, /* mediaTimeOffsetMs= */ 0);
+    eventDispatcher.addEventListener(
+        new Handler(Looper.getMainLooper()),
+        new MediaSourceEventListener() {
+          @Override
+          public void onLoadCompleted(
+              int windowIndex,
+              @Nullable MediaPeriodId mediaPeriodId,
+              LoadEventInfo loadEventInfo,
+              MediaLoadData mediaLoadData) {
+            completedLoadUris.add(loadEventInfo.dataSpec.uri);
+          }
+
+          @Override
+          public void onLoadError(
+              int windowIndex,
+              @Nullable MediaPeriodId mediaPeriodId,
+              LoadEventInfo loadEventInfo,
+              MediaLoadData mediaLoadData,
+              IOException error,
+              boolean wasCanceled) {
+            failedLoadUris.add(loadEventInfo.dataSpec.uri);
+          }
+        });
+  }
+
+  @After
+  public void tearDown() {
+    playlistTracker.stop();
+  }
+
+  @Test
+  public void refresh_withRecentSnapshot_requestsDeltaUpdate() {
+    startPlaylistTracker(PLAYLIST);
+    fakeDataSet.setData(DELTA_UPDATE_URI, Util.getUtf8Bytes(DELTA_UPDATE));
+    HlsMediaPlaylist initialPlaylist = primaryPlaylist;
+
+    runMainLooperUntil(() -> primaryPlaylist != initialPlaylist);
+
+    assertThat(getOpenedUris()).containsExactly(PLAYLIST_URI, DELTA_UPDATE_URI).inOrder();
+    assertThat(getSegmentUrls(primaryPlaylist))
+        .containsExactly("segment11.ts", "segment12.ts", "segment13.ts")
+        .inOrder();
+    assertThat(primaryPlaylist.mediaSequence).isEqualTo(11);
+    assertThat(failedLoadUris).isEmpty();
+  }
+
+  @Test
+  public void refresh_withUnknownSkippedSegments_reportsCompletedLoadAndReloadsWholePlaylist() {
+    startPlaylistTracker(PLAYLIST);
+    fakeDataSet.setData(DELTA_UPDATE_URI, Util.getUtf8Bytes(DELTA_UPDATE_WITH_UNKNOWN_SEGMENTS));
+    fakeDataSet.setData(PLAYLIST_URI, Util.getUtf8Bytes(UPDATED_PLAYLIST));
+    HlsMediaPlaylist initialPlaylist = primaryPlaylist;
+
+    runMainLooperUntil(() -> primaryPlaylist != initialPlaylist);
+
+    assertThat(getOpenedUris())
+        .containsExactly(PLAYLIST_URI, DELTA_UPDATE_URI, PLAYLIST_URI)
+        .inOrder();
+    assertThat(getSegmentUrls(primaryPlaylist))
+        .containsExactly("segment11.ts", "segment12.ts", "segment13.ts")
+        .inOrder();
+    // Segments that were already known are reused rather than parsed again.
+    assertThat(primaryPlaylist.segments.get(0).url)
+        .isSameInstanceAs(initialPlaylist.segments.get(1).url);
+    runMainLooperUntil(() -> completedLoadUris.size() == 3);
+    assertThat(completedLoadUris)
+        .containsExactly(PLAYLIST_URI, DELTA_UPDATE_URI, PLAYLIST_URI)
+        .inOrder();
+    assertThat(failedLoadUris).isEmpty();
+  }
+
+  @Test
+  public void refresh_withSnapshotOlderThanHalfSkipBoundary_requestsWholePlaylist() {
+    startPlaylistTracker(PLAYLIST.replace("CAN-SKIP-UNTIL=24.0", "CAN-SKIP-UNTIL=6.0"));
+    fakeDataSet.setData(DELTA_UPDATE_URI, Util.getUtf8Bytes(DELTA_UPDATE));
+    fakeDataSet.setData(PLAYLIST_URI, Util.getUtf8Bytes(UPDATED_PLAYLIST));
+    HlsMediaPlaylist initialPlaylist = primaryPlaylist;
+
+    // The playlist is reloaded after the target duration, by which time the snapshot is older than
+    // half the skip boundary.
+    runMainLooperUntil(() -> primaryPlaylist != initialPlaylist);
+
+    assertThat(getOpenedUris()).containsExactly(PLAYLIST_URI, PLAYLIST_URI).inOrder();
+    assertThat(getSegmentUrls(primaryPlaylist))
+        .containsExactly("segment11.ts", "segment12.ts", "segment13.ts")
+        .inOrder();
+  }
+
+  private void startPlaylistTracker(String playlist) {
+    fakeDataSet.setData(PLAYLIST_URI, Util.getUtf8Bytes(playlist));
+    playlistTracker.start(
+        PLAYLIST_URI, eventDispatcher, mediaPlaylist -> primaryPlaylist = mediaPlaylist);
+    runMainLooperUntil(() -> primaryPlaylist != null);
+  }
+
+  private List<Uri> getOpenedUris() {
+    List<Uri> uris = new ArrayList<>();
+    for (DataSpec dataSpec : dataSource.getAndClearOpenedDataSpecs()) {
+      uris.add(dataSpec.uri);
+    }
+    return uris;
+  }
+
+  private static List<String> getSegmentUrls(HlsMediaPlaylist playlist) {
+    List<String> urls = new ArrayList<>();
+    for (HlsMediaPlaylist.Segment segment : playlist.segments) {
+      urls.add(segment.url);
+    }
+    return urls;
+  }
+
+  private static void runMainLooperUntil(Condition condition) {
+    while (!condition.isMet()) {
+      shadowMainLooper().idleFor(shadowMainLooper().getNextScheduledTaskTime());
+    }
+  }
+
+  private interface Condition {
+    boolean isMet();
+  }
+}
@@ -194,6 +194,14 @@ public class HlsMasterPlaylistParserTest {
           + "#EXT-X-MEDIA:TYPE=SUBTITLES,"
           + "GROUP-ID=\"sub1\",NAME=\"English\",URI=\"s1/en/prog_index.m3u8\"\n";
 
+  private static final String PLAYLIST_WITH_QUOTED_ATTRIBUTES =
+      "#EXTM3U\n"
+          + "#EXT-X-MEDIA:TYPE=AUDIO,GROUP-ID=\"aud,1\",NAME=\"English, Stereo\","
+          + "URI=\"a1/index.m3u8?token=a=b,c\",DEFAULT=YES\n"
+          + "#EXT-X-STREAM-INF:AVERAGE-BANDWIDTH=1000000,BANDWIDTH=1280000,"
+          + "CODECS=\"mp4a.40.2,avc1.66.30\",AUDIO=\"aud,1\",RESOLUTION=304x128\n"
+          + "http://example.com/low.m3u8\n";
+
   @Test
   public void testParseMasterPlaylist() throws IOException {
     HlsMasterPlaylist masterPlaylist = parseMasterPlaylist(PLAYLIST_URI, PLAYLIST_SIMPLE);
@@ -334,6 +342,23 @@ public class HlsMasterPlaylistParserTest {
     assertThat(playlistWithoutIndependentSegments.hasIndependentSegments).isFalse();
   }
 
+  @Test
+  public void testQuotedAttributesWithSeparators() throws IOException {
+    HlsMasterPlaylist playlist =
+        parseMasterPlaylist(PLAYLIST_URI, PLAYLIST_WITH_QUOTED_ATTRIBUTES);
+
+    Format variantFormat = playlist.variants.get(0).format;
+    assertThat(variantFormat.bitrate).isEqualTo(1280000);
+    assertThat(variantFormat.codecs).isEqualTo("mp4a.40.2,avc1.66.30");
+    assertThat(variantFormat.width).isEqualTo(304);
+    assertThat(playlist.variants.get(0).audioGroupId).isEqualTo("aud,1");
+    HlsMasterPlaylist.Rendition audio = playlist.audios.get(0);
+    assertThat(audio.name).isEqualTo("English, Stereo");
+    assertThat(audio.url.toString()).isEqualTo("https://example.com/a1/index.m3u8?token=a=b,c");
+    assertThat(audio.format.selectionFlags).isEqualTo(C.SELECTION_FLAG_DEFAULT);
+    assertThat(audio.format.codecs).isEqualTo("mp4a.40.2");
+  }
+
   @Test
   public void testVariableSubstitution() throws IOException {
     HlsMasterPlaylist playlistWithSubstitutions =
@@ -22,6 +22,7 @@ import android.net.Uri;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.drm.DrmInitData;
 import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist.Segment;
 import com.google.android.exoplayer2.util.Util;
 import java.io.ByteArrayInputStream;
@@ -528,4 +529,319 @@ public class HlsMediaPlaylistParserTest {
       assertThat(playlist.segments.get(i - 1).url).isEqualTo("long_path" + i + ".ts");
     }
   }
+
+  @Test
+  public void testServerControlTag() throws IOException {
+    Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
+    String playlistString =
+        "#EXTM3U\n"
+            + "#EXT-X-VERSION:9\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-SERVER-CONTROL:CAN-SKIP-UNTIL=24.5\n"
+            + "#EXT-X-MEDIA-SEQUENCE:10\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment10.ts\n";
+    InputStream inputStream = new ByteArrayInputStream(Util.getUtf8Bytes(playlistString));
+    HlsMediaPlaylist playlist =
+        (HlsMediaPlaylist) new HlsPlaylistParser().parse(playlistUri, inputStream);
+
+    assertThat(playlist.skipUntilUs).isEqualTo(24_500_000);
+  }
+
+  @Test
+  public void testSkipTag() throws IOException {
+    Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
+    String previousPlaylistString =
+        "#EXTM3U\n"
+            + "#EXT-X-VERSION:9\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-SERVER-CONTROL:CAN-SKIP-UNTIL=24.0\n"
+            + "#EXT-X-MEDIA-SEQUENCE:10\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment10.ts\n"
+            + "#EXT-X-DISCONTINUITY\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment11.ts\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment12.ts\n";
+    String deltaUpdatePlaylistString =
+        "#EXTM3U\n"
+            + "#EXT-X-VERSION:9\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-SERVER-CONTROL:CAN-SKIP-UNTIL=24.0\n"
+            + "#EXT-X-MEDIA-SEQUENCE:11\n"
+            + "#EXT-X-DISCONTINUITY-SEQUENCE:1\n"
+            + "#EXT-X-SKIP:SKIPPED-SEGMENTS=2\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment13.ts\n";
+    HlsMediaPlaylist previousPlaylist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser()
+                .parse(
+                    playlistUri,
+                    new ByteArrayInputStream(Util.getUtf8Bytes(previousPlaylistString)));
+    HlsMediaPlaylist playlist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser(HlsMasterPlaylist.EMPTY, previousPlaylist)
+                .parse(
+                    playlistUri,
+                    new ByteArrayInputStream(Util.getUtf8Bytes(deltaUpdatePlaylistString)));
+
+    assertThat(playlist.segments).hasSize(3);
+    assertThat(playlist.segments.get(0).url).isEqualTo("segment11.ts");
+    assertThat(playlist.segments.get(0).relativeStartTimeUs).isEqualTo(0);
+    assertThat(playlist.segments.get(0).relativeDiscontinuitySequence).isEqualTo(0);
+    assertThat(playlist.segments.get(1).url).isEqualTo("segment12.ts");
+    assertThat(playlist.segments.get(1).relativeStartTimeUs).isEqualTo(4_000_000);
+    assertThat(playlist.segments.get(2).url).isEqualTo("segment13.ts");
+    assertThat(playlist.segments.get(2).relativeStartTimeUs).isEqualTo(8_000_000);
+    assertThat(playlist.segments.get(2).relativeDiscontinuitySequence).isEqualTo(0);
+    assertThat(playlist.durationUs).isEqualTo(12_000_000);
+  }
+
+  @Test
+  public void testSkipTagWithKeyRotationToImplicitIv() throws IOException {
+    Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
+    String previousPlaylistString =
+        "#EXTM3U\n"
+            + "#EXT-X-VERSION:9\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-SERVER-CONTROL:CAN-SKIP-UNTIL=24.0\n"
+            + "#EXT-X-MEDIA-SEQUENCE:10\n"
+            + "#EXT-X-KEY:METHOD=AES-128,URI=\"https://example.com/key1\","
+            + "IV=0x1566B\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment10.ts\n"
+            + "#EXT-X-KEY:METHOD=AES-128,URI=\"https://example.com/key2\"\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment11.ts\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment12.ts\n";
+    String deltaUpdatePlaylistString =
+        "#EXTM3U\n"
+            + "#EXT-X-VERSION:9\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-SERVER-CONTROL:CAN-SKIP-UNTIL=24.0\n"
+            + "#EXT-X-MEDIA-SEQUENCE:10\n"
+            + "#EXT-X-SKIP:SKIPPED-SEGMENTS=3\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment13.ts\n";
+    HlsMediaPlaylist previousPlaylist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser()
+                .parse(
+                    playlistUri,
+                    new ByteArrayInputStream(Util.getUtf8Bytes(previousPlaylistString)));
+    HlsMediaPlaylist playlist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser(HlsMasterPlaylist.EMPTY, previousPlaylist)
+                .parse(
+                    playlistUri,
+                    new ByteArrayInputStream(Util.getUtf8Bytes(deltaUpdatePlaylistString)));
+
+    assertThat(playlist.segments).hasSize(4);
+    assertThat(playlist.segments.get(0).encryptionIV).isEqualTo("0x1566B");
+    assertThat(playlist.segments.get(2).encryptionIV).isEqualTo("c");
+    Segment segment = playlist.segments.get(3);
+    assertThat(segment.fullSegmentEncryptionKeyUri).isEqualTo("https://example.com/key2");
+    // The IV is implicit, so it must not be inherited from the first skipped segment.
+    assertThat(segment.encryptionIV).isEqualTo("d");
+  }
+
+  @Test
+  public void testSkipTagWithDrmKeyRotation() throws IOException {
+    Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
+    String widevineKey =
+        "#EXT-X-KEY:METHOD=SAMPLE-AES,"
+            + "KEYFORMAT=\"urn:uuid:edef8ba9-79d6-4ace-a3c8-27dcd51d21ed\","
+            + "KEYFORMATVERSIONS=\"1\","
+            + "URI=\"data:text/plain;base64,Tm90aGluZyB0byBzZWUgaGVyZQ==\"\n";
+    String playReadyKey =
+        "#EXT-X-KEY:METHOD=SAMPLE-AES,KEYFORMAT=\"com.microsoft.playready\","
+            + "KEYFORMATVERSIONS=\"1\","
+            + "URI=\"data:text/plain;charset=UTF-16;base64,VGhpcyBpcyBhbiBlYXN0ZXIgZWdn\"\n";
+    String header =
+        "#EXTM3U\n"
+            + "#EXT-X-VERSION:9\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-SERVER-CONTROL:CAN-SKIP-UNTIL=24.0\n"
+            + "#EXT-X-MEDIA-SEQUENCE:10\n";
+    String previousPlaylistString =
+        header
+            + widevineKey
+            + "#EXTINF:4.00000,\n"
+            + "segment10.ts\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment11.ts\n";
+    String tail = playReadyKey + "#EXTINF:4.00000,\n" + "segment12.ts\n";
+    String deltaUpdatePlaylistString = header + "#EXT-X-SKIP:SKIPPED-SEGMENTS=2\n" + tail;
+    String fullPlaylistString = previousPlaylistString + tail;
+    HlsMediaPlaylist previousPlaylist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser()
+                .parse(
+                    playlistUri,
+                    new ByteArrayInputStream(Util.getUtf8Bytes(previousPlaylistString)));
+    HlsMediaPlaylist playlist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser(HlsMasterPlaylist.EMPTY, previousPlaylist)
+                .parse(
+                    playlistUri,
+                    new ByteArrayInputStream(Util.getUtf8Bytes(deltaUpdatePlaylistString)));
+    HlsMediaPlaylist fullPlaylist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser()
+                .parse(
+                    playlistUri, new ByteArrayInputStream(Util.getUtf8Bytes(fullPlaylistString)));
+
+    assertThat(playlist.protectionSchemes).isNotNull();
+    assertThat(playlist.protectionSchemes).isEqualTo(fullPlaylist.protectionSchemes);
+    assertThat(playlist.segments).hasSize(3);
+    // The rotated key is added to the scheme data restored from the skipped segments.
+    DrmInitData drmInitData = playlist.segments.get(2).drmInitData;
+    assertThat(drmInitData.schemeDataCount).isEqualTo(2);
+    assertThat(drmInitData).isEqualTo(fullPlaylist.segments.get(2).drmInitData);
+  }
+
+  @Test
+  public void testSkipTagWithoutPreviousPlaylistFails() throws IOException {
+    Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
+    String playlistString =
+        "#EXTM3U\n"
+            + "#EXT-X-VERSION:9\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-MEDIA-SEQUENCE:11\n"
+            + "#EXT-X-SKIP:SKIPPED-SEGMENTS=2\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment13.ts\n";
+    InputStream inputStream = new ByteArrayInputStream(Util.getUtf8Bytes(playlistString));
+    try {
+      new HlsPlaylistParser().parse(playlistUri, inputStream);
+      fail();
+    } catch (HlsPlaylistParser.DeltaUpdateException e) {
+      // Expected because the skipped segments can't be restored.
+    }
+  }
+
+  @Test
+  public void testFullReloadReusesKnownSegments() throws IOException {
+    Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
+    String previousPlaylistString =
+        "#EXTM3U\n"
+            + "#EXT-X-VERSION:3\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-MEDIA-SEQUENCE:10\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment10.ts\n"
+            + "#EXT-X-DISCONTINUITY\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment11.ts\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment12.ts\n";
+    String playlistString =
+        "#EXTM3U\n"
+            + "#EXT-X-VERSION:3\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-MEDIA-SEQUENCE:11\n"
+            + "#EXT-X-DISCONTINUITY-SEQUENCE:1\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment11.ts\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment12.ts\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment13.ts\n";
+    HlsMediaPlaylist previousPlaylist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser()
+                .parse(
+                    playlistUri,
+                    new ByteArrayInputStream(Util.getUtf8Bytes(previousPlaylistString)));
+    HlsMediaPlaylist playlist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser(HlsMasterPlaylist.EMPTY, previousPlaylist)
+                .parse(playlistUri, new ByteArrayInputStream(Util.getUtf8Bytes(playlistString)));
+
+    assertThat(playlist.segments).hasSize(3);
+    // The known segments are rebased onto the start of the new playlist.
+    assertThat(playlist.segments.get(0).url).isSameInstanceAs(previousPlaylist.segments.get(1).url);
+    assertThat(playlist.segments.get(0).relativeStartTimeUs).isEqualTo(0);
+    assertThat(playlist.segments.get(0).relativeDiscontinuitySequence).isEqualTo(0);
+    assertThat(playlist.segments.get(1).url).isSameInstanceAs(previousPlaylist.segments.get(2).url);
+    assertThat(playlist.segments.get(1).relativeStartTimeUs).isEqualTo(4_000_000);
+    assertThat(playlist.segments.get(2).url).isEqualTo("segment13.ts");
+    assertThat(playlist.segments.get(2).relativeStartTimeUs).isEqualTo(8_000_000);
+    assertThat(playlist.durationUs).isEqualTo(12_000_000);
+  }
+
+  @Test
+  public void testFullReloadAfterDeltaUpdateReusesKnownSegments() throws IOException {
+    Uri deltaUpdateUri = Uri.parse("https://example.com/test.m3u8?_HLS_skip=YES");
+    Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
+    String previousPlaylistString =
+        "#EXTM3U\n"
+            + "#EXT-X-VERSION:9\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-MEDIA-SEQUENCE:10\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment10.ts\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment11.ts\n";
+    String playlistString =
+        "#EXTM3U\n"
+            + "#EXT-X-VERSION:9\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-MEDIA-SEQUENCE:11\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment11.ts\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment12.ts\n";
+    HlsMediaPlaylist previousPlaylist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser()
+                .parse(
+                    deltaUpdateUri,
+                    new ByteArrayInputStream(Util.getUtf8Bytes(previousPlaylistString)));
+    HlsMediaPlaylist playlist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser(HlsMasterPlaylist.EMPTY, previousPlaylist)
+                .parse(playlistUri, new ByteArrayInputStream(Util.getUtf8Bytes(playlistString)));
+
+    // The playlists only differ in whether a delta update was requested.
+    assertThat(playlist.segments.get(0).url).isSameInstanceAs(previousPlaylist.segments.get(1).url);
+    assertThat(playlist.segments.get(1).url).isEqualTo("segment12.ts");
+  }
+
+  @Test
+  public void testFullReloadParsesSegmentsWithChangedUri() throws IOException {
+    Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
+    String previousPlaylistString =
+        "#EXTM3U\n"
+            + "#EXT-X-VERSION:3\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-MEDIA-SEQUENCE:10\n"
+            + "#EXTINF:4.00000,\n"
+            + "segment10.ts\n";
+    String playlistString =
+        "#EXTM3U\n"
+            + "#EXT-X-VERSION:3\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-MEDIA-SEQUENCE:10\n"
+            + "#EXTINF:2.00000,title\n"
+            + "other10.ts\n";
+    HlsMediaPlaylist previousPlaylist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser()
+                .parse(
+                    playlistUri,
+                    new ByteArrayInputStream(Util.getUtf8Bytes(previousPlaylistString)));
+    HlsMediaPlaylist playlist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser(HlsMasterPlaylist.EMPTY, previousPlaylist)
+                .parse(playlistUri, new ByteArrayInputStream(Util.getUtf8Bytes(playlistString)));
+
+    Segment segment = playlist.segments.get(0);
+    assertThat(segment.url).isEqualTo("other10.ts");
+    assertThat(segment.title).isEqualTo("title");
+    assertThat(segment.durationUs).isEqualTo(2_000_000);
+  }
 }
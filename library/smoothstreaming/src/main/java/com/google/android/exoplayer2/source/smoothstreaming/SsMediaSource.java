@@ -47,6 +47,7 @@ import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy;
 import com.google.android.exoplayer2.upstream.Loader;
 import com.google.android.exoplayer2.upstream.Loader.LoadErrorAction;
 import com.google.android.exoplayer2.upstream.LoaderErrorThrower;
+import com.google.android.exoplayer2.upstream.ParsedResponseCache;
 import com.google.android.exoplayer2.upstream.ParsingLoadable;
 import com.google.android.exoplayer2.upstream.TransferListener;
 import com.google.android.exoplayer2.util.Assertions;
@@ -327,6 +328,7 @@ public final class SsMediaSource extends BaseMediaSource
   private final long livePresentationDelayMs;
   private final EventDispatcher manifestEventDispatcher;
   private final ParsingLoadable.Parser<? extends SsManifest> manifestParser;
+  private final ParsedResponseCache<SsManifest> manifestCache;
   private final ArrayList<SsMediaPeriod> mediaPeriods;
   @Nullable private final Object tag;
 
@@ -522,6 +524,7 @@ public final class SsMediaSource extends BaseMediaSource
     this.manifestEventDispatcher = createEventDispatcher(/* mediaPeriodId= */ null);
     this.tag = tag;
     sideloadedManifest = manifest != null;
+    manifestCache = new ParsedResponseCache<>();
     mediaPeriods = new ArrayList<>();
   }
 
@@ -581,6 +584,7 @@ public final class SsMediaSource extends BaseMediaSource
   @Override
   protected void releaseSourceInternal() {
     manifest = sideloadedManifest ? manifest : null;
+    manifestCache.clear();
     manifestDataSource = null;
     manifestLoadStartTimestamp = 0;
     if (manifestLoader != null) {
@@ -738,8 +742,9 @@ public final class SsMediaSource extends BaseMediaSource
     if (manifestLoader.hasFatalError()) {
       return;
     }
-    ParsingLoadable<SsManifest> loadable = new ParsingLoadable<>(manifestDataSource,
-        manifestUri, C.DATA_TYPE_MANIFEST, manifestParser);
+    ParsingLoadable<SsManifest> loadable =
+        new ParsingLoadable<>(
+            manifestDataSource, manifestUri, C.DATA_TYPE_MANIFEST, manifestParser, manifestCache);
     long elapsedRealtimeMs =
         manifestLoader.startLoading(
             loadable, this, loadErrorHandlingPolicy.getMinimumLoadableRetryCount(loadable.type));